@@ -0,0 +1,158 @@
+package ca.umanitoba.cs.longkuma.bench;
+
+import ca.umanitoba.cs.longkuma.domain.resource.DateTimeCodec;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+
+/*
+ * Throughput benchmark for DateTimeCodec's date and time range parsing
+ * Compares it with the substring and Integer.parseInt parsing it replaced, on valid input and on input
+ * where one value in eight is invalid, since the old parser paid for an exception on every bad value
+ *
+ * Build the project, then run from the project root:
+ *     java -cp target/classes src/bench/java/ca/umanitoba/cs/longkuma/bench/DateTimeCodecBench.java [iterations]
+ */
+public class DateTimeCodecBench {
+
+    private static final int SAMPLES = 1024;
+    private static final int ROUNDS = 5;
+    private static final int DEFAULT_ITERATIONS = 10_000_000;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        Random random = new Random(1);
+        String[] dates = new String[SAMPLES];
+        String[] times = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            dates[i] = String.format("%02d/%02d/%02d", 1 + random.nextInt(28), 1 + random.nextInt(12), 25 + random.nextInt(5));
+            int hour = 8 + random.nextInt(10);
+            times[i] = String.format("%02d:00-%02d:30", hour, hour + 1);
+        }
+        String[] badDates = dates.clone();
+        String[] badTimes = times.clone();
+        for (int i = 0; i < SAMPLES; i += 8) {
+            badDates[i] = "3x/02/26";
+            badTimes[i] = "15:00-14:00";
+        }
+
+        System.out.printf("%d iterations per case, ns per date and time range parsed%n", iterations);
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("round %d: valid old %.1f new %.1f | 1/8 invalid old %.1f new %.1f%n", round,
+                    perIteration(() -> legacy(dates, times, iterations), iterations),
+                    perIteration(() -> codec(dates, times, iterations), iterations),
+                    perIteration(() -> legacy(badDates, badTimes, iterations), iterations),
+                    perIteration(() -> codec(badDates, badTimes, iterations), iterations));
+        }
+        System.out.println("checksum " + sink);
+    }
+
+    /*
+     * Times one case
+     *
+     * @param parsing The case to run
+     * @param iterations The number of values it parses
+     * @return The average time per value in nanoseconds
+     */
+    private static double perIteration(Runnable parsing, int iterations) {
+        long start = System.nanoTime();
+        parsing.run();
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    /*
+     * Parses dates and time ranges with DateTimeCodec
+     *
+     * @param dates The dates to cycle through
+     * @param times The time ranges to cycle through
+     * @param iterations The number of pairs to parse
+     */
+    private static void codec(String[] dates, String[] times, int iterations) {
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            int epochDay = DateTimeCodec.parseDate(dates[i & (SAMPLES - 1)]);
+            int range = DateTimeCodec.parseTimeRange(times[i & (SAMPLES - 1)]);
+            if (DateTimeCodec.isError(epochDay) || DateTimeCodec.isError(range)) {
+                total++;
+                continue;
+            }
+            total += epochDay + DateTimeCodec.startOf(range) + DateTimeCodec.endOf(range);
+        }
+        sink += total;
+    }
+
+    /*
+     * Parses dates and time ranges the way BookingLogic did before DateTimeCodec
+     *
+     * @param dates The dates to cycle through
+     * @param times The time ranges to cycle through
+     * @param iterations The number of pairs to parse
+     */
+    private static void legacy(String[] dates, String[] times, int iterations) {
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            try {
+                int[] date = legacyDate(dates[i & (SAMPLES - 1)]);
+                String[] range = legacyTimeRange(times[i & (SAMPLES - 1)]);
+                total += LocalDate.of(date[2], date[1], date[0]).toEpochDay() + minutes(range[0]) + minutes(range[1]);
+            } catch (IllegalArgumentException e) {
+                total++;
+            }
+        }
+        sink += total;
+    }
+
+    /*
+     * Parses a DD/MM/YY date into its day, month and year with substrings
+     *
+     * @param date The date to parse
+     * @return The day, month and year
+     * @throws IllegalArgumentException if the date is invalid
+     */
+    private static int[] legacyDate(String date) {
+        if (date == null || date.length() != 8) throw new IllegalArgumentException("Date must be DD/MM/YY");
+        if (date.charAt(2) != '/' || date.charAt(5) != '/') throw new IllegalArgumentException("Date must be DD/MM/YY");
+        int day, month, year;
+        try {
+            day = Integer.parseInt(date.substring(0, 2));
+            month = Integer.parseInt(date.substring(3, 5));
+            year = Integer.parseInt(date.substring(6, 8)) + 2000;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Date must be DD/MM/YY");
+        }
+        if (month < 1 || month > 12) throw new IllegalArgumentException("Month out of range");
+        if (year < DateTimeCodec.FIRST_YEAR) throw new IllegalArgumentException("Year out of range");
+        if (day < 1 || day > YearMonth.of(year, month).lengthOfMonth()) throw new IllegalArgumentException("Day out of range");
+        return new int[]{day, month, year};
+    }
+
+    /*
+     * Splits an HH:MM-HH:MM time range into its two times with substrings
+     *
+     * @param time The time range to split
+     * @return The start and end times
+     * @throws IllegalArgumentException if the range is invalid
+     */
+    private static String[] legacyTimeRange(String time) {
+        if (time == null || time.length() != 11) throw new IllegalArgumentException("Time must be HH:MM-HH:MM");
+        if (time.charAt(2) != ':' || time.charAt(5) != '-' || time.charAt(8) != ':') {
+            throw new IllegalArgumentException("Time must be HH:MM-HH:MM");
+        }
+        String[] range = {time.substring(0, 5), time.substring(6, 11)};
+        if (minutes(range[1]) <= minutes(range[0])) throw new IllegalArgumentException("End time must be after start time");
+        return range;
+    }
+
+    /*
+     * Converts an HH:MM time into minutes since midnight
+     *
+     * @param time The time to convert
+     * @return The number of minutes since midnight
+     */
+    private static int minutes(String time) {
+        return Integer.parseInt(time.substring(0, 2)) * 60 + Integer.parseInt(time.substring(3, 5));
+    }
+}
@@ -0,0 +1,69 @@
+package ca.umanitoba.cs.longkuma.bench;
+
+import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Throughput benchmark for placing media on a map
+ * Places the same media on a fresh 400 by 400 floor of shelves one item at a time, as the catalog editor does,
+ * and in batches of 50,000, as a catalog import does. Placing should cost the same however many media the map
+ * already holds, so the time per item should stay flat as the count grows.
+ *
+ * Build the project, then run from the project root with Guava on the classpath:
+ *     java -cp target/classes:<guava jar> src/bench/java/ca/umanitoba/cs/longkuma/bench/MapPlacementBench.java [count...]
+ */
+public class MapPlacementBench {
+
+    private static final int[] DEFAULT_COUNTS = {50_000, 200_000, 800_000};
+    private static final int SIZE = 400;
+    private static final int BATCH = 50_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int[] counts = args.length == 0 ? DEFAULT_COUNTS : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        char[][] grid = new char[SIZE][SIZE];
+        for (char[] row : grid) Arrays.fill(row, 'S');
+        grid[0][0] = 'U';
+        grid[0][1] = '.';
+
+        for (int count : counts) {
+            Random random = new Random(5);
+            List<Media> media = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int[] shelf = {1 + random.nextInt(SIZE - 1), random.nextInt(SIZE)};
+                media.add(new Media.MediaBuilder().title("T" + i).author("A").coordinates(shelf).build());
+            }
+
+            long single = Long.MAX_VALUE;
+            long batched = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                Map map = newMap(grid);
+                long start = System.nanoTime();
+                for (Media item : media) map.addMedia(item);
+                single = Math.min(single, System.nanoTime() - start);
+
+                map = newMap(grid);
+                start = System.nanoTime();
+                for (int from = 0; from < count; from += BATCH) map.addAllMedia(media.subList(from, Math.min(count, from + BATCH)));
+                batched = Math.min(batched, System.nanoTime() - start);
+            }
+            System.out.printf("%d media: one at a time %.0f ms (%.0f ns each), in batches of %d %.0f ms (%.0f ns each)%n",
+                    count, single / 1e6, single / (double) count, BATCH, batched / 1e6, batched / (double) count);
+        }
+    }
+
+    /*
+     * Builds an empty map over a grid
+     *
+     * @param grid The floor layout
+     * @return The map
+     */
+    private static Map newMap(char[][] grid) {
+        return new Map.MapBuilder().grid(grid).legend(new String[]{"S,Shelf"}).kioskCoordinates(new int[]{0, 0}).build();
+    }
+}
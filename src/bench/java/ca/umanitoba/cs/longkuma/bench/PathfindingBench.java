@@ -0,0 +1,123 @@
+package ca.umanitoba.cs.longkuma.bench;
+
+import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+import ca.umanitoba.cs.longkuma.logic.stack.Pathfinding;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Allocation and throughput benchmark for kiosk pathfinding
+ * Builds a square floor scattered with shelves, places media on some of them and finds the path to each
+ * one from the kiosk. Floors of at least 1024 by 1024 cells are searched hierarchically over the cluster
+ * graph, smaller ones over the navigation graph. Reports the bytes allocated per query next to the size of
+ * the path returned, since the path is the only thing a query should allocate, then queries per second on
+ * one or more threads.
+ *
+ * Build the project, then run from the project root with Guava on the classpath:
+ *     java -cp target/classes:<guava jar> src/bench/java/ca/umanitoba/cs/longkuma/bench/PathfindingBench.java [size...]
+ */
+public class PathfindingBench {
+
+    private static final int[] DEFAULT_SIZES = {300, 1100};
+    private static final int[] THREADS = {1, 2, 4};
+    private static final int MEDIA_ATTEMPTS = 200;
+    private static final int SHELF_SHARE = 12;
+    private static final int WARMUP_QUERIES = 2000;
+    private static final int ROUNDS = 5;
+    // A path cell is an int[2] and its reference in the list
+    private static final int BYTES_PER_PATH_CELL = 24 + 8;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? DEFAULT_SIZES : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        for (int size : sizes) run(size);
+    }
+
+    /*
+     * Benchmarks one floor size
+     *
+     * @param size The number of rows and columns of the floor
+     * @throws Exception if a worker thread fails
+     */
+    private static void run(int size) throws Exception {
+        Random random = new Random(3);
+        char[][] grid = new char[size][size];
+        for (char[] row : grid) Arrays.fill(row, '.');
+        for (int i = 0; i < size * size / SHELF_SHARE; i++) grid[random.nextInt(size)][random.nextInt(size)] = 'S';
+        grid[0][0] = 'U';
+        grid[0][1] = '.';
+        grid[1][0] = '.';
+        Map map = new Map.MapBuilder().grid(grid).legend(new String[]{"S,Shelf"}).kioskCoordinates(new int[]{0, 0}).build();
+
+        List<Media> media = new ArrayList<>();
+        for (int i = 0; i < MEDIA_ATTEMPTS; i++) {
+            int[] shelf = {random.nextInt(size), random.nextInt(size)};
+            if (grid[shelf[0]][shelf[1]] != 'S' || map.mediaIdOf(shelf) != Map.NO_ENTITY) continue;
+            Media item = new Media.MediaBuilder().title("T" + i).author("A").coordinates(shelf).build();
+            map.addMedia(item);
+            media.add(item);
+        }
+        long start = System.nanoTime();
+        long checksum = queryAll(map, media);
+        System.out.printf("%dx%d floor, %d media: first pass with graph build %.0f ms, checksum %d%n",
+                size, size, media.size(), (System.nanoTime() - start) / 1e6, checksum);
+
+        // Enough queries for the search loops to be compiled before anything is measured
+        for (int round = 0; round < WARMUP_QUERIES / media.size(); round++) queryAll(map, media);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long cells = 0;
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Media item : media) cells += Pathfinding.findMediaPath(map, item).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        int queries = ROUNDS * media.size();
+        System.out.printf("  per query: %.0f bytes allocated, %.0f of them the returned path (%.1f cells), %.3f ms%n",
+                bytes / (double) queries, cells * BYTES_PER_PATH_CELL / (double) queries, cells / (double) queries,
+                elapsed / 1e6 / queries);
+
+        for (int threadCount : THREADS) {
+            ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+            List<Future<Long>> results = new ArrayList<>();
+            start = System.nanoTime();
+            for (int t = 0; t < threadCount; t++) {
+                results.add(pool.submit(() -> {
+                    long sum = 0;
+                    for (int round = 0; round < ROUNDS; round++) sum += queryAll(map, media);
+                    return sum;
+                }));
+            }
+            for (Future<Long> result : results) result.get();
+            elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            System.out.printf("  %d thread(s): %.0f queries/s%n", threadCount,
+                    threadCount * queries / (elapsed / 1e9));
+        }
+    }
+
+    /*
+     * Finds the path to every media item once
+     *
+     * @param map The floor
+     * @param media The media placed on it
+     * @return A checksum of the paths, so the work cannot be skipped
+     */
+    private static long queryAll(Map map, List<Media> media) {
+        long sum = 0;
+        for (Media item : media) {
+            List<int[]> path = Pathfinding.findMediaPath(map, item);
+            sum = sum * 31 + path.size();
+            if (!path.isEmpty()) sum = sum * 31 + path.get(path.size() / 2)[0] * 7 + path.get(path.size() / 2)[1];
+        }
+        return sum;
+    }
+}
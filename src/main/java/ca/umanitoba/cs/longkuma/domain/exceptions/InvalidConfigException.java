@@ -0,0 +1,7 @@
+package ca.umanitoba.cs.longkuma.domain.exceptions;
+
+public class InvalidConfigException extends Exception {
+    public InvalidConfigException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,268 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMapException;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class Building {
+
+    public static final int NO_FLOOR = -1;
+
+    private final List<Map> floors;
+    private final List<Connector> connectors;
+    private final int kioskFloor;
+    private final FloorRoutes[] routes;
+    private final List<PendingBuild<FloorRoutes>> routeBuilds;
+
+    /*
+     * Private constructor for Building
+     * Each floor is a Map of its own; on floors without the kiosk, the map's kiosk coordinates
+     * mark where the floor's own directory stands
+     *
+     * @param floors The floor maps, from floor 0 up
+     * @param connectors The stairs and elevators joining the floors
+     * @param kioskFloor The floor the kiosk is on
+     */
+    private Building(List<Map> floors, List<Connector> connectors, int kioskFloor) {
+        this.floors = floors;
+        this.connectors = connectors;
+        this.kioskFloor = kioskFloor;
+        this.routes = new FloorRoutes[floors.size()];
+        this.routeBuilds = new ArrayList<>(Collections.nCopies(floors.size(), null));
+        checkBuilding();
+    }
+
+    public static class BuildingBuilder {
+        private final List<Map> floors = new ArrayList<>();
+        private final List<Connector> connectors = new ArrayList<>();
+        private int kioskFloor;
+
+        /*
+         * Adds the next floor to the building being built, above the floors added so far
+         *
+         * @param floor The floor's map
+         * @return BuildingBuilder instance for method chaining
+         * @throws InvalidMapException if the floor is null
+         */
+        public BuildingBuilder floor(Map floor) throws InvalidMapException {
+            if (floor == null) {
+                throw new InvalidMapException("Floor should not be null.");
+            }
+            floors.add(floor);
+            return this;
+        }
+
+        /*
+         * Adds a staircase or elevator to the building being built
+         *
+         * @param connector The connector
+         * @return BuildingBuilder instance for method chaining
+         * @throws InvalidMapException if the connector is null
+         */
+        public BuildingBuilder connector(Connector connector) throws InvalidMapException {
+            if (connector == null) {
+                throw new InvalidMapException("Connector should not be null.");
+            }
+            connectors.add(connector);
+            return this;
+        }
+
+        /*
+         * Sets which floor the kiosk is on; defaults to floor 0
+         *
+         * @param kioskFloor The floor, counted from 0
+         * @return BuildingBuilder instance for method chaining
+         */
+        public BuildingBuilder kioskFloor(int kioskFloor) {
+            this.kioskFloor = kioskFloor;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new Building instance with configured parameters
+         *
+         * @return A new Building object
+         * @throws InvalidMapException if there are no floors, the kiosk floor does not exist,
+         *         or a connector reaches a floor or cell that does not exist
+         */
+        public Building build() throws InvalidMapException {
+            if (floors.isEmpty()) {
+                throw new InvalidMapException("Building needs at least one floor");
+            }
+            if (kioskFloor < 0 || kioskFloor >= floors.size()) {
+                throw new InvalidMapException("Kiosk floor " + kioskFloor + " is not in the building");
+            }
+            for (Connector connector : connectors) {
+                for (int floor : new int[]{connector.getFromFloor(), connector.getToFloor()}) {
+                    if (floor >= floors.size()) {
+                        throw new InvalidMapException("Connector reaches floor " + floor + ", which is not in the building");
+                    }
+                    int[] end = connector.coordinatesOn(floor);
+                    if (!floors.get(floor).getGrid().inBounds(end[0], end[1])) {
+                        throw new InvalidMapException("Connector end (" + end[0] + ", " + end[1]
+                                + ") is not on floor " + floor);
+                    }
+                }
+            }
+            return new Building(new ArrayList<>(floors), new ArrayList<>(connectors), kioskFloor);
+        }
+    }
+
+    /*
+     * Returns the routing data for a floor, working it out the first time it is asked for
+     * Each floor's data is kept separately and redone only when that floor's map has changed,
+     * such as when one of its cells is closed, so the other floors keep theirs
+     * The data is worked out without holding the building's lock, so other floors can be routed meanwhile,
+     * and only replaces what is kept for the floor if it was worked out from a newer version of the map
+     * Only one thread works a floor's data out for a version of its map; others asking meanwhile keep
+     * using the floor's older data if it is still kept, and otherwise wait for that thread
+     *
+     * @param floor The floor, counted from 0
+     * @return The floor's routing data
+     */
+    public FloorRoutes getFloorRoutes(int floor) {
+        Preconditions.checkElementIndex(floor, floors.size(), "Floor");
+        Map map = floors.get(floor);
+        // The version is read before the grid, which is replaced first when a cell changes, so the grid
+        // is never older than the version it is labelled with
+        int version = map.getVersion();
+        FloorRoutes current;
+        PendingBuild<FloorRoutes> pending;
+        boolean owner;
+        synchronized (this) {
+            current = routes[floor];
+            if (current != null && current.getVersion() == version) return current;
+            pending = routeBuilds.get(floor);
+            owner = pending == null || !pending.isFor(version, 0);
+            if (owner) {
+                pending = new PendingBuild<>(version, 0);
+                routeBuilds.set(floor, pending);
+            } else if (current != null) {
+                return current;
+            }
+        }
+        if (!owner) return pending.await();
+
+        FloorRoutes built;
+        try {
+            MapGrid grid = map.getGrid();
+            int[] kiosk = map.getKioskCoordinates();
+            built = new FloorRoutes(grid, grid.cellIndex(kiosk[0], kiosk[1]), entryCells(floor), version);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                if (routeBuilds.get(floor) == pending) routeBuilds.set(floor, null);
+            }
+            pending.fail(e);
+            throw e;
+        }
+        synchronized (this) {
+            if (routes[floor] == null || routes[floor].getVersion() < version) routes[floor] = built;
+            if (routeBuilds.get(floor) == pending) routeBuilds.set(floor, null);
+        }
+        pending.finish(built);
+        return built;
+    }
+
+    /*
+     * Discards the routing data of one floor after it has changed; the other floors keep theirs
+     *
+     * @param floor The floor, counted from 0
+     */
+    public synchronized void invalidateFloor(int floor) {
+        Preconditions.checkElementIndex(floor, floors.size(), "Floor");
+        routes[floor] = null;
+    }
+
+    /*
+     * Lets go of the routing data of every floor, such as when the library goes idle
+     * Each floor's data is worked out again the next time a path is asked for on it
+     */
+    public synchronized void releaseRoutes() {
+        Arrays.fill(routes, null);
+        for (Map floor : floors) floor.releaseRoutes();
+    }
+
+    /*
+     * Lists the cells of a floor that routes can arrive on or leave from
+     * The kiosk floor's origins come first, the kiosk before the other kiosks and entrances, followed by
+     * each connector end in the order the connectors were added; a cell shared by several is listed once
+     *
+     * @param floor The floor
+     * @return The row-major indexes of the floor's entries
+     */
+    private int[] entryCells(int floor) {
+        MapGrid grid = floors.get(floor).getGrid();
+        List<Integer> cells = new ArrayList<>();
+        if (floor == kioskFloor) {
+            for (int[] origin : floors.get(floor).getOrigins()) cells.add(grid.cellIndex(origin[0], origin[1]));
+        }
+        for (Connector connector : connectors) {
+            int[] end = connector.coordinatesOn(floor);
+            if (end == null) continue;
+            int cell = grid.cellIndex(end[0], end[1]);
+            if (!cells.contains(cell)) cells.add(cell);
+        }
+        return cells.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /*
+     * Finds the floor a media item has been placed on
+     *
+     * @param media The media item
+     * @return The floor, or NO_FLOOR if the media is not on any floor
+     */
+    public int floorOf(Media media) {
+        int[] coordinates = media.getCoordinates();
+        for (int floor = 0; floor < floors.size(); floor++) {
+            MapGrid grid = floors.get(floor).getGrid();
+            if (!grid.inBounds(coordinates[0], coordinates[1])) continue;
+            for (Media placed : floors.get(floor).getMediaAt(coordinates[0], coordinates[1])) {
+                if (placed == media) return floor;
+            }
+        }
+        return NO_FLOOR;
+    }
+
+    /*
+     * Finds the floor a resource has been placed on
+     *
+     * @param resource The resource
+     * @return The floor, or NO_FLOOR if the resource is not on any floor
+     */
+    public int floorOf(Resource resource) {
+        int[] coordinates = resource.getCoordinates().get(0);
+        for (int floor = 0; floor < floors.size(); floor++) {
+            MapGrid grid = floors.get(floor).getGrid();
+            if (!grid.inBounds(coordinates[0], coordinates[1])) continue;
+            if (floors.get(floor).getResourceAt(coordinates[0], coordinates[1]) == resource) return floor;
+        }
+        return NO_FLOOR;
+    }
+
+    // Getters:
+    public Map getFloor(int floor) { return floors.get(floor); }
+    public int getFloorCount() { return floors.size(); }
+    public List<Connector> getConnectors() { return Collections.unmodifiableList(connectors); }
+    public int getKioskFloor() { return kioskFloor; }
+    public Map getKioskMap() { return floors.get(kioskFloor); }
+
+    /*
+     * Validates the internal state of the Building object
+     * Ensures there is a floor for the kiosk and a routing slot for every floor
+     */
+    private void checkBuilding() {
+        Preconditions.checkState(!floors.isEmpty(), "Building should have a floor.");
+        Preconditions.checkState(kioskFloor >= 0 && kioskFloor < floors.size(), "Kiosk should be on a floor.");
+        Preconditions.checkState(routes.length == floors.size(), "Every floor needs a routing slot.");
+        Preconditions.checkState(routeBuilds.size() == floors.size(), "Every floor needs a slot for its routing build.");
+        for (Connector connector : connectors) {
+            Preconditions.checkState(connector != null, "Individual connectors should never be null.");
+        }
+    }
+}
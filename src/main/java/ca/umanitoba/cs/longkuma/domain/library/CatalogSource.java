@@ -0,0 +1,19 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import java.io.IOException;
+
+/*
+ * Where a library's catalog is kept when it is not in memory
+ * A library given a source loads its media from it the first time they are needed, and can
+ * let them go again and load them afresh later
+ */
+public interface CatalogSource {
+
+    /*
+     * Loads the catalog into a library, adding each media item to the library and placing it on its floor
+     *
+     * @param library The library whose catalog this is, with no media yet
+     * @throws IOException if the catalog cannot be read
+     */
+    void load(Library library) throws IOException;
+}
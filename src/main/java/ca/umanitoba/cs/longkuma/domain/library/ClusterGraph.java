@@ -0,0 +1,614 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+public final class ClusterGraph {
+
+    public static final int UNREACHED = -1;
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+    private static final int SPLIT_ENTRANCE_LENGTH = 6;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final MapGrid grid;
+    private final int kioskCell;
+    private final int clusterSize;
+    private final int clusterRows;
+    private final int clusterCols;
+    private final int[] nodeCells;
+    private final int[][] clusterNodes;
+    private final HashMap<Integer, Integer> nodeByCell;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeWeights;
+
+    /*
+     * Constructs a ClusterGraph for hierarchical pathfinding
+     * The grid is split into square clusters. Wherever two neighbouring clusters share a run of open
+     * border cells, an entrance is made in the middle of the run (or at both ends of a long run), with
+     * a node on each side joined by a one-step edge. Within each cluster, every pair of its nodes that
+     * can reach each other without leaving the cluster is joined by an edge weighted by their walking
+     * distance, so a search only has to cross clusters; the cells along an edge are found again
+     * only when a path is actually drawn.
+     *
+     * @param grid The map grid
+     * @param kioskCell The row-major index of the kiosk cell
+     * @param clusterSize The width and height of a cluster in cells
+     */
+    ClusterGraph(MapGrid grid, int kioskCell, int clusterSize) {
+        this(grid, kioskCell, clusterSize, null, null);
+    }
+
+    /*
+     * Private constructor that can reuse the distances of an earlier ClusterGraph of the same map
+     * A cluster's distances are reused when none of its cells changed and its entrances are where they were
+     *
+     * @param grid The map grid
+     * @param kioskCell The row-major index of the kiosk cell
+     * @param clusterSize The width and height of a cluster in cells
+     * @param previous The graph built before the grid changed, or null
+     * @param changed Whether each cluster has a changed cell, or null
+     */
+    private ClusterGraph(MapGrid grid, int kioskCell, int clusterSize, ClusterGraph previous, boolean[] changed) {
+        Preconditions.checkArgument(clusterSize >= 2, "Clusters must be at least 2 cells wide");
+        this.grid = grid;
+        this.kioskCell = kioskCell;
+        this.clusterSize = clusterSize;
+        this.clusterRows = (grid.getRows() + clusterSize - 1) / clusterSize;
+        this.clusterCols = (grid.getCols() + clusterSize - 1) / clusterSize;
+        this.nodeByCell = new HashMap<>();
+
+        List<Integer> cells = new ArrayList<>();
+        List<List<Integer>> members = new ArrayList<>();
+        for (int cluster = 0; cluster < clusterRows * clusterCols; cluster++) members.add(new ArrayList<>());
+        List<int[]> borderEdges = new ArrayList<>();
+        findEntrances(cells, members, borderEdges);
+
+        this.nodeCells = cells.stream().mapToInt(Integer::intValue).toArray();
+        this.clusterNodes = new int[members.size()][];
+        for (int cluster = 0; cluster < members.size(); cluster++) {
+            clusterNodes[cluster] = members.get(cluster).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Edges are gathered in one list, then packed into flat arrays grouped by node
+        EdgeList edges = new EdgeList(previous == null ? borderEdges.size() * 8 : previous.getEdgeCount());
+        for (int[] edge : borderEdges) {
+            edges.add(edge[0], edge[1], 1);
+            edges.add(edge[1], edge[0], 1);
+        }
+        int[] distance = new int[clusterSize * clusterSize];
+        int[] queue = new int[distance.length];
+        boolean[] open = new boolean[distance.length];
+        int[] reused = previous == null ? null : new int[previous.getNodeCount()];
+        int[] reusedStamp = previous == null ? null : new int[previous.getNodeCount()];
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++) {
+            int[] nodes = clusterNodes[cluster];
+            if (nodes.length < 2) continue;
+            if (previous != null && !changed[cluster] && previous.hasNodesOn(cluster, nodes, nodeCells)) {
+                copyClusterEdges(previous, cluster, reused, reusedStamp, edges);
+                continue;
+            }
+            openCells(cluster, open);
+            for (int from : nodes) {
+                Arrays.fill(distance, UNREACHED);
+                distance[localIndex(nodeCells[from])] = 0;
+                queue[0] = localIndex(nodeCells[from]);
+                search(cluster, open, distance, null, queue, 1, null);
+                for (int to : nodes) {
+                    int steps = distance[localIndex(nodeCells[to])];
+                    if (to != from && steps != UNREACHED) edges.add(from, to, steps);
+                }
+            }
+        }
+
+        this.edgeOffsets = new int[nodeCells.length + 1];
+        for (int edge = 0; edge < edges.size; edge++) edgeOffsets[edges.from[edge] + 1]++;
+        for (int node = 0; node < nodeCells.length; node++) edgeOffsets[node + 1] += edgeOffsets[node];
+        this.edgeTargets = new int[edges.size];
+        this.edgeWeights = new int[edges.size];
+        int[] next = Arrays.copyOf(edgeOffsets, nodeCells.length);
+        for (int edge = 0; edge < edges.size; edge++) {
+            int slot = next[edges.from[edge]]++;
+            edgeTargets[slot] = edges.to[edge];
+            edgeWeights[slot] = edges.weight[edge];
+        }
+        checkClusterGraph();
+    }
+
+    /*
+     * Returns a graph for the grid after some of its cells have changed, such as an aisle being closed
+     * Entrances are found again along every border, which only reads the border cells; the walking
+     * distances inside a cluster are searched again only for clusters that contain a changed cell or
+     * whose entrances moved, and are copied from this graph for the rest
+     *
+     * @param changedGrid The grid after the changes
+     * @param changedCells The row-major indexes of the cells that changed
+     * @return The repaired graph; this graph is left as it is
+     */
+    ClusterGraph repair(MapGrid changedGrid, Collection<Integer> changedCells) {
+        boolean[] changed = new boolean[getClusterCount()];
+        for (int cell : changedCells) changed[clusterOf(cell)] = true;
+        return new ClusterGraph(changedGrid, kioskCell, clusterSize, this, changed);
+    }
+
+    /*
+     * Checks whether this graph had exactly the given entrances in a cluster
+     *
+     * @param cluster The cluster's id
+     * @param nodes The node ids of the cluster's entrances in the new graph
+     * @param cells The cell of each node in the new graph
+     * @return true if the cluster had a node on each of those cells and no others
+     */
+    private boolean hasNodesOn(int cluster, int[] nodes, int[] cells) {
+        if (clusterNodes[cluster].length != nodes.length) return false;
+        for (int node : nodes) {
+            if (nodeAt(cells[node]) == UNREACHED) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Copies the edges between a cluster's entrances from an earlier graph whose entrances were the same
+     *
+     * @param previous The earlier graph
+     * @param cluster The cluster's id
+     * @param reused Scratch space mapping the earlier graph's node ids to this graph's
+     * @param reusedStamp Scratch space marking which entries of reused belong to this cluster
+     * @param edges The list to add the copied edges to
+     */
+    private void copyClusterEdges(ClusterGraph previous, int cluster, int[] reused, int[] reusedStamp, EdgeList edges) {
+        for (int node : clusterNodes[cluster]) {
+            int old = previous.nodeAt(nodeCells[node]);
+            reused[old] = node;
+            reusedStamp[old] = cluster + 1;
+        }
+        for (int node : clusterNodes[cluster]) {
+            int old = previous.nodeAt(nodeCells[node]);
+            for (int edge = previous.firstEdge(old); edge < previous.endEdge(old); edge++) {
+                int target = previous.edgeTarget(edge);
+                if (reusedStamp[target] != cluster + 1) continue; // a border edge, found again with the entrances
+                edges.add(node, reused[target], previous.edgeWeight(edge));
+            }
+        }
+    }
+
+    /*
+     * Scans every border between neighbouring clusters for runs of cells that are open on both sides
+     *
+     * @param cells The list to add each node's cell to
+     * @param members The list of node ids for each cluster
+     * @param borderEdges The list to add each {node, node} pair joined across a border to
+     */
+    private void findEntrances(List<Integer> cells, List<List<Integer>> members, List<int[]> borderEdges) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+
+        // Vertical borders: between column c - 1 and column c
+        for (int c = clusterSize; c < cols; c += clusterSize) {
+            for (int top = 0; top < rows; top += clusterSize) {
+                int bottom = Math.min(rows, top + clusterSize);
+                int runStart = -1;
+                for (int r = top; r <= bottom; r++) {
+                    boolean open = r < bottom && isOpen(grid.cellIndex(r, c - 1)) && isOpen(grid.cellIndex(r, c));
+                    if (open && runStart < 0) runStart = r;
+                    if (!open && runStart >= 0) {
+                        for (int entrance : entranceOffsets(runStart, r - 1)) {
+                            addEntrance(grid.cellIndex(entrance, c - 1), grid.cellIndex(entrance, c),
+                                    cells, members, borderEdges);
+                        }
+                        runStart = -1;
+                    }
+                }
+            }
+        }
+
+        // Horizontal borders: between row r - 1 and row r
+        for (int r = clusterSize; r < rows; r += clusterSize) {
+            for (int left = 0; left < cols; left += clusterSize) {
+                int right = Math.min(cols, left + clusterSize);
+                int runStart = -1;
+                for (int c = left; c <= right; c++) {
+                    boolean open = c < right && isOpen(grid.cellIndex(r - 1, c)) && isOpen(grid.cellIndex(r, c));
+                    if (open && runStart < 0) runStart = c;
+                    if (!open && runStart >= 0) {
+                        for (int entrance : entranceOffsets(runStart, c - 1)) {
+                            addEntrance(grid.cellIndex(r - 1, entrance), grid.cellIndex(r, entrance),
+                                    cells, members, borderEdges);
+                        }
+                        runStart = -1;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Chooses where to place entrances along an open run of border cells
+     *
+     * @param first The first row or column of the run
+     * @param last The last row or column of the run
+     * @return The middle of a short run, or both ends of a long one
+     */
+    private static int[] entranceOffsets(int first, int last) {
+        if (last - first + 1 >= SPLIT_ENTRANCE_LENGTH) return new int[]{first, last};
+        return new int[]{(first + last) / 2};
+    }
+
+    /*
+     * Adds the pair of nodes on either side of an entrance, reusing a node already on a cell
+     *
+     * @param a The cell on one side of the border
+     * @param b The cell on the other side
+     * @param cells The list of each node's cell
+     * @param members The list of node ids for each cluster
+     * @param borderEdges The list of {node, node} pairs joined across a border
+     */
+    private void addEntrance(int a, int b, List<Integer> cells, List<List<Integer>> members, List<int[]> borderEdges) {
+        borderEdges.add(new int[]{nodeFor(a, cells, members), nodeFor(b, cells, members)});
+    }
+
+    /*
+     * Finds or creates the node on a cell
+     *
+     * @param cell The row-major index of the cell
+     * @param cells The list of each node's cell
+     * @param members The list of node ids for each cluster
+     * @return The node's id
+     */
+    private int nodeFor(int cell, List<Integer> cells, List<List<Integer>> members) {
+        Integer node = nodeByCell.get(cell);
+        if (node != null) return node;
+        int id = cells.size();
+        cells.add(cell);
+        members.get(clusterOf(cell)).add(id);
+        nodeByCell.put(cell, id);
+        return id;
+    }
+
+    /*
+     * Finds the walking distance from one or more cells to every cell of the same cluster,
+     * without leaving the cluster
+     * Only walking space and the kiosk are walked through; other cells get a distance when they are
+     * next to a reached cell, matching how paths end at media and resource cells. The source cells are
+     * always expanded, so a search can start from a media or resource cell.
+     *
+     * @param sourceCells The cells to search from, all in the same cluster
+     * @return The distance to each cell of the cluster by localIndex, or UNREACHED
+     */
+    public int[] distancesInCluster(int[] sourceCells) {
+        return distancesInCluster(sourceCells, new int[clusterSize * clusterSize]);
+    }
+
+    /*
+     * Finds the walking distance from one or more cells to every cell of the same cluster,
+     * writing into an array the caller reuses between searches
+     *
+     * @param sourceCells The cells to search from, all in the same cluster
+     * @param distance The array to fill, with room for getClusterSize() squared cells
+     * @return The distance array, holding the distance to each cell of the cluster by localIndex, or UNREACHED
+     */
+    public int[] distancesInCluster(int[] sourceCells, int[] distance) {
+        return distancesInCluster(sourceCells, 0, sourceCells.length, distance);
+    }
+
+    /*
+     * Finds the walking distance from a range of cells to every cell of the same cluster,
+     * so a caller can keep the sources of several searches in one reused array
+     *
+     * @param sourceCells The array holding the cells to search from
+     * @param from The index of the first source cell
+     * @param to The index after the last source cell; the cells in between must share a cluster
+     * @param distance The array to fill, with room for getClusterSize() squared cells
+     * @return The distance array, holding the distance to each cell of the cluster by localIndex, or UNREACHED
+     */
+    public int[] distancesInCluster(int[] sourceCells, int from, int to, int[] distance) {
+        Preconditions.checkArgument(from < to, "Search needs a source cell");
+        int cluster = clusterOf(sourceCells[from]);
+        Scratch scratch = SCRATCH.get().fit(clusterSize * clusterSize);
+        Arrays.fill(distance, 0, clusterSize * clusterSize, UNREACHED);
+        int[] queue = scratch.queue;
+        int tail = 0;
+        for (int i = from; i < to; i++) {
+            int source = sourceCells[i];
+            Preconditions.checkArgument(clusterOf(source) == cluster, "Sources must share a cluster");
+            int local = localIndex(source);
+            if (distance[local] == UNREACHED) {
+                distance[local] = 0;
+                queue[tail++] = local;
+            }
+        }
+        search(cluster, openCells(cluster, scratch.open), distance, null, queue, tail, null);
+        return distance;
+    }
+
+    /*
+     * Finds the shortest walk from a cell to the nearest goal cell in the same cluster and adds it to a path
+     * Walks the same way as distancesInCluster, so the walk found is as long as the distance it reported
+     *
+     * @param fromCell The cell to walk from
+     * @param isGoal Tests whether a cell, by row-major index, is a goal
+     * @param path The list to add each cell's {row, col} coordinates to, after fromCell and ending at the goal
+     * @throws IllegalStateException if no goal can be reached within the cluster
+     */
+    public void appendClusterPath(int fromCell, IntPredicate isGoal, List<int[]> path) {
+        int cluster = clusterOf(fromCell);
+        Scratch scratch = SCRATCH.get().fit(clusterSize * clusterSize);
+        int[] distance = scratch.distance;
+        Arrays.fill(distance, 0, clusterSize * clusterSize, UNREACHED);
+        int[] parent = scratch.parent;
+        int[] queue = scratch.queue;
+        int from = localIndex(fromCell);
+        distance[from] = 0;
+        queue[0] = from;
+
+        int goal = search(cluster, openCells(cluster, scratch.open), distance, parent, queue, 1, isGoal);
+        Preconditions.checkState(goal != UNREACHED, "No goal can be reached in the cluster");
+
+        int top = cluster / clusterCols * clusterSize;
+        int left = cluster % clusterCols * clusterSize;
+        int[][] walk = new int[distance[goal]][];
+        for (int local = goal, i = walk.length - 1; local != from; local = parent[local], i--) {
+            walk[i] = new int[]{top + local / clusterSize, left + local % clusterSize};
+        }
+        path.addAll(Arrays.asList(walk));
+    }
+
+    /*
+     * Runs a breadth-first search over the cells of one cluster, by their local index
+     * Only open cells are expanded past; other cells are reached but left as leaves
+     *
+     * @param cluster The cluster to search
+     * @param open Which local cells can be walked through, from openCells
+     * @param distance The distance to each local cell, with the sources at 0 and the rest UNREACHED
+     * @param parent The array to record the cell each cell was reached from, or null
+     * @param queue The queue, holding the sources
+     * @param tail The number of sources in the queue
+     * @param isGoal Tests whether a cell, by row-major index, ends the search, or null to search the whole cluster
+     * @return The local index of the goal reached, or UNREACHED
+     */
+    private int search(int cluster, boolean[] open, int[] distance, int[] parent, int[] queue, int tail,
+                       IntPredicate isGoal) {
+        int top = cluster / clusterCols * clusterSize;
+        int left = cluster % clusterCols * clusterSize;
+        int height = Math.min(clusterSize, grid.getRows() - top);
+        int width = Math.min(clusterSize, grid.getCols() - left);
+        int cols = grid.getCols();
+
+        for (int head = 0; head < tail; head++) {
+            int local = queue[head];
+            int row = local / clusterSize;
+            int col = local - row * clusterSize;
+            int steps = distance[local] + 1;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextRow = row + ROW_STEP[direction];
+                int nextCol = col + COL_STEP[direction];
+                if (nextRow < 0 || nextRow >= height || nextCol < 0 || nextCol >= width) continue;
+                int next = nextRow * clusterSize + nextCol;
+                if (distance[next] != UNREACHED) continue;
+                distance[next] = steps;
+                if (parent != null) parent[next] = local;
+                if (isGoal != null && isGoal.test((top + nextRow) * cols + left + nextCol)) return next;
+                if (open[next]) queue[tail++] = next;
+            }
+        }
+        return UNREACHED;
+    }
+
+    /*
+     * Marks which cells of a cluster can be walked through
+     * Only the cells inside the cluster are written; a cluster on the edge of the map is smaller
+     * than the array, and search never looks past its edge
+     *
+     * @param cluster The cluster's id
+     * @param open The array to fill, with room for getClusterSize() squared cells
+     * @return The array, true by local index for walking space and the kiosk, false otherwise
+     */
+    private boolean[] openCells(int cluster, boolean[] open) {
+        int top = cluster / clusterCols * clusterSize;
+        int left = cluster % clusterCols * clusterSize;
+        int height = Math.min(clusterSize, grid.getRows() - top);
+        int width = Math.min(clusterSize, grid.getCols() - left);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                open[row * clusterSize + col] = isOpen(grid.cellIndex(top + row, left + col));
+            }
+        }
+        return open;
+    }
+
+    /*
+     * Finds the cluster a cell belongs to
+     *
+     * @param cell The row-major index of the cell
+     * @return The cluster's id
+     */
+    public int clusterOf(int cell) {
+        int cols = grid.getCols();
+        return (cell / cols / clusterSize) * clusterCols + (cell % cols) / clusterSize;
+    }
+
+    /*
+     * Converts a cell into its position within its cluster
+     *
+     * @param cell The row-major index of the cell
+     * @return The index used by the arrays from distancesInCluster
+     */
+    public int localIndex(int cell) {
+        int cols = grid.getCols();
+        return (cell / cols % clusterSize) * clusterSize + cell % cols % clusterSize;
+    }
+
+    /*
+     * Finds the node placed on a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The node's id, or UNREACHED if the cell is not an entrance
+     */
+    public int nodeAt(int cell) {
+        return nodeByCell.getOrDefault(cell, UNREACHED);
+    }
+
+    /*
+     * Returns the nodes of a cluster
+     *
+     * @param cluster The cluster's id
+     * @return A copy of the ids of the nodes on the cluster's entrances
+     */
+    public int[] nodesOf(int cluster) {
+        return clusterNodes[cluster].clone();
+    }
+
+    // Cluster nodes without copying, for searches run once per query:
+    public int clusterNodeCount(int cluster) { return clusterNodes[cluster].length; }
+    public int clusterNode(int cluster, int index) { return clusterNodes[cluster][index]; }
+
+    /*
+     * Returns the cell a node is placed on
+     *
+     * @param node The node's id
+     * @return The row-major index of the cell
+     */
+    public int nodeCell(int node) {
+        return nodeCells[node];
+    }
+
+    /*
+     * Returns the first of a node's outgoing edges; a node's edges are numbered consecutively
+     *
+     * @param node The node's id
+     * @return The id of its first edge
+     */
+    public int firstEdge(int node) {
+        return edgeOffsets[node];
+    }
+
+    /*
+     * Returns the id just past a node's last outgoing edge
+     *
+     * @param node The node's id
+     * @return The id one past its last edge
+     */
+    public int endEdge(int node) {
+        return edgeOffsets[node + 1];
+    }
+
+    /*
+     * Returns the node an edge leads to
+     *
+     * @param edge The edge's id
+     * @return The id of the node at the other end
+     */
+    public int edgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    /*
+     * Returns the number of steps along an edge
+     *
+     * @param edge The edge's id
+     * @return The walking distance between its nodes
+     */
+    public int edgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    /*
+     * Checks whether a cell can be walked through
+     *
+     * @param cell The row-major index of the cell
+     * @return true for walking space and the kiosk, false otherwise
+     */
+    private boolean isOpen(int cell) {
+        return cell == kioskCell || grid.isWalkable(cell);
+    }
+
+    // Getters:
+    public int getNodeCount() { return nodeCells.length; }
+    public int getEdgeCount() { return edgeTargets.length; }
+    public int getClusterSize() { return clusterSize; }
+    public int getClusterCount() { return clusterRows * clusterCols; }
+
+    /*
+     * Validates the internal state of the ClusterGraph object
+     * Ensures every node has its range of edges and every cluster has a node list
+     */
+    private void checkClusterGraph() {
+        Preconditions.checkState(edgeOffsets.length == nodeCells.length + 1, "Every node needs an edge range");
+        Preconditions.checkState(clusterNodes.length == clusterRows * clusterCols, "Every cluster needs a node list");
+        Preconditions.checkState(edgeTargets.length == edgeWeights.length, "Edge arrays must match");
+    }
+
+    /*
+     * The arrays a search within one cluster works in, kept per thread so paths can be found
+     * on several threads at once without allocating them for every search
+     */
+    private static class Scratch {
+        private int[] distance = new int[0];
+        private int[] parent = new int[0];
+        private int[] queue = new int[0];
+        private boolean[] open = new boolean[0];
+
+        /*
+         * Makes sure the arrays can hold a cluster
+         *
+         * @param area The number of cells in a cluster
+         * @return This scratch space
+         */
+        Scratch fit(int area) {
+            if (distance.length < area) {
+                distance = new int[area];
+                parent = new int[area];
+                queue = new int[area];
+                open = new boolean[area];
+            }
+            return this;
+        }
+    }
+
+    /*
+     * Growable list of edges kept as parallel arrays, so no object is created per edge
+     */
+    private static class EdgeList {
+        private int[] from;
+        private int[] to;
+        private int[] weight;
+        private int size;
+
+        /*
+         * Constructs an empty EdgeList
+         *
+         * @param capacity The number of edges expected
+         */
+        EdgeList(int capacity) {
+            capacity = Math.max(capacity, 16);
+            this.from = new int[capacity];
+            this.to = new int[capacity];
+            this.weight = new int[capacity];
+        }
+
+        /*
+         * Adds an edge
+         *
+         * @param source The node the edge leaves
+         * @param target The node the edge leads to
+         * @param steps The edge's weight
+         */
+        void add(int source, int target, int steps) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            from[size] = source;
+            to[size] = target;
+            weight[size++] = steps;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+final class ComponentIndex {
+
+    static final int NO_COMPONENT = 0;
+
+    private final MapGrid grid;
+    private final int kioskCell;
+    private final int[] labels;
+    private int componentCount;
+    private int lastLabel;
+    private int[] sizes;
+    private int[] stack;
+    private int top;
+
+    /*
+     * Constructs a ComponentIndex by labelling every connected region of walking space
+     * The kiosk counts as walking space so that every region next to it shares its label
+     *
+     * @param grid The map grid to label
+     * @param kioskCell The row-major index of the kiosk cell
+     */
+    ComponentIndex(MapGrid grid, int kioskCell) {
+        this.grid = grid;
+        this.kioskCell = kioskCell;
+        this.labels = new int[grid.getSize()];
+        labelAll();
+        this.sizes = new int[componentCount + 1];
+        for (int label : labels) sizes[label]++;
+        checkComponentIndex();
+    }
+
+    /*
+     * Private constructor for a repaired copy of a ComponentIndex
+     *
+     * @param grid The changed map grid
+     * @param kioskCell The row-major index of the kiosk cell
+     * @param labels The labels copied from the index being repaired
+     * @param componentCount The number of regions before the repair
+     * @param lastLabel The highest label given out so far
+     * @param sizes The number of cells with each label, copied from the index being repaired
+     */
+    private ComponentIndex(MapGrid grid, int kioskCell, int[] labels, int componentCount, int lastLabel, int[] sizes) {
+        this.grid = grid;
+        this.kioskCell = kioskCell;
+        this.labels = labels;
+        this.componentCount = componentCount;
+        this.lastLabel = lastLabel;
+        this.sizes = sizes;
+    }
+
+    /*
+     * Returns a copy of the index updated for a grid in which one cell has been opened or closed
+     * Only the regions next to the cell are relabelled: opening a cell joins the regions around it
+     * into one by relabelling all but the largest, and closing a cell splits its region wherever the cell
+     * was the only way through, relabelling only the parts that broke away. This index is left as it is, so reachability can still be answered from it during the repair.
+     *
+     * @param changed The grid after the change
+     * @param cell The row-major index of the cell that changed
+     * @return The repaired index
+     */
+    ComponentIndex repair(MapGrid changed, int cell) {
+        ComponentIndex repaired = new ComponentIndex(changed, kioskCell, labels.clone(), componentCount, lastLabel,
+                sizes.clone());
+        repaired.stack = new int[64];
+        if (repaired.isOpen(cell)) repaired.joinAround(cell);
+        else repaired.splitAround(cell);
+        repaired.stack = null;
+        repaired.checkComponentIndex();
+        return repaired;
+    }
+
+    /*
+     * Labels a newly opened cell, merging every region next to it into the largest of them
+     *
+     * @param cell The row-major index of the opened cell
+     */
+    private void joinAround(int cell) {
+        int label = NO_COMPONENT;
+        for (int next : neighbours(cell)) {
+            if (next >= 0 && labels[next] != NO_COMPONENT && (label == NO_COMPONENT || sizes[labels[next]] > sizes[label])) {
+                label = labels[next];
+            }
+        }
+        if (label == NO_COMPONENT) {
+            label = newLabel();
+            componentCount++;
+        }
+        for (int next : neighbours(cell)) {
+            if (next < 0 || labels[next] == NO_COMPONENT || labels[next] == label) continue;
+            sizes[label] += sizes[labels[next]];
+            sizes[labels[next]] = 0;
+            relabel(next, labels[next], label);
+            componentCount--;
+        }
+        labels[cell] = label;
+        sizes[label]++;
+    }
+
+    /*
+     * Unlabels a newly closed cell and gives each part its region falls into a label of its own
+     * The parts are flood-filled from the cell's neighbours in turn, one cell each at a time; floods that
+     * meet are joined, and a flood that runs out of cells before meeting the others has found a part that
+     * broke away. Filling stops once a single flood is left, which keeps the old label, so the work done
+     * is about the size of the smaller parts rather than of the whole region.
+     *
+     * @param cell The row-major index of the closed cell
+     */
+    private void splitAround(int cell) {
+        int old = labels[cell];
+        if (old == NO_COMPONENT) return;
+        labels[cell] = NO_COMPONENT;
+        sizes[old]--;
+
+        int[] around = neighbours(cell);
+        HashMap<Integer, Integer> floodOf = new HashMap<>();
+        int[] joinedTo = new int[around.length];
+        boolean[] live = new boolean[around.length];
+        List<ArrayDeque<Integer>> queues = new ArrayList<>();
+        int active = 0;
+        for (int i = 0; i < around.length; i++) {
+            joinedTo[i] = i;
+            queues.add(new ArrayDeque<>());
+            if (around[i] < 0 || labels[around[i]] != old) continue;
+            floodOf.put(around[i], i);
+            queues.get(i).add(around[i]);
+            live[i] = true;
+            active++;
+        }
+        if (active == 0) {
+            componentCount--;
+            return;
+        }
+
+        while (active > 1) {
+            for (int flood = 0; flood < around.length && active > 1; flood++) {
+                if (!live[flood]) continue;
+                ArrayDeque<Integer> queue = queues.get(flood);
+                if (queue.isEmpty()) {
+                    live[flood] = false;
+                    active--;
+                    breakAway(flood, floodOf, joinedTo, old);
+                    continue;
+                }
+                for (int next : neighbours(queue.poll())) {
+                    if (next < 0 || labels[next] != old) continue;
+                    Integer other = floodOf.get(next);
+                    if (other == null) {
+                        floodOf.put(next, flood);
+                        queue.add(next);
+                    } else if (root(joinedTo, other) != flood) {
+                        int joined = root(joinedTo, other);
+                        joinedTo[joined] = flood;
+                        live[joined] = false;
+                        queue.addAll(queues.get(joined));
+                        queues.get(joined).clear();
+                        active--;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Gives the cells found by a flood that ran out of cells a new label, as a part of its own
+     *
+     * @param flood The flood that ran out
+     * @param floodOf The flood that reached each cell
+     * @param joinedTo The flood each flood was joined into
+     * @param old The label of the region being split
+     */
+    private void breakAway(int flood, HashMap<Integer, Integer> floodOf, int[] joinedTo, int old) {
+        int label = newLabel();
+        for (java.util.Map.Entry<Integer, Integer> entry : floodOf.entrySet()) {
+            if (root(joinedTo, entry.getValue()) != flood) continue;
+            labels[entry.getKey()] = label;
+            sizes[label]++;
+            sizes[old]--;
+        }
+        componentCount++;
+    }
+
+    /*
+     * Follows the joins between floods to the flood that now carries them
+     *
+     * @param joinedTo The flood each flood was joined into, or itself
+     * @param flood The flood to look up
+     * @return The flood it has been joined into
+     */
+    private static int root(int[] joinedTo, int flood) {
+        while (joinedTo[flood] != flood) flood = joinedTo[flood];
+        return flood;
+    }
+
+    /*
+     * Gives out the next unused label
+     *
+     * @return The label
+     */
+    private int newLabel() {
+        lastLabel++;
+        if (lastLabel >= sizes.length) sizes = Arrays.copyOf(sizes, Math.max(lastLabel + 1, sizes.length * 2));
+        return lastLabel;
+    }
+
+    /*
+     * Flood-fills the cells of one label reachable from a cell with another label
+     *
+     * @param start The row-major index of the cell to start from
+     * @param from The label being replaced
+     * @param to The new label
+     */
+    private void relabel(int start, int from, int to) {
+        int cols = grid.getCols();
+        labels[start] = to;
+        top = 0;
+        stack[top++] = start;
+        while (top > 0) {
+            int cell = stack[--top];
+            int col = cell % cols;
+            if (cell >= cols) replace(cell - cols, from, to);
+            if (cell + cols < labels.length) replace(cell + cols, from, to);
+            if (col > 0) replace(cell - 1, from, to);
+            if (col < cols - 1) replace(cell + 1, from, to);
+        }
+    }
+
+    /*
+     * Relabels a neighbouring cell and pushes it onto the flood-fill stack if it has the label being replaced
+     *
+     * @param cell The row-major index of the neighbouring cell
+     * @param from The label being replaced
+     * @param to The new label
+     */
+    private void replace(int cell, int from, int to) {
+        if (labels[cell] != from) return;
+        labels[cell] = to;
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = cell;
+    }
+
+    /*
+     * Lists the four neighbours of a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The neighbours' indexes above, below, left and right, with -1 for any off the grid
+     */
+    private int[] neighbours(int cell) {
+        int cols = grid.getCols();
+        int col = cell % cols;
+        return new int[]{
+                cell >= cols ? cell - cols : -1,
+                cell + cols < labels.length ? cell + cols : -1,
+                col > 0 ? cell - 1 : -1,
+                col < cols - 1 ? cell + 1 : -1
+        };
+    }
+
+    /*
+     * Flood-fills each unlabelled open cell in turn, giving each region the next label
+     * Uses one growable array as the stack so no object is created per cell
+     */
+    private void labelAll() {
+        int cols = grid.getCols();
+        stack = new int[64];
+
+        for (int start = 0; start < labels.length; start++) {
+            if (labels[start] != NO_COMPONENT || !isOpen(start)) continue;
+            int label = ++componentCount;
+            lastLabel = label;
+            labels[start] = label;
+            top = 0;
+            stack[top++] = start;
+
+            while (top > 0) {
+                int cell = stack[--top];
+                int col = cell % cols;
+                if (cell >= cols) visit(cell - cols, label);
+                if (cell + cols < labels.length) visit(cell + cols, label);
+                if (col > 0) visit(cell - 1, label);
+                if (col < cols - 1) visit(cell + 1, label);
+            }
+        }
+        stack = null;
+    }
+
+    /*
+     * Labels a neighbouring cell and pushes it onto the flood-fill stack if it is open and unlabelled
+     *
+     * @param cell The row-major index of the neighbouring cell
+     * @param label The label of the region being filled
+     */
+    private void visit(int cell, int label) {
+        if (labels[cell] != NO_COMPONENT || !isOpen(cell)) return;
+        labels[cell] = label;
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = cell;
+    }
+
+    /*
+     * Checks whether a cell can be walked through when labelling
+     *
+     * @param cell The row-major index of the cell
+     * @return true for walking space and the kiosk, false otherwise
+     */
+    private boolean isOpen(int cell) {
+        return cell == kioskCell || grid.isWalkable(cell);
+    }
+
+    /*
+     * Returns the label of the region a cell belongs to
+     *
+     * @param cell The row-major index of the cell
+     * @return The label, or NO_COMPONENT if the cell is not walking space
+     */
+    int componentOf(int cell) {
+        return labels[cell];
+    }
+
+    /*
+     * Checks whether a cell can be reached from the kiosk
+     * A walking space cell is reachable when it shares the kiosk's region; any other cell,
+     * such as a shelf or a room, is reachable when it is next to a cell in the kiosk's region
+     *
+     * @param cell The row-major index of the cell
+     * @return true if a path from the kiosk can end at the cell, false otherwise
+     */
+    boolean reachableFromKiosk(int cell) {
+        int kioskLabel = labels[kioskCell];
+        if (labels[cell] == kioskLabel) return true;
+
+        int cols = grid.getCols();
+        int col = cell % cols;
+        return (cell >= cols && labels[cell - cols] == kioskLabel)
+                || (cell + cols < labels.length && labels[cell + cols] == kioskLabel)
+                || (col > 0 && labels[cell - 1] == kioskLabel)
+                || (col < cols - 1 && labels[cell + 1] == kioskLabel);
+    }
+
+    // Getters:
+    int getComponentCount() { return componentCount; }
+
+    /*
+     * Validates the internal state of the ComponentIndex object
+     * Ensures there is a label for every cell and the kiosk has been labelled
+     */
+    private void checkComponentIndex() {
+        Preconditions.checkState(labels.length == grid.getSize(), "Every cell needs a label");
+        Preconditions.checkState(labels[kioskCell] != NO_COMPONENT, "Kiosk must be labelled");
+    }
+}
@@ -0,0 +1,190 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMapException;
+import com.google.common.base.Preconditions;
+
+public class Connector {
+
+    public enum Type {
+        STAIRS(12),
+        ELEVATOR(20);
+
+        private final int defaultCost;
+
+        Type(int defaultCost) {
+            this.defaultCost = defaultCost;
+        }
+
+        public int getDefaultCost() { return defaultCost; }
+    }
+
+    private static final int COORDINATE_DIMENSIONS = 2;
+
+    private final Type type;
+    private final int fromFloor;
+    private final int[] fromCoordinates;
+    private final int toFloor;
+    private final int[] toCoordinates;
+    private final int cost;
+
+    /*
+     * Private constructor for Connector
+     * A connector joins a cell on one floor to a cell on another and can be used in both directions
+     *
+     * @param type Whether the connector is a staircase or an elevator
+     * @param fromFloor The floor of one end
+     * @param fromCoordinates The coordinates of the end on fromFloor
+     * @param toFloor The floor of the other end
+     * @param toCoordinates The coordinates of the end on toFloor
+     * @param cost The number of steps a trip through the connector counts as
+     */
+    private Connector(Type type, int fromFloor, int[] fromCoordinates, int toFloor, int[] toCoordinates, int cost) {
+        this.type = type;
+        this.fromFloor = fromFloor;
+        this.fromCoordinates = fromCoordinates;
+        this.toFloor = toFloor;
+        this.toCoordinates = toCoordinates;
+        this.cost = cost;
+        checkConnector();
+    }
+
+    public static class ConnectorBuilder {
+        private Type type;
+        private int fromFloor;
+        private int[] fromCoordinates;
+        private int toFloor;
+        private int[] toCoordinates;
+        private int cost = -1;
+
+        /*
+         * Sets the type of the connector being built
+         *
+         * @param type Whether the connector is a staircase or an elevator
+         * @return ConnectorBuilder instance for method chaining
+         */
+        public ConnectorBuilder type(Type type) {
+            Preconditions.checkNotNull(type, "Type cannot be null");
+            this.type = type;
+            return this;
+        }
+
+        /*
+         * Sets one end of the connector being built
+         *
+         * @param floor The floor, counted from 0
+         * @param coordinates The coordinates of the connector's cell on that floor
+         * @return ConnectorBuilder instance for method chaining
+         * @throws InvalidMapException if the floor is negative or the coordinates are not a row and column
+         */
+        public ConnectorBuilder from(int floor, int[] coordinates) throws InvalidMapException {
+            checkEnd(floor, coordinates);
+            this.fromFloor = floor;
+            this.fromCoordinates = coordinates.clone();
+            return this;
+        }
+
+        /*
+         * Sets the other end of the connector being built
+         *
+         * @param floor The floor, counted from 0
+         * @param coordinates The coordinates of the connector's cell on that floor
+         * @return ConnectorBuilder instance for method chaining
+         * @throws InvalidMapException if the floor is negative or the coordinates are not a row and column
+         */
+        public ConnectorBuilder to(int floor, int[] coordinates) throws InvalidMapException {
+            checkEnd(floor, coordinates);
+            this.toFloor = floor;
+            this.toCoordinates = coordinates.clone();
+            return this;
+        }
+
+        /*
+         * Sets the traversal cost of the connector being built
+         * If no cost is set, the type's default cost is used
+         *
+         * @param cost The number of steps a trip through the connector counts as
+         * @return ConnectorBuilder instance for method chaining
+         * @throws InvalidMapException if the cost is not positive
+         */
+        public ConnectorBuilder cost(int cost) throws InvalidMapException {
+            if (cost <= 0) {
+                throw new InvalidMapException("Connector cost must be positive, found " + cost);
+            }
+            this.cost = cost;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new Connector instance with configured parameters
+         *
+         * @return A new Connector object
+         * @throws InvalidMapException if an end is missing or both ends are on the same floor
+         */
+        public Connector build() throws InvalidMapException {
+            if (type == null || fromCoordinates == null || toCoordinates == null) {
+                throw new InvalidMapException("Connector needs a type and both ends");
+            }
+            if (fromFloor == toFloor) {
+                throw new InvalidMapException("Connector must join two different floors");
+            }
+            return new Connector(type, fromFloor, fromCoordinates, toFloor, toCoordinates,
+                    cost > 0 ? cost : type.getDefaultCost());
+        }
+
+        /*
+         * Validates one end of a connector
+         *
+         * @param floor The floor of the end
+         * @param coordinates The coordinates of the end
+         * @throws InvalidMapException if the floor is negative or the coordinates are not a row and column
+         */
+        private static void checkEnd(int floor, int[] coordinates) throws InvalidMapException {
+            if (floor < 0) {
+                throw new InvalidMapException("Floor cannot be negative, found " + floor);
+            }
+            if (coordinates == null || coordinates.length != COORDINATE_DIMENSIONS) {
+                throw new InvalidMapException("Connector coordinates must be a row and column");
+            }
+        }
+    }
+
+    /*
+     * Returns the coordinates of this connector's end on a floor
+     *
+     * @param floor The floor
+     * @return A copy of the end's coordinates, or null if the connector does not reach the floor
+     */
+    public int[] coordinatesOn(int floor) {
+        if (floor == fromFloor) return fromCoordinates.clone();
+        if (floor == toFloor) return toCoordinates.clone();
+        return null;
+    }
+
+    /*
+     * Returns the floor at the other end of this connector
+     *
+     * @param floor The floor one end is on
+     * @return The floor of the other end
+     */
+    public int otherFloor(int floor) {
+        Preconditions.checkArgument(floor == fromFloor || floor == toFloor, "Connector does not reach floor %s", floor);
+        return floor == fromFloor ? toFloor : fromFloor;
+    }
+
+    // Getters:
+    public Type getType() { return type; }
+    public int getFromFloor() { return fromFloor; }
+    public int getToFloor() { return toFloor; }
+    public int getCost() { return cost; }
+
+    /*
+     * Validates the internal state of the Connector object
+     * Ensures both ends are set on different floors and the cost is positive
+     */
+    private void checkConnector() {
+        Preconditions.checkState(type != null, "Connector type should not be null.");
+        Preconditions.checkState(fromCoordinates != null && toCoordinates != null, "Connector ends should not be null.");
+        Preconditions.checkState(fromFloor != toFloor, "Connector should join two floors.");
+        Preconditions.checkState(cost > 0, "Connector cost should be positive.");
+    }
+}
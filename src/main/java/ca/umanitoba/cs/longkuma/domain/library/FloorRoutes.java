@@ -0,0 +1,221 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public final class FloorRoutes {
+
+    public static final int UNREACHED = -1;
+    // Distances are kept two bytes to a cell; this value marks an unreached cell
+    private static final char NOT_REACHED = Character.MAX_VALUE;
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    private final MapGrid grid;
+    private final int kioskCell;
+    private final int[] entryCells;
+    private final char[][] distances;
+    private final int[][] longDistances;
+    private final int version;
+
+    /*
+     * Constructs the routing data for one floor of a building
+     * The floor's entries are the cells a route can arrive on or leave from: the kiosk, if it is on this
+     * floor, and the ends of the connectors that reach it. The walking distance from every entry to every
+     * cell of the floor is worked out once, so a route across floors only has to choose which entries to
+     * pass through, and the cells of a leg are read back by walking down the distances.
+     * Each entry's distances are a shortest-path tree of their own, so they are worked out in parallel,
+     * with one search queue per worker shared by the entries it works out. Distances are kept in a char per
+     * cell; the rare entry with a walk longer than a char can hold keeps an int per cell instead.
+     *
+     * @param grid The floor's map grid
+     * @param kioskCell The row-major index of the floor map's kiosk cell
+     * @param entryCells The row-major indexes of the floor's entries
+     * @param version The floor map's version the grid was taken from
+     */
+    FloorRoutes(MapGrid grid, int kioskCell, int[] entryCells, int version) {
+        this.grid = grid;
+        this.kioskCell = kioskCell;
+        this.entryCells = entryCells.clone();
+        this.version = version;
+        this.distances = new char[entryCells.length][];
+        this.longDistances = new int[entryCells.length][];
+        int workers = Math.max(1, Math.min(entryCells.length, ForkJoinPool.getCommonPoolParallelism()));
+        IntStream.range(0, workers).parallel().forEach(worker -> {
+            int[] queue = new int[grid.getSize()];
+            for (int entry = worker; entry < this.entryCells.length; entry += workers) {
+                distances[entry] = distancesFrom(this.entryCells[entry], queue);
+                if (distances[entry] == null) longDistances[entry] = longDistancesFrom(this.entryCells[entry], queue);
+            }
+        });
+        checkFloorRoutes();
+    }
+
+    /*
+     * Computes the walking distance from one cell to every cell of the floor with a breadth-first search
+     * Walking space, the kiosk and the source are walked through; any other cell, including other entries,
+     * gets a distance when it is next to a reached cell, matching how paths end at media and resource cells
+     *
+     * @param source The row-major index of the cell to search from
+     * @param queue A queue large enough for every cell, reused between searches
+     * @return The distance to each cell, or NOT_REACHED; null if a cell is too far for a char to hold
+     */
+    private char[] distancesFrom(int source, int[] queue) {
+        char[] distance = new char[grid.getSize()];
+        Arrays.fill(distance, NOT_REACHED);
+        int cols = grid.getCols();
+        distance[source] = 0;
+        queue[0] = source;
+        int tail = 1;
+
+        for (int head = 0; head < tail; head++) {
+            int cell = queue[head];
+            int steps = distance[cell] + 1;
+            if (steps >= NOT_REACHED) return null;
+            int col = cell % cols;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextCol = col + COL_STEP[direction];
+                int next = cell + ROW_STEP[direction] * cols + COL_STEP[direction];
+                if (nextCol < 0 || nextCol >= cols || next < 0 || next >= distance.length) continue;
+                if (distance[next] != NOT_REACHED) continue;
+                distance[next] = (char) steps;
+                if (isOpen(next)) queue[tail++] = next;
+            }
+        }
+        return distance;
+    }
+
+    /*
+     * Computes the walking distance from one cell to every cell of the floor, an int per cell
+     * Used for the rare entry whose walks are too long for distancesFrom
+     *
+     * @param source The row-major index of the cell to search from
+     * @param queue A queue large enough for every cell, reused between searches
+     * @return The distance to each cell, or UNREACHED
+     */
+    private int[] longDistancesFrom(int source, int[] queue) {
+        int[] distance = new int[grid.getSize()];
+        Arrays.fill(distance, UNREACHED);
+        int cols = grid.getCols();
+        distance[source] = 0;
+        queue[0] = source;
+        int tail = 1;
+
+        for (int head = 0; head < tail; head++) {
+            int cell = queue[head];
+            int steps = distance[cell] + 1;
+            int col = cell % cols;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextCol = col + COL_STEP[direction];
+                int next = cell + ROW_STEP[direction] * cols + COL_STEP[direction];
+                if (nextCol < 0 || nextCol >= cols || next < 0 || next >= distance.length) continue;
+                if (distance[next] != UNREACHED) continue;
+                distance[next] = steps;
+                if (isOpen(next)) queue[tail++] = next;
+            }
+        }
+        return distance;
+    }
+
+    /*
+     * Returns the walking distance from an entry to a cell
+     *
+     * @param entry The entry's position in getEntryCells()
+     * @param cell The row-major index of the cell
+     * @return The number of steps, or UNREACHED
+     */
+    public int distance(int entry, int cell) {
+        char[] distance = distances[entry];
+        if (distance == null) return longDistances[entry][cell];
+        return distance[cell] == NOT_REACHED ? UNREACHED : distance[cell];
+    }
+
+    /*
+     * Finds the entry placed on a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The entry's position in getEntryCells(), or UNREACHED if the cell is not an entry
+     */
+    public int entryAt(int cell) {
+        for (int entry = 0; entry < entryCells.length; entry++) {
+            if (entryCells[entry] == cell) return entry;
+        }
+        return UNREACHED;
+    }
+
+    /*
+     * Adds the shortest walk from an entry to a cell to a path
+     * Walks back from the cell to the entry, each time stepping onto an open neighbour one step nearer
+     *
+     * @param entry The entry's position in getEntryCells()
+     * @param cell The row-major index of the cell to walk to, which must be reachable from the entry
+     * @param path The list to add each cell's {row, col} coordinates to, from the entry to the cell inclusive
+     */
+    public void appendPath(int entry, int cell, List<int[]> path) {
+        int steps = distance(entry, cell);
+        Preconditions.checkArgument(steps != UNREACHED, "Cell cannot be reached from entry %s", entry);
+        int cols = grid.getCols();
+        int[][] walk = new int[steps + 1][];
+        int current = cell;
+        for (int i = walk.length - 1; i > 0; i--) {
+            walk[i] = new int[]{current / cols, current % cols};
+            current = nearerNeighbour(entry, current, i);
+        }
+        walk[0] = new int[]{current / cols, current % cols};
+        path.addAll(Arrays.asList(walk));
+    }
+
+    /*
+     * Finds the open neighbour one step nearer to an entry
+     *
+     * @param entry The entry's position in getEntryCells()
+     * @param cell The row-major index of a reached cell other than the entry
+     * @param steps The cell's distance from the entry
+     * @return The neighbour's row-major index
+     */
+    private int nearerNeighbour(int entry, int cell, int steps) {
+        int cols = grid.getCols();
+        int col = cell % cols;
+        for (int direction = 0; direction < 4; direction++) {
+            int nextCol = col + COL_STEP[direction];
+            int next = cell + ROW_STEP[direction] * cols + COL_STEP[direction];
+            if (nextCol < 0 || nextCol >= cols || next < 0 || next >= grid.getSize()) continue;
+            if (distance(entry, next) != steps - 1) continue;
+            if (steps == 1 || isOpen(next)) return next;
+        }
+        throw new IllegalStateException("Cell " + cell + " has no neighbour nearer the entry");
+    }
+
+    /*
+     * Checks whether a cell can be walked through
+     *
+     * @param cell The row-major index of the cell
+     * @return true for walking space and the kiosk, false otherwise
+     */
+    private boolean isOpen(int cell) {
+        return cell == kioskCell || grid.isWalkable(cell);
+    }
+
+    // Getters:
+    public int getEntryCount() { return entryCells.length; }
+    public int[] getEntryCells() { return entryCells.clone(); }
+    public int getVersion() { return version; }
+
+    /*
+     * Validates the internal state of the FloorRoutes object
+     * Ensures every entry has a distance for every cell of the floor, kept one way or the other
+     */
+    private void checkFloorRoutes() {
+        Preconditions.checkState(distances.length == entryCells.length && longDistances.length == entryCells.length,
+                "Every entry needs distances");
+        for (int entry = 0; entry < entryCells.length; entry++) {
+            int cells = distances[entry] != null ? distances[entry].length
+                    : longDistances[entry] != null ? longDistances[entry].length : -1;
+            Preconditions.checkState(cells == grid.getSize(), "Distances must cover the floor");
+        }
+    }
+}
@@ -6,32 +6,62 @@ import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidNameException;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
 import com.google.common.base.Preconditions;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 public class Library {
+    private static final ReentrantReadWriteLock MEDIA_STATE = new ReentrantReadWriteLock();
+    private static final Set<Library> LOADED_CATALOGS = ConcurrentHashMap.newKeySet();
+
     final private String name;
-    final private List<Media> media;
-    final private ArrayList<Resource> resources;
+    private volatile MediaList media;
+    final private CopyOnWriteArrayList<Resource> resources;
     final private Map map;
+    final private Building building;
+    final private CatalogSource catalogSource;
+    private volatile boolean catalogLoaded;
+    private volatile String catalogError;
+    private boolean loadingCatalog;
+    private boolean catalogPinned;
+    private volatile long lastUsed;
+    private int sessions;
 
     /*
      * Private constructor for Library
      * Initializes library with name and map, creates empty media and resource lists
+     * A library with a catalog source starts with its catalog unloaded
      *
      * @param name The name of the library
-     * @param map The map layout of the library
+     * @param map The map layout of the library, or of the kiosk's floor for a building with several floors
+     * @param building The library's floors, or null if the library is on a single floor
+     * @param catalogSource Where the catalog is loaded from, or null if its media are only ever added directly
      */
-    private Library(String name, Map map) {
+    private Library(String name, Map map, Building building, CatalogSource catalogSource) {
         this.name = name;
-        this.media = new ArrayList<>();
-        this.resources = new ArrayList<>();
+        this.media = MediaList.EMPTY;
+        this.resources = new CopyOnWriteArrayList<>();
         this.map = map;
+        this.building = building;
+        this.catalogSource = catalogSource;
+        this.catalogLoaded = catalogSource == null;
     }
 
     public static class LibraryBuilder {
         private String name;
         private Map map;
+        private Building building;
+        private CatalogSource catalogSource;
 
         public LibraryBuilder() {
         }
@@ -66,20 +96,48 @@ public class Library {
             return this;
         }
 
+        /*
+         * Sets the floors for the library being built, for a library on several floors
+         * The library's map becomes the floor the kiosk is on
+         *
+         * @param building The floors of the library and the connectors between them
+         * @return LibraryBuilder instance for method chaining
+         * @throws InvalidMapException if building is null
+         */
+        public LibraryBuilder building(Building building) throws InvalidMapException {
+            if(building == null) {
+                throw new InvalidMapException("Building should not be null.");
+            }
+            this.building = building;
+            this.map = building.getKioskMap();
+            return this;
+        }
+
+        /*
+         * Sets where the library's catalog is loaded from the first time its media are needed
+         *
+         * @param catalogSource The catalog's source, or null to add media directly
+         * @return LibraryBuilder instance for method chaining
+         */
+        public LibraryBuilder catalog(CatalogSource catalogSource) {
+            this.catalogSource = catalogSource;
+            return this;
+        }
+
         /*
          * Builds and returns a new Library instance with configured parameters
          *
          * @return A new Library object
          */
         public Library build() {
-            return new Library(name, map);
+            return new Library(name, map, building, catalogSource);
         }
     }
 
     /*
      * Validates the internal state of the Library object
      * Ensures all required fields are non-null and meet minimum requirements
-     * Checks that all media and resources in collections are non-null
+     * Media and resources are checked for null as they are added, so this check does not grow with the catalog
      */
     private void checkLibrary() {
         Preconditions.checkState(name != null, "Library name should not be null.");
@@ -87,14 +145,10 @@ public class Library {
         Preconditions.checkState(true, "Media list should not be null.");
         Preconditions.checkState(true, "Resources list should not be null.");
         Preconditions.checkState(map != null, "Map should not be null.");
-
-        for (Media m : media) {
-            Preconditions.checkState(m != null, "Individual media should never be null.");
-        }
-
-        for (Resource r : resources) {
-            Preconditions.checkState(r != null, "Individual resources should never be null.");
-        }
+        Preconditions.checkState(building == null || building.getKioskMap() == map,
+                "Map should be the kiosk's floor of the building.");
+        Preconditions.checkState(catalogSource != null || catalogLoaded,
+                "Only a library with a catalog source can have its catalog unloaded.");
     }
 
     // Getters:
@@ -102,11 +156,27 @@ public class Library {
         return name;
     }
 
+    /*
+     * Returns the library's media, loading the catalog first if it is not in memory
+     * Each call counts as a use of the catalog, so a library in use keeps its catalog the longest
+     * If the catalog is unloaded between loading it and reading its media, it is loaded again, so a library
+     * with a catalog never hands out the empty list an unload leaves behind
+     * A catalog that cannot be read leaves the library with no media; getCatalogError says why
+     * The list is a snapshot: media added afterwards are not in it, so it can be read while others are added
+     *
+     * @return An unmodifiable list of the media, in the order they were added
+     */
     public List<Media> getMedia() {
-        return media;
+        MediaList loaded;
+        do {
+            if (!loadCatalog()) return Collections.emptyList();
+            loaded = media;
+        } while (!catalogLoaded);
+        lastUsed = System.nanoTime();
+        return loaded.asList();
     }
 
-    public ArrayList<Resource> getResources() {
+    public List<Resource> getResources() {
         return resources;
     }
 
@@ -114,22 +184,208 @@ public class Library {
         return map;
     }
 
+    public Building getBuilding() {
+        return building;
+    }
+
+    public CatalogSource getCatalogSource() {
+        return catalogSource;
+    }
+
+    public boolean isCatalogLoaded() {
+        return catalogLoaded;
+    }
+
+    public String getCatalogError() {
+        return catalogError;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /*
+     * Loads the catalog from its source if it is not in memory, placing its media on the library's floors
+     * Only one thread loads a catalog; others asking for it at the same time wait for it to finish.
+     * A catalog that fails to load leaves the library with no media, and is tried again the next time;
+     * the reason it failed is kept for getCatalogError until it loads
+     *
+     * @return true if the catalog is loaded, false if it could not be read
+     */
+    public boolean loadCatalog() {
+        if (catalogLoaded) return true;
+        synchronized (this) {
+            if (catalogLoaded) return true;
+            loadingCatalog = true;
+            try {
+                catalogSource.load(this);
+            } catch (IOException | RuntimeException e) {
+                clearCatalog();
+                catalogError = "Could not load the catalog of " + name
+                        + (e.getMessage() == null ? "" : ": " + e.getMessage());
+                return false;
+            } finally {
+                loadingCatalog = false;
+            }
+            lastUsed = System.nanoTime();
+            if (catalogSource != null) LOADED_CATALOGS.add(this);
+            catalogError = null;
+            catalogLoaded = true;
+        }
+        checkLibrary();
+        return true;
+    }
+
+    /*
+     * Lets go of the catalog, taking its media off the library's floors, so it is loaded afresh the next
+     * time it is needed
+     * The floors' routing data goes with it, since an idle catalog means nobody is asking for paths either;
+     * it is worked out again on the next path asked for
+     * Anything held only by the media, such as which copies are on loan, is lost, so a catalog should
+     * only be unloaded once nothing refers to its media. A catalog that has had media added to it other
+     * than from its source is never unloaded, since the source could not bring them back.
+     *
+     * @return true if the catalog was unloaded, false if it is not loaded, has had media added,
+     *         or the library has no catalog source
+     */
+    public synchronized boolean unloadCatalog() {
+        if (catalogSource == null || !catalogLoaded || catalogPinned) return false;
+        catalogLoaded = false;
+        LOADED_CATALOGS.remove(this);
+        clearCatalog();
+        if (building == null) {
+            map.releaseRoutes();
+        } else {
+            building.releaseRoutes();
+        }
+        checkLibrary();
+        return true;
+    }
+
+    /*
+     * Unloads the catalog if nothing would be lost by loading it again
+     * Loans, returns, reviews and waitlist changes are held off while the catalog is checked and unloaded,
+     * so none of them can land on its media in between. A library with an open session is never unloaded,
+     * since the session may be holding on to its media.
+     *
+     * @param inUse Tells whether any of the library's media hold state that reloading would lose
+     * @return true if the catalog was unloaded, false if it was kept
+     */
+    public boolean unloadCatalogIfUnused(Predicate<Library> inUse) {
+        MEDIA_STATE.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (sessions > 0 || inUse.test(this)) return false;
+                return unloadCatalog();
+            }
+        } finally {
+            MEDIA_STATE.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Returns the lock to hold while changing state that only a catalog's media keep: loans, returns,
+     * reviews and waitlist entries
+     * Any number of changes can hold it at once; a catalog is only unloaded while none do
+     *
+     * @return The lock guarding changes to media state
+     */
+    public static Lock mediaChangeLock() {
+        return MEDIA_STATE.readLock();
+    }
+
+    /*
+     * Opens a session on the library, keeping its catalog loaded until the session is closed
+     * A member at a kiosk holds a session on each library they use, since the media they are shown must
+     * still be the library's when they pick one
+     */
+    public synchronized void openSession() {
+        sessions++;
+    }
+
+    /*
+     * Closes a session opened with openSession
+     */
+    public synchronized void closeSession() {
+        Preconditions.checkState(sessions > 0, "Library has no open session to close.");
+        sessions--;
+    }
+
+    /*
+     * Lists the libraries whose catalogs are loaded from a source and could be unloaded, least recently used first
+     * A catalog counts as used when it is loaded and whenever its media are asked for
+     *
+     * @return The libraries, ordered by when their catalogs were last used
+     */
+    public static List<Library> loadedCatalogsByLastUse() {
+        List<Library> loaded = new ArrayList<>(LOADED_CATALOGS);
+        loaded.sort(Comparator.comparingLong(Library::getLastUsed));
+        return loaded;
+    }
+
+    /*
+     * Takes every media item off the library and its floors
+     */
+    private void clearCatalog() {
+        media = MediaList.EMPTY;
+        if (building == null) {
+            map.clearMedia();
+        } else {
+            for (int floor = 0; floor < building.getFloorCount(); floor++) building.getFloor(floor).clearMedia();
+        }
+    }
+
     /*
      * Adds a new media item to the library's collection
+     * The catalog is loaded first if it is not in memory, so the item is listed after it
      * Validates library state before and after adding
      *
      * @param media The media item to add
      * @return true if media was successfully added, false otherwise
      */
-    public void addMedia(Media media) {
+    public synchronized void addMedia(Media media) {
         checkLibrary();
         Preconditions.checkNotNull(media, "Media cannot be null");
+        addingMedia();
+
+        this.media = this.media.plus(Collections.singletonList(media));
+
+        checkLibrary();
+    }
+
+    /*
+     * Adds many media items to the library's collection in one step, such as a catalog being imported
+     * Every item is checked before any is added, so a null item leaves the collection unchanged
+     * The catalog is loaded first if it is not in memory, unless these are the catalog's own media
+     * Validates library state once before and once after, rather than around each item
+     *
+     * @param newMedia The media items to add, in the order they should be listed
+     */
+    public synchronized void addAllMedia(Collection<Media> newMedia) {
+        checkLibrary();
+        Preconditions.checkNotNull(newMedia, "Media cannot be null");
+        for (Media item : newMedia) {
+            Preconditions.checkNotNull(item, "Media cannot be null");
+        }
+        addingMedia();
 
-        this.media.add(media);
+        this.media = this.media.plus(newMedia);
 
         checkLibrary();
     }
 
+    /*
+     * Readies the catalog for media added to it: media from the catalog's source go straight in, while
+     * any other media are added after the catalog is loaded, and keep it from being unloaded
+     *
+     * @throws IllegalStateException if the catalog cannot be read
+     */
+    private void addingMedia() {
+        if (loadingCatalog || catalogSource == null) return;
+        Preconditions.checkState(loadCatalog(), catalogError);
+        catalogPinned = true;
+    }
+
     /*
      * Adds a new resource to the library's collection
      * Validates library state before and after adding
@@ -145,4 +401,53 @@ public class Library {
 
         checkLibrary();
     }
-}
\ No newline at end of file
+
+    /*
+     * The library's media, published as a whole through the library's volatile field so readers need no lock
+     * Adding writes the new media into the shared array past the size every published MediaList sees, growing
+     * it by half when full, and publishes a new MediaList with the larger size; the entries a published list
+     * covers are never written again, so each one is a fixed snapshot
+     */
+    private static final class MediaList {
+        static final MediaList EMPTY = new MediaList(new Media[0], 0);
+
+        private final Media[] items;
+        private final int size;
+
+        /*
+         * Constructs a list over the first entries of an array
+         *
+         * @param items The array holding the media
+         * @param size The number of media in the list
+         */
+        private MediaList(Media[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        /*
+         * Returns the list with more media added after these
+         * Called with the library's lock held, by the only thread adding to the array
+         *
+         * @param added The media to add, in order
+         * @return The longer list
+         */
+        MediaList plus(Collection<Media> added) {
+            int needed = size + added.size();
+            Media[] target = items;
+            if (needed > target.length) target = Arrays.copyOf(items, Math.max(needed, size + (size >> 1) + 1));
+            int next = size;
+            for (Media item : added) target[next++] = item;
+            return new MediaList(target, needed);
+        }
+
+        /*
+         * Returns the media as an unmodifiable list
+         *
+         * @return A fixed view of the media
+         */
+        List<Media> asList() {
+            return Collections.unmodifiableList(Arrays.asList(items).subList(0, size));
+        }
+    }
+}
@@ -2,53 +2,98 @@ package ca.umanitoba.cs.longkuma.domain.library;
 
 import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMapException;
 import ca.umanitoba.cs.longkuma.domain.exceptions.MapDimensionMismatchException;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+import ca.umanitoba.cs.longkuma.domain.resource.Resource;
 import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Map {
 
-    private final char[][] grid;
+    private volatile MapGrid grid;
     private final String[] legend;
     private final int[] kioskCoordinates;
-    private final List<int[]> mediaCoordinates;
-    private final List<ArrayList<int[]>> resourceCoordinates;
+    private final List<int[]> origins;
+    private volatile PlacedResources placedResources;
+    private volatile PlacedMedia placedMedia;
+    private volatile ComponentIndex components;
+    private final HashSet<Integer> closedCells;
+    private final List<Integer> clusterRepairs;
+    private int clusterBuilds;
+    private volatile int version;
+    private volatile int placements;
+    private volatile Built<NavigationGraph> navigation;
+    private volatile Built<ClusterGraph> clusters;
+    private volatile FloorRoutes originRoutes;
+    private PendingBuild<NavigationGraph> navigationBuild;
+    private PendingBuild<FloorRoutes> originRoutesBuild;
+    private static final int CLUSTER_SIZE = 32;
     private static final int COORDINATE_DIMENSIONS = 2;
+    public static final int NO_ENTITY = -1;
+    public static final char CLOSED = '#';
 
     /*
      * Private constructor for Map
-     * Initializes map with grid, legend, and kiosk coordinates, creates empty coordinate lists
-     * Validates the map state after construction
+     * Initializes map with grid, legend, and kiosk coordinates, with nothing placed on it yet
+     * Validates the map state, then labels the connected regions of walking space once so
+     * reachability from the kiosk can be answered without searching
      *
-     * @param grid The 2D character array representing the map layout
+     * @param grid The encoded map layout
      * @param legend The array of strings describing map symbols
      * @param kioskCoordinates The coordinates of the kiosk location
+     * @param entrances The coordinates of the other kiosks and entrances paths can start from
      */
-    private Map(char[][] grid, String[] legend, int[] kioskCoordinates) {
+    private Map(MapGrid grid, String[] legend, int[] kioskCoordinates, List<int[]> entrances) {
         this.grid = grid;
         this.legend = legend;
         this.kioskCoordinates = kioskCoordinates;
-        this.mediaCoordinates = new ArrayList<>();
-        this.resourceCoordinates = new ArrayList<>();
+        this.origins = new ArrayList<>();
+        this.origins.add(kioskCoordinates);
+        this.origins.addAll(entrances);
+        this.placedResources = new PlacedResources();
+        this.placedMedia = new PlacedMedia(0);
+        this.closedCells = new HashSet<>();
+        this.clusterRepairs = new ArrayList<>();
         checkMap();
+        this.components = new ComponentIndex(grid, grid.cellIndex(kioskCoordinates[0], kioskCoordinates[1]));
     }
 
     public static class MapBuilder {
-        private char[][] grid;
+        private MapGrid grid;
         private String[] legend;
         private int[] kioskCoordinates;
+        private final List<int[]> entrances = new ArrayList<>();
 
         /*
          * Sets the grid for the map being built
          *
+         * @param grid The encoded map layout
+         * @return MapBuilder instance for method chaining
+         */
+        public MapBuilder grid(MapGrid grid) {
+            Preconditions.checkNotNull(grid, "Grid cannot be null");
+            this.grid = grid;
+            return this;
+        }
+
+        /*
+         * Sets the grid for the map being built from a 2D character array
+         * The symbols are encoded into a MapGrid; the array is not kept
+         *
          * @param grid The 2D character array representing the map layout
          * @return MapBuilder instance for method chaining
          */
         public MapBuilder grid(char[][] grid) {
             Preconditions.checkNotNull(grid, "Grid cannot be null");
-            this.grid = grid;
+            this.grid = MapGrid.fromRows(grid);
             return this;
         }
 
@@ -76,88 +121,870 @@ public class Map {
             return this;
         }
 
+        /*
+         * Adds another place paths can start from, such as a second kiosk or an entrance
+         * The kiosk set by kioskCoordinates is always origin 0; origins added here follow it in order
+         * and must be on walking space
+         *
+         * @param coordinates The coordinates of the origin
+         * @return MapBuilder instance for method chaining
+         */
+        public MapBuilder origin(int[] coordinates) {
+            Preconditions.checkNotNull(coordinates, "Origin cannot be null");
+            entrances.add(coordinates.clone());
+            return this;
+        }
+
         /*
          * Builds and returns a new Map instance with configured parameters
          *
          * @return A new Map object
          */
         public Map build() {
-            return new Map(grid, legend, kioskCoordinates);
+            return new Map(grid, legend, kioskCoordinates, new ArrayList<>(entrances));
         }
     }
 
     /*
-     * Parses a string representation of map data and converts it to a 2D character grid
+     * Parses a string representation of map data and encodes it into a MapGrid
      * Expects first line to contain row and column dimensions, followed by grid data
+     * Cells are encoded as they are read, so no 2D character array is built
      *
      * @param mapData The string containing map dimensions and layout data
-     * @return A 2D character array representing the map grid
+     * @return The encoded map grid
      * @throws MapDimensionMismatchException if grid dimensions don't match the declared size
      * @throws InvalidMapException if mapData is null or empty
      */
-    public static char[][] gridFromString(String mapData) throws MapDimensionMismatchException, InvalidMapException {
+    public static MapGrid gridFromString(String mapData) throws MapDimensionMismatchException, InvalidMapException {
         if (mapData == null || mapData.isEmpty()) {
             throw new InvalidMapException("Map Data cannot be null or empty");
         }
 
         try (Scanner scanner = new Scanner(mapData)) {
-            String[] dims = scanner.nextLine().split(" ");
+            String[] dims = scanner.nextLine().trim().split(" +");
             int rows = Integer.parseInt(dims[0]);
             int cols = Integer.parseInt(dims[1]);
 
-            char[][] grid = new char[rows][cols];
+            MapGrid.Encoder grid = new MapGrid.Encoder(rows, cols);
             int row = 0;
 
             while (scanner.hasNextLine()) {
-                String[] tokens = scanner.nextLine().split(" ");
-                if (tokens.length != cols) throw new MapDimensionMismatchException("Row " + row + " has wrong number of columns");
-                for (int col = 0; col < cols; col++) {
-                    grid[row][col] = tokens[col].charAt(0);
-                }
+                if (row == rows) throw new MapDimensionMismatchException("Expected " + rows + " rows, found more");
+                if (encodeRow(scanner.nextLine(), grid, cols) != cols)
+                    throw new MapDimensionMismatchException("Row " + row + " has wrong number of columns");
                 row++;
             }
 
             if (row != rows) throw new MapDimensionMismatchException("Expected " + rows + " rows, found " + row);
-            return grid;
+            return grid.build();
+        }
+    }
+
+    /*
+     * Encodes one line of map data, taking the first character of each space-separated token
+     * Leading, trailing and repeated spaces are skipped rather than read as empty cells
+     * Stops adding cells once the row is full so a long row cannot spill into the next one
+     *
+     * @param line The line of map data
+     * @param grid The encoder to add cells to
+     * @param cols The number of columns expected
+     * @return The number of tokens on the line
+     */
+    private static int encodeRow(String line, MapGrid.Encoder grid, int cols) {
+        int tokens = 0;
+        int start = 0;
+        while (start <= line.length()) {
+            int end = line.indexOf(' ', start);
+            if (end < 0) end = line.length();
+            if (end > start && ++tokens <= cols) grid.add(line.charAt(start));
+            start = end + 1;
         }
+        return tokens;
     }
 
     // Getters:
-    public char[][] getGrid() { checkMap(); return grid; }
+    public MapGrid getGrid() { checkMap(); return grid; }
     public String[] getLegend() { checkMap(); return legend; }
     public int[] getKioskCoordinates() { return kioskCoordinates; }
+    public List<int[]> getOrigins() { return Collections.unmodifiableList(origins); }
+    public int getOriginCount() { return origins.size(); }
 
-    public List<int[]> getMediaCoordinates() { return mediaCoordinates; }
-    public List<ArrayList<int[]>> getResourceCoordinates() { return resourceCoordinates; }
+    public List<int[]> getMediaCoordinates() { return placedMedia.coordinates(); }
+    public List<ArrayList<int[]>> getResourceCoordinates() { return Collections.unmodifiableList(placedResources.coordinates); }
 
     /*
      * Adds media coordinates to the map's collection
-     * Validates that coordinates are non-null and have exactly 2 dimensions
+     * Validates that coordinates are non-null, have exactly 2 dimensions and fall on the grid
+     * The media's id is its position in getMediaCoordinates()
      *
      * @param coordinates The coordinate array for a media item location
      * @return true if coordinates were successfully added
      */
     public boolean addMediaCoordinates(int[] coordinates) {
-        Preconditions.checkNotNull(coordinates, "Coordinates cannot be null");
-        Preconditions.checkState(coordinates.length == COORDINATE_DIMENSIONS, "Coordinates must have length 2");
-        mediaCoordinates.add(coordinates);
-        return true;
+        return addMediaAt(coordinates, null);
+    }
+
+    /*
+     * Places a media item on the map at its coordinates
+     * Several media items can share a cell, such as books on the same shelf
+     *
+     * @param media The media item to place
+     * @return true if the media was successfully added
+     */
+    public boolean addMedia(Media media) {
+        Preconditions.checkNotNull(media, "Media cannot be null");
+        return addMediaAt(media.getCoordinates(), media);
     }
 
     /*
      * Adds resource coordinates to the map's collection
-     * Validates that coordinates list is non-null and contains at least one coordinate
+     * Validates that coordinates list is non-null, contains at least one coordinate,
+     * and that every coordinate is on the grid and not already used by media or another resource
+     * The resource's id is its position in getResourceCoordinates()
      *
      * @param coordinates The list of coordinate arrays for a resource's locations
      * @return true if coordinates were successfully added
      */
     public boolean addResourceCoordinates(ArrayList<int[]> coordinates) {
+        return addResourceAt(coordinates, null);
+    }
+
+    /*
+     * Places a resource on the map across all of its coordinates
+     *
+     * @param resource The resource to place
+     * @return true if the resource was successfully added
+     */
+    public boolean addResource(Resource resource) {
+        Preconditions.checkNotNull(resource, "Resource cannot be null");
+        return addResourceAt(new ArrayList<>(resource.getCoordinates()), resource);
+    }
+
+    /*
+     * Records a media location and indexes its cell
+     * A media item placed on a cell that already has media becomes the first media at that cell
+     *
+     * @param coordinates The coordinates of the media item
+     * @param item The media item, or null if only the coordinates are known
+     * @return true if coordinates were successfully added
+     */
+    private synchronized boolean addMediaAt(int[] coordinates, Media item) {
+        checkMediaCoordinates(coordinates);
+        PlacedMedia current = placedMedia;
+        current.reserve(1);
+        placeMedia(current, coordinates, item);
+        current.publish();
+        placements++;
+        return true;
+    }
+
+    /*
+     * Places many media items on the map in one step, such as a catalog being imported
+     * Every item's coordinates are checked before any is placed, so a bad item leaves the map unchanged,
+     * and the whole batch is published to readers at once
+     *
+     * @param newMedia The media items to place, in the order they should be added
+     * @return true if the media were successfully added
+     */
+    public synchronized boolean addAllMedia(List<Media> newMedia) {
+        Preconditions.checkNotNull(newMedia, "Media cannot be null");
+        for (Media item : newMedia) {
+            Preconditions.checkNotNull(item, "Media cannot be null");
+            checkMediaCoordinates(item.getCoordinates());
+        }
+
+        PlacedMedia current = placedMedia;
+        current.reserve(newMedia.size());
+        for (Media item : newMedia) placeMedia(current, item.getCoordinates(), item);
+        current.publish();
+        placements++;
+        return true;
+    }
+
+    /*
+     * Checks that media can be placed at a set of coordinates
+     *
+     * @param coordinates The coordinates of the media item
+     */
+    private void checkMediaCoordinates(int[] coordinates) {
+        Preconditions.checkNotNull(coordinates, "Coordinates cannot be null");
+        Preconditions.checkState(coordinates.length == COORDINATE_DIMENSIONS, "Coordinates must have length 2");
+        Preconditions.checkState(grid.inBounds(coordinates[0], coordinates[1]), "Coordinates must be on the map");
+        Preconditions.checkState(resourceIdAt(grid.cellIndex(coordinates[0], coordinates[1])) == NO_ENTITY,
+                "Cell already holds a resource");
+    }
+
+    /*
+     * Records a media location whose coordinates have been checked, and indexes its cell
+     * A media item placed on a cell that already has media becomes the first media at that cell
+     * The item is written past the published media, so readers only see it once it is published, and
+     * its link is written before the cell's index points at it
+     *
+     * @param target The placed media to record it in, with room reserved for it
+     * @param coordinates The coordinates of the media item
+     * @param item The media item, or null if only the coordinates are known
+     */
+    private void placeMedia(PlacedMedia target, int[] coordinates, Media item) {
+        int cell = grid.cellIndex(coordinates[0], coordinates[1]);
+        int id = target.written++;
+        MediaSlots slots = target.slots;
+        slots.coordinates[id] = coordinates;
+        slots.media[id] = item;
+        Integer previous = target.headByCell.get(cell);
+        slots.nextAtCell[id] = previous == null ? NO_ENTITY : previous;
+        target.headByCell.put(cell, id);
+    }
+
+    /*
+     * Removes every media item from the map, such as when a library's catalog is unloaded
+     * Media ids start again from 0 for the next media placed; resources keep their ids and cells
+     * Readers still holding the old media keep seeing all of it until they next look
+     */
+    public synchronized void clearMedia() {
+        placedMedia = new PlacedMedia(0);
+        placements++;
+    }
+
+    /*
+     * Records a resource's locations and indexes each of its cells
+     *
+     * @param coordinates The coordinates of the resource
+     * @param item The resource, or null if only the coordinates are known
+     * @return true if coordinates were successfully added
+     */
+    private synchronized boolean addResourceAt(ArrayList<int[]> coordinates, Resource item) {
         Preconditions.checkNotNull(coordinates, "Coordinates cannot be null");
         Preconditions.checkState(coordinates.size() >= 1, "Resource must have at least one coordinate");
-        resourceCoordinates.add(coordinates);
+        for (int[] coordinate : coordinates) {
+            Preconditions.checkState(coordinate.length == COORDINATE_DIMENSIONS, "Coordinates must have length 2");
+            Preconditions.checkState(grid.inBounds(coordinate[0], coordinate[1]), "Coordinates must be on the map");
+            Preconditions.checkState(!isTarget(grid.cellIndex(coordinate[0], coordinate[1])),
+                    "Cell (" + coordinate[0] + ", " + coordinate[1] + ") is already in use");
+        }
+
+        PlacedResources next = placedResources.copy();
+        int id = next.coordinates.size();
+        next.coordinates.add(coordinates);
+        next.resources.add(item);
+        for (int[] coordinate : coordinates) next.idByCell.put(grid.cellIndex(coordinate[0], coordinate[1]), id);
+        placedResources = next;
+        placements++;
         return true;
     }
 
+    /*
+     * Returns the id of the media at a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The id of the most recently placed media at the cell, or NO_ENTITY if there is none
+     */
+    public int mediaIdAt(int cell) {
+        return placedMedia.idAt(cell);
+    }
+
+    /*
+     * Returns the id of the resource covering a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The resource's id, or NO_ENTITY if no resource covers the cell
+     */
+    public int resourceIdAt(int cell) {
+        return placedResources.idAt(cell);
+    }
+
+    /*
+     * Checks whether a cell holds media or part of a resource
+     *
+     * @param cell The row-major index of the cell
+     * @return true if something is placed on the cell, false otherwise
+     */
+    public boolean isTarget(int cell) {
+        return placedResources.idByCell.containsKey(cell) || placedMedia.idAt(cell) != NO_ENTITY;
+    }
+
+    /*
+     * Finds the media id for a set of coordinates
+     *
+     * @param coordinates The coordinates to look up
+     * @return The id of media at those coordinates, or NO_ENTITY if there is none
+     */
+    public int mediaIdOf(int[] coordinates) {
+        if (coordinates == null || coordinates.length != COORDINATE_DIMENSIONS
+                || !grid.inBounds(coordinates[0], coordinates[1])) return NO_ENTITY;
+        return mediaIdAt(grid.cellIndex(coordinates[0], coordinates[1]));
+    }
+
+    /*
+     * Finds the resource placed on exactly a set of coordinates
+     *
+     * @param coordinates The resource's coordinates
+     * @return The id of the resource covering all of and only those cells, or NO_ENTITY if there is none
+     */
+    public int resourceIdOf(List<int[]> coordinates) {
+        if (coordinates == null || coordinates.isEmpty()) return NO_ENTITY;
+        PlacedResources current = placedResources;
+        int id = NO_ENTITY;
+        for (int[] coordinate : coordinates) {
+            if (coordinate.length != COORDINATE_DIMENSIONS || !grid.inBounds(coordinate[0], coordinate[1])) return NO_ENTITY;
+            int found = current.idAt(grid.cellIndex(coordinate[0], coordinate[1]));
+            if (found == NO_ENTITY || (id != NO_ENTITY && found != id)) return NO_ENTITY;
+            id = found;
+        }
+        return current.coordinates.get(id).size() == coordinates.size() ? id : NO_ENTITY;
+    }
+
+    /*
+     * Lists the media placed on a cell, for example when a member points at a shelf
+     * Media added only by coordinates are not listed
+     *
+     * @param row The row
+     * @param col The column
+     * @return The media at the cell, most recently placed first; empty if there is none
+     */
+    public List<Media> getMediaAt(int row, int col) {
+        List<Media> found = new ArrayList<>();
+        if (!grid.inBounds(row, col)) return found;
+        PlacedMedia current = placedMedia;
+        int id = current.idAt(grid.cellIndex(row, col), current.size());
+        MediaSlots slots = current.slots;
+        for (; id != NO_ENTITY; id = slots.nextAtCell[id]) {
+            if (slots.media[id] != null) found.add(slots.media[id]);
+        }
+        return found;
+    }
+
+    /*
+     * Returns the resource covering a cell
+     *
+     * @param row The row
+     * @param col The column
+     * @return The resource, or null if there is none or it was added only by coordinates
+     */
+    public Resource getResourceAt(int row, int col) {
+        if (!grid.inBounds(row, col)) return null;
+        PlacedResources current = placedResources;
+        int id = current.idAt(grid.cellIndex(row, col));
+        return id == NO_ENTITY ? null : current.resources.get(id);
+    }
+
+    /*
+     * Returns the connected region of walking space a cell belongs to
+     * The kiosk is part of the region, or regions, next to it
+     *
+     * @param cell The row-major index of the cell
+     * @return The region's label, or 0 if the cell is not walking space
+     */
+    public int componentAt(int cell) {
+        return components.componentOf(cell);
+    }
+
+    /*
+     * Checks whether a path from the kiosk can end at a cell
+     * Answered from the region labels, so a walled-off cell is rejected without a search
+     *
+     * @param cell The row-major index of the cell
+     * @return true if the cell is walking space in the kiosk's region or is next to it, false otherwise
+     */
+    public boolean isReachable(int cell) {
+        return components.reachableFromKiosk(cell);
+    }
+
+    /*
+     * Checks whether any cell of a resource can be reached from the kiosk
+     *
+     * @param resourceId The resource's id
+     * @return true if a path from the kiosk can end at the resource, false otherwise
+     */
+    public boolean isResourceReachable(int resourceId) {
+        for (int[] coordinate : placedResources.coordinates.get(resourceId)) {
+            if (isReachable(grid.cellIndex(coordinate[0], coordinate[1]))) return true;
+        }
+        return false;
+    }
+
+    /*
+     * Lists the media placed on the map that cannot be reached from the kiosk
+     *
+     * @return The orphaned media, in the order they were added
+     */
+    public List<Media> getOrphanedMedia() {
+        List<Media> orphaned = new ArrayList<>();
+        PlacedMedia current = placedMedia;
+        int count = current.size();
+        MediaSlots slots = current.slots;
+        for (int id = 0; id < count; id++) {
+            int[] coordinate = slots.coordinates[id];
+            if (slots.media[id] != null && !isReachable(grid.cellIndex(coordinate[0], coordinate[1]))) {
+                orphaned.add(slots.media[id]);
+            }
+        }
+        return orphaned;
+    }
+
+    /*
+     * Lists the resources placed on the map that cannot be reached from the kiosk
+     *
+     * @return The orphaned resources, in the order they were added
+     */
+    public List<Resource> getOrphanedResources() {
+        List<Resource> orphaned = new ArrayList<>();
+        PlacedResources current = placedResources;
+        for (int id = 0; id < current.coordinates.size(); id++) {
+            if (current.resources.get(id) != null && !isResourceReachable(id)) orphaned.add(current.resources.get(id));
+        }
+        return orphaned;
+    }
+
+    /*
+     * Closes a cell of walking space, such as part of an aisle shut for cleaning or an event
+     * The grid is replaced by a copy with the cell marked CLOSED, and only the routing data near it is
+     * repaired: the regions around the cell are relabelled, the cell's cluster is searched again the next
+     * time the cluster graph is used, and the navigation graph and origin routes are rebuilt once, by the
+     * first thread to use them, while any others wait for or keep using the older ones.
+     * Paths already being found keep using the grid and graphs they started with.
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @return true if the cell was closed, false if it is not walking space, is an origin or is off the map
+     */
+    public synchronized boolean closeCell(int row, int col) {
+        if (!grid.inBounds(row, col) || !grid.isWalkable(row, col)) return false;
+        for (int[] origin : origins) {
+            if (origin[0] == row && origin[1] == col) return false;
+        }
+        int cell = grid.cellIndex(row, col);
+        changeCell(cell, CLOSED);
+        closedCells.add(cell);
+        return true;
+    }
+
+    /*
+     * Opens a cell closed by closeCell, making it walking space again
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @return true if the cell was opened, false if it was not closed
+     */
+    public synchronized boolean openCell(int row, int col) {
+        if (!grid.inBounds(row, col) || !closedCells.contains(grid.cellIndex(row, col))) return false;
+        int cell = grid.cellIndex(row, col);
+        changeCell(cell, MapGrid.WALKWAY);
+        closedCells.remove(cell);
+        return true;
+    }
+
+    /*
+     * Checks whether a cell has been closed by closeCell
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @return true if the cell is closed, false otherwise
+     */
+    public synchronized boolean isClosed(int row, int col) {
+        return grid.inBounds(row, col) && closedCells.contains(grid.cellIndex(row, col));
+    }
+
+    /*
+     * Replaces the grid with one in which a cell has a new symbol and repairs the routing data
+     * The new grid and region labels are built before either is published, and the version is
+     * raised last so anything keyed by it is only refreshed once the change is visible
+     *
+     * @param cell The row-major index of the cell
+     * @param symbol The cell's new symbol
+     */
+    private void changeCell(int cell, char symbol) {
+        MapGrid changed = grid.withSymbol(cell, symbol);
+        ComponentIndex repaired = components.repair(changed, cell);
+        grid = changed;
+        components = repaired;
+        if (clusters != null || clusterBuilds > 0) clusterRepairs.add(cell);
+        version++;
+    }
+
+    /*
+     * Returns the corridor-compressed navigation graph of the map
+     * The graph is built the first time it is asked for and again after media or resources are placed,
+     * since the cells in front of them become nodes, or after cells are opened or closed
+     * The grid and placed cells are read together under the map's lock, the graph is built from them without
+     * holding it, and the result is published copy-on-write unless the map changed in the meantime,
+     * so other threads can place items and find paths while a large graph is being built
+     * Only one thread builds the graph for a given state of the map; others asking for it meanwhile wait for
+     * that build rather than starting their own, since a graph missing newly placed cells could not reach them
+     *
+     * @return The navigation graph
+     */
+    public NavigationGraph getNavigationGraph() {
+        Built<NavigationGraph> current = navigation;
+        if (current != null && current.isCurrent(version, placements)) return current.value;
+
+        MapGrid source;
+        Set<Integer> targets;
+        PendingBuild<NavigationGraph> pending;
+        synchronized (this) {
+            current = navigation;
+            if (current != null && current.isCurrent(version, placements)) return current.value;
+            if (navigationBuild != null && navigationBuild.isFor(version, placements)) {
+                pending = navigationBuild;
+                source = null;
+                targets = null;
+            } else {
+                source = grid;
+                HashSet<Integer> cells = new HashSet<>(placedResources.idByCell.keySet());
+                cells.addAll(placedMedia.headByCell.keySet());
+                targets = Collections.unmodifiableSet(cells);
+                pending = new PendingBuild<>(version, placements);
+                navigationBuild = pending;
+            }
+        }
+        if (source == null) return pending.await();
+
+        NavigationGraph built;
+        try {
+            built = new NavigationGraph(source, source.cellIndex(kioskCoordinates[0], kioskCoordinates[1]), targets);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                if (navigationBuild == pending) navigationBuild = null;
+            }
+            pending.fail(e);
+            throw e;
+        }
+        synchronized (this) {
+            if (pending.isFor(version, placements)) {
+                navigation = new Built<>(built, version, placements);
+            }
+            if (navigationBuild == pending) navigationBuild = null;
+        }
+        pending.finish(built);
+        return built;
+    }
+
+    /*
+     * Returns the cluster graph used for hierarchical pathfinding on large maps
+     * The graph only depends on the grid, so it is built the first time it is asked for and kept;
+     * after cells are opened or closed, only the clusters around them are searched again
+     * The graph is built or repaired without holding the map's lock and then published copy-on-write;
+     * the cells changed since the published graph are kept until a graph that includes them replaces it
+     *
+     * @return The cluster graph
+     */
+    public ClusterGraph getClusterGraph() {
+        Built<ClusterGraph> current = clusters;
+        if (current != null && current.version == version) return current.value;
+
+        MapGrid source;
+        List<Integer> repairs;
+        int builtVersion;
+        synchronized (this) {
+            current = clusters;
+            if (current != null && current.version == version) return current.value;
+            source = grid;
+            repairs = new ArrayList<>(clusterRepairs);
+            builtVersion = version;
+            clusterBuilds++;
+        }
+        ClusterGraph built = null;
+        try {
+            built = current == null
+                    ? new ClusterGraph(source, source.cellIndex(kioskCoordinates[0], kioskCoordinates[1]), CLUSTER_SIZE)
+                    : current.value.repair(source, repairs);
+        } finally {
+            synchronized (this) {
+                clusterBuilds--;
+                if (built != null && clusters == current) {
+                    clusters = new Built<>(built, builtVersion, 0);
+                    clusterRepairs.subList(0, repairs.size()).clear();
+                } else if (clusters == null && clusterBuilds == 0) {
+                    clusterRepairs.clear();
+                }
+            }
+        }
+        return built;
+    }
+
+    /*
+     * Returns the shortest-path trees from each of the map's origins, working them out the first time
+     * they are asked for and again after cells are opened or closed
+     * The trees are worked out together, in parallel, without holding the map's lock, and are never
+     * changed afterwards, so kiosk sessions can read paths from them at the same time without sharing
+     * any search state; a newer set replaces the published one copy-on-write
+     * Only one thread works the trees out for a version of the map. While it does, other threads keep
+     * using the published trees if there are any, as paths already being found do, and otherwise wait for it
+     *
+     * @return The routing data, with one entry per origin in the order of getOrigins()
+     */
+    public FloorRoutes getOriginRoutes() {
+        FloorRoutes current = originRoutes;
+        if (current != null && current.getVersion() == version) return current;
+
+        MapGrid source;
+        int builtVersion;
+        PendingBuild<FloorRoutes> pending;
+        synchronized (this) {
+            current = originRoutes;
+            if (current != null && current.getVersion() == version) return current;
+            if (originRoutesBuild != null && originRoutesBuild.isFor(version, 0)) {
+                if (current != null) return current;
+                pending = originRoutesBuild;
+                source = null;
+            } else {
+                pending = new PendingBuild<>(version, 0);
+                originRoutesBuild = pending;
+                source = grid;
+            }
+            builtVersion = version;
+        }
+        if (source == null) return pending.await();
+
+        FloorRoutes built;
+        try {
+            int[] cells = new int[origins.size()];
+            for (int origin = 0; origin < cells.length; origin++) {
+                cells[origin] = source.cellIndex(origins.get(origin)[0], origins.get(origin)[1]);
+            }
+            built = new FloorRoutes(source, cells[0], cells, builtVersion);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                if (originRoutesBuild == pending) originRoutesBuild = null;
+            }
+            pending.fail(e);
+            throw e;
+        }
+        synchronized (this) {
+            if (originRoutes == null || originRoutes.getVersion() < builtVersion) originRoutes = built;
+            if (originRoutesBuild == pending) originRoutesBuild = null;
+        }
+        pending.finish(built);
+        return built;
+    }
+
+    /*
+     * Lets go of the shortest-path trees and the navigation graph, such as when the library goes idle
+     * Both are worked out again the next time a path is asked for
+     */
+    public synchronized void releaseRoutes() {
+        originRoutes = null;
+        navigation = null;
+    }
+
+    // Getters:
+    public int getComponentCount() { return components.getComponentCount(); }
+    public int getVersion() { return version; }
+
+    /*
+     * Routing data together with the state of the map it was built from
+     * Published whole through a volatile field, so a reader sees the data and its versions together
+     */
+    private static final class Built<T> {
+        final T value;
+        final int version;
+        final int placements;
+
+        /*
+         * Constructs a Built record
+         *
+         * @param value The routing data
+         * @param version The map version the grid was taken from
+         * @param placements The count of placement changes when the placed cells were taken
+         */
+        Built(T value, int version, int placements) {
+            this.value = value;
+            this.version = version;
+            this.placements = placements;
+        }
+
+        /*
+         * Checks whether the data was built from the map as it is now
+         *
+         * @param version The map's current version
+         * @param placements The map's current count of placement changes
+         * @return true if both match, false otherwise
+         */
+        boolean isCurrent(int version, int placements) {
+            return this.version == version && this.placements == placements;
+        }
+    }
+
+    /*
+     * The resources placed on the map, and the index of which cell each one covers
+     * A published PlacedResources is never changed: placing a resource copies it, changes the copy and
+     * publishes that through the map's volatile field. Resources are few and rarely added, so copying is cheap
+     */
+    private static final class PlacedResources {
+        final List<ArrayList<int[]>> coordinates;
+        final List<Resource> resources;
+        final HashMap<Integer, Integer> idByCell;
+
+        /*
+         * Constructs empty placements
+         */
+        PlacedResources() {
+            this(new ArrayList<>(), new ArrayList<>(), new HashMap<>());
+        }
+
+        /*
+         * Constructs placements from their parts
+         *
+         * @param coordinates The cells of each resource, by id
+         * @param resources The resources, by id; null for resources placed only by coordinates
+         * @param idByCell The id of the resource on each cell it covers
+         */
+        private PlacedResources(List<ArrayList<int[]>> coordinates, List<Resource> resources,
+                                HashMap<Integer, Integer> idByCell) {
+            this.coordinates = coordinates;
+            this.resources = resources;
+            this.idByCell = idByCell;
+        }
+
+        /*
+         * Copies the placements so they can be changed before being published
+         *
+         * @return The copy
+         */
+        PlacedResources copy() {
+            return new PlacedResources(new ArrayList<>(coordinates), new ArrayList<>(resources), new HashMap<>(idByCell));
+        }
+
+        /*
+         * Returns the id of the resource covering a cell
+         *
+         * @param cell The row-major index of the cell
+         * @return The resource's id, or NO_ENTITY if no resource covers the cell
+         */
+        int idAt(int cell) {
+            Integer id = idByCell.get(cell);
+            return id == null ? NO_ENTITY : id;
+        }
+    }
+
+    /*
+     * The media placed on the map, kept append-only so placing media costs the same however many there are
+     * New media are written into the slots past the published count, under the map's lock, and the count is
+     * raised once they are complete. Readers read the count before anything else and ignore every id at or
+     * past it, so they see whole media or none. Ids of newer media at the same cell are always higher, so a
+     * reader whose cell index already points at an unpublished media follows the links back to a published one.
+     * Clearing the map's media replaces the whole PlacedMedia rather than changing it
+     */
+    private static final class PlacedMedia {
+        final ConcurrentHashMap<Integer, Integer> headByCell;
+        volatile MediaSlots slots;
+        private volatile int count;
+        int written;
+
+        /*
+         * Constructs placed media with no media and room for some
+         *
+         * @param capacity The number of media there is room for
+         */
+        PlacedMedia(int capacity) {
+            this.headByCell = new ConcurrentHashMap<>();
+            this.slots = new MediaSlots(capacity);
+        }
+
+        /*
+         * Makes room for more media past those written so far, growing the slots by at least half when full
+         * The grown slots hold every media already written, so a reader that picks them up sees the same ids
+         *
+         * @param extra The number of media about to be written
+         */
+        void reserve(int extra) {
+            MediaSlots current = slots;
+            int needed = written + extra;
+            if (needed <= current.media.length) return;
+            slots = current.grow(Math.max(needed, current.media.length + (current.media.length >> 1) + 1), written);
+        }
+
+        /*
+         * Makes the media written so far visible to readers
+         */
+        void publish() {
+            count = written;
+        }
+
+        /*
+         * Returns the number of media readers can see
+         *
+         * @return The published count
+         */
+        int size() {
+            return count;
+        }
+
+        /*
+         * Returns the id of the most recently published media at a cell
+         *
+         * @param cell The row-major index of the cell
+         * @return The media's id, or NO_ENTITY if there is none
+         */
+        int idAt(int cell) {
+            return idAt(cell, count);
+        }
+
+        /*
+         * Returns the id of the most recently published media at a cell, against a count already read
+         * The slots are read after the cell's index, so they are at least as new as the media it points at
+         *
+         * @param cell The row-major index of the cell
+         * @param published The published count
+         * @return The media's id, or NO_ENTITY if there is none
+         */
+        int idAt(int cell, int published) {
+            Integer head = headByCell.get(cell);
+            if (head == null) return NO_ENTITY;
+            int id = head;
+            if (id >= published) {
+                MediaSlots current = slots;
+                while (id >= published) id = current.nextAtCell[id];
+            }
+            return id;
+        }
+
+        /*
+         * Returns the coordinates of the published media
+         *
+         * @return An unmodifiable list of the coordinates, by media id
+         */
+        List<int[]> coordinates() {
+            int published = count;
+            return Collections.unmodifiableList(Arrays.asList(slots.coordinates).subList(0, published));
+        }
+    }
+
+    /*
+     * The arrays holding each media's coordinates, item and link to the media placed before it on the same cell
+     * Replaced as a whole when it grows, so the three arrays always have the same length
+     */
+    private static final class MediaSlots {
+        final int[][] coordinates;
+        final Media[] media;
+        final int[] nextAtCell;
+
+        /*
+         * Constructs empty slots
+         *
+         * @param capacity The number of media there is room for
+         */
+        MediaSlots(int capacity) {
+            this.coordinates = new int[capacity][];
+            this.media = new Media[capacity];
+            this.nextAtCell = new int[capacity];
+        }
+
+        /*
+         * Copies the slots into larger ones
+         *
+         * @param capacity The number of media the new slots have room for
+         * @param used The number of slots holding media
+         * @return The larger slots
+         */
+        MediaSlots grow(int capacity, int used) {
+            MediaSlots grown = new MediaSlots(capacity);
+            System.arraycopy(coordinates, 0, grown.coordinates, 0, used);
+            System.arraycopy(media, 0, grown.media, 0, used);
+            System.arraycopy(nextAtCell, 0, grown.nextAtCell, 0, used);
+            return grown;
+        }
+    }
+
     /*
      * Validates the internal state of the Map object
      * Ensures all required fields are non-null and meet minimum requirements
@@ -165,8 +992,21 @@ public class Map {
     private void checkMap() {
         Preconditions.checkState(grid != null, "Grid cannot be null");
         Preconditions.checkState(legend != null && legend.length >= 1, "Legend invalid");
-        Preconditions.checkState(kioskCoordinates != null && kioskCoordinates.length == 2, "Kiosk invalid");
-        Preconditions.checkState(mediaCoordinates != null, "Media list cannot be null");
-        Preconditions.checkState(resourceCoordinates != null, "Resource list cannot be null");
+        Preconditions.checkState(kioskCoordinates != null && kioskCoordinates.length == 2
+                && grid.inBounds(kioskCoordinates[0], kioskCoordinates[1]), "Kiosk invalid");
+        Preconditions.checkState(placedResources != null && placedMedia != null, "Placements cannot be null");
+        Preconditions.checkState(placedMedia.slots.media.length >= placedMedia.size(),
+                "Every published media needs a slot");
+        Preconditions.checkState(closedCells != null, "Closed cells cannot be null");
+        Preconditions.checkState(origins != null && origins.get(0) == kioskCoordinates, "The kiosk must be origin 0");
+        for (int origin = 1; origin < origins.size(); origin++) {
+            int[] coordinates = origins.get(origin);
+            Preconditions.checkState(coordinates.length == COORDINATE_DIMENSIONS
+                    && grid.inBounds(coordinates[0], coordinates[1])
+                    && grid.isWalkable(coordinates[0], coordinates[1]), "Origins must be on walking space");
+            for (int other = 0; other < origin; other++) {
+                Preconditions.checkState(!Arrays.equals(origins.get(other), coordinates), "Origins must be different cells");
+            }
+        }
     }
 }
\ No newline at end of file
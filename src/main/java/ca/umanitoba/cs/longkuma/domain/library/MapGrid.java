@@ -0,0 +1,280 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+public final class MapGrid {
+
+    public static final char WALKWAY = '.';
+    private static final int MAX_SYMBOLS = 256;
+
+    private final int rows;
+    private final int cols;
+    private final byte[] cells;
+    private final char[] symbols;
+    private final int walkwayCode;
+
+    /*
+     * Private constructor for MapGrid
+     * Cells are stored row-major, one byte per cell, as codes into the symbol table
+     *
+     * @param rows The number of rows
+     * @param cols The number of columns
+     * @param cells The cell codes, row-major
+     * @param symbols The map symbol for each code
+     */
+    private MapGrid(int rows, int cols, byte[] cells, char[] symbols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        this.symbols = symbols;
+        this.walkwayCode = indexOf(symbols, WALKWAY);
+        checkMapGrid();
+    }
+
+    /*
+     * Encodes a grid of map symbols
+     * Codes are given out in the order symbols are first seen
+     *
+     * @param grid The map symbols, one array per row; every row must be the same length
+     * @return A new MapGrid holding the same symbols
+     * @throws IllegalArgumentException if the grid is empty, the rows differ in length,
+     *         or there are more than 256 different symbols
+     */
+    public static MapGrid fromRows(char[][] grid) {
+        Preconditions.checkArgument(grid != null && grid.length > 0 && grid[0].length > 0, "Grid cannot be empty");
+        Encoder encoder = new Encoder(grid.length, grid[0].length);
+        for (char[] row : grid) {
+            Preconditions.checkArgument(row.length == encoder.cols, "Every row must have " + encoder.cols + " columns");
+            for (char symbol : row) encoder.add(symbol);
+        }
+        return encoder.build();
+    }
+
+    // Getters:
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int getSize() { return cells.length; }
+    public int getSymbolCount() { return symbols.length; }
+
+    /*
+     * Converts coordinates into a row-major cell index
+     *
+     * @param row The row
+     * @param col The column
+     * @return The index of the cell
+     */
+    public int cellIndex(int row, int col) {
+        return row * cols + col;
+    }
+
+    /*
+     * Checks whether coordinates fall on the grid
+     *
+     * @param row The row
+     * @param col The column
+     * @return true if the cell exists, false otherwise
+     */
+    public boolean inBounds(int row, int col) {
+        return row >= 0 && col >= 0 && row < rows && col < cols;
+    }
+
+    /*
+     * Returns the map symbol of a cell
+     *
+     * @param row The row
+     * @param col The column
+     * @return The symbol, for example '.' for walking space
+     */
+    public char symbolAt(int row, int col) {
+        return symbols[cells[cellIndex(row, col)] & 0xFF];
+    }
+
+    /*
+     * Returns the map symbol of a cell by its index
+     *
+     * @param cell The row-major index of the cell
+     * @return The symbol
+     */
+    public char symbolAt(int cell) {
+        return symbols[cells[cell] & 0xFF];
+    }
+
+    /*
+     * Returns the code stored for a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The code, 0-255
+     */
+    public int codeAt(int cell) {
+        return cells[cell] & 0xFF;
+    }
+
+    /*
+     * Checks whether a cell is walking space
+     *
+     * @param row The row
+     * @param col The column
+     * @return true if the cell can be walked through, false otherwise
+     */
+    public boolean isWalkable(int row, int col) {
+        return (cells[cellIndex(row, col)] & 0xFF) == walkwayCode;
+    }
+
+    /*
+     * Checks whether a cell is walking space by its index
+     *
+     * @param cell The row-major index of the cell
+     * @return true if the cell can be walked through, false otherwise
+     */
+    public boolean isWalkable(int cell) {
+        return (cells[cell] & 0xFF) == walkwayCode;
+    }
+
+    /*
+     * Looks up the code used for a map symbol
+     *
+     * @param symbol The map symbol
+     * @return The code, or -1 if the symbol does not appear on the grid
+     */
+    public int codeOf(char symbol) {
+        return indexOf(symbols, symbol);
+    }
+
+    /*
+     * Looks up the map symbol for a code
+     *
+     * @param code The code, 0 to getSymbolCount() - 1
+     * @return The map symbol
+     */
+    public char symbolOf(int code) {
+        return symbols[code];
+    }
+
+    /*
+     * Copies one row of the grid out as map symbols
+     *
+     * @param row The row
+     * @return A new array of the row's symbols
+     */
+    public char[] rowSymbols(int row) {
+        char[] out = new char[cols];
+        int start = row * cols;
+        for (int col = 0; col < cols; col++) out[col] = symbols[cells[start + col] & 0xFF];
+        return out;
+    }
+
+    /*
+     * Returns a copy of the grid with one cell changed
+     * The grid itself is never changed, so anything still reading it keeps a consistent view
+     *
+     * @param cell The row-major index of the cell
+     * @param symbol The cell's new map symbol
+     * @return A new MapGrid differing from this one at the cell
+     * @throws IllegalArgumentException if the symbol is new and the grid already uses 256 symbols
+     */
+    MapGrid withSymbol(int cell, char symbol) {
+        Preconditions.checkElementIndex(cell, cells.length, "Cell");
+        char[] table = symbols;
+        int code = indexOf(symbols, symbol);
+        if (code < 0) {
+            Preconditions.checkArgument(symbols.length < MAX_SYMBOLS, "Grid cannot use more than %s symbols", MAX_SYMBOLS);
+            table = Arrays.copyOf(symbols, symbols.length + 1);
+            code = symbols.length;
+            table[code] = symbol;
+        }
+        byte[] changed = cells.clone();
+        changed[cell] = (byte) code;
+        return new MapGrid(rows, cols, changed, table);
+    }
+
+    /*
+     * Finds a symbol in the symbol table
+     *
+     * @param symbols The symbol table
+     * @param symbol The symbol to find
+     * @return The index of the symbol, or -1 if it is not there
+     */
+    private static int indexOf(char[] symbols, char symbol) {
+        for (int code = 0; code < symbols.length; code++) {
+            if (symbols[code] == symbol) return code;
+        }
+        return -1;
+    }
+
+    /*
+     * Validates the internal state of the MapGrid object
+     * Ensures the grid is not empty, holds exactly rows * cols cells and every code has a symbol
+     */
+    private void checkMapGrid() {
+        Preconditions.checkState(rows > 0 && cols > 0, "Grid cannot be empty");
+        Preconditions.checkState(cells != null && cells.length == rows * cols, "Grid size mismatch");
+        Preconditions.checkState(symbols != null && symbols.length >= 1 && symbols.length <= MAX_SYMBOLS,
+                "Grid must use 1-" + MAX_SYMBOLS + " symbols");
+    }
+
+    /*
+     * Package-private helper that encodes symbols into a MapGrid one cell at a time, row-major
+     * Lets parsers fill the grid without building a char[][] first
+     */
+    static class Encoder {
+        final int rows;
+        final int cols;
+        private final byte[] cells;
+        private final short[] codeBySymbol;
+        private char[] symbols;
+        private int symbolCount;
+        private int filled;
+
+        /*
+         * Constructs an Encoder for a grid of a given size
+         *
+         * @param rows The number of rows
+         * @param cols The number of columns
+         */
+        Encoder(int rows, int cols) {
+            Preconditions.checkArgument(rows > 0 && cols > 0, "Grid cannot be empty");
+            Preconditions.checkArgument((long) rows * cols <= Integer.MAX_VALUE, "Grid is too large");
+            this.rows = rows;
+            this.cols = cols;
+            this.cells = new byte[rows * cols];
+            this.codeBySymbol = new short[Character.MAX_VALUE + 1];
+            Arrays.fill(codeBySymbol, (short) -1);
+            this.symbols = new char[16];
+        }
+
+        /*
+         * Adds the next cell
+         *
+         * @param symbol The map symbol of the cell
+         * @throws IllegalArgumentException if the grid is already full or this is the 257th different symbol
+         */
+        void add(char symbol) {
+            Preconditions.checkArgument(filled < cells.length, "Grid already has %s cells", cells.length);
+            int code = codeBySymbol[symbol];
+            if (code < 0) {
+                Preconditions.checkArgument(symbolCount < MAX_SYMBOLS, "Grid cannot use more than %s symbols", MAX_SYMBOLS);
+                if (symbolCount == symbols.length) symbols = Arrays.copyOf(symbols, symbols.length * 2);
+                code = symbolCount++;
+                symbols[code] = symbol;
+                codeBySymbol[symbol] = (short) code;
+            }
+            cells[filled++] = (byte) code;
+        }
+
+        // Getters:
+        int getFilled() { return filled; }
+
+        /*
+         * Builds the MapGrid once every cell has been added
+         *
+         * @return A new MapGrid
+         * @throws IllegalStateException if some cells were not added
+         */
+        MapGrid build() {
+            Preconditions.checkState(filled == cells.length, "Expected " + cells.length + " cells, got " + filled);
+            return new MapGrid(rows, cols, cells, Arrays.copyOf(symbols, symbolCount));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMapException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.MapDimensionMismatchException;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class MapLoader {
+
+    private static final long WINDOW_BYTES = 1L << 26;
+    private static final int CHUNK_BYTES = 1 << 16;
+    private static final int MAX_HEADER_BYTES = 64;
+
+    private final StringBuilder header;
+    private final byte[] chunk;
+    private MapGrid.Encoder grid;
+    private int rows = -1;
+    private int cols;
+    private int row;
+    private int tokens;
+    private boolean atTokenStart = true;
+    private int pendingBytes;
+    private int codePoint;
+
+    /*
+     * Private constructor for MapLoader
+     * A loader holds the parse state for one file so rows and symbols can span mapped windows
+     */
+    private MapLoader() {
+        this.header = new StringBuilder();
+        this.chunk = new byte[CHUNK_BYTES];
+    }
+
+    /*
+     * Loads a map file from disk and encodes it into a MapGrid
+     * The file uses the same layout as Map.gridFromString: a "rows cols" line followed by
+     * one line per row of space-separated symbols, of which the first character is kept.
+     * Leading, trailing and repeated spaces are skipped, as they are there.
+     * The file is memory-mapped and read in a single pass, adding cells to the grid as they are
+     * found, so no String or array is created per row or cell.
+     *
+     * @param file The map file, UTF-8 encoded
+     * @return The encoded map grid
+     * @throws IOException if the file cannot be read
+     * @throws MapDimensionMismatchException if grid dimensions don't match the declared size
+     * @throws InvalidMapException if the file is empty, the size line is not two numbers,
+     *         or a symbol is not valid UTF-8
+     */
+    public static MapGrid load(Path file) throws IOException, MapDimensionMismatchException, InvalidMapException {
+        Preconditions.checkNotNull(file, "File cannot be null");
+        MapLoader loader = new MapLoader();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) throw new InvalidMapException("Map file " + file + " is empty");
+
+            for (long position = 0; position < size; position += WINDOW_BYTES) {
+                long length = Math.min(WINDOW_BYTES, size - position);
+                loader.parse(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+        }
+        return loader.finish();
+    }
+
+    /*
+     * Parses one mapped window of the file, carrying any unfinished row or symbol over to the next
+     * The window is copied through a reused chunk array, which scans much faster than
+     * reading the mapped buffer a byte at a time
+     *
+     * @param window The mapped bytes
+     * @throws MapDimensionMismatchException if a row or the row count is wrong
+     * @throws InvalidMapException if the size line or a symbol is malformed
+     */
+    private void parse(MappedByteBuffer window) throws MapDimensionMismatchException, InvalidMapException {
+        while (window.hasRemaining()) {
+            int limit = Math.min(CHUNK_BYTES, window.remaining());
+            window.get(chunk, 0, limit);
+            parseChunk(limit);
+        }
+    }
+
+    /*
+     * Parses the bytes currently in the chunk array
+     *
+     * @param limit The number of bytes in the chunk
+     * @throws MapDimensionMismatchException if a row or the row count is wrong
+     * @throws InvalidMapException if the size line or a symbol is malformed
+     */
+    private void parseChunk(int limit) throws MapDimensionMismatchException, InvalidMapException {
+        byte[] bytes = chunk;
+        int i = 0;
+        if (grid == null) i = readHeader(limit);
+
+        // Single ASCII symbols separated by spaces are the common case and are handled inline;
+        // line ends and multi-byte symbols go through the helpers with the state written back.
+        // A space between tokens or a run of them just marks the start of the next token
+        MapGrid.Encoder cells = grid;
+        boolean atStart = atTokenStart;
+        int count = tokens;
+        for (; i < limit; i++) {
+            byte b = bytes[i];
+            if (b == ' ') {
+                if (pendingBytes > 0) throw badRow();
+                atStart = true;
+            } else if (b >= 0 && atStart && b != '\n' && b != '\r') {
+                if (count == 0 && row == rows) throw new MapDimensionMismatchException("Expected " + rows + " rows, found more");
+                atStart = false;
+                if (++count <= cols) cells.add((char) b);
+            } else if (b == '\n') {
+                atTokenStart = atStart;
+                tokens = count;
+                endRow();
+                atStart = true;
+                count = 0;
+            } else if (b == '\r') {
+                // Windows line endings: the '\n' that follows ends the row
+            } else if (atStart) {
+                tokens = count;
+                startSymbol(b);
+                atStart = false;
+                count = tokens;
+            } else if (pendingBytes > 0) {
+                tokens = count;
+                continueSymbol(b);
+            }
+        }
+        atTokenStart = atStart;
+        tokens = count;
+    }
+
+    /*
+     * Reads the "rows cols" line at the start of the file
+     *
+     * @param limit The number of bytes in the chunk
+     * @return The index just past the size line, or limit if the line continues into the next chunk
+     * @throws InvalidMapException if the line is too long or is not two numbers
+     */
+    private int readHeader(int limit) throws InvalidMapException {
+        for (int i = 0; i < limit; i++) {
+            byte b = chunk[i];
+            if (b == '\n') {
+                startGrid();
+                return i + 1;
+            }
+            if (b != '\r') header.append((char) (b & 0xFF));
+            if (header.length() > MAX_HEADER_BYTES) throw new InvalidMapException("Map size line is too long");
+        }
+        return limit;
+    }
+
+    /*
+     * Parses the size line and creates the encoder for the grid
+     *
+     * @throws InvalidMapException if the size line is not two positive numbers
+     */
+    private void startGrid() throws InvalidMapException {
+        String[] dims = header.toString().trim().split(" +");
+        try {
+            rows = Integer.parseInt(dims[0]);
+            cols = Integer.parseInt(dims[1]);
+            grid = new MapGrid.Encoder(rows, cols);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidMapException("Map must start with \"rows cols\", found \"" + header + "\"");
+        } catch (IllegalArgumentException e) {
+            throw new InvalidMapException(e.getMessage());
+        }
+    }
+
+    /*
+     * Handles the first byte of a token that starts a multi-byte UTF-8 symbol
+     *
+     * @param b The byte
+     * @throws MapDimensionMismatchException if the grid already has every row
+     * @throws InvalidMapException if the byte cannot start a UTF-8 character
+     */
+    private void startSymbol(byte b) throws MapDimensionMismatchException, InvalidMapException {
+        if (tokens == 0 && row == rows) throw new MapDimensionMismatchException("Expected " + rows + " rows, found more");
+        tokens++;
+
+        if ((b & 0xE0) == 0xC0) {
+            codePoint = b & 0x1F;
+            pendingBytes = 1;
+        } else if ((b & 0xF0) == 0xE0) {
+            codePoint = b & 0x0F;
+            pendingBytes = 2;
+        } else {
+            throw new InvalidMapException("Row " + row + " has a symbol that is not a single UTF-8 character");
+        }
+    }
+
+    /*
+     * Adds a continuation byte to a multi-byte symbol, adding the cell once it is complete
+     *
+     * @param b The byte
+     * @throws InvalidMapException if the byte is not a UTF-8 continuation byte
+     */
+    private void continueSymbol(byte b) throws InvalidMapException {
+        if ((b & 0xC0) != 0x80)
+            throw new InvalidMapException("Row " + row + " has a symbol that is not a single UTF-8 character");
+        codePoint = (codePoint << 6) | (b & 0x3F);
+        if (--pendingBytes == 0 && tokens <= cols) grid.add((char) codePoint);
+    }
+
+    /*
+     * Finishes the current row and checks it had the right number of cells
+     *
+     * @throws MapDimensionMismatchException if the row ends inside a symbol,
+     *         has the wrong number of columns or is one row too many
+     */
+    private void endRow() throws MapDimensionMismatchException {
+        if (row == rows) throw new MapDimensionMismatchException("Expected " + rows + " rows, found more");
+        if (pendingBytes > 0 || tokens != cols) throw badRow();
+        row++;
+        tokens = 0;
+        atTokenStart = true;
+    }
+
+    /*
+     * Finishes the file, accepting a last row with no line break after it
+     *
+     * @return The encoded map grid
+     * @throws MapDimensionMismatchException if the number of rows doesn't match the declared size
+     * @throws InvalidMapException if the file ended inside the size line
+     */
+    private MapGrid finish() throws MapDimensionMismatchException, InvalidMapException {
+        if (grid == null) startGrid();
+        if (tokens > 0) endRow();
+        if (row != rows) throw new MapDimensionMismatchException("Expected " + rows + " rows, found " + row);
+        return grid.build();
+    }
+
+    /*
+     * Creates the exception for a row with the wrong number of columns
+     *
+     * @return The exception to throw
+     */
+    private MapDimensionMismatchException badRow() {
+        return new MapDimensionMismatchException("Row " + row + " has wrong number of columns");
+    }
+}
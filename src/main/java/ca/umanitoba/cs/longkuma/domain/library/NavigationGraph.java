@@ -0,0 +1,262 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public final class NavigationGraph {
+
+    public static final int NO_NODE = -1;
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    private final MapGrid grid;
+    private final int kioskCell;
+    private final long[] nodeBits;
+    private final int[] nodeCells;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeWeights;
+    private final byte[] edgeDirections;
+
+    /*
+     * Constructs a NavigationGraph by compressing the walking space of a grid
+     * Nodes are placed at the kiosk, at cells in front of placed media and resources, and at every
+     * walking space cell that does not have exactly two walkable neighbours (junctions, open floor
+     * and dead ends). Every other walking space cell lies on a corridor, which becomes one edge
+     * weighted by its length, so the cells along it are never stored or searched.
+     *
+     * @param grid The map grid
+     * @param kioskCell The row-major index of the kiosk cell
+     * @param targetCells The row-major indexes of every cell holding media or part of a resource
+     */
+    NavigationGraph(MapGrid grid, int kioskCell, Collection<Integer> targetCells) {
+        this.grid = grid;
+        this.kioskCell = kioskCell;
+        this.nodeBits = new long[(grid.getSize() + 63) / 64];
+
+        long[] frontage = new long[nodeBits.length];
+        for (int target : targetCells) {
+            for (int direction = 0; direction < 4; direction++) {
+                int next = step(target, direction);
+                if (next >= 0) frontage[next >>> 6] |= 1L << next;
+            }
+        }
+
+        int[] cells = new int[64];
+        int count = 0;
+        for (int cell = 0; cell < grid.getSize(); cell++) {
+            if (!isOpen(cell)) continue;
+            boolean front = (frontage[cell >>> 6] & (1L << cell)) != 0;
+            if (cell == kioskCell || front || openNeighbours(cell) != 2) {
+                if (count == cells.length) cells = Arrays.copyOf(cells, count * 2);
+                cells[count++] = cell;
+                nodeBits[cell >>> 6] |= 1L << cell;
+            }
+        }
+        this.nodeCells = Arrays.copyOf(cells, count);
+
+        this.edgeOffsets = new int[count + 1];
+        int[] targets = new int[Math.max(16, count * 2)];
+        int[] weights = new int[targets.length];
+        byte[] directions = new byte[targets.length];
+        int edges = 0;
+        for (int node = 0; node < count; node++) {
+            edgeOffsets[node] = edges;
+            int from = nodeCells[node];
+            for (int direction = 0; direction < 4; direction++) {
+                int next = step(from, direction);
+                if (next < 0 || !isOpen(next)) continue;
+
+                int previous = from;
+                int current = next;
+                int length = 1;
+                while (!isNode(current)) {
+                    int following = otherOpenNeighbour(current, previous);
+                    previous = current;
+                    current = following;
+                    length++;
+                }
+                if (current == from) continue; // a corridor that loops back to where it started
+
+                if (edges == targets.length) {
+                    targets = Arrays.copyOf(targets, edges * 2);
+                    weights = Arrays.copyOf(weights, edges * 2);
+                    directions = Arrays.copyOf(directions, edges * 2);
+                }
+                targets[edges] = nodeAt(current);
+                weights[edges] = length;
+                directions[edges] = (byte) direction;
+                edges++;
+            }
+        }
+        edgeOffsets[count] = edges;
+        this.edgeTargets = Arrays.copyOf(targets, edges);
+        this.edgeWeights = Arrays.copyOf(weights, edges);
+        this.edgeDirections = Arrays.copyOf(directions, edges);
+        checkNavigationGraph();
+    }
+
+    /*
+     * Finds the node placed on a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The node's id, or NO_NODE if the cell is not a node
+     */
+    public int nodeAt(int cell) {
+        if (!isNode(cell)) return NO_NODE;
+        return Arrays.binarySearch(nodeCells, cell);
+    }
+
+    /*
+     * Returns the cell a node is placed on
+     *
+     * @param node The node's id
+     * @return The row-major index of the cell
+     */
+    public int nodeCell(int node) {
+        return nodeCells[node];
+    }
+
+    /*
+     * Returns the first of a node's outgoing edges; a node's edges are numbered consecutively
+     *
+     * @param node The node's id
+     * @return The id of its first edge
+     */
+    public int firstEdge(int node) {
+        return edgeOffsets[node];
+    }
+
+    /*
+     * Returns the id just past a node's last outgoing edge
+     *
+     * @param node The node's id
+     * @return The id one past its last edge
+     */
+    public int endEdge(int node) {
+        return edgeOffsets[node + 1];
+    }
+
+    /*
+     * Returns the node an edge leads to
+     *
+     * @param edge The edge's id
+     * @return The id of the node at the far end of the corridor
+     */
+    public int edgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    /*
+     * Returns the number of steps along an edge
+     *
+     * @param edge The edge's id
+     * @return The length of the corridor
+     */
+    public int edgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    /*
+     * Expands an edge back into grid cells by walking its corridor again
+     *
+     * @param node The node the edge leaves from
+     * @param edge The edge's id, one of the node's edges
+     * @param path The list to add each cell's {row, col} coordinates to, ending with the edge's target node
+     */
+    public void appendCorridor(int node, int edge, List<int[]> path) {
+        Preconditions.checkArgument(edge >= firstEdge(node) && edge < endEdge(node), "Edge does not leave this node");
+        int cols = grid.getCols();
+        int previous = nodeCells[node];
+        int current = step(previous, edgeDirections[edge]);
+        path.add(new int[]{current / cols, current % cols});
+        while (!isNode(current)) {
+            int following = otherOpenNeighbour(current, previous);
+            previous = current;
+            current = following;
+            path.add(new int[]{current / cols, current % cols});
+        }
+    }
+
+    /*
+     * Checks whether a cell is a node
+     *
+     * @param cell The row-major index of the cell
+     * @return true if a node is placed on the cell, false otherwise
+     */
+    private boolean isNode(int cell) {
+        return (nodeBits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /*
+     * Checks whether a cell can be walked through
+     *
+     * @param cell The row-major index of the cell
+     * @return true for walking space and the kiosk, false otherwise
+     */
+    private boolean isOpen(int cell) {
+        return cell == kioskCell || grid.isWalkable(cell);
+    }
+
+    /*
+     * Moves one cell in a direction
+     *
+     * @param cell The row-major index of the cell
+     * @param direction 0 up, 1 down, 2 left, 3 right
+     * @return The index of the neighbouring cell, or -1 if it is off the grid
+     */
+    private int step(int cell, int direction) {
+        int cols = grid.getCols();
+        int row = cell / cols + ROW_STEP[direction];
+        int col = cell % cols + COL_STEP[direction];
+        return grid.inBounds(row, col) ? row * cols + col : -1;
+    }
+
+    /*
+     * Counts the walkable neighbours of a cell
+     *
+     * @param cell The row-major index of the cell
+     * @return The number of open neighbours, 0-4
+     */
+    private int openNeighbours(int cell) {
+        int open = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            int next = step(cell, direction);
+            if (next >= 0 && isOpen(next)) open++;
+        }
+        return open;
+    }
+
+    /*
+     * Finds the way onward along a corridor
+     *
+     * @param cell The row-major index of a corridor cell, which has exactly two open neighbours
+     * @param previous The neighbour the walk came from
+     * @return The other open neighbour
+     */
+    private int otherOpenNeighbour(int cell, int previous) {
+        for (int direction = 0; direction < 4; direction++) {
+            int next = step(cell, direction);
+            if (next >= 0 && next != previous && isOpen(next)) return next;
+        }
+        throw new IllegalStateException("Corridor cell " + cell + " has no way onward");
+    }
+
+    // Getters:
+    public int getNodeCount() { return nodeCells.length; }
+    public int getEdgeCount() { return edgeTargets.length; }
+
+    /*
+     * Validates the internal state of the NavigationGraph object
+     * Ensures the kiosk is a node and every node has its range of edges
+     */
+    private void checkNavigationGraph() {
+        Preconditions.checkState(isNode(kioskCell), "Kiosk must be a node");
+        Preconditions.checkState(edgeOffsets.length == nodeCells.length + 1, "Every node needs an edge range");
+        Preconditions.checkState(edgeTargets.length == edgeWeights.length && edgeTargets.length == edgeDirections.length,
+                "Edge arrays must match");
+    }
+}
@@ -0,0 +1,73 @@
+package ca.umanitoba.cs.longkuma.domain.library;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+ * A build of routing data that is under way, such as a navigation graph or a floor's shortest-path trees
+ * The thread that starts the build finishes it; other threads asking for the same data while it runs wait for
+ * it, or keep using the data it will replace, instead of each starting a build of their own
+ */
+final class PendingBuild<T> {
+
+    private final int version;
+    private final int placements;
+    private final CompletableFuture<T> result;
+
+    /*
+     * Constructs a build of the data for a version of the map
+     *
+     * @param version The map version the data is built from
+     * @param placements The count of placement changes the data is built from, or 0 if it does not depend on them
+     */
+    PendingBuild(int version, int placements) {
+        this.version = version;
+        this.placements = placements;
+        this.result = new CompletableFuture<>();
+    }
+
+    /*
+     * Checks whether this build is of the data for a version of the map
+     *
+     * @param version The map version
+     * @param placements The count of placement changes, or 0 if the data does not depend on them
+     * @return true if the build's result is the data asked for, false otherwise
+     */
+    boolean isFor(int version, int placements) {
+        return this.version == version && this.placements == placements;
+    }
+
+    /*
+     * Hands the built data to every thread waiting for it
+     *
+     * @param value The built data
+     */
+    void finish(T value) {
+        result.complete(value);
+    }
+
+    /*
+     * Passes on a failed build to every thread waiting for it
+     *
+     * @param failure What the build threw
+     */
+    void fail(Throwable failure) {
+        result.completeExceptionally(failure);
+    }
+
+    /*
+     * Waits for the build to finish
+     *
+     * @return The built data
+     * @throws RuntimeException or Error if the build threw one, as it was thrown
+     */
+    T await() {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+}
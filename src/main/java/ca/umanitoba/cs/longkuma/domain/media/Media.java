@@ -4,9 +4,12 @@ import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class Media {
 
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     private final String title;
     private final String author;
     private final int[] coordinates;
@@ -102,7 +105,7 @@ public class Media {
          */
         public Media build() {
             if (mediaId == null) {
-                mediaId = "M_" + title.replaceAll("\\s+", "_");
+                mediaId = "M_" + WHITESPACE.matcher(title).replaceAll("_");
             }
             return new Media(mediaId, title, author, category, coordinates);
         }
@@ -3,14 +3,38 @@ package ca.umanitoba.cs.longkuma.domain.member;
 import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidConstraintException;
 import com.google.common.base.Preconditions;
 
+import java.time.LocalDate;
+
 public class Constraint {
+
+    public enum ConstraintType { OUTSTANDING_FINES, LOAN_LIMIT, BOOKING_LIMIT, TEMPORARY_BLOCK }
+
+    final private ConstraintType type;
+    final private int amount;
+    final private LocalDate expiresOn;
     final private String constraint;
 
-    private Constraint(String constraint) {
+    /*
+     * Private constructor for Constraint
+     * Initializes the constraint with its type, amount, expiry and description
+     *
+     * @param type The kind of restriction this constraint places on the member
+     * @param amount The fine owed in cents, or the cap for loan and booking limits
+     * @param expiresOn The last day a temporary block applies, or null for other types
+     * @param constraint The text description of the constraint
+     */
+    private Constraint(ConstraintType type, int amount, LocalDate expiresOn, String constraint) {
+        this.type = type;
+        this.amount = amount;
+        this.expiresOn = expiresOn;
         this.constraint = constraint;
+        checkConstraint();
     }
 
     public static class ConstraintBuilder {
+        private ConstraintType type;
+        private int amount;
+        private LocalDate expiresOn;
         private String constraint;
 
         /*
@@ -18,6 +42,52 @@ public class Constraint {
          */
         public ConstraintBuilder() {}
 
+        /*
+         * Sets the type of the constraint being built
+         *
+         * @param type The kind of restriction
+         * @return The ConstraintBuilder instance for method chaining
+         * @throws InvalidConstraintException if type is null
+         */
+        public ConstraintBuilder type(ConstraintType type) throws InvalidConstraintException {
+            if (type == null) {
+                throw new InvalidConstraintException("Constraint type should not be null.");
+            }
+            this.type = type;
+            return this;
+        }
+
+        /*
+         * Sets the amount for the constraint being built
+         * This is the fine owed in cents for OUTSTANDING_FINES, or the cap for LOAN_LIMIT and BOOKING_LIMIT
+         *
+         * @param amount The fine or cap for the constraint
+         * @return The ConstraintBuilder instance for method chaining
+         * @throws InvalidConstraintException if amount is negative
+         */
+        public ConstraintBuilder amount(int amount) throws InvalidConstraintException {
+            if (amount < 0) {
+                throw new InvalidConstraintException("Constraint amount should not be negative.");
+            }
+            this.amount = amount;
+            return this;
+        }
+
+        /*
+         * Sets the last day a temporary block applies
+         *
+         * @param expiresOn The expiry date of the block
+         * @return The ConstraintBuilder instance for method chaining
+         * @throws InvalidConstraintException if expiresOn is null
+         */
+        public ConstraintBuilder expiresOn(LocalDate expiresOn) throws InvalidConstraintException {
+            if (expiresOn == null) {
+                throw new InvalidConstraintException("Expiry date should not be null.");
+            }
+            this.expiresOn = expiresOn;
+            return this;
+        }
+
         /*
          * Sets the constraint description for the constraint being built
          *
@@ -35,11 +105,43 @@ public class Constraint {
 
         /*
          * Builds and returns a new Constraint instance with the configured properties
+         * If no description was given, one is generated from the type
          *
          * @return A new Constraint instance
+         * @throws InvalidConstraintException if the type is missing, a fine is not positive,
+         *                                    or a temporary block has no expiry date
          */
-        public Constraint build() {
-            return new Constraint(constraint);
+        public Constraint build() throws InvalidConstraintException {
+            if (type == null) {
+                throw new InvalidConstraintException("Constraint type should not be null.");
+            }
+            if (type == ConstraintType.OUTSTANDING_FINES && amount == 0) {
+                throw new InvalidConstraintException("Outstanding fines should be greater than zero.");
+            }
+            if (type == ConstraintType.TEMPORARY_BLOCK && expiresOn == null) {
+                throw new InvalidConstraintException("Temporary block should have an expiry date.");
+            }
+            if (constraint == null) {
+                constraint = describe(type, amount, expiresOn);
+            }
+            return new Constraint(type, amount, type == ConstraintType.TEMPORARY_BLOCK ? expiresOn : null, constraint);
+        }
+
+        /*
+         * Generates a readable description for a constraint
+         *
+         * @param type The constraint type
+         * @param amount The fine or cap
+         * @param expiresOn The expiry date for temporary blocks
+         * @return A description of the constraint
+         */
+        private static String describe(ConstraintType type, int amount, LocalDate expiresOn) {
+            return switch (type) {
+                case OUTSTANDING_FINES -> String.format("Outstanding fines of $%d.%02d", amount / 100, amount % 100);
+                case LOAN_LIMIT -> "Limited to " + amount + " borrowed items";
+                case BOOKING_LIMIT -> "Limited to " + amount + " bookings";
+                case TEMPORARY_BLOCK -> "Blocked until " + expiresOn;
+            };
         }
     }
 
@@ -47,12 +149,21 @@ public class Constraint {
      * Validates the state of the Constraint object
      */
     private void checkConstraint() {
+        Preconditions.checkState(type != null, "Constraint type should not be null.");
+        Preconditions.checkState(amount >= 0, "Constraint amount should not be negative.");
+        Preconditions.checkState(type != ConstraintType.TEMPORARY_BLOCK || expiresOn != null,
+                "Temporary block should have an expiry date.");
         Preconditions.checkState(constraint != null, "Constraint should not be null.");
         Preconditions.checkState(constraint.length() >= 1, "Constraint should have at least one symbol.");
     }
 
+    // Getters:
+    public ConstraintType getType() { return type; }
+    public int getAmount() { return amount; }
+    public LocalDate getExpiresOn() { return expiresOn; }
+
     public String getConstraint() {
         checkConstraint();
         return constraint;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,245 @@
+package ca.umanitoba.cs.longkuma.domain.member;
+
+import com.google.common.base.Preconditions;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class Eligibility {
+
+    public static final int FINES_OUTSTANDING = 1;
+    public static final int LOAN_LIMIT_REACHED = 1 << 1;
+    public static final int BOOKING_LIMIT_REACHED = 1 << 2;
+    public static final int TEMPORARILY_BLOCKED = 1 << 3;
+
+    public static final int BORROW_BLOCKERS = FINES_OUTSTANDING | LOAN_LIMIT_REACHED | TEMPORARILY_BLOCKED;
+    public static final int BOOKING_BLOCKERS = FINES_OUTSTANDING | BOOKING_LIMIT_REACHED | TEMPORARILY_BLOCKED;
+
+    private int flags;
+    private long finesOwed;
+    private int loanLimit;
+    private int bookingLimit;
+    private int activeLoans;
+    private final PriorityQueue<Long> bookingEnds;
+    private LocalDate blockedUntil;
+    private LocalDate lapsedThrough;
+
+    /*
+     * Constructs an Eligibility with no restrictions
+     */
+    Eligibility() {
+        this.flags = 0;
+        this.finesOwed = 0;
+        this.loanLimit = Integer.MAX_VALUE;
+        this.bookingLimit = Integer.MAX_VALUE;
+        this.activeLoans = 0;
+        this.bookingEnds = new PriorityQueue<>();
+        this.blockedUntil = null;
+        this.lapsedThrough = null;
+        checkEligibility();
+    }
+
+    /*
+     * Folds a newly added constraint into the eligibility state
+     * Only the flag affected by the constraint's type is recomputed; a temporary block that ended on or
+     * before the last block to lapse is ignored
+     *
+     * @param c The constraint that was added
+     */
+    synchronized void constraintAdded(Constraint c) {
+        switch (c.getType()) {
+            case OUTSTANDING_FINES -> finesOwed += c.getAmount();
+            case LOAN_LIMIT -> loanLimit = Math.min(loanLimit, c.getAmount());
+            case BOOKING_LIMIT -> bookingLimit = Math.min(bookingLimit, c.getAmount());
+            case TEMPORARY_BLOCK -> {
+                if (isUnlapsed(c.getExpiresOn()) && (blockedUntil == null || c.getExpiresOn().isAfter(blockedUntil))) {
+                    blockedUntil = c.getExpiresOn();
+                }
+            }
+        }
+        refresh(c.getType());
+    }
+
+    /*
+     * Removes a constraint from the eligibility state
+     * Caps and block expiries are recomputed from the member's remaining constraints of the same type,
+     * leaving out temporary blocks that have already lapsed
+     *
+     * @param c The constraint that was removed
+     * @param remaining The member's constraints after removal
+     */
+    synchronized void constraintRemoved(Constraint c, List<Constraint> remaining) {
+        switch (c.getType()) {
+            case OUTSTANDING_FINES -> finesOwed -= c.getAmount();
+            case LOAN_LIMIT -> loanLimit = smallestAmount(remaining, Constraint.ConstraintType.LOAN_LIMIT);
+            case BOOKING_LIMIT -> bookingLimit = smallestAmount(remaining, Constraint.ConstraintType.BOOKING_LIMIT);
+            case TEMPORARY_BLOCK -> blockedUntil = latestUnlapsedExpiry(remaining);
+        }
+        refresh(c.getType());
+    }
+
+    /*
+     * Records that the member borrowed a copy
+     */
+    synchronized void loanAdded() {
+        activeLoans++;
+        refresh(Constraint.ConstraintType.LOAN_LIMIT);
+    }
+
+    /*
+     * Records that the member returned a copy
+     */
+    synchronized void loanRemoved() {
+        activeLoans--;
+        refresh(Constraint.ConstraintType.LOAN_LIMIT);
+    }
+
+    /*
+     * Records that the member made a booking
+     * The booking counts towards the member's limit until its last day has passed
+     *
+     * @param lastDay The last day the booking is held on, as days since 1970-01-01
+     */
+    synchronized void bookingAdded(long lastDay) {
+        bookingEnds.add(lastDay);
+        refresh(Constraint.ConstraintType.BOOKING_LIMIT);
+    }
+
+    /*
+     * Records that one of the member's bookings was removed, such as when it is archived
+     * A booking that has already been let go because its last day passed is not counted twice
+     *
+     * @param lastDay The last day the booking was held on, as days since 1970-01-01
+     */
+    synchronized void bookingRemoved(long lastDay) {
+        if (bookingEnds.remove(lastDay)) refresh(Constraint.ConstraintType.BOOKING_LIMIT);
+    }
+
+    /*
+     * Tests whether none of the given blocking flags are set on a date
+     * Temporary blocks that ended and bookings held only on days before the date are cleared first; a block
+     * that ended is forgotten, so the expired constraint left in the member's list cannot set it again
+     * Eligibility is synchronized because the booking archiver removes bookings from another thread
+     *
+     * @param blockers The flags that prevent the action
+     * @param today The date the action is taking place
+     * @return true if the action is allowed, false otherwise
+     */
+    synchronized boolean allows(int blockers, LocalDate today) {
+        expireBookings(today.toEpochDay());
+        if ((flags & blockers) == 0) return true;
+        if ((flags & TEMPORARILY_BLOCKED) != 0 && today.isAfter(blockedUntil)) {
+            lapsedThrough = blockedUntil;
+            blockedUntil = null;
+            refresh(Constraint.ConstraintType.TEMPORARY_BLOCK);
+        }
+        return (flags & blockers) == 0;
+    }
+
+    /*
+     * Stops counting the bookings whose last day is before a given day
+     * The earliest last day is kept at the head of the queue, so this is a single check when none have passed
+     *
+     * @param today The current day, as days since 1970-01-01
+     */
+    private void expireBookings(long today) {
+        if (bookingEnds.isEmpty() || bookingEnds.peek() >= today) return;
+        while (!bookingEnds.isEmpty() && bookingEnds.peek() < today) bookingEnds.poll();
+        refresh(Constraint.ConstraintType.BOOKING_LIMIT);
+    }
+
+    /*
+     * Recomputes the single flag that depends on a constraint type
+     *
+     * @param type The constraint type whose flag should be recomputed
+     */
+    private void refresh(Constraint.ConstraintType type) {
+        int bit;
+        boolean set;
+        switch (type) {
+            case OUTSTANDING_FINES -> { bit = FINES_OUTSTANDING; set = finesOwed > 0; }
+            case LOAN_LIMIT -> { bit = LOAN_LIMIT_REACHED; set = activeLoans >= loanLimit; }
+            case BOOKING_LIMIT -> { bit = BOOKING_LIMIT_REACHED; set = bookingEnds.size() >= bookingLimit; }
+            default -> { bit = TEMPORARILY_BLOCKED; set = blockedUntil != null; }
+        }
+        flags = set ? flags | bit : flags & ~bit;
+        checkEligibility();
+    }
+
+    /*
+     * Finds the smallest cap among constraints of a given type
+     *
+     * @param constraints The constraints to search
+     * @param type The cap type to look for
+     * @return The smallest cap, or Integer.MAX_VALUE if there is none
+     */
+    private static int smallestAmount(List<Constraint> constraints, Constraint.ConstraintType type) {
+        int smallest = Integer.MAX_VALUE;
+        for (Constraint c : constraints) {
+            if (c.getType() == type) smallest = Math.min(smallest, c.getAmount());
+        }
+        return smallest;
+    }
+
+    /*
+     * Finds the latest expiry date among temporary blocks that have not lapsed
+     *
+     * @param constraints The constraints to search
+     * @return The latest expiry date, or null if there are no such blocks
+     */
+    private LocalDate latestUnlapsedExpiry(List<Constraint> constraints) {
+        LocalDate latest = null;
+        for (Constraint c : constraints) {
+            if (c.getType() == Constraint.ConstraintType.TEMPORARY_BLOCK && isUnlapsed(c.getExpiresOn())
+                    && (latest == null || c.getExpiresOn().isAfter(latest))) {
+                latest = c.getExpiresOn();
+            }
+        }
+        return latest;
+    }
+
+    /*
+     * Checks whether a temporary block ending on a date is still to be counted
+     *
+     * @param expiresOn The last day of the block
+     * @return true if the block ends after the last block that lapsed, false otherwise
+     */
+    private boolean isUnlapsed(LocalDate expiresOn) {
+        return lapsedThrough == null || expiresOn.isAfter(lapsedThrough);
+    }
+
+    /*
+     * Describes the reasons an action is blocked
+     *
+     * @param blockers The flags that prevent the action
+     * @return A comma separated list of reasons, or an empty string if nothing is blocking
+     */
+    public synchronized String describe(int blockers) {
+        int active = flags & blockers;
+        List<String> reasons = new ArrayList<>();
+        if ((active & FINES_OUTSTANDING) != 0) reasons.add("outstanding fines");
+        if ((active & LOAN_LIMIT_REACHED) != 0) reasons.add("borrowing limit of " + loanLimit + " reached");
+        if ((active & BOOKING_LIMIT_REACHED) != 0) reasons.add("booking limit of " + bookingLimit + " reached");
+        if ((active & TEMPORARILY_BLOCKED) != 0) reasons.add("blocked until " + blockedUntil);
+        return String.join(", ", reasons);
+    }
+
+    // Getters:
+    public synchronized int getFlags() { return flags; }
+    public synchronized long getFinesOwed() { return finesOwed; }
+    public synchronized int getActiveLoans() { return activeLoans; }
+    public synchronized int getActiveBookings() { return bookingEnds.size(); }
+
+    /*
+     * Validates the internal state of the Eligibility object
+     */
+    private void checkEligibility() {
+        Preconditions.checkState(finesOwed >= 0, "Fines owed cannot be negative");
+        Preconditions.checkState(loanLimit >= 0 && bookingLimit >= 0, "Limits cannot be negative");
+        Preconditions.checkState(activeLoans >= 0, "Counts cannot be negative");
+        Preconditions.checkState(((flags & TEMPORARILY_BLOCKED) != 0) == (blockedUntil != null),
+                "A member is blocked exactly when a block has an end date");
+    }
+}
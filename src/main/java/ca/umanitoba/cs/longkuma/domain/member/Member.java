@@ -2,20 +2,24 @@ package ca.umanitoba.cs.longkuma.domain.member;
 
 import ca.umanitoba.cs.longkuma.domain.exceptions.*;
 import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
-import ca.umanitoba.cs.longkuma.domain.resource.Booking;
+import ca.umanitoba.cs.longkuma.domain.resource.RecurringBooking;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
 import ca.umanitoba.cs.longkuma.logic.resource.BookingLogic;
 import com.google.common.base.Preconditions;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 public class Member {
     private final String name;
     private final String password;
-    private final List<MediaCopy> borrowedMedia;
+    private final LinkedHashSet<MediaCopy> borrowedMedia;
     private final List<Resource> bookedResources;
     private final List<Constraint> constraints;
+    private final Eligibility eligibility;
 
     /*
      * Private constructor for Member
@@ -29,9 +33,10 @@ public class Member {
         this.name = name;
         this.password = password;
 
-        this.borrowedMedia = new ArrayList<>();
+        this.borrowedMedia = new LinkedHashSet<>();
         this.bookedResources = new ArrayList<>();
         this.constraints = new ArrayList<>();
+        this.eligibility = new Eligibility();
 
         checkMember();
     }
@@ -85,59 +90,112 @@ public class Member {
         Preconditions.checkState(borrowedMedia != null);
         Preconditions.checkState(bookedResources != null);
         Preconditions.checkState(constraints != null);
+        Preconditions.checkState(eligibility != null);
     }
 
     // Getters:
     public String getName() { return name; }
     public String getPassword() { return password; }
-    public List<MediaCopy> getBorrowedMedia() { return borrowedMedia; }
-    public List<Resource> getBookedResources() { return bookedResources; }
-    public List<Constraint> getConstraints() { return constraints; }
-    public boolean hasConstraints() { return !constraints.isEmpty(); }
+    public synchronized List<MediaCopy> getBorrowedMedia() { return new ArrayList<>(borrowedMedia); }
+    public synchronized List<Resource> getBookedResources() { return new ArrayList<>(bookedResources); }
+    public synchronized List<Constraint> getConstraints() { return Collections.unmodifiableList(constraints); }
+    public synchronized boolean hasConstraints() { return !constraints.isEmpty(); }
+    public Eligibility getEligibility() { return eligibility; }
+
+    /*
+     * Checks whether the member may borrow media today
+     * This is a single test of the member's eligibility flags
+     *
+     * @return true if no constraint prevents borrowing, false otherwise
+     */
+    public boolean canBorrow() {
+        return eligibility.allows(Eligibility.BORROW_BLOCKERS, LocalDate.now());
+    }
+
+    /*
+     * Checks whether the member may book resources today
+     * This is a single test of the member's eligibility flags
+     *
+     * @return true if no constraint prevents booking, false otherwise
+     */
+    public boolean canBook() {
+        return eligibility.allows(Eligibility.BOOKING_BLOCKERS, LocalDate.now());
+    }
 
     /*
      * Adds a borrowed media copy to the member's collection
      *
      * @param copy The media copy to add
      */
-    public void addBorrowedCopy(MediaCopy copy) {
-        borrowedMedia.add(copy);
+    public synchronized void addBorrowedCopy(MediaCopy copy) {
+        if (borrowedMedia.add(copy)) eligibility.loanAdded();
     }
 
     /*
      * Removes a borrowed media copy from the member's collection
+     * Borrowed copies are kept in insertion order, so removal does not shift a list
      *
      * @param copy The media copy to remove
      */
-    public void removeBorrowedCopy(MediaCopy copy) {
-        borrowedMedia.remove(copy);
+    public synchronized void removeBorrowedCopy(MediaCopy copy) {
+        if (borrowedMedia.remove(copy)) eligibility.loanRemoved();
     }
 
     /*
-     * Adds a constraint to the member's collection
+     * Adds a constraint to the member's collection and updates the member's eligibility
+     * Constraints are only changed here and in removeConstraint, so the eligibility flags always match them
      *
      * @param c The constraint to add
      */
-    public void addConstraint(Constraint c) {
+    public synchronized void addConstraint(Constraint c) {
+        Preconditions.checkNotNull(c, "Constraint cannot be null");
         constraints.add(c);
+        eligibility.constraintAdded(c);
+    }
+
+    /*
+     * Removes a constraint from the member's collection and updates the member's eligibility
+     *
+     * @param c The constraint to remove
+     * @return true if the constraint was removed, false if the member did not have it
+     */
+    public synchronized boolean removeConstraint(Constraint c) {
+        if (!constraints.remove(c)) return false;
+        eligibility.constraintRemoved(c, constraints);
+        return true;
     }
 
     /*
      * Adds a booked resource to the member's collection
+     * The booking counts towards the member's booking limit until its last day has passed or it is removed
      *
      * @param r The resource to add
+     * @param lastDay The last day the booking is held on, as days since 1970-01-01
      */
-    public void addBookedResource(Resource r) {
+    public synchronized void addBookedResource(Resource r, long lastDay) {
         bookedResources.add(r);
+        eligibility.bookingAdded(lastDay);
+    }
+
+    /*
+     * Removes a booked resource from the member's collection, such as when the booking is archived
+     * Synchronized because the booking archiver removes bookings from another thread
+     *
+     * @param r The resource to remove
+     * @param lastDay The last day the booking was held on, as days since 1970-01-01
+     */
+    public synchronized void removeBookedResource(Resource r, long lastDay) {
+        if (bookedResources.remove(r)) eligibility.bookingRemoved(lastDay);
     }
 
     /*
      * Books a resource for the member at a specified date and time
-     * Parses and validates the date and time, creates a booking, and adds it to the resource
+     * Checks the member's eligibility, parses and validates the date and time, creates a booking, and adds it to the resource
+     * The work is done by BookingLogic.createBooking
      * Validates all parameters before processing
      *
      * @param resource The resource to book
-     * @param dateString The date string in DD/MM/YY format
+     * @param dateString The date string in DD/MM/YY or YYYY-MM-DD format
      * @param timeString The time string in HH:MM-HH:MM format
      * @return true if the booking was successful
      * @throws InvalidDateException if the date format is invalid
@@ -156,21 +214,35 @@ public class Member {
         Preconditions.checkNotNull(dateString);
         Preconditions.checkNotNull(timeString);
 
-        // parse date/time using Booking logic
-        int[] dateParts = BookingLogic.parseAndValidateDate(dateString);
-        String[] timeParts = BookingLogic.parseAndValidateTime(timeString);
-
-        Booking booking = new Booking.BookingBuilder()
-                .member(this)
-                .startTime(timeParts[0])
-                .endTime(timeParts[1])
-                .day(dateParts[0])
-                .month(dateParts[1])
-                .year(dateParts[2])
-                .build();
-
-        resource.addBooking(booking);
-        bookedResources.add(resource);
+        BookingLogic.createBooking(this, resource, dateString, timeString);
+        return true;
+    }
+
+    /*
+     * Books a resource for the member on a repeating schedule
+     * The work is done by BookingLogic.createRecurringBooking
+     *
+     * @param resource The resource to book
+     * @param firstDate The date of the first occurrence in DD/MM/YY or YYYY-MM-DD format
+     * @param lastDate The date the series ends on in DD/MM/YY or YYYY-MM-DD format
+     * @param timeString The time of each occurrence in HH:MM-HH:MM format
+     * @param frequency How often the booking repeats
+     * @return true if the booking was successful
+     * @throws InvalidDateException if either date is invalid
+     * @throws InvalidTimeFormatException if the time format is invalid
+     * @throws BookingLimitExceededException if the member has exceeded booking limits
+     * @throws TimeSlotUnavailableException if any occurrence is unavailable
+     * @throws InvalidMemberException if the member is invalid
+     */
+    public boolean bookRecurringResource(Resource resource, String firstDate, String lastDate, String timeString,
+                                         RecurringBooking.Frequency frequency)
+            throws InvalidDateException, InvalidTimeFormatException, BookingLimitExceededException,
+            TimeSlotUnavailableException, InvalidMemberException {
+
+        Preconditions.checkNotNull(resource);
+        Preconditions.checkNotNull(frequency);
+
+        BookingLogic.createRecurringBooking(this, resource, firstDate, lastDate, timeString, frequency);
         return true;
     }
-}
\ No newline at end of file
+}
@@ -6,45 +6,41 @@ import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidTimeFormatException;
 import ca.umanitoba.cs.longkuma.domain.member.Member;
 import com.google.common.base.Preconditions;
 
+import java.time.LocalDate;
+
 public class Booking {
 
+    private static final int MINUTES_PER_DAY = DateTimeCodec.MINUTES_PER_DAY;
+    private static final int FIRST_EPOCH_DAY = DateTimeCodec.epochDay(DateTimeCodec.FIRST_YEAR, 1, 1);
+
     private final Member member;
-    private final String startTime;
-    private final String endTime;
-    private final int day;
-    private final int month;
-    private final int year;
+    private final int epochDay;
+    private final short startMinute;
+    private final short endMinute;
 
     /*
      * Private constructor for Booking
-     * Initializes booking with member, time range, and date information
+     * Stores the booking in packed form: the date as days since 1970-01-01 and the times as minutes since midnight
      * Validates the booking state after construction
      *
      * @param member The member making the booking
-     * @param startTime The start time of the booking in HH:MM format
-     * @param endTime The end time of the booking in HH:MM format
-     * @param day The day of the booking (1-31)
-     * @param month The month of the booking (1-12)
-     * @param year The year of the booking
+     * @param epochDay The date of the booking as days since 1970-01-01
+     * @param startMinute The start time of the booking in minutes since midnight
+     * @param endMinute The end time of the booking in minutes since midnight
      */
-    private Booking(Member member, String startTime, String endTime,
-                    int day, int month, int year) {
+    private Booking(Member member, int epochDay, int startMinute, int endMinute) {
         this.member = member;
-        this.startTime = startTime;
-        this.endTime = endTime;
-        this.day = day;
-        this.month = month;
-        this.year = year;
+        this.epochDay = epochDay;
+        this.startMinute = (short) startMinute;
+        this.endMinute = (short) endMinute;
         checkBooking();
     }
 
     public static class BookingBuilder {
         private Member member;
-        private String startTime;
-        private String endTime;
-        private int day;
-        private int month;
-        private int year;
+        private int startMinute = -1;
+        private int endMinute = -1;
+        private int epochDay = Integer.MIN_VALUE;
 
         /*
          * Sets the member for the booking being built
@@ -60,72 +56,44 @@ public class Booking {
         }
 
         /*
-         * Sets the start time for the booking being built
-         *
-         * @param startTime The start time in HH:MM format
-         * @return BookingBuilder instance for method chaining
-         * @throws InvalidTimeFormatException if startTime is null or not in HH:MM format
-         */
-        public BookingBuilder startTime(String startTime) throws InvalidTimeFormatException {
-            if (startTime == null || startTime.length() != 5)
-                throw new InvalidTimeFormatException("Start time must be HH:MM");
-            this.startTime = startTime;
-            return this;
-        }
-
-        /*
-         * Sets the end time for the booking being built
-         *
-         * @param endTime The end time in HH:MM format
-         * @return BookingBuilder instance for method chaining
-         * @throws InvalidTimeFormatException if endTime is null or not in HH:MM format
-         */
-        public BookingBuilder endTime(String endTime) throws InvalidTimeFormatException {
-            if (endTime == null || endTime.length() != 5)
-                throw new InvalidTimeFormatException("End time must be HH:MM");
-            this.endTime = endTime;
-            return this;
-        }
-
-        /*
-         * Sets the day for the booking being built
+         * Sets the start time for the booking being built from minutes since midnight
          *
-         * @param day The day of the booking (1-31)
+         * @param startMinute The start time in minutes since midnight
          * @return BookingBuilder instance for method chaining
-         * @throws InvalidDateException if day is not between 1 and 31
+         * @throws InvalidTimeFormatException if startMinute is not within a day
          */
-        public BookingBuilder day(int day) throws InvalidDateException {
-            if (day < 1 || day > 31)
-                throw new InvalidDateException("Day must be 1–31");
-            this.day = day;
+        public BookingBuilder startMinute(int startMinute) throws InvalidTimeFormatException {
+            if (startMinute < 0 || startMinute >= MINUTES_PER_DAY)
+                throw new InvalidTimeFormatException("Start minute must be 0-1439");
+            this.startMinute = startMinute;
             return this;
         }
 
         /*
-         * Sets the month for the booking being built
+         * Sets the end time for the booking being built from minutes since midnight
          *
-         * @param month The month of the booking (1-12)
+         * @param endMinute The end time in minutes since midnight
          * @return BookingBuilder instance for method chaining
-         * @throws InvalidDateException if month is not between 1 and 12
+         * @throws InvalidTimeFormatException if endMinute is not within a day
          */
-        public BookingBuilder month(int month) throws InvalidDateException {
-            if (month < 1 || month > 12)
-                throw new InvalidDateException("Month must be 1–12");
-            this.month = month;
+        public BookingBuilder endMinute(int endMinute) throws InvalidTimeFormatException {
+            if (endMinute < 0 || endMinute >= MINUTES_PER_DAY)
+                throw new InvalidTimeFormatException("End minute must be 0-1439");
+            this.endMinute = endMinute;
             return this;
         }
 
         /*
-         * Sets the year for the booking being built
+         * Sets the date for the booking being built as days since 1970-01-01
          *
-         * @param year The year of the booking
+         * @param epochDay The date of the booking as days since 1970-01-01
          * @return BookingBuilder instance for method chaining
-         * @throws InvalidDateException if year is 2024 or earlier
+         * @throws InvalidDateException if the date is before 2025
          */
-        public BookingBuilder year(int year) throws InvalidDateException {
-            if (year <= 2024)
+        public BookingBuilder epochDay(long epochDay) throws InvalidDateException {
+            if (epochDay < FIRST_EPOCH_DAY || epochDay > Integer.MAX_VALUE)
                 throw new InvalidDateException("Year must be 2025 or later");
-            this.year = year;
+            this.epochDay = (int) epochDay;
             return this;
         }
 
@@ -135,48 +103,29 @@ public class Booking {
          * @return A new Booking object
          */
         public Booking build() {
-            return new Booking(member, startTime, endTime, day, month, year);
+            return new Booking(member, epochDay, startMinute, endMinute);
         }
     }
 
     /*
      * Validates the internal state of the Booking object
-     * Ensures all required fields are non-null and meet minimum requirements
-     * Validates time format for both start and end times
+     * Ensures the member is set, the date is 2025 or later and both times fall within a day
      */
     private void checkBooking() {
         Preconditions.checkState(member != null, "Member cannot be null.");
-        Preconditions.checkState(startTime != null && startTime.length() == 5, "Start time invalid.");
-        Preconditions.checkState(endTime != null && endTime.length() == 5, "End time invalid.");
-        Preconditions.checkState(day >= 1 && day <= 31, "Invalid day.");
-        Preconditions.checkState(month >= 1 && month <= 12, "Invalid month.");
-        Preconditions.checkState(year > 2024, "Invalid year.");
-        Preconditions.checkState(validTime(startTime), "Invalid time format for start.");
-        Preconditions.checkState(validTime(endTime), "Invalid time format for end.");
-    }
-
-    /*
-     * Validates that a time string is in correct format and within valid ranges
-     * Checks that hours are 0-23 and minutes are 0-59
-     *
-     * @param time The time string to validate in HH:MM format
-     * @return true if time is valid, false otherwise
-     */
-    private boolean validTime(String time) {
-        try {
-            int hour = Integer.parseInt(time.substring(0, 2));
-            int minute = Integer.parseInt(time.substring(3, 5));
-            return hour >= 0 && hour < 24 && minute >= 0 && minute < 60;
-        } catch (Exception e) {
-            return false;
-        }
+        Preconditions.checkState(epochDay >= FIRST_EPOCH_DAY, "Invalid date.");
+        Preconditions.checkState(startMinute >= 0 && startMinute < MINUTES_PER_DAY, "Start time invalid.");
+        Preconditions.checkState(endMinute >= 0 && endMinute < MINUTES_PER_DAY, "End time invalid.");
     }
 
     // Getters:
     public Member getMember() { return member; }
-    public String getStartTime() { return startTime; }
-    public String getEndTime() { return endTime; }
-    public int getDay() { return day; }
-    public int getMonth() { return month; }
-    public int getYear() { return year; }
-}
\ No newline at end of file
+    public String getStartTime() { return DateTimeCodec.formatTime(startMinute); }
+    public String getEndTime() { return DateTimeCodec.formatTime(endMinute); }
+    public int getDay() { return LocalDate.ofEpochDay(epochDay).getDayOfMonth(); }
+    public int getMonth() { return LocalDate.ofEpochDay(epochDay).getMonthValue(); }
+    public int getYear() { return LocalDate.ofEpochDay(epochDay).getYear(); }
+    public long getEpochDay() { return epochDay; }
+    public int getStartMinute() { return startMinute; }
+    public int getEndMinute() { return endMinute; }
+}
@@ -0,0 +1,222 @@
+package ca.umanitoba.cs.longkuma.domain.resource;
+
+public final class DateTimeCodec {
+
+    public static final int ERR_NULL = -1;
+    public static final int ERR_LENGTH = -2;
+    public static final int ERR_SEPARATOR = -3;
+    public static final int ERR_DIGIT = -4;
+    public static final int ERR_DAY = -5;
+    public static final int ERR_MONTH = -6;
+    public static final int ERR_YEAR = -7;
+    public static final int ERR_HOUR = -8;
+    public static final int ERR_MINUTE = -9;
+    public static final int ERR_RANGE = -10;
+
+    public static final int FIRST_YEAR = 2025;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final int SHORT_DATE_LENGTH = 8;
+    private static final int ISO_DATE_LENGTH = 10;
+    private static final int TIME_LENGTH = 5;
+    private static final int TIME_RANGE_LENGTH = 11;
+
+    private DateTimeCodec() {}
+
+    /*
+     * Parses a date in DD/MM/YY or ISO-8601 (YYYY-MM-DD) format straight from the characters
+     * Two-digit years are in the 2000s
+     * Nothing is allocated and no exception is thrown
+     *
+     * @param date The characters to parse
+     * @return The date as days since 1970-01-01, or a negative ERR_ code if the date is invalid
+     */
+    public static int parseDate(CharSequence date) {
+        if (date == null) return ERR_NULL;
+        int day, month, year;
+        if (date.length() == SHORT_DATE_LENGTH) {
+            if (date.charAt(2) != '/' || date.charAt(5) != '/') return ERR_SEPARATOR;
+            day = twoDigits(date, 0);
+            month = twoDigits(date, 3);
+            year = twoDigits(date, 6);
+            if (year >= 0) year += 2000;
+        } else if (date.length() == ISO_DATE_LENGTH) {
+            if (date.charAt(4) != '-' || date.charAt(7) != '-') return ERR_SEPARATOR;
+            int century = twoDigits(date, 0);
+            int yy = twoDigits(date, 2);
+            year = century < 0 || yy < 0 ? -1 : century * 100 + yy;
+            month = twoDigits(date, 5);
+            day = twoDigits(date, 8);
+        } else {
+            return ERR_LENGTH;
+        }
+
+        if (day < 0 || month < 0 || year < 0) return ERR_DIGIT;
+        if (month < 1 || month > 12) return ERR_MONTH;
+        if (year < FIRST_YEAR) return ERR_YEAR;
+        if (day < 1 || day > lengthOfMonth(year, month)) return ERR_DAY;
+        return epochDay(year, month, day);
+    }
+
+    /*
+     * Parses a time in HH:MM format at a position within a character sequence
+     * Nothing is allocated and no exception is thrown
+     *
+     * @param time The characters to parse
+     * @param at The index of the first hour digit
+     * @return The time as minutes since midnight, or a negative ERR_ code if the time is invalid
+     */
+    public static int parseTime(CharSequence time, int at) {
+        if (time == null) return ERR_NULL;
+        if (time.length() < at + TIME_LENGTH) return ERR_LENGTH;
+        if (time.charAt(at + 2) != ':') return ERR_SEPARATOR;
+        int hour = twoDigits(time, at);
+        int minute = twoDigits(time, at + 3);
+        if (hour < 0 || minute < 0) return ERR_DIGIT;
+        if (hour > 23) return ERR_HOUR;
+        if (minute > 59) return ERR_MINUTE;
+        return hour * 60 + minute;
+    }
+
+    /*
+     * Parses a time in HH:MM format
+     *
+     * @param time The characters to parse
+     * @return The time as minutes since midnight, or a negative ERR_ code if the time is invalid
+     */
+    public static int parseTime(CharSequence time) {
+        if (time != null && time.length() != TIME_LENGTH) return ERR_LENGTH;
+        return parseTime(time, 0);
+    }
+
+    /*
+     * Parses a time range in HH:MM-HH:MM format into a single packed int
+     * Use startOf and endOf to unpack the result
+     * Nothing is allocated and no exception is thrown
+     *
+     * @param range The characters to parse
+     * @return The packed start and end minutes, or a negative ERR_ code if the range is invalid or does not
+     *         end after it starts
+     */
+    public static int parseTimeRange(CharSequence range) {
+        if (range == null) return ERR_NULL;
+        if (range.length() != TIME_RANGE_LENGTH) return ERR_LENGTH;
+        if (range.charAt(5) != '-') return ERR_SEPARATOR;
+        int start = parseTime(range, 0);
+        if (start < 0) return start;
+        int end = parseTime(range, 6);
+        if (end < 0) return end;
+        if (end <= start) return ERR_RANGE;
+        return packRange(start, end);
+    }
+
+    /*
+     * Packs a start and end minute into one int
+     *
+     * @param startMinute The start of the range in minutes since midnight
+     * @param endMinute The end of the range in minutes since midnight
+     * @return The packed range
+     */
+    public static int packRange(int startMinute, int endMinute) {
+        return (startMinute << 16) | endMinute;
+    }
+
+    // Unpacking:
+    public static int startOf(int packedRange) { return packedRange >>> 16; }
+    public static int endOf(int packedRange) { return packedRange & 0xFFFF; }
+    public static boolean isError(int result) { return result < 0; }
+    public static boolean isFormatError(int result) { return result < 0 && result >= ERR_DIGIT; }
+
+    /*
+     * Returns a fixed description of an error code
+     *
+     * @param code A negative ERR_ code returned by one of the parse methods
+     * @return A description of the error
+     */
+    public static String errorMessage(int code) {
+        return switch (code) {
+            case ERR_NULL -> "Value is missing";
+            case ERR_LENGTH -> "Wrong length";
+            case ERR_SEPARATOR -> "Wrong separators";
+            case ERR_DIGIT -> "Invalid digits";
+            case ERR_DAY -> "Day out of range";
+            case ERR_MONTH -> "Month out of range";
+            case ERR_YEAR -> "Year must be " + FIRST_YEAR + "+";
+            case ERR_HOUR -> "Hour out of range";
+            case ERR_MINUTE -> "Minute out of range";
+            case ERR_RANGE -> "End time must be after start time";
+            default -> "Unknown error";
+        };
+    }
+
+    /*
+     * Appends minutes since midnight to a builder in HH:MM format
+     *
+     * @param out The builder to append to
+     * @param minutes The number of minutes since midnight
+     * @return The same builder for chaining
+     */
+    public static StringBuilder appendTime(StringBuilder out, int minutes) {
+        int hour = minutes / 60;
+        int minute = minutes % 60;
+        return out.append((char) ('0' + hour / 10)).append((char) ('0' + hour % 10)).append(':')
+                .append((char) ('0' + minute / 10)).append((char) ('0' + minute % 10));
+    }
+
+    /*
+     * Formats minutes since midnight in HH:MM format
+     *
+     * @param minutes The number of minutes since midnight
+     * @return The time in HH:MM format
+     */
+    public static String formatTime(int minutes) {
+        return appendTime(new StringBuilder(TIME_LENGTH), minutes).toString();
+    }
+
+    /*
+     * Converts a calendar date into days since 1970-01-01
+     * Uses the days-from-civil algorithm so no date object is created
+     *
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day of the month
+     * @return The number of days since 1970-01-01
+     */
+    public static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /*
+     * Returns the number of days in a month
+     *
+     * @param year The year, used to check for leap years
+     * @param month The month (1-12)
+     * @return The number of days in the month
+     */
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /*
+     * Reads two decimal digits
+     *
+     * @param s The characters to read from
+     * @param at The index of the first digit
+     * @return The two-digit value, or -1 if either character is not a digit
+     */
+    private static int twoDigits(CharSequence s, int at) {
+        int tens = s.charAt(at) - '0';
+        int ones = s.charAt(at + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) return -1;
+        return tens * 10 + ones;
+    }
+}
@@ -0,0 +1,216 @@
+package ca.umanitoba.cs.longkuma.domain.resource;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMemberException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidTimeFormatException;
+import ca.umanitoba.cs.longkuma.domain.member.Member;
+import com.google.common.base.Preconditions;
+
+import java.util.TreeSet;
+
+public class RecurringBooking {
+
+    public enum Frequency {
+        DAILY(1),
+        WEEKLY(7);
+
+        private final int stepDays;
+
+        Frequency(int stepDays) {
+            this.stepDays = stepDays;
+        }
+
+        public int getStepDays() { return stepDays; }
+    }
+
+    private static final int FIRST_EPOCH_DAY = DateTimeCodec.epochDay(DateTimeCodec.FIRST_YEAR, 1, 1);
+
+    private final Member member;
+    private final Frequency frequency;
+    private final int firstDay;
+    private final int lastDay;
+    private final short startMinute;
+    private final short endMinute;
+    private final TreeSet<Integer> exceptions;
+
+    /*
+     * Private constructor for RecurringBooking
+     * The series is stored once as a rule; occurrences are worked out when they are asked for
+     *
+     * @param builder The RecurringBookingBuilder containing configuration parameters
+     */
+    private RecurringBooking(RecurringBookingBuilder builder) {
+        this.member = builder.member;
+        this.frequency = builder.frequency;
+        this.firstDay = builder.firstDay;
+        this.lastDay = builder.lastDay;
+        this.startMinute = (short) builder.startMinute;
+        this.endMinute = (short) builder.endMinute;
+        this.exceptions = new TreeSet<>();
+        checkRecurringBooking();
+    }
+
+    public static class RecurringBookingBuilder {
+        private Member member;
+        private Frequency frequency = Frequency.WEEKLY;
+        private int firstDay = Integer.MIN_VALUE;
+        private int lastDay = Integer.MIN_VALUE;
+        private int startMinute = -1;
+        private int endMinute = -1;
+
+        /*
+         * Sets the member for the series being built
+         *
+         * @param member The member making the booking
+         * @return RecurringBookingBuilder instance for method chaining
+         * @throws InvalidMemberException if member is null
+         */
+        public RecurringBookingBuilder member(Member member) throws InvalidMemberException {
+            if (member == null) throw new InvalidMemberException("Member cannot be null");
+            this.member = member;
+            return this;
+        }
+
+        /*
+         * Sets how often the booking repeats
+         *
+         * @param frequency DAILY or WEEKLY
+         * @return RecurringBookingBuilder instance for method chaining
+         */
+        public RecurringBookingBuilder frequency(Frequency frequency) {
+            this.frequency = frequency;
+            return this;
+        }
+
+        /*
+         * Sets the date of the first occurrence as days since 1970-01-01
+         *
+         * @param epochDay The first date of the series
+         * @return RecurringBookingBuilder instance for method chaining
+         * @throws InvalidDateException if the date is before 2025
+         */
+        public RecurringBookingBuilder firstDay(long epochDay) throws InvalidDateException {
+            if (epochDay < FIRST_EPOCH_DAY || epochDay > Integer.MAX_VALUE)
+                throw new InvalidDateException("Year must be " + DateTimeCodec.FIRST_YEAR + " or later");
+            this.firstDay = (int) epochDay;
+            return this;
+        }
+
+        /*
+         * Sets the date the series ends on as days since 1970-01-01
+         * The end date is inclusive and does not have to fall on an occurrence
+         *
+         * @param epochDay The last date of the series
+         * @return RecurringBookingBuilder instance for method chaining
+         * @throws InvalidDateException if the date is before 2025
+         */
+        public RecurringBookingBuilder lastDay(long epochDay) throws InvalidDateException {
+            if (epochDay < FIRST_EPOCH_DAY || epochDay > Integer.MAX_VALUE)
+                throw new InvalidDateException("Year must be " + DateTimeCodec.FIRST_YEAR + " or later");
+            this.lastDay = (int) epochDay;
+            return this;
+        }
+
+        /*
+         * Sets the time of day each occurrence starts and ends
+         *
+         * @param startMinute The start time in minutes since midnight
+         * @param endMinute The end time in minutes since midnight
+         * @return RecurringBookingBuilder instance for method chaining
+         * @throws InvalidTimeFormatException if either time is not within a day
+         */
+        public RecurringBookingBuilder minutes(int startMinute, int endMinute) throws InvalidTimeFormatException {
+            if (startMinute < 0 || startMinute >= DateTimeCodec.MINUTES_PER_DAY
+                    || endMinute < 0 || endMinute >= DateTimeCodec.MINUTES_PER_DAY)
+                throw new InvalidTimeFormatException("Minutes must be 0-1439");
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new RecurringBooking instance with configured parameters
+         *
+         * @return A new RecurringBooking object
+         */
+        public RecurringBooking build() {
+            return new RecurringBooking(this);
+        }
+    }
+
+    /*
+     * Checks whether the series has an occurrence on a day
+     *
+     * @param epochDay The day to check, as days since 1970-01-01
+     * @return true if the day is in range, on the series' step and not an exception, false otherwise
+     */
+    public boolean occursOn(long epochDay) {
+        if (epochDay < firstDay || epochDay > lastDay) return false;
+        if ((epochDay - firstDay) % frequency.stepDays != 0) return false;
+        return !exceptions.contains((int) epochDay);
+    }
+
+    /*
+     * Finds the first occurrence on or after a day
+     *
+     * @param fromDay The day to start from, as days since 1970-01-01
+     * @return The day of the next occurrence, or -1 if the series has no more occurrences
+     */
+    public long nextOccurrence(long fromDay) {
+        long day = Math.max(fromDay, firstDay);
+        long offset = (day - firstDay) % frequency.stepDays;
+        if (offset != 0) day += frequency.stepDays - offset;
+        while (day <= lastDay) {
+            if (!exceptions.contains((int) day)) return day;
+            day += frequency.stepDays;
+        }
+        return -1;
+    }
+
+    /*
+     * Checks whether an occurrence of the series would overlap a time range on the same day
+     *
+     * @param startMinute The start of the range in minutes since midnight
+     * @param endMinute The end of the range in minutes since midnight
+     * @return true if the ranges overlap, false otherwise
+     */
+    public boolean overlapsTime(int startMinute, int endMinute) {
+        return startMinute < this.endMinute && this.startMinute < endMinute;
+    }
+
+    /*
+     * Skips a single occurrence of the series, for example a holiday
+     * Package-private so exceptions are only added through the resource that owns the series
+     *
+     * @param epochDay The day of the occurrence to skip
+     * @return true if an occurrence was skipped, false if there was none on that day
+     */
+    boolean addException(long epochDay) {
+        if (!occursOn(epochDay)) return false;
+        return exceptions.add((int) epochDay);
+    }
+
+    /*
+     * Validates the internal state of the RecurringBooking object
+     * Ensures the member and frequency are set, the series ends on or after its first day,
+     * and each occurrence ends after it starts
+     */
+    private void checkRecurringBooking() {
+        Preconditions.checkState(member != null, "Member cannot be null.");
+        Preconditions.checkState(frequency != null, "Frequency cannot be null.");
+        Preconditions.checkState(firstDay >= FIRST_EPOCH_DAY, "Series needs a first date.");
+        Preconditions.checkState(lastDay >= firstDay, "Series cannot end before it starts.");
+        Preconditions.checkState(startMinute >= 0 && endMinute > startMinute, "Series needs a time range.");
+        Preconditions.checkState(exceptions != null);
+    }
+
+    // Getters:
+    public Member getMember() { return member; }
+    public Frequency getFrequency() { return frequency; }
+    public long getFirstDay() { return firstDay; }
+    public long getLastDay() { return lastDay; }
+    public int getStartMinute() { return startMinute; }
+    public int getEndMinute() { return endMinute; }
+    public String getStartTime() { return DateTimeCodec.formatTime(startMinute); }
+    public String getEndTime() { return DateTimeCodec.formatTime(endMinute); }
+}
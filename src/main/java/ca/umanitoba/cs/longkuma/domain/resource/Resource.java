@@ -1,9 +1,16 @@
 package ca.umanitoba.cs.longkuma.domain.resource;
 
+import ca.umanitoba.cs.longkuma.domain.exceptions.TimeSlotUnavailableException;
 import com.google.common.base.Preconditions;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public class Resource {
@@ -15,11 +22,15 @@ public class Resource {
     private final int timeslotLength;
     private final List<int[]> coordinates;
     private final List<Booking> bookings;
+    private final List<RecurringBooking> series;
+    private final HashMap<Long, SlotBitmap> schedule;
+    private final int openingMinute;
+    private final int closingMinute;
 
     /*
      * Private constructor for Resource
      * Initializes resource with builder parameters and generates a unique ID
-     * Creates an empty bookings list
+     * Creates empty bookings and recurring series lists and an empty per-day slot schedule
      *
      * @param builder The ResourceBuilder containing configuration parameters
      */
@@ -31,6 +42,10 @@ public class Resource {
         this.timeslotLength = builder.timeslotLength;
         this.coordinates = builder.coordinates;
         this.bookings = new ArrayList<>();
+        this.series = new ArrayList<>();
+        this.schedule = new HashMap<>();
+        this.openingMinute = DateTimeCodec.parseTime(openingTime);
+        this.closingMinute = DateTimeCodec.parseTime(closingTime);
         checkResource();
     }
 
@@ -131,27 +146,312 @@ public class Resource {
         return coordinates;
     }
 
-    public List<Booking> getBookings() {
-        return bookings;
+    /*
+     * Returns a snapshot of the bookings on this resource
+     * A copy is returned because the booking archiver may remove bookings from another thread
+     *
+     * @return A new list holding the resource's current bookings
+     */
+    public synchronized List<Booking> getBookings() {
+        return new ArrayList<>(bookings);
+    }
+
+    /*
+     * Returns a snapshot of the recurring series booked on this resource
+     *
+     * @return A new list holding the resource's recurring series
+     */
+    public synchronized List<RecurringBooking> getRecurringBookings() {
+        return new ArrayList<>(series);
+    }
+
+    /*
+     * Returns the number of timeslots between opening and closing time
+     *
+     * @return The number of bookable timeslots in a day
+     */
+    public int getSlotCount() {
+        return (closingMinute - openingMinute) / timeslotLength;
     }
 
     /*
      * Adds a booking to this resource's collection
+     * Marks the timeslots the booking covers in that day's slot bitmap, which is only created once the booking is accepted
+     * Occurrences of recurring series on that day also count as taken
+     * Booking methods synchronize on the resource so the booking archiver can remove old bookings safely
      *
      * @param booking The booking to add
+     * @throws TimeSlotUnavailableException if the booking overlaps a timeslot that is already taken
      */
-    public void addBooking(Booking booking) {
+    public synchronized void addBooking(Booking booking) throws TimeSlotUnavailableException {
         checkResource();
+        Preconditions.checkNotNull(booking, "Booking cannot be null");
+
+        int[] slots = slotRange(booking.getStartMinute(), booking.getEndMinute());
+        SlotBitmap day = schedule.get(booking.getEpochDay());
+        if ((day != null && !day.isFree(slots[0], slots[1]))
+                || seriesOverlapping(booking.getEpochDay(), booking.getStartMinute(), booking.getEndMinute()) != null) {
+            throw new TimeSlotUnavailableException(booking.getStartTime() + "-" + booking.getEndTime() + " is already booked");
+        }
+        if (day == null) {
+            day = new SlotBitmap(getSlotCount());
+            schedule.put(booking.getEpochDay(), day);
+        }
+        day.mark(slots[0], slots[1]);
         bookings.add(booking);
     }
 
+    /*
+     * Adds a recurring series to this resource
+     * The series is stored once; its occurrences are checked against one-off bookings already in the schedule
+     * and against the occurrences of every other series
+     *
+     * @param recurring The series to add
+     * @throws TimeSlotUnavailableException if any occurrence overlaps an existing booking
+     */
+    public synchronized void addRecurringBooking(RecurringBooking recurring) throws TimeSlotUnavailableException {
+        checkResource();
+        Preconditions.checkNotNull(recurring, "Recurring booking cannot be null");
+
+        int[] slots = slotRange(recurring.getStartMinute(), recurring.getEndMinute());
+        for (Map.Entry<Long, SlotBitmap> day : schedule.entrySet()) {
+            if (recurring.occursOn(day.getKey()) && !day.getValue().isFree(slots[0], slots[1])) {
+                throw new TimeSlotUnavailableException(recurring.getStartTime() + "-" + recurring.getEndTime()
+                        + " is already booked on " + LocalDate.ofEpochDay(day.getKey()));
+            }
+        }
+        for (RecurringBooking other : series) {
+            long clash = firstSharedOccurrence(recurring, other);
+            if (clash >= 0) {
+                throw new TimeSlotUnavailableException(recurring.getStartTime() + "-" + recurring.getEndTime()
+                        + " is already booked on " + LocalDate.ofEpochDay(clash));
+            }
+        }
+        series.add(recurring);
+    }
+
+    /*
+     * Skips one occurrence of a recurring series on this resource, freeing its timeslots for that day
+     *
+     * @param recurring The series to skip an occurrence of
+     * @param epochDay The day of the occurrence, as days since 1970-01-01
+     * @return true if an occurrence was skipped, false if the series is not on this resource or has no occurrence that day
+     */
+    public synchronized boolean skipOccurrence(RecurringBooking recurring, long epochDay) {
+        checkResource();
+        return series.contains(recurring) && recurring.addException(epochDay);
+    }
+
+    /*
+     * Lists the bookings on this resource that fall before a given day
+     *
+     * @param epochDay The first day to keep, as days since 1970-01-01
+     * @return A new list of the bookings dated before that day
+     */
+    public synchronized List<Booking> getBookingsBefore(long epochDay) {
+        List<Booking> before = new ArrayList<>();
+        for (Booking booking : bookings) {
+            if (booking.getEpochDay() < epochDay) before.add(booking);
+        }
+        return before;
+    }
+
+    /*
+     * Removes bookings from this resource and frees the timeslots they held
+     * Days left with no bookings are dropped from the schedule, and each booking stops counting towards
+     * its member's booking limit; members are told after the resource's lock is released
+     * Bookings that are not on this resource are ignored
+     *
+     * @param removed The bookings to remove
+     * @return The number of bookings that were removed
+     */
+    public int removeBookings(Collection<Booking> removed) {
+        List<Booking> gone = new ArrayList<>();
+        synchronized (this) {
+            checkResource();
+            Set<Booking> toRemove = new HashSet<>(removed);
+            bookings.removeIf(booking -> {
+                if (!toRemove.contains(booking)) return false;
+                SlotBitmap day = schedule.get(booking.getEpochDay());
+                if (day != null) {
+                    int[] slots = slotRange(booking.getStartMinute(), booking.getEndMinute());
+                    day.clear(slots[0], slots[1]);
+                    if (day.isEmpty()) schedule.remove(booking.getEpochDay());
+                }
+                gone.add(booking);
+                return true;
+            });
+        }
+        for (Booking booking : gone) booking.getMember().removeBookedResource(this, booking.getEpochDay());
+        return gone.size();
+    }
+
+    /*
+     * Checks whether a time range falls within the resource's opening hours
+     *
+     * @param startMinute The start of the range in minutes since midnight
+     * @param endMinute The end of the range in minutes since midnight
+     * @return true if the resource is open for the whole range, false otherwise
+     */
+    public boolean isOpen(int startMinute, int endMinute) {
+        return startMinute >= openingMinute && endMinute <= closingMinute && startMinute < endMinute;
+    }
+
+    /*
+     * Checks whether a time range on a day is free
+     *
+     * @param epochDay The day to check, as days since 1970-01-01
+     * @param startMinute The start of the range in minutes since midnight
+     * @param endMinute The end of the range in minutes since midnight
+     * @return true if none of the timeslots the range covers are booked or held by a recurring series, false otherwise
+     */
+    public synchronized boolean isFree(long epochDay, int startMinute, int endMinute) {
+        checkResource();
+        if (seriesOverlapping(epochDay, startMinute, endMinute) != null) return false;
+        SlotBitmap day = schedule.get(epochDay);
+        if (day == null) return true;
+        int[] slots = slotRange(startMinute, endMinute);
+        return day.isFree(slots[0], slots[1]);
+    }
+
+    /*
+     * Finds the first run of contiguous free timeslots on a day
+     *
+     * @param epochDay The day to search, as days since 1970-01-01
+     * @param slotsNeeded The number of contiguous timeslots needed
+     * @return The run as {startMinute, endMinute}, or null if no run is long enough
+     */
+    public synchronized int[] findFirstFreeRun(long epochDay, int slotsNeeded) {
+        checkResource();
+        Preconditions.checkArgument(slotsNeeded >= 1, "At least one timeslot is needed");
+        int slotCount = getSlotCount();
+        SlotBitmap day = occupancy(epochDay);
+        int start = day == null ? (slotsNeeded <= slotCount ? 0 : -1) : day.findFreeRun(slotsNeeded, 0);
+        if (start < 0) return null;
+        return new int[]{slotToMinute(start), slotToMinute(start + slotsNeeded)};
+    }
+
+    /*
+     * Lists every maximal run of free timeslots on a day that is at least a given length
+     *
+     * @param epochDay The day to search, as days since 1970-01-01
+     * @param slotsNeeded The minimum number of contiguous timeslots in each run
+     * @return A list of runs as {startMinute, endMinute}, in time order
+     */
+    public synchronized List<int[]> findFreeRanges(long epochDay, int slotsNeeded) {
+        checkResource();
+        Preconditions.checkArgument(slotsNeeded >= 1, "At least one timeslot is needed");
+        int slotCount = getSlotCount();
+        SlotBitmap day = occupancy(epochDay);
+        if (day == null) day = new SlotBitmap(slotCount);
+
+        List<int[]> ranges = new ArrayList<>();
+        int start = day.findFreeRun(slotsNeeded, 0);
+        while (start >= 0) {
+            int end = day.nextTaken(start);
+            ranges.add(new int[]{slotToMinute(start), slotToMinute(end)});
+            start = day.findFreeRun(slotsNeeded, end);
+        }
+        return ranges;
+    }
+
+    /*
+     * Builds the taken timeslots of a day, expanding any recurring series that occur on it
+     * When no series occurs that day the stored bitmap is returned as is
+     *
+     * @param epochDay The day, as days since 1970-01-01
+     * @return The taken slots of the day, or null if nothing is booked that day
+     */
+    private SlotBitmap occupancy(long epochDay) {
+        SlotBitmap day = schedule.get(epochDay);
+        SlotBitmap merged = null;
+        for (RecurringBooking recurring : series) {
+            if (!recurring.occursOn(epochDay)) continue;
+            if (merged == null) {
+                merged = new SlotBitmap(getSlotCount());
+                if (day != null) merged.or(day);
+            }
+            int[] slots = slotRange(recurring.getStartMinute(), recurring.getEndMinute());
+            merged.mark(slots[0], slots[1]);
+        }
+        return merged != null ? merged : day;
+    }
+
+    /*
+     * Finds a recurring series with an occurrence that overlaps a time range on a day
+     *
+     * @param epochDay The day, as days since 1970-01-01
+     * @param startMinute The start of the range in minutes since midnight
+     * @param endMinute The end of the range in minutes since midnight
+     * @return The overlapping series, or null if there is none
+     */
+    private RecurringBooking seriesOverlapping(long epochDay, int startMinute, int endMinute) {
+        int[] slots = slotRange(startMinute, endMinute);
+        for (RecurringBooking recurring : series) {
+            if (!recurring.occursOn(epochDay)) continue;
+            int[] taken = slotRange(recurring.getStartMinute(), recurring.getEndMinute());
+            if (slots[0] < taken[1] && taken[0] < slots[1]) return recurring;
+        }
+        return null;
+    }
+
+    /*
+     * Finds the first day two recurring series both occur on with overlapping timeslots
+     * Steps through the occurrences of the sparser series only, so the cost is bounded by the overlap of their date ranges
+     *
+     * @param a The first series
+     * @param b The second series
+     * @return The first shared day, or -1 if the series never clash
+     */
+    private long firstSharedOccurrence(RecurringBooking a, RecurringBooking b) {
+        int[] slotsA = slotRange(a.getStartMinute(), a.getEndMinute());
+        int[] slotsB = slotRange(b.getStartMinute(), b.getEndMinute());
+        if (slotsA[0] >= slotsB[1] || slotsB[0] >= slotsA[1]) return -1;
+
+        RecurringBooking sparse = a.getFrequency().getStepDays() >= b.getFrequency().getStepDays() ? a : b;
+        RecurringBooking dense = sparse == a ? b : a;
+        long last = Math.min(a.getLastDay(), b.getLastDay());
+        long day = sparse.nextOccurrence(Math.max(a.getFirstDay(), b.getFirstDay()));
+        while (day >= 0 && day <= last) {
+            if (dense.occursOn(day)) return day;
+            day = sparse.nextOccurrence(day + 1);
+        }
+        return -1;
+    }
+
+    /*
+     * Converts a time range into the range of timeslots it touches, clamped to opening hours
+     *
+     * @param startMinute The start of the range in minutes since midnight
+     * @param endMinute The end of the range in minutes since midnight
+     * @return The slots as {firstSlot, endSlot} with endSlot exclusive
+     */
+    private int[] slotRange(int startMinute, int endMinute) {
+        int slotCount = getSlotCount();
+        int first = Math.floorDiv(startMinute - openingMinute, timeslotLength);
+        int end = Math.floorDiv(endMinute - openingMinute + timeslotLength - 1, timeslotLength);
+        first = Math.max(0, Math.min(first, slotCount));
+        end = Math.max(first, Math.min(end, slotCount));
+        return new int[]{first, end};
+    }
+
+    /*
+     * Converts a timeslot index into the minute of the day it starts at
+     *
+     * @param slot The timeslot index
+     * @return The start of the timeslot in minutes since midnight
+     */
+    private int slotToMinute(int slot) {
+        return openingMinute + slot * timeslotLength;
+    }
+
     /*
      * Checks if this resource is available for booking
      *
-     * @return true if the resource has no bookings, false otherwise
+     * @return true if the resource has no bookings or recurring series, false otherwise
      */
-    public boolean isBookable() {
-        return bookings.isEmpty();
+    public synchronized boolean isBookable() {
+        return bookings.isEmpty() && series.isEmpty();
     }
 
     private void checkResource() {
@@ -161,6 +461,10 @@ public class Resource {
         Preconditions.checkState(timeslotLength > 0);
         Preconditions.checkState(coordinates != null);
         Preconditions.checkState(bookings != null);
+        Preconditions.checkState(series != null);
+        Preconditions.checkState(schedule != null);
+        Preconditions.checkState(openingMinute >= 0 && closingMinute > openingMinute,
+                "Opening and closing times must be HH:MM with closing after opening");
     }
 
 
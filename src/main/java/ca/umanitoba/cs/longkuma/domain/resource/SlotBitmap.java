@@ -0,0 +1,183 @@
+package ca.umanitoba.cs.longkuma.domain.resource;
+
+import com.google.common.base.Preconditions;
+
+public class SlotBitmap {
+
+    private static final int WORD_BITS = 64;
+
+    private final int slotCount;
+    private final long[] words;
+
+    /*
+     * Constructs an empty SlotBitmap where every slot is free
+     *
+     * @param slotCount The number of timeslots in the day
+     */
+    public SlotBitmap(int slotCount) {
+        Preconditions.checkArgument(slotCount >= 0, "Slot count cannot be negative");
+        this.slotCount = slotCount;
+        this.words = new long[(slotCount + WORD_BITS - 1) / WORD_BITS];
+        checkSlotBitmap();
+    }
+
+    // Getters:
+    public int getSlotCount() { return slotCount; }
+
+    /*
+     * Checks whether every slot in a range is free
+     *
+     * @param from The first slot in the range (inclusive)
+     * @param to The end of the range (exclusive)
+     * @return true if no slot in the range is taken, false otherwise
+     */
+    public boolean isFree(int from, int to) {
+        checkRange(from, to);
+        if (from == to) return true;
+        int first = from / WORD_BITS;
+        int last = (to - 1) / WORD_BITS;
+        for (int w = first; w <= last; w++) {
+            if ((words[w] & rangeMask(w, from, to)) != 0) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Marks every slot in a range as taken
+     *
+     * @param from The first slot in the range (inclusive)
+     * @param to The end of the range (exclusive)
+     */
+    public void mark(int from, int to) {
+        checkRange(from, to);
+        if (from == to) return;
+        for (int w = from / WORD_BITS; w <= (to - 1) / WORD_BITS; w++) {
+            words[w] |= rangeMask(w, from, to);
+        }
+    }
+
+    /*
+     * Marks every slot in a range as free
+     *
+     * @param from The first slot in the range (inclusive)
+     * @param to The end of the range (exclusive)
+     */
+    public void clear(int from, int to) {
+        checkRange(from, to);
+        if (from == to) return;
+        for (int w = from / WORD_BITS; w <= (to - 1) / WORD_BITS; w++) {
+            words[w] &= ~rangeMask(w, from, to);
+        }
+    }
+
+    /*
+     * Marks every slot that is taken in another bitmap as taken in this one
+     *
+     * @param other A bitmap with the same number of slots
+     */
+    public void or(SlotBitmap other) {
+        Preconditions.checkArgument(other.slotCount == slotCount, "Bitmaps must have the same slot count");
+        for (int w = 0; w < words.length; w++) {
+            words[w] |= other.words[w];
+        }
+    }
+
+    /*
+     * Checks whether no slot in the day is taken
+     *
+     * @return true if every slot is free, false otherwise
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Finds the first free slot at or after a given slot
+     * Skips a whole word of taken slots at a time
+     *
+     * @param from The slot to start searching from
+     * @return The index of the next free slot, or slotCount if there is none
+     */
+    public int nextFree(int from) {
+        if (from >= slotCount) return slotCount;
+        int w = from / WORD_BITS;
+        long free = ~words[w] & (-1L << from);
+        while (free == 0) {
+            if (++w == words.length) return slotCount;
+            free = ~words[w];
+        }
+        return Math.min(w * WORD_BITS + Long.numberOfTrailingZeros(free), slotCount);
+    }
+
+    /*
+     * Finds the first taken slot at or after a given slot
+     * Skips a whole word of free slots at a time
+     *
+     * @param from The slot to start searching from
+     * @return The index of the next taken slot, or slotCount if there is none
+     */
+    public int nextTaken(int from) {
+        if (from >= slotCount) return slotCount;
+        int w = from / WORD_BITS;
+        long taken = words[w] & (-1L << from);
+        while (taken == 0) {
+            if (++w == words.length) return slotCount;
+            taken = words[w];
+        }
+        return Math.min(w * WORD_BITS + Long.numberOfTrailingZeros(taken), slotCount);
+    }
+
+    /*
+     * Finds the first run of contiguous free slots of at least a given length
+     * Jumps between the edges of free and taken runs instead of testing slots one by one
+     *
+     * @param length The number of contiguous free slots needed
+     * @param from The slot to start searching from
+     * @return The first slot of the run, or -1 if no run is long enough
+     */
+    public int findFreeRun(int length, int from) {
+        Preconditions.checkArgument(length >= 1, "Run length must be at least 1");
+        int start = nextFree(Math.max(from, 0));
+        while (start + length <= slotCount) {
+            int end = nextTaken(start);
+            if (end - start >= length) return start;
+            start = nextFree(end);
+        }
+        return -1;
+    }
+
+    /*
+     * Builds the mask of bits in one word that fall within a slot range
+     *
+     * @param w The index of the word
+     * @param from The first slot in the range (inclusive)
+     * @param to The end of the range (exclusive)
+     * @return A mask with the range's bits in that word set
+     */
+    private static long rangeMask(int w, int from, int to) {
+        int lo = Math.max(from - w * WORD_BITS, 0);
+        int hi = Math.min(to - w * WORD_BITS, WORD_BITS);
+        long mask = -1L << lo;
+        if (hi < WORD_BITS) mask &= (1L << hi) - 1;
+        return mask;
+    }
+
+    /*
+     * Validates a slot range against the size of the bitmap
+     *
+     * @param from The first slot in the range (inclusive)
+     * @param to The end of the range (exclusive)
+     */
+    private void checkRange(int from, int to) {
+        Preconditions.checkArgument(from >= 0 && from <= to && to <= slotCount,
+                "Slot range [" + from + ", " + to + ") is outside 0-" + slotCount);
+    }
+
+    private void checkSlotBitmap() {
+        Preconditions.checkState(slotCount >= 0);
+        Preconditions.checkState(words != null && words.length * WORD_BITS >= slotCount);
+    }
+}
@@ -0,0 +1,483 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.BookingLimitExceededException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidBookingDurationException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidBookingFormatException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMemberException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidTimeFormatException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.TimeSlotUnavailableException;
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
+import ca.umanitoba.cs.longkuma.domain.member.Member;
+import ca.umanitoba.cs.longkuma.domain.resource.RecurringBooking;
+import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import ca.umanitoba.cs.longkuma.logic.media.MediaBorrowingLogic;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+public class BatchRunner {
+
+    public static final String DEFAULT_DUE_TIME = "12:00";
+    public static final String DEFAULT_DUE_DATE = "01/01/30";
+
+    private static final String FIELD_SEPARATOR = "\\|";
+    private static final String COMMENT = "#";
+    private static final String LOG_HEADER = "line\tcommand\tstatus\tmessage\n";
+    private static final String NO_FREQUENCY = "NONE";
+
+    /*
+     * The operations a batch can run, with the number of fields each takes after the command name
+     */
+    public enum Command {
+        REGISTER(2, 2),
+        BORROW(3, 4),
+        RETURN(2, 2),
+        BOOK(5, 7);
+
+        private final int minFields;
+        private final int maxFields;
+
+        Command(int minFields, int maxFields) {
+            this.minFields = minFields;
+            this.maxFields = maxFields;
+        }
+
+        public int getMinFields() { return minFields; }
+        public int getMaxFields() { return maxFields; }
+    }
+
+    /*
+     * How a command ended: OK when it took effect, WAITLISTED when a borrow joined the waitlist,
+     * FAILED when the library refused it, and INVALID when the line could not be read as a command
+     */
+    public enum Status { OK, WAITLISTED, FAILED, INVALID }
+
+    private final LibrarySystem libSystem;
+    private final String dueTime;
+    private final String dueDate;
+    private final HashMap<Library, HashMap<String, Media>> mediaByTitle;
+    private final HashMap<Library, List<Media>> indexedMedia;
+    private final HashMap<Library, HashMap<String, Resource>> resourcesByName;
+
+    /*
+     * Private constructor for BatchRunner
+     *
+     * @param builder The RunnerBuilder containing configuration parameters
+     */
+    private BatchRunner(RunnerBuilder builder) {
+        this.libSystem = builder.libSystem;
+        this.dueTime = builder.dueTime;
+        this.dueDate = builder.dueDate;
+        this.mediaByTitle = new HashMap<>();
+        this.indexedMedia = new HashMap<>();
+        this.resourcesByName = new HashMap<>();
+        checkBatchRunner();
+    }
+
+    public static class RunnerBuilder {
+        private LibrarySystem libSystem;
+        private String dueTime = DEFAULT_DUE_TIME;
+        private String dueDate = DEFAULT_DUE_DATE;
+
+        /*
+         * Sets the library system the commands are run against
+         *
+         * @param libSystem The library system
+         * @return RunnerBuilder instance for method chaining
+         */
+        public RunnerBuilder libSystem(LibrarySystem libSystem) {
+            this.libSystem = libSystem;
+            return this;
+        }
+
+        /*
+         * Sets the due date given to borrows that do not name one
+         *
+         * @param dueTime The time the media is due back in HH:MM format
+         * @param dueDate The date the media is due back in DD/MM/YY format
+         * @return RunnerBuilder instance for method chaining
+         */
+        public RunnerBuilder due(String dueTime, String dueDate) {
+            this.dueTime = dueTime;
+            this.dueDate = dueDate;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new BatchRunner instance with configured parameters
+         *
+         * @return A new BatchRunner object
+         */
+        public BatchRunner build() {
+            return new BatchRunner(this);
+        }
+    }
+
+    /*
+     * Runs every command read from a batch, one line at a time, and writes one result line per command
+     * Each line holds a command and its fields separated by '|':
+     *   REGISTER|name|password
+     *   BORROW|member|library|title[|dueDate]
+     *   RETURN|member|title
+     *   BOOK|member|library|resource|date|time[|NONE, DAILY or WEEKLY|lastDate]
+     * A BOOK that repeats DAILY or WEEKLY needs its last date; one that does not repeat cannot have one.
+     * Blank lines and lines starting with '#' are skipped. Commands run in order, as a member at the
+     * kiosk would, so a later line sees the effect of an earlier one; a line that fails is logged and
+     * the batch carries on. The log is tab-separated, with a header, the line number, command, status
+     * and message of each command.
+     *
+     * @param commands The batch to read
+     * @param log Where to write the results
+     * @return The counts and timings of the run
+     * @throws IOException if the batch cannot be read or the log cannot be written
+     */
+    public BatchReport run(Reader commands, Writer log) throws IOException {
+        checkBatchRunner();
+        BufferedReader reader = new BufferedReader(commands);
+        BatchReport report = new BatchReport();
+        StringBuilder entry = new StringBuilder();
+        log.write(LOG_HEADER);
+
+        long started = System.nanoTime();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith(COMMENT)) continue;
+
+            String[] fields = trimmed.split(FIELD_SEPARATOR, -1);
+            for (int i = 0; i < fields.length; i++) fields[i] = fields[i].trim();
+            Command command = parseCommand(fields[0]);
+
+            long commandStarted = System.nanoTime();
+            Result result;
+            if (command == null) {
+                result = new Result(Status.INVALID, "Unknown command");
+            } else if (fields.length - 1 < command.getMinFields() || fields.length - 1 > command.getMaxFields()) {
+                result = new Result(Status.INVALID, "Expected " + arity(command) + " fields, found " + (fields.length - 1));
+            } else {
+                result = execute(command, fields);
+            }
+            report.record(command, result.status, System.nanoTime() - commandStarted);
+
+            entry.setLength(0);
+            entry.append(lineNumber).append('\t').append(fields[0].toUpperCase(Locale.ROOT)).append('\t')
+                    .append(result.status).append('\t').append(clean(result.message)).append('\n');
+            log.append(entry);
+        }
+        report.elapsedNanos = System.nanoTime() - started;
+        log.flush();
+
+        checkBatchRunner();
+        return report;
+    }
+
+    /*
+     * Runs one command whose fields have been counted
+     *
+     * @param command The command
+     * @param fields The command name followed by its fields
+     * @return The outcome of the command
+     */
+    private Result execute(Command command, String[] fields) {
+        try {
+            return switch (command) {
+                case REGISTER -> register(fields[1], fields[2]);
+                case BORROW -> borrow(fields[1], fields[2], fields[3], fields.length > 4 ? fields[4] : dueDate);
+                case RETURN -> giveBack(fields[1], fields[2]);
+                case BOOK -> book(fields);
+            };
+        } catch (IllegalArgumentException e) {
+            return new Result(Status.INVALID, e.getMessage() == null ? "Invalid field" : e.getMessage());
+        }
+    }
+
+    /*
+     * Registers a new member, as the sign-up screen does
+     *
+     * @param name The member's full name
+     * @param password The member's password
+     * @return OK, or FAILED if a member with the same name is already registered
+     */
+    private Result register(String name, String password) {
+        if (name.isEmpty() || password.isEmpty()) return new Result(Status.INVALID, "Name and password cannot be empty");
+        if (libSystem.showMember(name) != null) return new Result(Status.FAILED, "Member is already registered");
+        libSystem.addMember(new Member.MemberBuilder().name(name).password(password).build());
+        return new Result(Status.OK, "Registered");
+    }
+
+    /*
+     * Borrows a media item for a member, or puts the member on its waitlist when no copy is free
+     *
+     * @param memberName The member's name
+     * @param libraryName The name of the library holding the media
+     * @param title The media item's title
+     * @param due The date the media is due back
+     * @return OK, WAITLISTED, or FAILED with the reason
+     */
+    private Result borrow(String memberName, String libraryName, String title, String due) {
+        Member member = libSystem.showMember(memberName);
+        if (member == null) return new Result(Status.FAILED, "No member named " + memberName);
+        Library library = libSystem.showLibrary(libraryName);
+        if (library == null) return new Result(Status.FAILED, "No library named " + libraryName);
+
+        // The session keeps the catalog from being unloaded between finding the media and lending it
+        library.openSession();
+        try {
+            Media media = mediaIn(library).get(title.toLowerCase(Locale.ROOT));
+            if (media == null) {
+                String error = library.getCatalogError();
+                return new Result(Status.FAILED, error != null ? error
+                        : "No media titled " + title + " in " + library.getName());
+            }
+
+            MediaBorrowingLogic.BorrowResult result = MediaBorrowingLogic.getInstance().borrow(media, member, dueTime, due);
+            return switch (result.getStatus()) {
+                case SUCCESS -> new Result(Status.OK, result.getMessage());
+                case WAITLISTED -> new Result(Status.WAITLISTED, result.getMessage());
+                case FAILURE -> new Result(Status.FAILED, result.getMessage());
+            };
+        } finally {
+            library.closeSession();
+        }
+    }
+
+    /*
+     * Returns a member's borrowed copy of a media item, passing it on to the waitlist if anyone is waiting
+     *
+     * @param memberName The member's name
+     * @param title The title of the media item being returned
+     * @return OK, or FAILED if the member does not have a copy of it
+     */
+    private Result giveBack(String memberName, String title) {
+        Member member = libSystem.showMember(memberName);
+        if (member == null) return new Result(Status.FAILED, "No member named " + memberName);
+        for (MediaCopy copy : member.getBorrowedMedia()) {
+            if (copy.getMedia().getTitle().equalsIgnoreCase(title)) {
+                MediaBorrowingLogic.BorrowResult result = MediaBorrowingLogic.getInstance().returnCopy(copy, member);
+                return new Result(result.getStatus() == MediaBorrowingLogic.BorrowResult.Status.SUCCESS
+                        ? Status.OK : Status.FAILED, result.getMessage());
+            }
+        }
+        return new Result(Status.FAILED, memberName + " has not borrowed " + title);
+    }
+
+    /*
+     * Books a resource for a member, once or on a repeating schedule
+     *
+     * @param fields BOOK, the member, library, resource, date and time, then optionally the frequency and last date
+     * @return OK, INVALID if the repeat and last date do not go together, or FAILED with the reason the
+     *         booking was refused
+     */
+    private Result book(String[] fields) {
+        Member member = libSystem.showMember(fields[1]);
+        if (member == null) return new Result(Status.FAILED, "No member named " + fields[1]);
+        Library library = libSystem.showLibrary(fields[2]);
+        if (library == null) return new Result(Status.FAILED, "No library named " + fields[2]);
+        Resource resource = resourcesIn(library).get(fields[3].toLowerCase(Locale.ROOT));
+        if (resource == null) return new Result(Status.FAILED, "No resource named " + fields[3] + " in " + library.getName());
+
+        String frequencyName = fields.length > 6 ? fields[6] : NO_FREQUENCY;
+        RecurringBooking.Frequency frequency = parseFrequency(frequencyName);
+        boolean hasLastDate = fields.length == Command.BOOK.getMaxFields() + 1 && !fields[7].isEmpty();
+        try {
+            if (frequencyName.equalsIgnoreCase(NO_FREQUENCY) && hasLastDate) {
+                return new Result(Status.INVALID, "A booking that does not repeat cannot have a last date");
+            } else if (frequencyName.equalsIgnoreCase(NO_FREQUENCY)) {
+                member.bookResource(resource, fields[4], fields[5]);
+            } else if (frequency == null) {
+                return new Result(Status.INVALID, "Repeat must be NONE, DAILY or WEEKLY, found " + frequencyName);
+            } else if (hasLastDate) {
+                member.bookRecurringResource(resource, fields[4], fields[7], fields[5], frequency);
+            } else {
+                return new Result(Status.INVALID, "A repeating booking needs a last date");
+            }
+        } catch (InvalidDateException | InvalidTimeFormatException | InvalidBookingFormatException
+                 | InvalidBookingDurationException | BookingLimitExceededException | TimeSlotUnavailableException
+                 | InvalidMemberException e) {
+            return new Result(Status.FAILED, e.getMessage());
+        }
+        return new Result(Status.OK, "Booked " + resource.getResourceName());
+    }
+
+    /*
+     * Returns a library's media by lower-case title, indexing the library the first time it is used in a run
+     * Batches do not add media, so the index stays correct until the library's catalog is unloaded and
+     * loaded again, when it is rebuilt; when two items share a title, the one added to the library first
+     * is used, as in the borrowing menu's list
+     *
+     * @param library The library
+     * @return The library's media by title
+     */
+    private HashMap<String, Media> mediaIn(Library library) {
+        List<Media> current = library.getMedia();
+        if (indexedMedia.get(library) != current) {
+            HashMap<String, Media> index = new HashMap<>();
+            for (Media media : current) index.putIfAbsent(media.getTitle().toLowerCase(Locale.ROOT), media);
+            mediaByTitle.put(library, index);
+            indexedMedia.put(library, current);
+        }
+        return mediaByTitle.get(library);
+    }
+
+    /*
+     * Returns a library's resources by lower-case name, indexing the library the first time it is used in a run
+     *
+     * @param library The library
+     * @return The library's resources by name
+     */
+    private HashMap<String, Resource> resourcesIn(Library library) {
+        return resourcesByName.computeIfAbsent(library, lib -> {
+            HashMap<String, Resource> index = new HashMap<>();
+            for (Resource resource : lib.getResources()) {
+                index.putIfAbsent(resource.getResourceName().toLowerCase(Locale.ROOT), resource);
+            }
+            return index;
+        });
+    }
+
+    /*
+     * Finds the command a name stands for
+     *
+     * @param name The command name as written, in any case
+     * @return The command, or null if there is no such command
+     */
+    private static Command parseCommand(String name) {
+        for (Command command : Command.values()) {
+            if (command.name().equalsIgnoreCase(name)) return command;
+        }
+        return null;
+    }
+
+    /*
+     * Finds the repeat frequency a name stands for
+     *
+     * @param name The frequency as written, in any case
+     * @return The frequency, or null if there is no such frequency
+     */
+    private static RecurringBooking.Frequency parseFrequency(String name) {
+        for (RecurringBooking.Frequency frequency : RecurringBooking.Frequency.values()) {
+            if (frequency.name().equalsIgnoreCase(name)) return frequency;
+        }
+        return null;
+    }
+
+    /*
+     * Describes how many fields a command takes
+     *
+     * @param command The command
+     * @return The number of fields, or the range of them
+     */
+    private static String arity(Command command) {
+        return command.getMinFields() == command.getMaxFields()
+                ? String.valueOf(command.getMinFields())
+                : command.getMinFields() + " to " + command.getMaxFields();
+    }
+
+    /*
+     * Keeps a message on one line of the log by replacing tabs and line breaks with spaces
+     *
+     * @param message The message
+     * @return The message, safe to write as the last column of the log
+     */
+    private static String clean(String message) {
+        return message.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /*
+     * Validates the internal state of the BatchRunner object
+     * Ensures there is a library system to run against and a due date for borrows
+     */
+    private void checkBatchRunner() {
+        Preconditions.checkState(libSystem != null, "Library system should not be null.");
+        Preconditions.checkState(dueTime != null && dueDate != null, "Default due date should not be null.");
+        Preconditions.checkState(mediaByTitle != null && indexedMedia != null && resourcesByName != null, "Indexes should not be null.");
+    }
+
+    /*
+     * The outcome of one command, before it is written to the log
+     */
+    private static final class Result {
+        private final Status status;
+        private final String message;
+
+        private Result(Status status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+    }
+
+    // ===== DTO =====
+    public static class BatchReport {
+        private final EnumMap<Status, Integer> byStatus = new EnumMap<>(Status.class);
+        private final EnumMap<Command, Integer> byCommand = new EnumMap<>(Command.class);
+        private final EnumMap<Command, Long> nanosByCommand = new EnumMap<>(Command.class);
+        private int commands;
+        private long elapsedNanos;
+
+        /*
+         * Private constructor for BatchReport
+         * Starts every count at zero
+         */
+        private BatchReport() {
+            for (Status status : Status.values()) byStatus.put(status, 0);
+            for (Command command : Command.values()) {
+                byCommand.put(command, 0);
+                nanosByCommand.put(command, 0L);
+            }
+        }
+
+        /*
+         * Counts one command
+         *
+         * @param command The command, or null if the line did not name one
+         * @param status How the command ended
+         * @param nanos How long the command took
+         */
+        private void record(Command command, Status status, long nanos) {
+            commands++;
+            byStatus.merge(status, 1, Integer::sum);
+            if (command != null) {
+                byCommand.merge(command, 1, Integer::sum);
+                nanosByCommand.merge(command, nanos, Long::sum);
+            }
+        }
+
+        /*
+         * Works out how many commands the run got through each second
+         *
+         * @return Commands per second, or 0 if the run took no measurable time
+         */
+        public double getCommandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : commands * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /*
+         * Works out how long one kind of command took on average
+         *
+         * @param command The command
+         * @return The mean time in microseconds, or 0 if the batch had no such command
+         */
+        public double getMeanMicros(Command command) {
+            int count = byCommand.get(command);
+            return count == 0 ? 0 : nanosByCommand.get(command) / 1_000.0 / count;
+        }
+
+        // Getters:
+        public int getCommands() { return commands; }
+        public int getCount(Status status) { return byStatus.get(status); }
+        public int getCount(Command command) { return byCommand.get(command); }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+}
@@ -0,0 +1,198 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
+import ca.umanitoba.cs.longkuma.logic.media.WaitlistLogic;
+import com.google.common.base.Preconditions;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CatalogEvictor {
+
+    private static final double DEFAULT_HEAP_THRESHOLD = 0.8;
+
+    private final WaitlistLogic waitlist;
+    private final double heapThreshold;
+    private final AtomicLong unloaded = new AtomicLong();
+    private final AtomicLong kept = new AtomicLong();
+    private final Semaphore lowMemory = new Semaphore(0);
+    private Thread watcher;
+    private NotificationListener listener;
+
+    /*
+     * Private constructor for CatalogEvictor
+     *
+     * @param builder The EvictorBuilder containing configuration parameters
+     */
+    private CatalogEvictor(EvictorBuilder builder) {
+        this.waitlist = builder.waitlist;
+        this.heapThreshold = builder.heapThreshold;
+        checkCatalogEvictor();
+    }
+
+    public static class EvictorBuilder {
+        private WaitlistLogic waitlist = WaitlistLogic.getInstance();
+        private double heapThreshold = DEFAULT_HEAP_THRESHOLD;
+
+        /*
+         * Sets the waitlist checked before a catalog is let go; defaults to the shared waitlist
+         *
+         * @param waitlist The waitlist
+         * @return EvictorBuilder instance for method chaining
+         */
+        public EvictorBuilder waitlist(WaitlistLogic waitlist) {
+            this.waitlist = waitlist;
+            return this;
+        }
+
+        /*
+         * Sets how full the heap may stay after a garbage collection before catalogs are unloaded;
+         * defaults to 0.8
+         *
+         * @param heapThreshold The share of the heap's maximum size, above 0 and at most 1
+         * @return EvictorBuilder instance for method chaining
+         */
+        public EvictorBuilder heapThreshold(double heapThreshold) {
+            this.heapThreshold = heapThreshold;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new CatalogEvictor instance with configured parameters
+         *
+         * @return A new CatalogEvictor object
+         */
+        public CatalogEvictor build() {
+            return new CatalogEvictor(this);
+        }
+    }
+
+    // Getters:
+    public long getUnloaded() { return unloaded.get(); }
+    public long getKept() { return kept.get(); }
+
+    /*
+     * Starts unloading idle catalogs in the background on a daemon thread
+     * The old generation's collection usage threshold is set to the heap threshold, and the thread sleeps
+     * until the JVM reports that a garbage collection left the heap fuller than that. It then unloads the
+     * least recently used catalog that is not in use, to be loaded again from its source when next needed.
+     * The JVM reports again after every collection that leaves the heap above the threshold, so catalogs
+     * keep being let go, one per collection, until it is back under.
+     */
+    public synchronized void start() {
+        checkCatalogEvictor();
+        Preconditions.checkState(watcher == null, "Evictor is already running");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            // Only the old generation supports both thresholds; the young pools empty at every collection
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * heapThreshold));
+            }
+        }
+        listener = (notification, handback) -> {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                lowMemory.release();
+            }
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+
+        watcher = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    lowMemory.acquire();
+                    lowMemory.drainPermits();
+                    evictLeastRecentlyUsed();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "catalog-evictor");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /*
+     * Stops unloading idle catalogs
+     */
+    public synchronized void stop() {
+        if (watcher == null) return;
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+        } catch (ListenerNotFoundException e) {
+            // Already removed; nothing left to stop listening to
+        }
+        listener = null;
+        watcher.interrupt();
+        watcher = null;
+    }
+
+    /*
+     * Unloads the catalog that has gone unused the longest, passing over any whose media are in use
+     *
+     * @return The library whose catalog was unloaded, or null if every loaded catalog is in use
+     */
+    public Library evictLeastRecentlyUsed() {
+        for (Library library : Library.loadedCatalogsByLastUse()) {
+            if (evict(library)) return library;
+        }
+        return null;
+    }
+
+    /*
+     * Unloads an idle library's catalog, or keeps it if any of its media are in use or the library has an
+     * open session
+     * The check and the unload are one step, so a loan or review made meanwhile cannot be lost.
+     * Checking a catalog reads its media, which counts as a use, so a kept catalog goes to the back of the
+     * least recently used order rather than being checked again at the next collection
+     *
+     * @param library The library whose catalog has gone idle
+     * @return true if the catalog was unloaded, false if it was kept
+     */
+    public boolean evict(Library library) {
+        Preconditions.checkNotNull(library, "Library cannot be null");
+        if (!library.unloadCatalogIfUnused(this::isInUse)) {
+            kept.incrementAndGet();
+            return false;
+        }
+        unloaded.incrementAndGet();
+        return true;
+    }
+
+    /*
+     * Checks whether any of a library's media hold anything that would be lost if the catalog were loaded
+     * again: a copy on loan, a review or a member on the waitlist
+     * Called by Library.unloadCatalogIfUnused while changes to media state are held off
+     *
+     * @param library The library, with its catalog loaded
+     * @return true if the catalog must be kept, false if it can be unloaded
+     */
+    private boolean isInUse(Library library) {
+        if (!library.isCatalogLoaded()) return false;
+        for (Media media : library.getMedia()) {
+            if (!media.getReviews().isEmpty() || waitlist.isWaitedFor(media)) return true;
+            for (MediaCopy copy : media.getCopies()) {
+                if (!copy.isAvailable()) return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Validates the internal state of the CatalogEvictor object
+     * Ensures there is a waitlist to check and the heap threshold is a share of the heap
+     */
+    private void checkCatalogEvictor() {
+        Preconditions.checkState(waitlist != null, "Evictor needs a waitlist");
+        Preconditions.checkState(heapThreshold > 0 && heapThreshold <= 1, "Heap threshold must be above 0 and at most 1");
+    }
+}
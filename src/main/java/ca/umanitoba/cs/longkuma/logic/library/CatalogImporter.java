@@ -0,0 +1,401 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import ca.umanitoba.cs.longkuma.domain.library.Building;
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.media.Media;
+import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+public class CatalogImporter {
+
+    public static final int DEFAULT_CHUNK_ROWS = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 50_000;
+    public static final int DEFAULT_MAX_ERRORS = 1_000;
+
+    private static final String HEADER_FIRST_FIELD = "library";
+    private static final int FIELDS = 7;
+    private static final int FIELDS_WITH_FLOOR = 8;
+
+    private final LibrarySystem libSystem;
+    private final int threads;
+    private final int chunkRows;
+    private final int batchSize;
+    private final int maxErrors;
+    private final LongConsumer progress;
+
+    /*
+     * Private constructor for CatalogImporter
+     *
+     * @param builder The ImporterBuilder containing configuration parameters
+     */
+    private CatalogImporter(ImporterBuilder builder) {
+        this.libSystem = builder.libSystem;
+        this.threads = builder.threads;
+        this.chunkRows = builder.chunkRows;
+        this.batchSize = builder.batchSize;
+        this.maxErrors = builder.maxErrors;
+        this.progress = builder.progress;
+        checkCatalogImporter();
+    }
+
+    public static class ImporterBuilder {
+        private LibrarySystem libSystem;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int chunkRows = DEFAULT_CHUNK_ROWS;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int maxErrors = DEFAULT_MAX_ERRORS;
+        private LongConsumer progress = rows -> { };
+
+        /*
+         * Sets the library system whose libraries the catalog is loaded into
+         *
+         * @param libSystem The library system
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder libSystem(LibrarySystem libSystem) {
+            this.libSystem = libSystem;
+            return this;
+        }
+
+        /*
+         * Sets how many threads parse records; defaults to one per processor
+         *
+         * @param threads The number of parsing threads
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /*
+         * Sets how many records are handed to a parsing thread at a time
+         *
+         * @param chunkRows The number of records in a chunk
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder chunkRows(int chunkRows) {
+            this.chunkRows = chunkRows;
+            return this;
+        }
+
+        /*
+         * Sets how many media items are gathered for a library before they are added to it
+         *
+         * @param batchSize The number of media items in a batch
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /*
+         * Sets how many rejected records are kept in the report; records beyond this are only counted
+         *
+         * @param maxErrors The number of rejected records to keep
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder maxErrors(int maxErrors) {
+            this.maxErrors = maxErrors;
+            return this;
+        }
+
+        /*
+         * Sets what is told how far the import has got, once per chunk read
+         *
+         * @param progress Given the number of records read so far
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder progress(LongConsumer progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new CatalogImporter instance with configured parameters
+         *
+         * @return A new CatalogImporter object
+         */
+        public CatalogImporter build() {
+            return new CatalogImporter(this);
+        }
+    }
+
+    /*
+     * Loads a catalog of media from CSV, one record per line as
+     * library,title,author,category,copies,row,col[,floor], with an optional header line
+     * The floor is only needed for libraries on several floors and defaults to the kiosk's floor.
+     * Records are parsed in chunks on worker threads, which build each Media and its MediaCopy objects.
+     * Parsed chunks come back in file order; each library's media are gathered into batches and added to
+     * the library and to their floor's map a batch at a time. A record that cannot be loaded is counted,
+     * with its line and reason, and the import carries on.
+     *
+     * @param csv The CSV to read
+     * @return The counts, rejected records and timing of the import
+     * @throws IOException if the CSV cannot be read or the import is interrupted
+     */
+    public CatalogReport importCsv(Reader csv) throws IOException {
+        checkCatalogImporter();
+        long started = System.nanoTime();
+        CatalogReport report = new CatalogReport();
+        HashMap<String, Library> libraries = new HashMap<>();
+        for (Library library : libSystem.getLibraries()) {
+            libraries.putIfAbsent(library.getName().toLowerCase(Locale.ROOT), library);
+        }
+        LinkedHashMap<Library, List<Placement>> batches = new LinkedHashMap<>();
+
+        report.rowsRead = CsvChunks.stream(csv, "catalog-import", threads, chunkRows,
+                (lines, firstLine, count) -> parse(libraries, lines, firstLine, count),
+                chunk -> stage(chunk, batches, report), progress);
+        for (java.util.Map.Entry<Library, List<Placement>> batch : batches.entrySet()) {
+            load(batch.getKey(), batch.getValue(), report);
+        }
+
+        report.errors.sort(Comparator.comparingInt(RowError::getLineNumber));
+        report.elapsedNanos = System.nanoTime() - started;
+        return report;
+    }
+
+    /*
+     * Turns a chunk of records into media placed on a library's floor, keeping the line number and
+     * reason of each record that is rejected
+     *
+     * @param libraries The libraries by lower-case name
+     * @param lines The records of the chunk
+     * @param firstLine The line number of the first record
+     * @param count The number of records in the chunk
+     * @return The chunk's media and rejected records
+     */
+    private static ParsedChunk parse(HashMap<String, Library> libraries, String[] lines, int firstLine, int count) {
+        ParsedChunk chunk = new ParsedChunk(count);
+        for (int i = 0; i < count; i++) {
+            int lineNumber = firstLine + i;
+            String line = lines[i];
+            if (line.isBlank()) continue;
+            try {
+                String[] fields = CsvChunks.split(line);
+                if (lineNumber == 1 && fields[0].trim().equalsIgnoreCase(HEADER_FIRST_FIELD)) continue;
+                chunk.placements.add(parseRecord(libraries, fields, lineNumber));
+            } catch (IllegalArgumentException e) {
+                chunk.errors.add(new RowError(lineNumber, e.getMessage() == null ? "Invalid record" : e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+
+    /*
+     * Builds the media item and copies described by one record
+     *
+     * @param libraries The libraries by lower-case name
+     * @param fields The fields of the record
+     * @param lineNumber The line the record is on
+     * @return The media item and the library and floor map it belongs on
+     * @throws IllegalArgumentException if the record is incomplete, names no known library or floor,
+     *         or its numbers are not valid
+     */
+    private static Placement parseRecord(HashMap<String, Library> libraries, String[] fields, int lineNumber) {
+        if (fields.length != FIELDS && fields.length != FIELDS_WITH_FLOOR) {
+            throw new IllegalArgumentException("Expected " + FIELDS + " or " + FIELDS_WITH_FLOOR
+                    + " fields, found " + fields.length);
+        }
+        Library library = libraries.get(fields[0].trim().toLowerCase(Locale.ROOT));
+        if (library == null) throw new IllegalArgumentException("No library named " + fields[0]);
+        if (fields[1].isEmpty() || fields[2].isEmpty()) {
+            throw new IllegalArgumentException("Title and author cannot be empty");
+        }
+        int copies = parseNumber(fields[4], "Copies");
+        if (copies < 1) throw new IllegalArgumentException("Copies must be at least 1");
+        int row = parseNumber(fields[5], "Row");
+        int col = parseNumber(fields[6], "Column");
+
+        Map map = library.getMap();
+        Building building = library.getBuilding();
+        if (fields.length == FIELDS_WITH_FLOOR && !fields[7].isBlank()) {
+            int floor = parseNumber(fields[7], "Floor");
+            if (building != null && floor >= 0 && floor < building.getFloorCount()) {
+                map = building.getFloor(floor);
+            } else if (building != null || floor != 0) {
+                throw new IllegalArgumentException("Floor " + floor + " is not in " + library.getName());
+            }
+        }
+        if (!map.getGrid().inBounds(row, col)) {
+            throw new IllegalArgumentException("Shelf (" + row + ", " + col + ") is not on the map");
+        }
+
+        Media media = new Media.MediaBuilder().title(fields[1]).author(fields[2]).type(fields[3])
+                .coordinates(new int[]{row, col}).build();
+        for (int copy = 1; copy <= copies; copy++) {
+            media.addCopy(new MediaCopy.MediaCopyBuilder().copyNumber(copy).media(media).build());
+        }
+        return new Placement(lineNumber, library, map, media, copies);
+    }
+
+    /*
+     * Reads a whole number from a field
+     *
+     * @param field The field
+     * @param name What the number is, for the error message
+     * @return The number
+     * @throws IllegalArgumentException if the field is not a whole number
+     */
+    private static int parseNumber(String field, String name) {
+        try {
+            return Integer.parseInt(field.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number, found \"" + field + "\"");
+        }
+    }
+
+    /*
+     * Takes back a parsed chunk, in file order, adding its media to their library's batch and loading
+     * any batch that is full
+     * A shelf cell taken by a resource is only known here, where the maps are changed, so it is checked here
+     *
+     * @param chunk The parsed chunk
+     * @param batches The media waiting to be added, by library
+     * @param report The report to count into
+     */
+    private void stage(ParsedChunk chunk, LinkedHashMap<Library, List<Placement>> batches, CatalogReport report) {
+        report.invalid += chunk.errors.size();
+        for (RowError error : chunk.errors) report.keep(error, maxErrors);
+        for (Placement placement : chunk.placements) {
+            int[] shelf = placement.media.getCoordinates();
+            if (placement.map.resourceIdAt(placement.map.getGrid().cellIndex(shelf[0], shelf[1])) != Map.NO_ENTITY) {
+                report.invalid++;
+                report.keep(new RowError(placement.lineNumber,
+                        "Shelf (" + shelf[0] + ", " + shelf[1] + ") is taken by a resource"), maxErrors);
+                continue;
+            }
+            List<Placement> batch = batches.computeIfAbsent(placement.library, library -> new ArrayList<>(batchSize));
+            batch.add(placement);
+            if (batch.size() >= batchSize) {
+                load(placement.library, batch, report);
+                batch.clear();
+            }
+        }
+    }
+
+    /*
+     * Adds a batch of media to a library and places each item on its floor's map
+     *
+     * @param library The library
+     * @param batch The media, in file order
+     * @param report The report to count into
+     */
+    private static void load(Library library, List<Placement> batch, CatalogReport report) {
+        if (batch.isEmpty()) return;
+        List<Media> media = new ArrayList<>(batch.size());
+        LinkedHashMap<Map, List<Media>> byFloor = new LinkedHashMap<>();
+        for (Placement placement : batch) {
+            media.add(placement.media);
+            byFloor.computeIfAbsent(placement.map, map -> new ArrayList<>()).add(placement.media);
+            report.copies += placement.copies;
+        }
+        library.addAllMedia(media);
+        for (java.util.Map.Entry<Map, List<Media>> floor : byFloor.entrySet()) {
+            floor.getKey().addAllMedia(floor.getValue());
+        }
+        report.imported += media.size();
+    }
+
+    /*
+     * Validates the internal state of the CatalogImporter object
+     * Ensures there is a library system to load into and the thread, chunk, batch and error limits are positive
+     */
+    private void checkCatalogImporter() {
+        Preconditions.checkState(libSystem != null, "Importer needs a library system");
+        Preconditions.checkState(threads > 0, "Importer needs at least one thread");
+        Preconditions.checkState(chunkRows > 0, "Chunks must hold at least one record");
+        Preconditions.checkState(batchSize > 0, "Batches must hold at least one media item");
+        Preconditions.checkState(maxErrors >= 0, "Error limit cannot be negative");
+        Preconditions.checkState(progress != null, "Progress listener should not be null");
+    }
+
+    /*
+     * A media item built from a record, with the library and floor map it belongs on
+     */
+    private static final class Placement {
+        private final int lineNumber;
+        private final Library library;
+        private final Map map;
+        private final Media media;
+        private final int copies;
+
+        private Placement(int lineNumber, Library library, Map map, Media media, int copies) {
+            this.lineNumber = lineNumber;
+            this.library = library;
+            this.map = map;
+            this.media = media;
+            this.copies = copies;
+        }
+    }
+
+    /*
+     * The media built from one chunk of records, and the records that were rejected
+     */
+    private static final class ParsedChunk {
+        private final List<Placement> placements;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private ParsedChunk(int rows) {
+            this.placements = new ArrayList<>(rows);
+        }
+    }
+
+    // ===== DTO =====
+    public static class CatalogReport {
+        private final List<RowError> errors = new ArrayList<>();
+        private long rowsRead;
+        private int imported;
+        private long copies;
+        private int invalid;
+        private long elapsedNanos;
+
+        /*
+         * Private constructor for CatalogReport
+         * Starts every count at zero
+         */
+        private CatalogReport() {
+        }
+
+        /*
+         * Keeps a record that was not loaded, if there is still room in the report
+         *
+         * @param error The record and the reason
+         * @param maxErrors The number of records the report keeps
+         */
+        private void keep(RowError error, int maxErrors) {
+            if (errors.size() < maxErrors) errors.add(error);
+        }
+
+        /*
+         * Works out how many records the import got through each second
+         *
+         * @return Records per second, or 0 if the import took no measurable time
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        // Getters:
+        public long getRowsRead() { return rowsRead; }
+        public int getImported() { return imported; }
+        public long getCopies() { return copies; }
+        public int getInvalid() { return invalid; }
+        public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+}
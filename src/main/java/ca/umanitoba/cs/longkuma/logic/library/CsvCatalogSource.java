@@ -0,0 +1,55 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import ca.umanitoba.cs.longkuma.domain.library.CatalogSource;
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+final class CsvCatalogSource implements CatalogSource {
+
+    private final Path file;
+
+    /*
+     * Constructor for CsvCatalogSource
+     *
+     * @param file A catalog CSV file in the format CatalogImporter reads
+     */
+    CsvCatalogSource(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /*
+     * Loads the catalog into a library, skipping any record that cannot be read
+     *
+     * @param library The library whose catalog this is
+     * @throws IOException if the catalog cannot be read
+     */
+    @Override
+    public void load(Library library) throws IOException {
+        importInto(library);
+    }
+
+    /*
+     * Imports the catalog into a library and reports how it went
+     * The file is read on the calling thread alone, since catalogs are loaded one library per thread
+     *
+     * @param library The library whose catalog this is
+     * @return The counts and rejected records of the import
+     * @throws IOException if the catalog cannot be read
+     */
+    CatalogImporter.CatalogReport importInto(Library library) throws IOException {
+        LibrarySystem only = new LibrarySystem.LibrarySystemBuilder().build();
+        only.addLibrary(library);
+        CatalogImporter importer = new CatalogImporter.ImporterBuilder().libSystem(only).threads(1).build();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return importer.importCsv(reader);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+final class CsvChunks {
+
+    private static final int CHUNKS_PER_WORKER = 2;
+
+    /*
+     * Turns a chunk of CSV lines into whatever an importer builds from them; runs on a worker thread
+     */
+    interface ChunkParser<T> {
+        T parse(String[] lines, int firstLine, int count);
+    }
+
+    private CsvChunks() {
+    }
+
+    /*
+     * Streams a CSV file through a pool of worker threads, a chunk of lines at a time
+     * Only a few chunks are read ahead of the workers, so a file of any size is never held as text.
+     * Parsed chunks are handed back on the calling thread in file order, as soon as each one and
+     * every chunk before it is ready, so the consumer needs no locking.
+     * With a single thread there is nothing to overlap, so each chunk is parsed on the calling thread
+     * instead and no pool is started; small files, such as one library's catalog, are read this way.
+     *
+     * @param csv The CSV to read
+     * @param threadName The name the worker threads are given, followed by a number
+     * @param threads The number of worker threads
+     * @param chunkRows The number of lines in a chunk
+     * @param parser Parses one chunk on a worker thread
+     * @param consumer Takes each parsed chunk, in file order
+     * @param progress Given the number of lines read so far, once per chunk
+     * @return The number of lines read
+     * @throws IOException if the CSV cannot be read or the import is interrupted
+     */
+    static <T> long stream(Reader csv, String threadName, int threads, int chunkRows, ChunkParser<T> parser,
+                           Consumer<T> consumer, LongConsumer progress) throws IOException {
+        if (threads == 1) return streamInline(csv, chunkRows, parser, consumer, progress);
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, threadName + "-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(threads * CHUNKS_PER_WORKER);
+        ArrayDeque<Future<T>> pending = new ArrayDeque<>();
+        long linesRead = 0;
+        try {
+            BufferedReader reader = new BufferedReader(csv);
+            String[] lines = new String[chunkRows];
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines[count++] = line;
+                if (count == chunkRows) {
+                    pending.add(submit(workers, inFlight, parser, lines, (int) linesRead + 1, count));
+                    linesRead += count;
+                    progress.accept(linesRead);
+                    lines = new String[chunkRows];
+                    count = 0;
+                    while (!pending.isEmpty() && pending.peek().isDone()) consumer.accept(pending.poll().get());
+                }
+            }
+            if (count > 0) {
+                pending.add(submit(workers, inFlight, parser, lines, (int) linesRead + 1, count));
+                linesRead += count;
+                progress.accept(linesRead);
+            }
+            while (!pending.isEmpty()) consumer.accept(pending.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Parsing a chunk failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return linesRead;
+    }
+
+    /*
+     * Streams a CSV file a chunk of lines at a time, parsing each chunk on the calling thread
+     *
+     * @param csv The CSV to read
+     * @param chunkRows The number of lines in a chunk
+     * @param parser Parses one chunk
+     * @param consumer Takes each parsed chunk, in file order
+     * @param progress Given the number of lines read so far, once per chunk
+     * @return The number of lines read
+     * @throws IOException if the CSV cannot be read
+     */
+    private static <T> long streamInline(Reader csv, int chunkRows, ChunkParser<T> parser, Consumer<T> consumer,
+                                         LongConsumer progress) throws IOException {
+        BufferedReader reader = new BufferedReader(csv);
+        String[] lines = new String[chunkRows];
+        long linesRead = 0;
+        int count = 0;
+        String line;
+        while (true) {
+            line = reader.readLine();
+            if (line != null) lines[count++] = line;
+            if (count == chunkRows || (line == null && count > 0)) {
+                T parsed = parser.parse(lines, (int) linesRead + 1, count);
+                linesRead += count;
+                progress.accept(linesRead);
+                consumer.accept(parsed);
+                count = 0;
+            }
+            if (line == null) return linesRead;
+        }
+    }
+
+    /*
+     * Hands a chunk of lines to a worker, first waiting until there is room for another chunk in flight
+     *
+     * @param workers The worker threads
+     * @param inFlight Permits for the chunks read but not yet parsed
+     * @param parser Parses the chunk
+     * @param lines The lines of the chunk
+     * @param firstLine The line number of the first line
+     * @param count The number of lines in the chunk
+     * @return The parsed chunk, once it is ready
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    private static <T> Future<T> submit(ExecutorService workers, Semaphore inFlight, ChunkParser<T> parser,
+                                        String[] lines, int firstLine, int count) throws InterruptedException {
+        inFlight.acquire();
+        return workers.submit(() -> {
+            try {
+                return parser.parse(lines, firstLine, count);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /*
+     * Splits one CSV row into its fields
+     * Fields may be quoted, with "" standing for a quote inside a quoted field; a row cannot span lines.
+     * Rows without quotes, which are nearly all of them, are split on commas directly
+     *
+     * @param line The row
+     * @return The fields, with quotes removed
+     * @throws IllegalArgumentException if a quoted field is not closed
+     */
+    static String[] split(String line) {
+        if (line.indexOf('"') < 0) return line.split(",", -1);
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Quoted field is not closed");
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,601 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidConfigException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMapException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidNameException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.MapDimensionMismatchException;
+import ca.umanitoba.cs.longkuma.domain.library.Building;
+import ca.umanitoba.cs.longkuma.domain.library.Connector;
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.library.MapLoader;
+import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class LibraryConfigLoader {
+
+    public static final String CONFIG_SUFFIX = ".library";
+
+    private static final String LIBRARY_SECTION = "library";
+    private static final String FLOOR_SECTION = "floor";
+    private static final String CONNECTOR_SECTION = "connector";
+    private static final String RESOURCE_SECTION = "resource";
+    private static final java.util.Map<String, Set<String>> SECTION_KEYS = java.util.Map.of(
+            LIBRARY_SECTION, Set.of("name", "catalog", "kiosk-floor"),
+            FLOOR_SECTION, Set.of("map", "kiosk", "origin", "legend"),
+            CONNECTOR_SECTION, Set.of("type", "from", "to", "cost"),
+            RESOURCE_SECTION, Set.of("name", "opens", "closes", "slot", "cells", "floor"));
+
+    private final Path directory;
+    private final int threads;
+    private final boolean lazyCatalogs;
+
+    /*
+     * Private constructor for LibraryConfigLoader
+     *
+     * @param builder The LoaderBuilder containing configuration parameters
+     */
+    private LibraryConfigLoader(LoaderBuilder builder) {
+        this.directory = builder.directory;
+        this.threads = builder.threads;
+        this.lazyCatalogs = builder.lazyCatalogs;
+        checkLibraryConfigLoader();
+    }
+
+    public static class LoaderBuilder {
+        private Path directory;
+        private int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        private boolean lazyCatalogs = true;
+
+        /*
+         * Sets the directory holding one .library file per library
+         *
+         * @param directory The configuration directory
+         * @return LoaderBuilder instance for method chaining
+         */
+        public LoaderBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /*
+         * Sets how many libraries are loaded at once; defaults to one per processor, and at least four
+         * since much of loading is waiting on files
+         *
+         * @param threads The number of loading threads
+         * @return LoaderBuilder instance for method chaining
+         */
+        public LoaderBuilder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /*
+         * Sets whether catalogs are left on disk until a library's media are first needed, which is the
+         * default, or imported while the library is loaded
+         *
+         * @param lazyCatalogs true to load each catalog on first use, false to load them all at startup
+         * @return LoaderBuilder instance for method chaining
+         */
+        public LoaderBuilder lazyCatalogs(boolean lazyCatalogs) {
+            this.lazyCatalogs = lazyCatalogs;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new LibraryConfigLoader instance with configured parameters
+         *
+         * @return A new LibraryConfigLoader object
+         */
+        public LibraryConfigLoader build() {
+            return new LibraryConfigLoader(this);
+        }
+    }
+
+    /*
+     * Loads every library configured in the directory and adds it to the library system
+     * Each .library file describes one library and is loaded on a thread of its own: its floor maps,
+     * connectors and resources are built and its catalog is checked. Routes are worked out the first time a
+     * kiosk asks for a path on a floor (see Map.getOriginRoutes). Catalogs are loaded the first time a library's media are needed (see Library.getMedia),
+     * unless the loader is built to import them at startup. Libraries are added to the system in
+     * file-name order once all have loaded, so the order does not depend on which finished first.
+     * A file that cannot be loaded is reported and the rest carry on.
+     *
+     * The files are made of "key = value" lines, grouped by section headers:
+     *   name = Elizabeth Dafoe Library
+     *   catalog = dafoe.csv                  (optional, see CatalogImporter)
+     *   kiosk-floor = 0                      (optional, defaults to 0)
+     *   [floor]                              (one per floor, from floor 0 up)
+     *   map = dafoe-0.map                    (see MapLoader)
+     *   kiosk = 5,5
+     *   origin = 1,10                        (optional, any number)
+     *   legend = W,Wall                      (any number)
+     *   [connector]                          (only for libraries on several floors)
+     *   type = STAIRS                        (STAIRS or ELEVATOR)
+     *   from = 0:7,1
+     *   to = 1:1,1
+     *   cost = 12                            (optional)
+     *   [resource]
+     *   name = Group Study Room
+     *   opens = 12:00
+     *   closes = 20:00
+     *   slot = 60
+     *   cells = 1,8 2,8
+     *   floor = 0                            (optional, defaults to the kiosk floor)
+     * Files named by map and catalog are found relative to the configuration directory.
+     * Blank lines and lines starting with '#' are skipped.
+     *
+     * @param libSystem The library system to add the libraries to
+     * @return How long each library took to load, and why any failed
+     * @throws IOException if the directory cannot be listed or loading is interrupted
+     */
+    public StartupReport load(LibrarySystem libSystem) throws IOException {
+        checkLibraryConfigLoader();
+        Preconditions.checkNotNull(libSystem, "Library system cannot be null");
+        long started = System.nanoTime();
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(CONFIG_SUFFIX))
+                    .sorted().collect(Collectors.toList());
+        }
+
+        StartupReport report = new StartupReport();
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())), task -> {
+            Thread thread = new Thread(task, "library-config-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<LoadedLibrary>> loading = new ArrayList<>();
+            for (Path file : files) loading.add(workers.submit(() -> loadLibrary(file)));
+            for (Future<LoadedLibrary> future : loading) {
+                LoadedLibrary loaded = future.get();
+                if (loaded.library != null && libSystem.showLibrary(loaded.library.getName()) != null) {
+                    loaded.timing.error = "Another library is already named " + loaded.library.getName();
+                } else if (loaded.library != null) {
+                    libSystem.addLibrary(loaded.library);
+                }
+                report.timings.add(loaded.timing);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading libraries was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Loading a library failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        report.elapsedNanos = System.nanoTime() - started;
+        return report;
+    }
+
+    /*
+     * Loads one library from its configuration file, timing each step
+     *
+     * @param file The .library file
+     * @return The library and its timing, or only the timing with the reason if it could not be loaded
+     */
+    private LoadedLibrary loadLibrary(Path file) {
+        LibraryTiming timing = new LibraryTiming(file.getFileName().toString());
+        long started = System.nanoTime();
+        try {
+            List<Section> sections = readSections(file);
+            String catalogFile = sections.get(0).value("catalog", false);
+            CsvCatalogSource catalog = catalogFile == null ? null : new CsvCatalogSource(directory.resolve(catalogFile));
+            if (catalog != null && !Files.isReadable(catalog.getFile())) {
+                throw new InvalidConfigException("Cannot read catalog " + catalog.getFile());
+            }
+            Library library = buildLibrary(file, sections, lazyCatalogs ? catalog : null, timing);
+            long built = System.nanoTime();
+            timing.buildNanos = built - started;
+            timing.name = library.getName();
+
+            if (catalog != null && !lazyCatalogs) importCatalog(library, catalog, timing);
+            timing.catalogNanos = System.nanoTime() - built;
+
+            timing.catalogDeferred = !library.isCatalogLoaded();
+            if (library.isCatalogLoaded()) timing.media = library.getMedia().size();
+            timing.resources = library.getResources().size();
+            timing.totalNanos = System.nanoTime() - started;
+            return new LoadedLibrary(library, timing);
+        } catch (IOException e) {
+            timing.error = "Cannot read " + (e.getMessage() == null ? file.getFileName() : e.getMessage());
+            timing.totalNanos = System.nanoTime() - started;
+            return new LoadedLibrary(null, timing);
+        } catch (InvalidConfigException | InvalidMapException | MapDimensionMismatchException | InvalidNameException
+                 | IllegalArgumentException | IllegalStateException e) {
+            timing.error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            timing.totalNanos = System.nanoTime() - started;
+            return new LoadedLibrary(null, timing);
+        }
+    }
+
+    /*
+     * Builds a library, its floors, connectors and resources from the sections of its file
+     *
+     * @param file The .library file, for error messages
+     * @param sections The file's sections, the library section first
+     * @param catalog The source to load the catalog from when it is first needed, or null to leave it empty
+     * @param timing The timing to record the number of floors in
+     * @return The library, with its resources placed but no media yet
+     * @throws IOException if a map file cannot be read
+     * @throws InvalidConfigException if a section is missing a value or has one that cannot be read
+     * @throws InvalidMapException if a map file or the building it makes up is not valid
+     * @throws MapDimensionMismatchException if a map file's rows do not match its size line
+     * @throws InvalidNameException if the library has no name
+     */
+    private Library buildLibrary(Path file, List<Section> sections, CsvCatalogSource catalog, LibraryTiming timing)
+            throws IOException, InvalidConfigException, InvalidMapException, MapDimensionMismatchException,
+            InvalidNameException {
+        Section top = sections.get(0);
+        String name = top.value("name", true);
+        String kioskFloorValue = top.value("kiosk-floor", false);
+        int kioskFloor = kioskFloorValue == null ? 0 : top.number("kiosk-floor", kioskFloorValue);
+
+        List<Map> floors = new ArrayList<>();
+        List<Connector> connectors = new ArrayList<>();
+        List<Section> resourceSections = new ArrayList<>();
+        for (Section section : sections.subList(1, sections.size())) {
+            if (section.kind.equals(FLOOR_SECTION)) {
+                floors.add(buildFloor(section));
+            } else if (section.kind.equals(CONNECTOR_SECTION)) {
+                connectors.add(buildConnector(section));
+            } else {
+                resourceSections.add(section);
+            }
+        }
+        if (floors.isEmpty()) throw new InvalidConfigException(file.getFileName() + " has no [floor] section");
+        timing.floors = floors.size();
+
+        Library.LibraryBuilder library = new Library.LibraryBuilder().name(name).catalog(catalog);
+        Building building = null;
+        if (floors.size() == 1 && connectors.isEmpty() && kioskFloor == 0) {
+            library.map(floors.get(0));
+        } else {
+            Building.BuildingBuilder builder = new Building.BuildingBuilder().kioskFloor(kioskFloor);
+            for (Map floor : floors) builder.floor(floor);
+            for (Connector connector : connectors) builder.connector(connector);
+            building = builder.build();
+            library.building(building);
+        }
+        Library built = library.build();
+
+        for (Section section : resourceSections) {
+            String floorValue = section.value("floor", false);
+            int floor = floorValue == null ? kioskFloor : section.number("floor", floorValue);
+            if (floor < 0 || floor >= floors.size()) {
+                throw new InvalidConfigException(section.where() + ": floor " + floor + " is not in the library");
+            }
+            Resource resource = buildResource(section);
+            built.addResource(resource);
+            floors.get(floor).addResource(resource);
+        }
+        return built;
+    }
+
+    /*
+     * Builds one floor's map from a [floor] section, loading its grid from the map file
+     *
+     * @param section The section
+     * @return The floor's map
+     * @throws IOException if the map file cannot be read
+     * @throws InvalidConfigException if the map or kiosk is missing or a coordinate cannot be read
+     * @throws InvalidMapException if the map file is not valid
+     * @throws MapDimensionMismatchException if the map file's rows do not match its size line
+     */
+    private Map buildFloor(Section section) throws IOException, InvalidConfigException, InvalidMapException,
+            MapDimensionMismatchException {
+        Map.MapBuilder map = new Map.MapBuilder()
+                .grid(MapLoader.load(directory.resolve(section.value("map", true))))
+                .legend(section.values("legend").toArray(new String[0]))
+                .kioskCoordinates(section.cell("kiosk", section.value("kiosk", true)));
+        for (String origin : section.values("origin")) map.origin(section.cell("origin", origin));
+        return map.build();
+    }
+
+    /*
+     * Builds a staircase or elevator from a [connector] section
+     *
+     * @param section The section
+     * @return The connector
+     * @throws InvalidConfigException if a value is missing or cannot be read
+     * @throws InvalidMapException if the connector's ends or cost are not valid
+     */
+    private static Connector buildConnector(Section section) throws InvalidConfigException, InvalidMapException {
+        Connector.ConnectorBuilder connector = new Connector.ConnectorBuilder();
+        String type = section.value("type", true).toUpperCase(Locale.ROOT);
+        try {
+            connector.type(Connector.Type.valueOf(type));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidConfigException(section.where() + ": type must be STAIRS or ELEVATOR, found " + type);
+        }
+        for (String end : new String[]{"from", "to"}) {
+            String value = section.value(end, true);
+            int colon = value.indexOf(':');
+            if (colon < 0) throw new InvalidConfigException(section.where() + ": " + end + " must be floor:row,col");
+            int floor = section.number(end, value.substring(0, colon));
+            int[] cell = section.cell(end, value.substring(colon + 1));
+            if (end.equals("from")) connector.from(floor, cell); else connector.to(floor, cell);
+        }
+        String cost = section.value("cost", false);
+        if (cost != null) connector.cost(section.number("cost", cost));
+        return connector.build();
+    }
+
+    /*
+     * Builds a bookable resource from a [resource] section
+     *
+     * @param section The section
+     * @return The resource
+     * @throws InvalidConfigException if a value is missing or cannot be read
+     */
+    private static Resource buildResource(Section section) throws InvalidConfigException {
+        List<int[]> cells = new ArrayList<>();
+        for (String cell : section.value("cells", true).trim().split("\\s+")) cells.add(section.cell("cells", cell));
+        return new Resource.ResourceBuilder().resourceName(section.value("name", true))
+                .openingTime(section.value("opens", true)).closingTime(section.value("closes", true))
+                .timeslotLength(section.number("slot", section.value("slot", true))).coordinates(cells).build();
+    }
+
+    /*
+     * Imports a library's catalog into it
+     *
+     * @param library The library
+     * @param catalog The catalog's source
+     * @param timing The timing to record the number of rejected records in
+     * @throws IOException if the catalog cannot be read
+     */
+    private static void importCatalog(Library library, CsvCatalogSource catalog, LibraryTiming timing) throws IOException {
+        CatalogImporter.CatalogReport report = catalog.importInto(library);
+        timing.catalogInvalid = report.getInvalid();
+        if (!report.getErrors().isEmpty()) {
+            RowError first = report.getErrors().get(0);
+            timing.catalogError = catalog.getFile().getFileName() + " line " + first.getLineNumber() + ": "
+                    + first.getMessage();
+        }
+    }
+
+    /*
+     * Reads a configuration file into its sections
+     * The lines before the first section header belong to the library section, which always comes first
+     *
+     * @param file The .library file
+     * @return The sections, in the order they appear
+     * @throws IOException if the file cannot be read
+     * @throws InvalidConfigException if a line is not a section header or a key and value, or names
+     *         a section or key that does not exist
+     */
+    private static List<Section> readSections(Path file) throws IOException, InvalidConfigException {
+        List<Section> sections = new ArrayList<>();
+        Section current = new Section(LIBRARY_SECTION, file.getFileName().toString(), 1);
+        sections.add(current);
+        int lineNumber = 0;
+        for (String raw : Files.readAllLines(file)) {
+            lineNumber++;
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (line.startsWith("[") && line.endsWith("]")) {
+                String kind = line.substring(1, line.length() - 1).trim().toLowerCase(Locale.ROOT);
+                if (kind.equals(LIBRARY_SECTION) || !SECTION_KEYS.containsKey(kind)) {
+                    throw new InvalidConfigException(file.getFileName() + ":" + lineNumber + ": unknown section [" + kind + "]");
+                }
+                current = new Section(kind, file.getFileName().toString(), lineNumber);
+                sections.add(current);
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) {
+                throw new InvalidConfigException(file.getFileName() + ":" + lineNumber + ": expected key = value");
+            }
+            String key = line.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+            if (!SECTION_KEYS.get(current.kind).contains(key)) {
+                throw new InvalidConfigException(file.getFileName() + ":" + lineNumber + ": unknown key \"" + key
+                        + "\" in [" + current.kind + "]");
+            }
+            current.values.computeIfAbsent(key, k -> new ArrayList<>()).add(line.substring(equals + 1).trim());
+        }
+        return sections;
+    }
+
+    /*
+     * Validates the internal state of the LibraryConfigLoader object
+     * Ensures there is a directory to load from and at least one thread to load with
+     */
+    private void checkLibraryConfigLoader() {
+        Preconditions.checkState(directory != null, "Loader needs a directory");
+        Preconditions.checkState(threads > 0, "Loader needs at least one thread");
+    }
+
+    /*
+     * One section of a configuration file: its kind, where it starts, and its values by key
+     */
+    private static final class Section {
+        private final String kind;
+        private final String file;
+        private final int line;
+        private final LinkedHashMap<String, List<String>> values = new LinkedHashMap<>();
+
+        private Section(String kind, String file, int line) {
+            this.kind = kind;
+            this.file = file;
+            this.line = line;
+        }
+
+        /*
+         * Describes where the section is, for error messages
+         *
+         * @return The file and line of the section header
+         */
+        private String where() {
+            return file + ":" + line + " [" + kind + "]";
+        }
+
+        /*
+         * Returns the value of a key that may be given once
+         *
+         * @param key The key
+         * @param required Whether the section must give the key
+         * @return The value, or null if an optional key is not given
+         * @throws InvalidConfigException if a required key is missing or a key is given more than once
+         */
+        private String value(String key, boolean required) throws InvalidConfigException {
+            List<String> given = values.get(key);
+            if (given == null) {
+                if (required) throw new InvalidConfigException(where() + ": missing " + key);
+                return null;
+            }
+            if (given.size() > 1) throw new InvalidConfigException(where() + ": " + key + " is given more than once");
+            return given.get(0);
+        }
+
+        /*
+         * Returns every value of a key that may be given any number of times
+         *
+         * @param key The key
+         * @return The values, in the order they are given
+         */
+        private List<String> values(String key) {
+            return values.getOrDefault(key, Collections.emptyList());
+        }
+
+        /*
+         * Reads a whole number
+         *
+         * @param key The key the number was given for, for error messages
+         * @param value The text of the number
+         * @return The number
+         * @throws InvalidConfigException if the text is not a whole number
+         */
+        private int number(String key, String value) throws InvalidConfigException {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidConfigException(where() + ": " + key + " must be a whole number, found \"" + value + "\"");
+            }
+        }
+
+        /*
+         * Reads a cell written as row,col
+         *
+         * @param key The key the cell was given for, for error messages
+         * @param value The text of the cell
+         * @return The cell's {row, col}
+         * @throws InvalidConfigException if the text is not two whole numbers separated by a comma
+         */
+        private int[] cell(String key, String value) throws InvalidConfigException {
+            String[] parts = value.split(",");
+            if (parts.length != 2) throw new InvalidConfigException(where() + ": " + key + " must be row,col, found \"" + value + "\"");
+            return new int[]{number(key, parts[0]), number(key, parts[1])};
+        }
+    }
+
+    /*
+     * A library loaded from its file, or null if it could not be loaded, with how long loading took
+     */
+    private static final class LoadedLibrary {
+        private final Library library;
+        private final LibraryTiming timing;
+
+        private LoadedLibrary(Library library, LibraryTiming timing) {
+            this.library = library;
+            this.timing = timing;
+        }
+    }
+
+    // ===== DTO =====
+    public static class LibraryTiming {
+        private final String file;
+        private String name;
+        private String error;
+        private String catalogError;
+        private int floors;
+        private int resources;
+        private int media;
+        private int catalogInvalid;
+        private boolean catalogDeferred;
+        private long buildNanos;
+        private long catalogNanos;
+        private long totalNanos;
+
+        /*
+         * Private constructor for LibraryTiming
+         *
+         * @param file The name of the library's configuration file
+         */
+        private LibraryTiming(String file) {
+            this.file = file;
+        }
+
+        /*
+         * Checks whether the library was loaded and added to the system
+         *
+         * @return true if it was loaded, false if it failed
+         */
+        public boolean isLoaded() {
+            return error == null;
+        }
+
+        // Getters:
+        public String getFile() { return file; }
+        public String getName() { return name; }
+        public String getError() { return error; }
+        public String getCatalogError() { return catalogError; }
+        public int getFloors() { return floors; }
+        public int getResources() { return resources; }
+        public int getMedia() { return media; }
+        public int getCatalogInvalid() { return catalogInvalid; }
+        public boolean isCatalogDeferred() { return catalogDeferred; }
+        public long getBuildNanos() { return buildNanos; }
+        public long getCatalogNanos() { return catalogNanos; }
+        public long getTotalNanos() { return totalNanos; }
+    }
+
+    // ===== DTO =====
+    public static class StartupReport {
+        private final List<LibraryTiming> timings = new ArrayList<>();
+        private long elapsedNanos;
+
+        /*
+         * Private constructor for StartupReport
+         */
+        private StartupReport() {
+        }
+
+        /*
+         * Counts the libraries that were loaded
+         *
+         * @return The number of libraries added to the system
+         */
+        public int getLoaded() {
+            int loaded = 0;
+            for (LibraryTiming timing : timings) if (timing.isLoaded()) loaded++;
+            return loaded;
+        }
+
+        // Getters:
+        public List<LibraryTiming> getTimings() { return Collections.unmodifiableList(timings); }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+}
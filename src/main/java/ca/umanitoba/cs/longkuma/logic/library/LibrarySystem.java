@@ -1,22 +1,30 @@
 package ca.umanitoba.cs.longkuma.logic.library;
 
+import ca.umanitoba.cs.longkuma.domain.library.Building;
 import ca.umanitoba.cs.longkuma.domain.library.Library;
 import ca.umanitoba.cs.longkuma.domain.member.Member;
 import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class LibrarySystem {
-    final private ArrayList<Library> libraries;
+    final private CopyOnWriteArrayList<Library> libraries;
     final private ArrayList<Member> members;
+    final private HashMap<String, Member> membersByName;
 
     /*
      * Private constructor for LibrarySystem
-     * Initializes empty lists for libraries and members
+     * Initializes empty lists for libraries and members, and an empty index of members by name
      */
     private LibrarySystem() {
-        this.libraries = new ArrayList<>();
+        this.libraries = new CopyOnWriteArrayList<>();
         this.members = new ArrayList<>();
+        this.membersByName = new HashMap<>();
         checkLibrarySystem();
     }
 
@@ -36,29 +44,41 @@ public class LibrarySystem {
     /*
      * Validates the internal state of the LibrarySystem object
      * Ensures libraries and members lists are non-null
-     * Checks that all libraries and members in collections are non-null
+     * Checks that all libraries in the collection are non-null and that every member is indexed by name
+     * Members are checked for null as they are added, so this check does not grow with the number of members
      */
     private void checkLibrarySystem() {
         Preconditions.checkNotNull(libraries, "Libraries list should not be null.");
         Preconditions.checkNotNull(members, "Members list should not be null.");
+        Preconditions.checkNotNull(membersByName, "Members index should not be null.");
 
         for(Library lib : libraries) {
             Preconditions.checkNotNull(lib,
                     "Individual libraries should never be null.");
         }
 
-        for(Member member : members) {
-            Preconditions.checkNotNull(member,
-                    "Individual members should never be null.");
-        }
+        Preconditions.checkState(membersByName.size() == members.size(),
+                "Every member should be indexed by name.");
+    }
+
+    /*
+     * Works out the key a member's name is indexed under, so names differing only in case share a key
+     *
+     * @param name The member's name
+     * @return The index key
+     */
+    static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
     }
 
     /*
      * Gets the list of all libraries in the system
+     * The list is copied on write, so background tasks such as the booking archiver can iterate it
+     * while libraries are being added
      *
-     * @return ArrayList containing all library objects
+     * @return List containing all library objects
      */
-    public ArrayList<Library> getLibraries() {
+    public List<Library> getLibraries() {
         return libraries;
     }
 
@@ -70,7 +90,7 @@ public class LibrarySystem {
      * @param newLib The library to add
      * @return true if library was added successfully, false if library with same name already exists
      */
-    public void addLibrary(Library newLib) {
+    public synchronized void addLibrary(Library newLib) {
         checkLibrarySystem();
         boolean add = true;
         for(Library lib : libraries) {
@@ -107,7 +127,7 @@ public class LibrarySystem {
 
     /*
      * Adds a new member to the system if no member with the same name exists
-     * Member names are compared case-insensitively
+     * Member names are compared case-insensitively, through the index of members by name
      * Validates system state before and after adding
      *
      * @param newMember The member to add
@@ -115,36 +135,62 @@ public class LibrarySystem {
      */
     public void addMember(Member newMember) {
         checkLibrarySystem();
-        boolean add = true;
+        Preconditions.checkNotNull(newMember, "Member cannot be null");
 
-        for(Member member : members) {
-            if(member.getName().equalsIgnoreCase(newMember.getName())) {
-                add = false; // already exists
-                break;
-            }
-        }
-        if(add) {
+        if(membersByName.putIfAbsent(nameKey(newMember.getName()), newMember) == null) {
             members.add(newMember);
         }
         checkLibrarySystem();
     }
 
+    /*
+     * Checks whether a member is indexed under a key, for importers that have already worked the key out
+     *
+     * @param key The key from nameKey
+     * @return true if a member with that name is registered
+     */
+    boolean hasMemberKey(String key) {
+        return membersByName.containsKey(key);
+    }
+
+    /*
+     * Adds many members to the system in one step, such as a whole enrolment being imported
+     * Every member is checked before any is added, so a null member leaves the system unchanged;
+     * as with addMember, a member whose name is already taken, or is taken earlier in the same batch, is skipped
+     * Validates system state once before and once after, rather than around each member
+     *
+     * @param newMembers The members to add
+     * @return The number of members added
+     */
+    public int addMembers(Collection<Member> newMembers) {
+        checkLibrarySystem();
+        Preconditions.checkNotNull(newMembers, "Members cannot be null");
+        for (Member newMember : newMembers) {
+            Preconditions.checkNotNull(newMember, "Member cannot be null");
+        }
+
+        int added = 0;
+        members.ensureCapacity(members.size() + newMembers.size());
+        for (Member newMember : newMembers) {
+            if (membersByName.putIfAbsent(nameKey(newMember.getName()), newMember) == null) {
+                members.add(newMember);
+                added++;
+            }
+        }
+        checkLibrarySystem();
+        return added;
+    }
+
     /*
      * Searches for a member by name in the system
-     * Search is case-insensitive
+     * Search is case-insensitive and looks the name up in the index rather than scanning every member
      *
      * @param memberName The name of the member to search for
      * @return The matching Member object if found, null otherwise
      */
     public Member showMember(String memberName) {
         checkLibrarySystem();
-        Member foundMember = null;
-        for (Member member : members) {
-            if (member.getName().equalsIgnoreCase(memberName)) {
-                foundMember = member;
-                break;
-            }
-        }
+        Member foundMember = memberName == null ? null : membersByName.get(nameKey(memberName));
         checkLibrarySystem();
         return foundMember;
     }
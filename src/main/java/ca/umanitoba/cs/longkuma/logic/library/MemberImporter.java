@@ -0,0 +1,296 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+import ca.umanitoba.cs.longkuma.domain.member.Member;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+public class MemberImporter {
+
+    public static final int DEFAULT_CHUNK_ROWS = 10_000;
+    public static final int DEFAULT_MAX_ERRORS = 1_000;
+
+    private static final String HEADER = "name,password";
+    private static final int FIELDS = 2;
+
+    private final LibrarySystem libSystem;
+    private final int threads;
+    private final int chunkRows;
+    private final int maxErrors;
+    private final boolean allOrNothing;
+    private final LongConsumer progress;
+
+    /*
+     * Private constructor for MemberImporter
+     *
+     * @param builder The ImporterBuilder containing configuration parameters
+     */
+    private MemberImporter(ImporterBuilder builder) {
+        this.libSystem = builder.libSystem;
+        this.threads = builder.threads;
+        this.chunkRows = builder.chunkRows;
+        this.maxErrors = builder.maxErrors;
+        this.allOrNothing = builder.allOrNothing;
+        this.progress = builder.progress;
+        checkMemberImporter();
+    }
+
+    public static class ImporterBuilder {
+        private LibrarySystem libSystem;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int chunkRows = DEFAULT_CHUNK_ROWS;
+        private int maxErrors = DEFAULT_MAX_ERRORS;
+        private boolean allOrNothing;
+        private LongConsumer progress = rows -> { };
+
+        /*
+         * Sets the library system the members are added to
+         *
+         * @param libSystem The library system
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder libSystem(LibrarySystem libSystem) {
+            this.libSystem = libSystem;
+            return this;
+        }
+
+        /*
+         * Sets how many threads validate rows; defaults to one per processor
+         *
+         * @param threads The number of validating threads
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /*
+         * Sets how many rows are handed to a validating thread at a time
+         *
+         * @param chunkRows The number of rows in a chunk
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder chunkRows(int chunkRows) {
+            this.chunkRows = chunkRows;
+            return this;
+        }
+
+        /*
+         * Sets how many rejected rows, invalid or duplicate, are kept in the report; rows beyond this are only counted
+         *
+         * @param maxErrors The number of rejected rows to keep
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder maxErrors(int maxErrors) {
+            this.maxErrors = maxErrors;
+            return this;
+        }
+
+        /*
+         * Sets whether a single invalid row stops the whole file from being added; duplicates are always skipped
+         *
+         * @param allOrNothing true to add no member unless every row is valid
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder allOrNothing(boolean allOrNothing) {
+            this.allOrNothing = allOrNothing;
+            return this;
+        }
+
+        /*
+         * Sets what is told how far the import has got, once per chunk read
+         *
+         * @param progress Given the number of rows read so far
+         * @return ImporterBuilder instance for method chaining
+         */
+        public ImporterBuilder progress(LongConsumer progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new MemberImporter instance with configured parameters
+         *
+         * @return A new MemberImporter object
+         */
+        public MemberImporter build() {
+            return new MemberImporter(this);
+        }
+    }
+
+    /*
+     * Imports members from CSV, one member per row as name,password, with an optional header row
+     * Fields may be quoted, with "" standing for a quote inside a quoted field; a row cannot span lines.
+     * Rows are read in chunks and each chunk is validated with Member.MemberBuilder on a worker thread.
+     * Only a few chunks are in flight at a time, so a file of any size is never held as text, and
+     * validated chunks are taken back in file order as they finish. A name already registered, or seen
+     * earlier in the file, is skipped as a duplicate. Nothing is added until the whole file has been read;
+     * the members are then added to the library system in one batch.
+     *
+     * @param csv The CSV to read
+     * @return The counts, rejected rows and timing of the import
+     * @throws IOException if the CSV cannot be read or the import is interrupted
+     */
+    public ImportReport importCsv(Reader csv) throws IOException {
+        checkMemberImporter();
+        long started = System.nanoTime();
+        ImportReport report = new ImportReport();
+        HashSet<String> seen = new HashSet<>();
+        List<Member> staged = new ArrayList<>();
+
+        report.rowsRead = CsvChunks.stream(csv, "member-import", threads, chunkRows, MemberImporter::validate,
+                chunk -> stage(chunk, seen, staged, report), progress);
+
+        if (!allOrNothing || report.invalid == 0) {
+            report.imported = libSystem.addMembers(staged);
+        }
+        report.errors.sort(Comparator.comparingInt(RowError::getLineNumber));
+        report.elapsedNanos = System.nanoTime() - started;
+        return report;
+    }
+
+    /*
+     * Turns a chunk of rows into members, keeping the line number and reason of each row that is rejected
+     *
+     * @param lines The rows of the chunk
+     * @param firstLine The line number of the first row
+     * @param count The number of rows in the chunk
+     * @return The chunk's members and rejected rows
+     */
+    private static ValidatedChunk validate(String[] lines, int firstLine, int count) {
+        ValidatedChunk chunk = new ValidatedChunk(count);
+        for (int i = 0; i < count; i++) {
+            int lineNumber = firstLine + i;
+            String line = lines[i];
+            if (line.isBlank()) continue;
+            if (lineNumber == 1 && line.trim().equalsIgnoreCase(HEADER)) continue;
+            try {
+                String[] fields = CsvChunks.split(line);
+                if (fields.length != FIELDS) {
+                    throw new IllegalArgumentException("Expected name and password, found " + fields.length + " fields");
+                }
+                if (fields[0].isEmpty() || fields[1].isEmpty()) {
+                    throw new IllegalArgumentException("Name and password cannot be empty");
+                }
+                chunk.add(lineNumber, new Member.MemberBuilder().name(fields[0]).password(fields[1]).build());
+            } catch (IllegalArgumentException e) {
+                chunk.reject(lineNumber, e.getMessage() == null ? "Invalid member" : e.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    /*
+     * Takes back a validated chunk, in file order, setting aside its new members and counting duplicates
+     *
+     * @param chunk The validated chunk
+     * @param seen The index keys of the names staged so far
+     * @param staged The members to add once the file has been read
+     * @param report The report to count into
+     */
+    private void stage(ValidatedChunk chunk, HashSet<String> seen, List<Member> staged, ImportReport report) {
+        report.invalid += chunk.errors.size();
+        for (RowError error : chunk.errors) report.keep(error, maxErrors);
+        for (int i = 0; i < chunk.members.size(); i++) {
+            Member member = chunk.members.get(i);
+            String key = chunk.keys.get(i);
+            if (!seen.add(key) || libSystem.hasMemberKey(key)) {
+                report.duplicates++;
+                report.keep(new RowError(chunk.memberLines[i], "Duplicate member " + member.getName()), maxErrors);
+            } else {
+                staged.add(member);
+            }
+        }
+    }
+
+    /*
+     * Validates the internal state of the MemberImporter object
+     * Ensures there is a library system to import into and the thread, chunk and error limits are positive
+     */
+    private void checkMemberImporter() {
+        Preconditions.checkState(libSystem != null, "Importer needs a library system");
+        Preconditions.checkState(threads > 0, "Importer needs at least one thread");
+        Preconditions.checkState(chunkRows > 0, "Chunks must hold at least one row");
+        Preconditions.checkState(maxErrors >= 0, "Error limit cannot be negative");
+        Preconditions.checkState(progress != null, "Progress listener should not be null");
+    }
+
+    /*
+     * The members of one chunk of rows, with the line each came from and the key its name is indexed under,
+     * and the rows that were rejected
+     */
+    private static final class ValidatedChunk {
+        private final List<Member> members;
+        private final List<String> keys;
+        private final int[] memberLines;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private ValidatedChunk(int rows) {
+            this.members = new ArrayList<>(rows);
+            this.keys = new ArrayList<>(rows);
+            this.memberLines = new int[rows];
+        }
+
+        private void add(int lineNumber, Member member) {
+            memberLines[members.size()] = lineNumber;
+            members.add(member);
+            keys.add(LibrarySystem.nameKey(member.getName()));
+        }
+
+        private void reject(int lineNumber, String message) {
+            errors.add(new RowError(lineNumber, message));
+        }
+    }
+
+    // ===== DTO =====
+    public static class ImportReport {
+        private final List<RowError> errors = new ArrayList<>();
+        private long rowsRead;
+        private int imported;
+        private int duplicates;
+        private int invalid;
+        private long elapsedNanos;
+
+        /*
+         * Private constructor for ImportReport
+         * Starts every count at zero
+         */
+        private ImportReport() {
+        }
+
+        /*
+         * Keeps a row that was not imported, if there is still room in the report
+         *
+         * @param error The row and the reason
+         * @param maxErrors The number of rows the report keeps
+         */
+        private void keep(RowError error, int maxErrors) {
+            if (errors.size() < maxErrors) errors.add(error);
+        }
+
+        /*
+         * Works out how many rows the import got through each second
+         *
+         * @return Rows per second, or 0 if the import took no measurable time
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        // Getters:
+        public long getRowsRead() { return rowsRead; }
+        public int getImported() { return imported; }
+        public int getDuplicates() { return duplicates; }
+        public int getInvalid() { return invalid; }
+        public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+}
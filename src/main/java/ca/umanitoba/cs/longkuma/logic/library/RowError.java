@@ -0,0 +1,22 @@
+package ca.umanitoba.cs.longkuma.logic.library;
+
+public class RowError {
+    private final int lineNumber;
+    private final String message;
+
+    /*
+     * Constructor for RowError
+     * Describes a row of an imported file that was not loaded
+     *
+     * @param lineNumber The line of the file the row is on, counted from 1
+     * @param message Why the row was not loaded
+     */
+    RowError(int lineNumber, String message) {
+        this.lineNumber = lineNumber;
+        this.message = message;
+    }
+
+    // Getters:
+    public int getLineNumber() { return lineNumber; }
+    public String getMessage() { return message; }
+}
@@ -0,0 +1,237 @@
+package ca.umanitoba.cs.longkuma.logic.media;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
+import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
+import ca.umanitoba.cs.longkuma.domain.member.Member;
+import ca.umanitoba.cs.longkuma.logic.resource.BookingLogic;
+import com.google.common.base.Preconditions;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class LoanLedger {
+
+    private static final LoanLedger instance = new LoanLedger();
+
+    /*
+     * Returns the singleton instance of LoanLedger
+     * The ledger is shared by borrows and returns of every media item, so each method is synchronized
+     *
+     * @return The singleton LoanLedger instance
+     */
+    public static LoanLedger getInstance() { return instance; }
+
+    private final HashMap<MediaCopy, Loan> loansByCopy = new HashMap<>();
+    private final HashMap<Member, LinkedHashSet<MediaCopy>> loansByMember = new HashMap<>();
+    private final TreeMap<LocalDate, LinkedHashSet<MediaCopy>> loansByDueDate = new TreeMap<>();
+
+    /*
+     * Records a new active loan of a media copy to a member
+     * Indexes the loan by copy, by member and by due date
+     *
+     * @param copy The media copy being lent out
+     * @param member The member borrowing the copy
+     * @param dueTime The time the copy is due to be returned in HH:MM format
+     * @param dueDate The date the copy is due to be returned in DD/MM/YY format
+     * @return The recorded Loan
+     * @throws InvalidDateException if dueDate is not a valid DD/MM/YY date
+     */
+    public synchronized Loan record(MediaCopy copy, Member member, String dueTime, String dueDate) throws InvalidDateException {
+        Preconditions.checkNotNull(copy, "Copy cannot be null");
+        Preconditions.checkNotNull(member, "Member cannot be null");
+        Preconditions.checkState(!loansByCopy.containsKey(copy), "Copy is already on loan");
+
+        LocalDate due = LocalDate.ofEpochDay(BookingLogic.parseDate(dueDate));
+        Loan loan = new Loan(copy, member, dueTime, due);
+
+        loansByCopy.put(copy, loan);
+        loansByMember.computeIfAbsent(member, m -> new LinkedHashSet<>()).add(copy);
+        loansByDueDate.computeIfAbsent(due, d -> new LinkedHashSet<>()).add(copy);
+
+        checkLoanLedger();
+        return loan;
+    }
+
+    /*
+     * Removes the active loan for a media copy from every index
+     *
+     * @param copy The media copy being returned
+     * @return The Loan that was removed, or null if the copy was not on loan
+     */
+    public synchronized Loan release(MediaCopy copy) {
+        Loan loan = loansByCopy.remove(copy);
+        if (loan == null) return null;
+
+        removeFromIndex(loansByMember, loan.getMember(), copy);
+        removeFromIndex(loansByDueDate, loan.getDueDate(), copy);
+
+        checkLoanLedger();
+        return loan;
+    }
+
+    /*
+     * Checks whether a member currently holds a media copy
+     *
+     * @param copy The media copy to check
+     * @param member The member to check
+     * @return true if the copy is on loan to the member, false otherwise
+     */
+    public synchronized boolean isHeldBy(MediaCopy copy, Member member) {
+        Loan loan = loansByCopy.get(copy);
+        return loan != null && loan.getMember() == member;
+    }
+
+    /*
+     * Finds the member currently holding a media copy
+     *
+     * @param copy The media copy to look up
+     * @return The member holding the copy, or null if the copy is not on loan
+     */
+    public synchronized Member holderOf(MediaCopy copy) {
+        Loan loan = loansByCopy.get(copy);
+        return loan == null ? null : loan.getMember();
+    }
+
+    /*
+     * Returns the active loan for a media copy
+     *
+     * @param copy The media copy to look up
+     * @return The Loan for the copy, or null if the copy is not on loan
+     */
+    public synchronized Loan getLoan(MediaCopy copy) {
+        return loansByCopy.get(copy);
+    }
+
+    /*
+     * Returns the copies currently on loan to a member, in borrowing order
+     *
+     * @param member The member to look up
+     * @return A copy of the member's borrowed copies
+     */
+    public synchronized Collection<MediaCopy> loansOf(Member member) {
+        Set<MediaCopy> copies = loansByMember.get(member);
+        return copies == null ? Collections.emptyList() : new ArrayList<>(copies);
+    }
+
+    /*
+     * Returns all loans due on a given date
+     *
+     * @param date The due date to look up
+     * @return A list of loans due on that date
+     */
+    public List<Loan> dueOn(LocalDate date) {
+        return dueBetween(date, date);
+    }
+
+    /*
+     * Returns all loans due within an inclusive range of dates, ordered by due date
+     *
+     * @param from The first due date to include
+     * @param to The last due date to include
+     * @return A list of loans due within the range
+     */
+    public synchronized List<Loan> dueBetween(LocalDate from, LocalDate to) {
+        Preconditions.checkNotNull(from, "From date cannot be null");
+        Preconditions.checkNotNull(to, "To date cannot be null");
+        List<Loan> due = new ArrayList<>();
+        if (from.isAfter(to)) return due;
+
+        NavigableMap<LocalDate, LinkedHashSet<MediaCopy>> range = loansByDueDate.subMap(from, true, to, true);
+        for (LinkedHashSet<MediaCopy> copies : range.values()) {
+            for (MediaCopy copy : copies) {
+                due.add(loansByCopy.get(copy));
+            }
+        }
+        return due;
+    }
+
+    /*
+     * Returns all loans whose due date is before a given date
+     *
+     * @param today The date to compare due dates against
+     * @return A list of overdue loans, ordered by due date
+     */
+    public synchronized List<Loan> overdueAsOf(LocalDate today) {
+        Preconditions.checkNotNull(today, "Date cannot be null");
+        List<Loan> overdue = new ArrayList<>();
+        for (LinkedHashSet<MediaCopy> copies : loansByDueDate.headMap(today, false).values()) {
+            for (MediaCopy copy : copies) {
+                overdue.add(loansByCopy.get(copy));
+            }
+        }
+        return overdue;
+    }
+
+    /*
+     * Returns the number of active loans
+     *
+     * @return The number of copies currently on loan
+     */
+    public synchronized int size() {
+        return loansByCopy.size();
+    }
+
+    /*
+     * Removes a copy from one bucket of a secondary index, dropping the bucket once it is empty
+     *
+     * @param index The index to remove from
+     * @param key The bucket key
+     * @param copy The media copy to remove
+     */
+    private static <K> void removeFromIndex(Map<K, LinkedHashSet<MediaCopy>> index, K key, MediaCopy copy) {
+        LinkedHashSet<MediaCopy> copies = index.get(key);
+        if (copies != null) {
+            copies.remove(copy);
+            if (copies.isEmpty()) index.remove(key);
+        }
+    }
+
+    /*
+     * Validates the internal state of the LoanLedger
+     * Ensures the indexes are non-null
+     */
+    private void checkLoanLedger() {
+        Preconditions.checkState(loansByCopy != null, "Copy index cannot be null");
+        Preconditions.checkState(loansByMember != null, "Member index cannot be null");
+        Preconditions.checkState(loansByDueDate != null, "Due date index cannot be null");
+    }
+
+    // ===== DTO =====
+    public static class Loan {
+        private final MediaCopy copy;
+        private final Member member;
+        private final String dueTime;
+        private final LocalDate dueDate;
+
+        /*
+         * Private constructor for Loan
+         * Initializes the loan with the copy, the borrowing member and the due date/time
+         *
+         * @param copy The media copy on loan
+         * @param member The member holding the copy
+         * @param dueTime The time the copy is due in HH:MM format
+         * @param dueDate The date the copy is due
+         */
+        private Loan(MediaCopy copy, Member member, String dueTime, LocalDate dueDate) {
+            this.copy = copy;
+            this.member = member;
+            this.dueTime = dueTime;
+            this.dueDate = dueDate;
+        }
+
+        // Getters:
+        public MediaCopy getCopy() { return copy; }
+        public Member getMember() { return member; }
+        public String getDueTime() { return dueTime; }
+        public LocalDate getDueDate() { return dueDate; }
+    }
+}
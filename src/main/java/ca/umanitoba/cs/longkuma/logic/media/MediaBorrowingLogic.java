@@ -1,12 +1,20 @@
 package ca.umanitoba.cs.longkuma.logic.media;
 
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
+import ca.umanitoba.cs.longkuma.domain.library.Library;
 import ca.umanitoba.cs.longkuma.domain.media.Media;
 import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
+import ca.umanitoba.cs.longkuma.domain.media.Review;
+import ca.umanitoba.cs.longkuma.domain.member.Eligibility;
 import ca.umanitoba.cs.longkuma.domain.member.Member;
 
+import java.util.concurrent.locks.Lock;
+
 public class MediaBorrowingLogic {
 
     private static final MediaBorrowingLogic instance = new MediaBorrowingLogic();
+    private static final String WAITLIST_DUE_TIME = "12:00";
+    private static final String WAITLIST_DUE_DATE = "01/01/30";
 
     /*
      * Returns the singleton instance of MediaBorrowingLogic
@@ -17,8 +25,11 @@ public class MediaBorrowingLogic {
 
     /*
      * Handles the borrowing of media by a member
-     * Checks member constraints, finds available copy, marks it as borrowed
+     * Checks member eligibility, finds available copy, marks it as borrowed and records the loan in the ledger
      * If no copies available, adds member to waitlist
+     * Holds Library.mediaChangeLock throughout, so the media's catalog cannot be unloaded part way through.
+     * That lock is shared by every borrower, so the media and the member are also locked: two members cannot
+     * be given the same copy, and one member's borrows cannot both pass a loan limit they only have room for once
      *
      * @param media The media item to borrow
      * @param member The member attempting to borrow
@@ -27,13 +38,41 @@ public class MediaBorrowingLogic {
      * @return BorrowResult indicating success, waitlist, or failure
      */
     public BorrowResult borrow(Media media, Member member, String dueTime, String dueDate) {
+        Lock lock = Library.mediaChangeLock();
+        lock.lock();
+        try {
+            synchronized (media) {
+                synchronized (member) {
+                    return borrowLocked(media, member, dueTime, dueDate);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        if (member.hasConstraints())
-            return BorrowResult.failure("Member has constraints");
+    /*
+     * Borrows media for a member while holding Library.mediaChangeLock and the media's and member's locks
+     *
+     * @param media The media item to borrow
+     * @param member The member attempting to borrow
+     * @param dueTime The time the media is due to be returned
+     * @param dueDate The date the media is due to be returned
+     * @return BorrowResult indicating success, waitlist, or failure
+     */
+    private BorrowResult borrowLocked(Media media, Member member, String dueTime, String dueDate) {
+        if (!member.canBorrow())
+            return BorrowResult.failure(
+                    "Member cannot borrow: " + member.getEligibility().describe(Eligibility.BORROW_BLOCKERS));
 
         MediaCopy available = media.findAvailableCopy();
 
         if (available != null) {
+            try {
+                LoanLedger.getInstance().record(available, member, dueTime, dueDate);
+            } catch (InvalidDateException e) {
+                return BorrowResult.failure("Invalid due date: " + e.getMessage());
+            }
             available.markBorrowed(member, dueTime, dueDate);
             member.addBorrowedCopy(available);
             return BorrowResult.success("Borrowed successfully", available);
@@ -45,25 +84,52 @@ public class MediaBorrowingLogic {
 
     /*
      * Handles the return of a media copy by a member
-     * Validates member has the copy, marks it as returned, checks waitlist for next borrower
+     * Validates member has the copy using the loan ledger, marks it as returned, checks waitlist for next borrower
      * If someone is on waitlist, automatically borrows copy to them
+     * Holds Library.mediaChangeLock throughout, so the media's catalog cannot be unloaded part way through,
+     * and the copy's media, so the copy cannot be lent out between being returned and passed down the waitlist
      *
      * @param copy The media copy being returned
      * @param member The member returning the copy
      * @return BorrowResult indicating success or failure
      */
     public BorrowResult returnCopy(MediaCopy copy, Member member) {
+        Lock lock = Library.mediaChangeLock();
+        lock.lock();
+        try {
+            synchronized (copy.getMedia()) {
+                return returnLocked(copy, member);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        if (!member.getBorrowedMedia().contains(copy))
+    /*
+     * Returns a copy for a member while holding Library.mediaChangeLock and the lock of the copy's media
+     *
+     * @param copy The media copy being returned
+     * @param member The member returning the copy
+     * @return BorrowResult indicating success or failure
+     */
+    private BorrowResult returnLocked(MediaCopy copy, Member member) {
+        LoanLedger ledger = LoanLedger.getInstance();
+        if (!ledger.isHeldBy(copy, member))
             return BorrowResult.failure("Member does not have this copy");
 
+        ledger.release(copy);
         member.removeBorrowedCopy(copy);
         copy.markReturned();
 
         Member next = WaitlistLogic.getInstance().pop(copy.getMedia());
 
         if (next != null) {
-            copy.markBorrowed(next, "12:00", "01/01/30");
+            try {
+                ledger.record(copy, next, WAITLIST_DUE_TIME, WAITLIST_DUE_DATE);
+            } catch (InvalidDateException e) {
+                throw new IllegalStateException("Waitlist due date is invalid", e);
+            }
+            copy.markBorrowed(next, WAITLIST_DUE_TIME, WAITLIST_DUE_DATE);
             next.addBorrowedCopy(copy);
 
             return BorrowResult.success(
@@ -75,6 +141,24 @@ public class MediaBorrowingLogic {
         return BorrowResult.success("Returned successfully", copy);
     }
 
+    /*
+     * Adds a member's review to a media item
+     * Holds Library.mediaChangeLock, so the review cannot be lost to the media's catalog being unloaded
+     *
+     * @param media The media item being reviewed
+     * @param review The review to add
+     * @return true if the review was added, false if it is null
+     */
+    public boolean addReview(Media media, Review review) {
+        Lock lock = Library.mediaChangeLock();
+        lock.lock();
+        try {
+            return media.addReview(review);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     // ===== DTO =====
     public static class BorrowResult {
 
@@ -45,7 +45,7 @@ public class WaitlistLogic {
      * @param media The media item to wait for
      * @param member The member joining the waitlist
      */
-    public void add(Media media, Member member) {
+    public synchronized void add(Media media, Member member) {
         entries.add(new Entry(media, member));
     }
 
@@ -56,7 +56,7 @@ public class WaitlistLogic {
      * @param media The media item to check the waitlist for
      * @return The first member waiting for the media, or null if no one is waiting
      */
-    public Member pop(Media media) {
+    public synchronized Member pop(Media media) {
         for (int i = 0; i < entries.size(); i++) {
             if (entries.get(i).media == media) {
                 Member m = entries.get(i).member;
@@ -66,4 +66,17 @@ public class WaitlistLogic {
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /*
+     * Checks whether anyone is waiting for a specific media item
+     *
+     * @param media The media item to check the waitlist for
+     * @return true if at least one member is waiting for the media, false otherwise
+     */
+    public synchronized boolean isWaitedFor(Media media) {
+        for (Entry entry : entries) {
+            if (entry.media == media) return true;
+        }
+        return false;
+    }
+}
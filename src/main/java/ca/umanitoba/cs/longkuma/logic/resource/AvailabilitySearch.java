@@ -0,0 +1,282 @@
+package ca.umanitoba.cs.longkuma.logic.resource;
+
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidTimeFormatException;
+import ca.umanitoba.cs.longkuma.domain.library.Building;
+import ca.umanitoba.cs.longkuma.domain.library.FloorRoutes;
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.library.MapGrid;
+import ca.umanitoba.cs.longkuma.domain.resource.DateTimeCodec;
+import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import ca.umanitoba.cs.longkuma.logic.library.LibrarySystem;
+import ca.umanitoba.cs.longkuma.logic.stack.Pathfinding;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+public class AvailabilitySearch {
+
+    /*
+     * Finds every resource in the system that is open and free for a query's date and time window
+     * Each candidate resource is checked in parallel, then the matches are ranked
+     * When the query asks for the nearest resources, matches are ordered by walking distance from the kiosk
+     * Otherwise they keep library order and are sorted by resource name within a library, and no distance is measured
+     * Walking distances are read from the map's cached shortest-path tree from the kiosk (Map.getOriginRoutes);
+     * in a library on several floors they follow the building's path to the resource's floor, stairs and all
+     *
+     * @param libSystem The library system to search
+     * @param query The date, time window and optional filters
+     * @return The ranked list of available resources
+     */
+    public static List<Result> search(LibrarySystem libSystem, Query query) {
+        Preconditions.checkNotNull(libSystem, "Library system cannot be null");
+        Preconditions.checkNotNull(query, "Query cannot be null");
+
+        List<Library> libraries = libSystem.getLibraries();
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < libraries.size(); i++) {
+            Library library = libraries.get(i);
+            if (query.libraryName != null && !library.getName().equalsIgnoreCase(query.libraryName)) continue;
+            for (Resource resource : library.getResources()) {
+                candidates.add(new Candidate(i, library, resource));
+            }
+        }
+
+        Comparator<Result> ranking = query.nearestToKiosk
+                ? Comparator.comparingInt(Result::getDistance)
+                : Comparator.comparingInt((Result r) -> r.libraryOrder);
+        ranking = ranking.thenComparing(r -> r.getLibrary().getName())
+                .thenComparing(r -> r.getResource().getResourceName());
+
+        return candidates.parallelStream()
+                .filter(c -> matches(c.resource, query))
+                .map(c -> new Result(c.library, c.resource, c.libraryOrder,
+                        query.nearestToKiosk ? distanceFromKiosk(c.library, c.resource) : Result.NOT_MEASURED))
+                .sorted(ranking)
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * Checks a single resource against the query's name filter, opening hours and existing bookings
+     *
+     * @param resource The resource to check
+     * @param query The query to check against
+     * @return true if the resource is available for the query, false otherwise
+     */
+    private static boolean matches(Resource resource, Query query) {
+        if (query.namePattern != null && !query.namePattern.matcher(resource.getResourceName()).find()) return false;
+        return resource.isOpen(query.startMinute, query.endMinute)
+                && resource.isFree(query.epochDay, query.startMinute, query.endMinute);
+    }
+
+    /*
+     * Finds how far a resource is from the library's kiosk
+     * Uses the walking distance to the resource's closest reachable coordinate. In a building the resource
+     * may be on another floor, so the distance is that of the building's shortest path to it: the steps
+     * walked on each floor plus the cost of each staircase or elevator taken
+     *
+     * @param library The library the resource is in
+     * @param resource The resource to measure to
+     * @return The number of steps to the closest coordinate, or Integer.MAX_VALUE if the resource cannot be reached
+     */
+    private static int distanceFromKiosk(Library library, Resource resource) {
+        Building building = library.getBuilding();
+        if (building != null) {
+            List<Pathfinding.FloorPath> path = Pathfinding.findBuildingPath(building, resource);
+            if (path == null || path.isEmpty()) return Integer.MAX_VALUE;
+            int steps = 0;
+            for (Pathfinding.FloorPath part : path) {
+                steps += part.getCells().size() - 1;
+                if (part.getExit() != null) steps += part.getExit().getCost();
+            }
+            return steps;
+        }
+
+        FloorRoutes routes = library.getMap().getOriginRoutes();
+        MapGrid grid = library.getMap().getGrid();
+        int best = Integer.MAX_VALUE;
+        for (int[] coord : resource.getCoordinates()) {
+            if (!grid.inBounds(coord[0], coord[1])) continue;
+            int steps = routes.distance(0, grid.cellIndex(coord[0], coord[1]));
+            if (steps != FloorRoutes.UNREACHED) best = Math.min(best, steps);
+        }
+        return best;
+    }
+
+    /*
+     * Private inner class pairing a resource with the library it belongs to
+     */
+    private static class Candidate {
+        final int libraryOrder;
+        final Library library;
+        final Resource resource;
+
+        /*
+         * Constructs a Candidate for a resource in a library
+         *
+         * @param libraryOrder The position of the library in the system
+         * @param library The library the resource is in
+         * @param resource The resource to check
+         */
+        Candidate(int libraryOrder, Library library, Resource resource) {
+            this.libraryOrder = libraryOrder;
+            this.library = library;
+            this.resource = resource;
+        }
+    }
+
+    public static class Query {
+        private final long epochDay;
+        private final int startMinute;
+        private final int endMinute;
+        private final Pattern namePattern;
+        private final String libraryName;
+        private final boolean nearestToKiosk;
+
+        /*
+         * Private constructor for Query
+         *
+         * @param builder The QueryBuilder containing configuration parameters
+         */
+        private Query(QueryBuilder builder) {
+            this.epochDay = builder.epochDay;
+            this.startMinute = builder.startMinute;
+            this.endMinute = builder.endMinute;
+            this.namePattern = builder.namePattern;
+            this.libraryName = builder.libraryName;
+            this.nearestToKiosk = builder.nearestToKiosk;
+            checkQuery();
+        }
+
+        public static class QueryBuilder {
+            private long epochDay = Long.MIN_VALUE;
+            private int startMinute = -1;
+            private int endMinute = -1;
+            private Pattern namePattern;
+            private String libraryName;
+            private boolean nearestToKiosk;
+
+            /*
+             * Sets the date to search
+             *
+             * @param date The date string in DD/MM/YY or YYYY-MM-DD format
+             * @return QueryBuilder instance for method chaining
+             * @throws InvalidDateException if the date format is invalid
+             */
+            public QueryBuilder date(String date) throws InvalidDateException {
+                this.epochDay = BookingLogic.parseDate(date);
+                return this;
+            }
+
+            /*
+             * Sets the time window the resource must be free for
+             *
+             * @param time The time window in HH:MM-HH:MM format
+             * @return QueryBuilder instance for method chaining
+             * @throws InvalidTimeFormatException if the time format is invalid or the window ends before it starts
+             */
+            public QueryBuilder timeWindow(String time) throws InvalidTimeFormatException {
+                int range = BookingLogic.parseTimeRange(time);
+                this.startMinute = DateTimeCodec.startOf(range);
+                this.endMinute = DateTimeCodec.endOf(range);
+                return this;
+            }
+
+            /*
+             * Restricts the search to resources whose name matches a pattern
+             * The pattern is a case-insensitive regular expression, so plain words match anywhere in the name
+             *
+             * @param pattern The name pattern, or null or empty for any name
+             * @return QueryBuilder instance for method chaining
+             * @throws IllegalArgumentException if the pattern is not a valid regular expression
+             */
+            public QueryBuilder namePattern(String pattern) {
+                if (pattern == null || pattern.isEmpty()) {
+                    this.namePattern = null;
+                    return this;
+                }
+                try {
+                    this.namePattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid name pattern: " + e.getDescription());
+                }
+                return this;
+            }
+
+            /*
+             * Restricts the search to one library
+             *
+             * @param libraryName The name of the library, or null or empty for every library
+             * @return QueryBuilder instance for method chaining
+             */
+            public QueryBuilder library(String libraryName) {
+                this.libraryName = libraryName == null || libraryName.isEmpty() ? null : libraryName;
+                return this;
+            }
+
+            /*
+             * Sets whether results should be ranked by distance from the kiosk
+             *
+             * @param nearestToKiosk true to rank the closest resources first
+             * @return QueryBuilder instance for method chaining
+             */
+            public QueryBuilder nearestToKiosk(boolean nearestToKiosk) {
+                this.nearestToKiosk = nearestToKiosk;
+                return this;
+            }
+
+            /*
+             * Builds and returns a new Query instance with configured parameters
+             *
+             * @return A new Query object
+             */
+            public Query build() {
+                return new Query(this);
+            }
+        }
+
+        /*
+         * Validates the internal state of the Query object
+         * Ensures a date and time window were given
+         */
+        private void checkQuery() {
+            Preconditions.checkState(epochDay != Long.MIN_VALUE, "Query needs a date");
+            Preconditions.checkState(startMinute >= 0 && endMinute > startMinute, "Query needs a time window");
+        }
+    }
+
+    // ===== DTO =====
+    public static class Result {
+        public static final int NOT_MEASURED = -1;
+
+        private final Library library;
+        private final Resource resource;
+        private final int libraryOrder;
+        private final int distance;
+
+        /*
+         * Private constructor for Result
+         *
+         * @param library The library the resource is in
+         * @param resource The available resource
+         * @param libraryOrder The position of the library in the system
+         * @param distance The number of grid steps from the kiosk to the resource, or NOT_MEASURED
+         */
+        private Result(Library library, Resource resource, int libraryOrder, int distance) {
+            this.library = library;
+            this.resource = resource;
+            this.libraryOrder = libraryOrder;
+            this.distance = distance;
+        }
+
+        // Getters:
+        public Library getLibrary() { return library; }
+        public Resource getResource() { return resource; }
+        public int getDistance() { return distance; }
+    }
+}
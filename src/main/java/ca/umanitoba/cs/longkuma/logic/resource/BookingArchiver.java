@@ -0,0 +1,434 @@
+package ca.umanitoba.cs.longkuma.logic.resource;
+
+import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.resource.Booking;
+import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import ca.umanitoba.cs.longkuma.logic.library.LibrarySystem;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class BookingArchiver {
+
+    public static final int DEFAULT_HORIZON_DAYS = 90;
+
+    private static final String SEGMENT_PREFIX = "bookings-";
+    private static final String SEGMENT_SUFFIX = ".seg.gz";
+    private static final int RECORD_VERSION = 1;
+
+    private final LibrarySystem libSystem;
+    private final Path directory;
+    private final int horizonDays;
+    private ScheduledExecutorService scheduler;
+    private volatile IOException lastFailure;
+
+    /*
+     * Private constructor for BookingArchiver
+     *
+     * @param builder The ArchiverBuilder containing configuration parameters
+     */
+    private BookingArchiver(ArchiverBuilder builder) {
+        this.libSystem = builder.libSystem;
+        this.directory = builder.directory;
+        this.horizonDays = builder.horizonDays;
+        checkBookingArchiver();
+    }
+
+    public static class ArchiverBuilder {
+        private LibrarySystem libSystem;
+        private Path directory;
+        private int horizonDays = DEFAULT_HORIZON_DAYS;
+
+        /*
+         * Sets the library system whose bookings are archived
+         *
+         * @param libSystem The library system
+         * @return ArchiverBuilder instance for method chaining
+         */
+        public ArchiverBuilder libSystem(LibrarySystem libSystem) {
+            this.libSystem = libSystem;
+            return this;
+        }
+
+        /*
+         * Sets the directory the segment files are written to
+         *
+         * @param directory The archive directory, created on the first write
+         * @return ArchiverBuilder instance for method chaining
+         */
+        public ArchiverBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /*
+         * Sets how many days of past bookings stay in memory
+         *
+         * @param days Bookings more than this many days before today are archived
+         * @return ArchiverBuilder instance for method chaining
+         */
+        public ArchiverBuilder horizonDays(int days) {
+            this.horizonDays = days;
+            return this;
+        }
+
+        /*
+         * Builds and returns a new BookingArchiver instance with configured parameters
+         *
+         * @return A new BookingArchiver object
+         */
+        public BookingArchiver build() {
+            return new BookingArchiver(this);
+        }
+    }
+
+    // Getters:
+    public Path getDirectory() { return directory; }
+    public int getHorizonDays() { return horizonDays; }
+    public IOException getLastFailure() { return lastFailure; }
+
+    /*
+     * Starts archiving in the background on a daemon thread
+     * The first run happens immediately and later runs follow at a fixed delay
+     * A failed run is kept in lastFailure and the bookings stay in memory until the next run
+     *
+     * @param period The delay between runs
+     * @param unit The unit of the delay
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        Preconditions.checkArgument(period > 0, "Archive period must be positive");
+        Preconditions.checkState(scheduler == null, "Archiver is already running");
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "booking-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archive(LocalDate.now());
+                lastFailure = null;
+            } catch (IOException e) {
+                lastFailure = e;
+            }
+        }, 0, period, unit);
+    }
+
+    /*
+     * Stops background archiving
+     * A run that is already writing is allowed to finish
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        scheduler = null;
+    }
+
+    /*
+     * Moves every booking older than the horizon out of memory and into segment files
+     * Segments are partitioned by month and archived one month at a time: the month's file is rewritten
+     * with the new records added, then that month's bookings are removed from their resources before the
+     * next month is written. A failed write leaves the bookings of that month and every later month in
+     * memory to be archived by a later run, and never leaves a partly written segment behind.
+     * The library and resource lists are copied on write, so they can be iterated here while the
+     * rest of the system adds to them
+     *
+     * @param today The current date
+     * @return The number of bookings archived
+     * @throws IOException if a segment file cannot be written
+     */
+    public synchronized int archive(LocalDate today) throws IOException {
+        checkBookingArchiver();
+        long cutoff = today.minusDays(horizonDays).toEpochDay();
+
+        TreeMap<YearMonth, Segment> segments = new TreeMap<>();
+        for (Library library : libSystem.getLibraries()) {
+            for (Resource resource : library.getResources()) {
+                for (Booking booking : resource.getBookingsBefore(cutoff)) {
+                    ArchivedBooking record = new ArchivedBooking(library.getName(), resource.getId(),
+                            resource.getResourceName(), booking.getMember().getName(),
+                            (int) booking.getEpochDay(), booking.getStartMinute(), booking.getEndMinute());
+                    segments.computeIfAbsent(YearMonth.from(record.getDate()), m -> new Segment())
+                            .add(resource, booking, record);
+                }
+            }
+        }
+        if (segments.isEmpty()) return 0;
+
+        Files.createDirectories(directory);
+        int archived = 0;
+        for (Map.Entry<YearMonth, Segment> segment : segments.entrySet()) {
+            writeSegment(segmentPath(segment.getKey()), segment.getValue().records);
+            for (Map.Entry<Resource, List<Booking>> entry : segment.getValue().bookingsByResource.entrySet()) {
+                archived += entry.getKey().removeBookings(entry.getValue());
+            }
+        }
+        return archived;
+    }
+
+    /*
+     * Opens a streaming reader over archived bookings between two dates
+     * Only the month segments that overlap the range are opened, one at a time,
+     * and records are decoded as they are read so the archive is never loaded whole
+     * The returned iterator must be closed when the caller is done with it
+     *
+     * @param from The first date to include
+     * @param to The last date to include
+     * @return An iterator over the archived bookings in the range, month by month
+     */
+    public SegmentIterator read(LocalDate from, LocalDate to) {
+        Preconditions.checkNotNull(from, "Start date cannot be null");
+        Preconditions.checkNotNull(to, "End date cannot be null");
+        Preconditions.checkArgument(!to.isBefore(from), "End date cannot be before start date");
+
+        List<Path> paths = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            Path path = segmentPath(month);
+            if (Files.exists(path)) paths.add(path);
+        }
+        return new SegmentIterator(paths, from.toEpochDay(), to.toEpochDay());
+    }
+
+    /*
+     * Returns the file that holds one month of archived bookings
+     *
+     * @param month The month of the segment
+     * @return The path of the segment file
+     */
+    private Path segmentPath(YearMonth month) {
+        return directory.resolve(SEGMENT_PREFIX + month + SEGMENT_SUFFIX);
+    }
+
+    /*
+     * Adds records to a segment file as a new gzip member
+     * The segment's existing members are copied to a temporary file in the same directory, the new member
+     * is written after them, and the temporary file then replaces the segment in a single rename, so
+     * readers only ever see the old segment or the whole new one
+     *
+     * @param path The segment file
+     * @param records The records to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeSegment(Path path, List<ArchivedBooking> records) throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (Files.exists(path)) Files.copy(path, file);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(file)));
+                for (ArchivedBooking record : records) {
+                    out.writeByte(RECORD_VERSION);
+                    out.writeInt(record.epochDay);
+                    out.writeShort(record.startMinute);
+                    out.writeShort(record.endMinute);
+                    out.writeUTF(record.libraryName);
+                    out.writeUTF(record.resourceId);
+                    out.writeUTF(record.resourceName);
+                    out.writeUTF(record.memberName);
+                }
+                out.close();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /*
+     * One month of bookings being archived: the records to write and the bookings to remove once they are written
+     */
+    private static class Segment {
+        final List<ArchivedBooking> records = new ArrayList<>();
+        final Map<Resource, List<Booking>> bookingsByResource = new LinkedHashMap<>();
+
+        /*
+         * Adds a booking to the segment
+         *
+         * @param resource The resource the booking is on
+         * @param booking The booking
+         * @param record The record written for the booking
+         */
+        void add(Resource resource, Booking booking, ArchivedBooking record) {
+            records.add(record);
+            bookingsByResource.computeIfAbsent(resource, r -> new ArrayList<>()).add(booking);
+        }
+    }
+
+    /*
+     * Validates the internal state of the BookingArchiver object
+     * Ensures a library system and directory were given and the horizon is not negative
+     */
+    private void checkBookingArchiver() {
+        Preconditions.checkState(libSystem != null, "Archiver needs a library system");
+        Preconditions.checkState(directory != null, "Archiver needs a directory");
+        Preconditions.checkState(horizonDays >= 0, "Horizon cannot be negative");
+    }
+
+    /*
+     * Streaming iterator over the records in a list of segment files
+     * Each segment is decompressed as it is read; records outside the date range are skipped
+     */
+    public static class SegmentIterator implements Iterator<ArchivedBooking>, Closeable {
+        private final Iterator<Path> paths;
+        private final long fromDay;
+        private final long toDay;
+        private DataInputStream in;
+        private ArchivedBooking next;
+
+        /*
+         * Constructs a SegmentIterator over segment files
+         *
+         * @param paths The segment files to read, in order
+         * @param fromDay The first epoch day to include
+         * @param toDay The last epoch day to include
+         */
+        private SegmentIterator(List<Path> paths, long fromDay, long toDay) {
+            this.paths = paths.iterator();
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        /*
+         * Checks whether another record is available, reading ahead to find it
+         *
+         * @return true if there is another record in the range, false otherwise
+         * @throws UncheckedIOException if a segment cannot be read
+         */
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (in == null) {
+                        if (!paths.hasNext()) return false;
+                        InputStream file = Files.newInputStream(paths.next());
+                        in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(file)));
+                    }
+                    ArchivedBooking record = readRecord(in);
+                    if (record == null) {
+                        in.close();
+                        in = null;
+                    } else if (record.epochDay >= fromDay && record.epochDay <= toDay) {
+                        next = record;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /*
+         * Returns the next record in the range
+         *
+         * @return The next archived booking
+         * @throws NoSuchElementException if there are no more records
+         */
+        @Override
+        public ArchivedBooking next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            ArchivedBooking record = next;
+            next = null;
+            return record;
+        }
+
+        /*
+         * Closes the segment that is currently open
+         *
+         * @throws IOException if the segment cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            if (in != null) in.close();
+            in = null;
+        }
+
+        /*
+         * Reads one record from a segment
+         *
+         * @param in The decompressed segment
+         * @return The record, or null at the end of the segment
+         * @throws IOException if the record is truncated or has an unknown version
+         */
+        private static ArchivedBooking readRecord(DataInputStream in) throws IOException {
+            int version = in.read();
+            if (version < 0) return null;
+            if (version != RECORD_VERSION) throw new IOException("Unknown archive record version " + version);
+            try {
+                int epochDay = in.readInt();
+                int startMinute = in.readShort();
+                int endMinute = in.readShort();
+                return new ArchivedBooking(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                        epochDay, startMinute, endMinute);
+            } catch (EOFException e) {
+                throw new IOException("Truncated archive record", e);
+            }
+        }
+    }
+
+    // ===== DTO =====
+    public static class ArchivedBooking {
+        private final String libraryName;
+        private final String resourceId;
+        private final String resourceName;
+        private final String memberName;
+        private final int epochDay;
+        private final int startMinute;
+        private final int endMinute;
+
+        /*
+         * Private constructor for ArchivedBooking
+         *
+         * @param libraryName The name of the library the resource was in
+         * @param resourceId The id of the booked resource
+         * @param resourceName The name of the booked resource
+         * @param memberName The name of the member who made the booking
+         * @param epochDay The date of the booking as days since 1970-01-01
+         * @param startMinute The start time of the booking in minutes since midnight
+         * @param endMinute The end time of the booking in minutes since midnight
+         */
+        private ArchivedBooking(String libraryName, String resourceId, String resourceName, String memberName,
+                                int epochDay, int startMinute, int endMinute) {
+            this.libraryName = libraryName;
+            this.resourceId = resourceId;
+            this.resourceName = resourceName;
+            this.memberName = memberName;
+            this.epochDay = epochDay;
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+        }
+
+        // Getters:
+        public String getLibraryName() { return libraryName; }
+        public String getResourceId() { return resourceId; }
+        public String getResourceName() { return resourceName; }
+        public String getMemberName() { return memberName; }
+        public LocalDate getDate() { return LocalDate.ofEpochDay(epochDay); }
+        public int getStartMinute() { return startMinute; }
+        public int getEndMinute() { return endMinute; }
+    }
+}
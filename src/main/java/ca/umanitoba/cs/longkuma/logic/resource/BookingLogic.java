@@ -1,97 +1,183 @@
 package ca.umanitoba.cs.longkuma.logic.resource;
 
+import ca.umanitoba.cs.longkuma.domain.exceptions.BookingLimitExceededException;
 import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
 import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMemberException;
 import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidTimeFormatException;
+import ca.umanitoba.cs.longkuma.domain.exceptions.TimeSlotUnavailableException;
+import ca.umanitoba.cs.longkuma.domain.member.Eligibility;
 import ca.umanitoba.cs.longkuma.domain.member.Member;
 import ca.umanitoba.cs.longkuma.domain.resource.Booking;
+import ca.umanitoba.cs.longkuma.domain.resource.DateTimeCodec;
+import ca.umanitoba.cs.longkuma.domain.resource.RecurringBooking;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class BookingLogic {
 
     /*
      * Creates a booking for a member at a resource with specified date and time
-     * Parses and validates date and time strings, builds the booking, and adds it to both resource and member
+     * Checks the member's eligibility, parses and validates date and time strings, builds the booking,
+     * and adds it to both resource and member
      *
      * @param member The member making the booking
      * @param resource The resource being booked
-     * @param dateString The date string in DD/MM/YY format
+     * @param dateString The date string in DD/MM/YY or YYYY-MM-DD format
      * @param timeString The time string in HH:MM-HH:MM format
      * @return The created Booking object
      * @throws InvalidDateException if the date format is invalid
-     * @throws InvalidTimeFormatException if the time format is invalid
+     * @throws InvalidTimeFormatException if the time format is invalid or the end time is not after the start time
      * @throws InvalidMemberException if the member is invalid
+     * @throws BookingLimitExceededException if the member's constraints prevent booking
+     * @throws TimeSlotUnavailableException if the requested time is outside opening hours or overlaps an existing booking
      */
     public static Booking createBooking(Member member, Resource resource,
-                                        String dateString, String timeString) throws InvalidDateException, InvalidTimeFormatException, InvalidMemberException {
+                                        String dateString, String timeString) throws InvalidDateException, InvalidTimeFormatException,
+            InvalidMemberException, BookingLimitExceededException, TimeSlotUnavailableException {
+
+        if (!member.canBook()) {
+            throw new BookingLimitExceededException(
+                    "Member cannot book: " + member.getEligibility().describe(Eligibility.BOOKING_BLOCKERS));
+        }
 
-        int[] dateParts = parseAndValidateDate(dateString);
-        String[] timeParts = parseAndValidateTime(timeString);
+        int epochDay = parseDate(dateString);
+        int timeRange = parseTimeRange(timeString);
+        checkBookable(resource, timeRange);
 
         Booking booking = new Booking.BookingBuilder()
                 .member(member)
-                .startTime(timeParts[0])
-                .endTime(timeParts[1])
-                .day(dateParts[0])
-                .month(dateParts[1])
-                .year(dateParts[2])
+                .startMinute(DateTimeCodec.startOf(timeRange))
+                .endMinute(DateTimeCodec.endOf(timeRange))
+                .epochDay(epochDay)
                 .build();
 
         resource.addBooking(booking);
-        member.addBookedResource(resource);
+        member.addBookedResource(resource, epochDay);
 
         return booking;
 
     }
 
     /*
-     * Parses and validates a date string in DD/MM/YY format
-     * Checks format, separator positions, and value ranges for day, month, and year
+     * Creates a recurring booking for a member at a resource
+     * The series is stored once on the resource and counts as a single booking towards the member's limit
      *
-     * @param date The date string to parse in DD/MM/YY format
-     * @return An integer array containing [day, month, year] where year is converted to full four-digit format
-     * @throws InvalidDateException if date is null, wrong length, has invalid format, or contains out-of-range values
+     * @param member The member making the booking
+     * @param resource The resource being booked
+     * @param firstDate The date of the first occurrence in DD/MM/YY or YYYY-MM-DD format
+     * @param lastDate The date the series ends on in DD/MM/YY or YYYY-MM-DD format
+     * @param timeString The time of each occurrence in HH:MM-HH:MM format
+     * @param frequency How often the booking repeats
+     * @return The created RecurringBooking object
+     * @throws InvalidDateException if either date is invalid or the series ends before it starts
+     * @throws InvalidTimeFormatException if the time format is invalid or the time ends before it starts
+     * @throws InvalidMemberException if the member is invalid
+     * @throws BookingLimitExceededException if the member's constraints prevent booking
+     * @throws TimeSlotUnavailableException if the time is outside opening hours or any occurrence overlaps an existing booking
      */
-    public static int[] parseAndValidateDate(String date) throws InvalidDateException {
-        if (date == null || date.length() != 8)
-            throw new InvalidDateException("Date must be DD/MM/YY");
+    public static RecurringBooking createRecurringBooking(Member member, Resource resource, String firstDate,
+                                                          String lastDate, String timeString, RecurringBooking.Frequency frequency)
+            throws InvalidDateException, InvalidTimeFormatException, InvalidMemberException,
+            BookingLimitExceededException, TimeSlotUnavailableException {
+
+        if (!member.canBook()) {
+            throw new BookingLimitExceededException(
+                    "Member cannot book: " + member.getEligibility().describe(Eligibility.BOOKING_BLOCKERS));
+        }
 
-        if (date.charAt(2) != '/' || date.charAt(5) != '/')
-            throw new InvalidDateException("Date must be DD/MM/YY with slashes");
+        int firstDay = parseDate(firstDate);
+        int lastDay = parseDate(lastDate);
+        if (lastDay < firstDay) throw new InvalidDateException("Series cannot end before it starts");
+        int timeRange = parseTimeRange(timeString);
+        checkBookable(resource, timeRange);
 
-        try {
-            int day = Integer.parseInt(date.substring(0, 2));
-            int month = Integer.parseInt(date.substring(3, 5));
-            int year = Integer.parseInt(date.substring(6, 8)) + 2000;
+        RecurringBooking recurring = new RecurringBooking.RecurringBookingBuilder()
+                .member(member)
+                .frequency(frequency)
+                .firstDay(firstDay)
+                .lastDay(lastDay)
+                .minutes(DateTimeCodec.startOf(timeRange), DateTimeCodec.endOf(timeRange))
+                .build();
 
-            if (day < 1 || day > 31) throw new InvalidDateException("Day out of range");
-            if (month < 1 || month > 12) throw new InvalidDateException("Month out of range");
-            if (year <= 2024) throw new InvalidDateException("Year must be 2025+");
+        resource.addRecurringBooking(recurring);
+        member.addBookedResource(resource, lastDay);
 
-            return new int[]{day, month, year};
-        } catch (NumberFormatException e) {
-            throw new InvalidDateException("Invalid date digits");
-        }
+        return recurring;
     }
 
     /*
-     * Parses and validates a time range string in HH:MM-HH:MM format
-     * Checks format and separator positions
+     * Checks that a time range can be booked on a resource at all
+     * The resource's slot bitmaps only cover its opening hours, so a range outside them would mark no slots
+     * and never conflict with anything
      *
-     * @param time The time string to parse in HH:MM-HH:MM format
-     * @return A string array containing [startTime, endTime] in HH:MM format
-     * @throws InvalidTimeFormatException if time is null, wrong length, or has invalid format
+     * @param resource The resource being booked
+     * @param timeRange The packed time range, from parseTimeRange
+     * @throws TimeSlotUnavailableException if the resource is not open for the whole range
      */
-    public static String[] parseAndValidateTime(String time) throws InvalidTimeFormatException {
-        if (time == null || time.length() != 11)
-            throw new InvalidTimeFormatException("Time must be HH:MM-HH:MM");
+    private static void checkBookable(Resource resource, int timeRange) throws TimeSlotUnavailableException {
+        int start = DateTimeCodec.startOf(timeRange);
+        int end = DateTimeCodec.endOf(timeRange);
+        if (!resource.isOpen(start, end)) {
+            throw new TimeSlotUnavailableException(resource.getResourceName() + " is only open "
+                    + resource.getOpeningTime() + "-" + resource.getClosingTime());
+        }
+    }
 
-        if (time.charAt(2) != ':' || time.charAt(5) != '-' || time.charAt(8) != ':')
-            throw new InvalidTimeFormatException("Bad time format");
+    /*
+     * Parses and validates a date string in DD/MM/YY or YYYY-MM-DD format
+     * Parsing is done by DateTimeCodec without allocating; an exception is only built when the date is invalid
+     *
+     * @param date The date to parse
+     * @return The date as days since 1970-01-01
+     * @throws InvalidDateException if date is null, wrong length, has invalid format, or contains out-of-range values
+     */
+    public static int parseDate(CharSequence date) throws InvalidDateException {
+        int epochDay = DateTimeCodec.parseDate(date);
+        if (DateTimeCodec.isError(epochDay)) {
+            throw new InvalidDateException(DateTimeCodec.isFormatError(epochDay)
+                    ? "Date must be DD/MM/YY" : DateTimeCodec.errorMessage(epochDay));
+        }
+        return epochDay;
+    }
 
-        String start = time.substring(0, 5);
-        String end = time.substring(6, 11);
+    /*
+     * Parses and validates a time range string in HH:MM-HH:MM format
+     * Parsing is done by DateTimeCodec without allocating; an exception is only built when the range is invalid
+     *
+     * @param time The time range to parse
+     * @return The start and end minutes packed into one int; unpack with DateTimeCodec.startOf and endOf
+     * @throws InvalidTimeFormatException if time is null, wrong length, has invalid format, or does not end after it starts
+     */
+    public static int parseTimeRange(CharSequence time) throws InvalidTimeFormatException {
+        int range = DateTimeCodec.parseTimeRange(time);
+        if (DateTimeCodec.isError(range)) {
+            throw new InvalidTimeFormatException(DateTimeCodec.isFormatError(range)
+                    ? "Time must be HH:MM-HH:MM" : DateTimeCodec.errorMessage(range));
+        }
+        return range;
+    }
 
-        return new String[]{start, end};
+    /*
+     * Lists the free time ranges of a resource on a date that are at least a given number of timeslots long
+     *
+     * @param resource The resource to check
+     * @param dateString The date string in DD/MM/YY or YYYY-MM-DD format
+     * @param slotsNeeded The minimum number of contiguous timeslots each range must hold
+     * @return A list of free ranges in HH:MM-HH:MM format, in time order
+     * @throws InvalidDateException if the date format is invalid
+     */
+    public static List<String> findFreeSlots(Resource resource, String dateString, int slotsNeeded) throws InvalidDateException {
+        int epochDay = parseDate(dateString);
+
+        List<String> ranges = new ArrayList<>();
+        StringBuilder range = new StringBuilder();
+        for (int[] freeRange : resource.findFreeRanges(epochDay, slotsNeeded)) {
+            range.setLength(0);
+            DateTimeCodec.appendTime(range, freeRange[0]).append('-');
+            ranges.add(DateTimeCodec.appendTime(range, freeRange[1]).toString());
+        }
+        return ranges;
     }
-}
\ No newline at end of file
+}
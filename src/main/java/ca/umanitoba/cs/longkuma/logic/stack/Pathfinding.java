@@ -1,175 +1,828 @@
 package ca.umanitoba.cs.longkuma.logic.stack;
 
+import ca.umanitoba.cs.longkuma.domain.library.Building;
+import ca.umanitoba.cs.longkuma.domain.library.ClusterGraph;
+import ca.umanitoba.cs.longkuma.domain.library.Connector;
+import ca.umanitoba.cs.longkuma.domain.library.FloorRoutes;
 import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.library.MapGrid;
+import ca.umanitoba.cs.longkuma.domain.library.NavigationGraph;
 import ca.umanitoba.cs.longkuma.domain.media.Media;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
-import ca.umanitoba.cs.longkuma.domain.stack.LinkedListStack;
+import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 public class Pathfinding {
 
+    private static final int[][] DIRECTIONS = {{-1,0},{1,0},{0,-1},{0,1}};
+    private static final int HIERARCHICAL_MIN_CELLS = 1 << 20;
+    private static final int HIERARCHICAL_ESTIMATE_SHARE = 16;
+    private static final ThreadLocal<SearchBuffers> BUFFERS = ThreadLocal.withInitial(SearchBuffers::new);
+
     /*
      * Finds the path from the kiosk to a media item on the library map
-     * Validates that the media coordinates exist in the map before pathfinding
+     * Validates that the media coordinates exist in the map and can be reached before pathfinding
      *
      * @param map The library map containing the grid and coordinates
      * @param media The media item to find a path to
-     * @return A list of coordinate arrays representing the path, or null if media not found in map
+     * @return A list of coordinate arrays representing the path, empty if it cannot be reached, or null if media not found in map
      */
     public static List<int[]> findMediaPath(Map map, Media media) {
         int[] target = media.getCoordinates();
-        if (!containsCoordinates(map.getMediaCoordinates(), target)) return null;
-        return findPath(map, target, false);
+        if (map.mediaIdOf(target) == Map.NO_ENTITY) return null;
+        int targetCell = map.getGrid().cellIndex(target[0], target[1]);
+        if (!map.isReachable(targetCell)) return new ArrayList<>();
+        return findPath(map, cell -> cell == targetCell, List.of(target));
     }
 
     /*
      * Finds the path from the kiosk to a resource on the library map
-     * Validates that the resource coordinates exist in the map before pathfinding
+     * Validates that the resource coordinates exist in the map and can be reached before pathfinding
      *
      * @param map The library map containing the grid and coordinates
      * @param resource The resource to find a path to
-     * @return A list of coordinate arrays representing the path, or null if resource not found in map
+     * @return A list of coordinate arrays representing the path, empty if it cannot be reached, or null if resource not found in map
      */
     public static List<int[]> findResourcePath(Map map, Resource resource) {
-        List<int[]> target = resource.getCoordinates();
-        if (!containsResource(map.getResourceCoordinates(), target)) return null;
-        return findPath(map, target, true);
+        int resourceId = map.resourceIdOf(resource.getCoordinates());
+        if (resourceId == Map.NO_ENTITY) return null;
+        if (!map.isResourceReachable(resourceId)) return new ArrayList<>();
+        return findPath(map, cell -> map.resourceIdAt(cell) == resourceId, resource.getCoordinates());
     }
 
     /*
-     * Performs depth-first search to find a path from kiosk to target coordinates
-     * Uses a stack-based iterative approach with parent tracking for path reconstruction
-     * Handles both single-point targets (media) and multi-point targets (resources)
+     * Finds the path from one of the map's origins, such as a second kiosk or an entrance, to a media item
+     * The path is read from the origin's precomputed shortest-path tree, so no search is run
      *
-     * @param map The library map containing the grid and kiosk coordinates
-     * @param targetCoordinates The target coordinates (int[] for media, ArrayList<int[]> for resources)
-     * @param isResource True if target is a resource with multiple coordinates, false for media
-     * @return A list of coordinate arrays representing the path from kiosk to target, or empty list if no path exists
+     * @param map The library map containing the grid and coordinates
+     * @param media The media item to find a path to
+     * @param origin The origin's position in the map's origins, 0 being the kiosk
+     * @return A list of coordinate arrays representing the path, empty if it cannot be reached, or null if media not found in map
      */
-    private static ArrayList<int[]> findPath(Map map, Object targetCoordinates, boolean isResource) {
-        char[][] grid = map.getGrid();
-        int[] start = map.getKioskCoordinates();
-        int rows = grid.length;
-        int cols = grid[0].length;
+    public static List<int[]> findMediaPath(Map map, Media media, int origin) {
+        int[] target = media.getCoordinates();
+        if (map.mediaIdOf(target) == Map.NO_ENTITY) return null;
+        return findOriginPath(map, origin, List.of(target));
+    }
 
-        boolean[][] visited = new boolean[rows][cols];
-        LinkedListStack<int[]> stack = new LinkedListStack<>();
-        HashMap<String, int[]> parent = new HashMap<>();
+    /*
+     * Finds the path from one of the map's origins, such as a second kiosk or an entrance, to a resource
+     * The path is read from the origin's precomputed shortest-path tree, so no search is run
+     *
+     * @param map The library map containing the grid and coordinates
+     * @param resource The resource to find a path to
+     * @param origin The origin's position in the map's origins, 0 being the kiosk
+     * @return A list of coordinate arrays representing the path, empty if it cannot be reached, or null if resource not found in map
+     */
+    public static List<int[]> findResourcePath(Map map, Resource resource, int origin) {
+        if (map.resourceIdOf(resource.getCoordinates()) == Map.NO_ENTITY) return null;
+        return findOriginPath(map, origin, resource.getCoordinates());
+    }
+
+    /*
+     * Reads the path from an origin to the nearest target cell out of the origin's shortest-path tree
+     * The trees are shared by every kiosk session but never changed, so each path is built in its own list
+     *
+     * @param map The library map containing the grid and origins
+     * @param origin The origin's position in the map's origins
+     * @param targetCoordinates The coordinates of every target cell
+     * @return A list of coordinate arrays representing the path from the origin to the target, or empty list if no path exists
+     */
+    private static ArrayList<int[]> findOriginPath(Map map, int origin, List<int[]> targetCoordinates) {
+        Preconditions.checkElementIndex(origin, map.getOriginCount(), "Origin");
+        FloorRoutes routes = map.getOriginRoutes();
+        MapGrid grid = map.getGrid();
+        int best = -1;
+        for (int[] target : targetCoordinates) {
+            int cell = grid.cellIndex(target[0], target[1]);
+            int steps = routes.distance(origin, cell);
+            if (steps != FloorRoutes.UNREACHED && (best < 0 || steps < routes.distance(origin, best))) best = cell;
+        }
+        ArrayList<int[]> path = new ArrayList<>();
+        if (best >= 0) routes.appendPath(origin, best, path);
+        return path;
+    }
+
+    /*
+     * Finds the path from the kiosk to a media item anywhere in a building
+     *
+     * @param building The building whose floors to search
+     * @param media The media item to find a path to
+     * @return The path split into one part per floor visited, empty if it cannot be reached,
+     *         or null if the media is not on any floor
+     */
+    public static List<FloorPath> findBuildingPath(Building building, Media media) {
+        return findBuildingPath(building, media, 0);
+    }
+
+    /*
+     * Finds the path from one of the kiosk floor's origins to a media item anywhere in a building
+     *
+     * @param building The building whose floors to search
+     * @param media The media item to find a path to
+     * @param origin The origin's position in the kiosk floor's origins, 0 being the kiosk
+     * @return The path split into one part per floor visited, empty if it cannot be reached,
+     *         or null if the media is not on any floor
+     */
+    public static List<FloorPath> findBuildingPath(Building building, Media media, int origin) {
+        int floor = building.floorOf(media);
+        if (floor == Building.NO_FLOOR) return null;
+        return findBuildingPath(building, origin, floor, List.of(media.getCoordinates()));
+    }
+
+    /*
+     * Finds the path from the kiosk to a resource anywhere in a building
+     *
+     * @param building The building whose floors to search
+     * @param resource The resource to find a path to
+     * @return The path split into one part per floor visited, empty if it cannot be reached,
+     *         or null if the resource is not on any floor
+     */
+    public static List<FloorPath> findBuildingPath(Building building, Resource resource) {
+        return findBuildingPath(building, resource, 0);
+    }
+
+    /*
+     * Finds the path from one of the kiosk floor's origins to a resource anywhere in a building
+     *
+     * @param building The building whose floors to search
+     * @param resource The resource to find a path to
+     * @param origin The origin's position in the kiosk floor's origins, 0 being the kiosk
+     * @return The path split into one part per floor visited, empty if it cannot be reached,
+     *         or null if the resource is not on any floor
+     */
+    public static List<FloorPath> findBuildingPath(Building building, Resource resource, int origin) {
+        int floor = building.floorOf(resource);
+        if (floor == Building.NO_FLOOR) return null;
+        return findBuildingPath(building, origin, floor, resource.getCoordinates());
+    }
 
-        stack.push(start.clone());
-        visited[start[0]][start[1]] = true;
+    /*
+     * Finds the shortest path from an origin on the kiosk floor to a target on any floor of a building
+     * Every floor's entries (the origins and the connector ends) are joined by the walking distances
+     * in the floor's routing data and by the connectors' traversal costs; Dijkstra's algorithm
+     * over this small graph chooses the entries to pass through, and each floor's legs are then
+     * read back from that floor's routing data.
+     *
+     * @param building The building whose floors to search
+     * @param origin The origin's position in the kiosk floor's origins, which are its first entries
+     * @param targetFloor The floor the target is on
+     * @param targetCoordinates The coordinates of every target cell
+     * @return The path split into one part per floor visited, or empty list if no path exists
+     */
+    private static List<FloorPath> findBuildingPath(Building building, int origin, int targetFloor,
+                                                    List<int[]> targetCoordinates) {
+        Preconditions.checkElementIndex(origin, building.getKioskMap().getOriginCount(), "Origin");
+        int floors = building.getFloorCount();
+        FloorRoutes[] routes = new FloorRoutes[floors];
+        int[][] entryCells = new int[floors][];
+        int[] firstEntry = new int[floors + 1];
+        for (int floor = 0; floor < floors; floor++) {
+            routes[floor] = building.getFloorRoutes(floor);
+            entryCells[floor] = routes[floor].getEntryCells();
+            firstEntry[floor + 1] = firstEntry[floor] + routes[floor].getEntryCount();
+        }
+        int entries = firstEntry[floors];
+        int goal = entries;
 
-        int[] targetSingle = isResource ? null : (int[]) targetCoordinates;
-        ArrayList<int[]> targetMulti = isResource ? (ArrayList<int[]>) targetCoordinates : null;
+        int[] entryFloor = new int[entries];
+        for (int floor = 0; floor < floors; floor++) {
+            Arrays.fill(entryFloor, firstEntry[floor], firstEntry[floor + 1], floor);
+        }
+        int[] targetCells = new int[targetCoordinates.size()];
+        MapGrid targetGrid = building.getFloor(targetFloor).getGrid();
+        for (int i = 0; i < targetCells.length; i++) {
+            targetCells[i] = targetGrid.cellIndex(targetCoordinates.get(i)[0], targetCoordinates.get(i)[1]);
+        }
 
-        int[] foundTarget = null;
+        int[] cost = new int[entries + 1];
+        int[] parent = new int[entries + 1];
+        Connector[] via = new Connector[entries + 1];
+        boolean[] done = new boolean[entries + 1];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        Arrays.fill(parent, -1);
+        cost[firstEntry[building.getKioskFloor()] + origin] = 0;
 
-        while (!stack.isEmpty()) {
-            int[] curr = stack.pop();
+        // The graph has a handful of entries per floor, so the closest one is found by scanning
+        while (true) {
+            int node = -1;
+            for (int i = 0; i <= entries; i++) {
+                if (!done[i] && cost[i] != Integer.MAX_VALUE && (node < 0 || cost[i] < cost[node])) node = i;
+            }
+            if (node < 0) return new ArrayList<>(); // no path found
+            if (node == goal) break;
+            done[node] = true;
 
-            if (isResource) {
-                if (atResource(curr, targetMulti)) {
-                    foundTarget = curr;
-                    break;
+            int floor = entryFloor[node];
+            int entry = node - firstEntry[floor];
+            for (int other = firstEntry[floor]; other < firstEntry[floor + 1]; other++) {
+                int steps = routes[floor].distance(entry, entryCells[floor][other - firstEntry[floor]]);
+                if (steps != FloorRoutes.UNREACHED) relax(cost, parent, via, done, node, other, steps, null);
+            }
+            if (floor == targetFloor) {
+                for (int cell : targetCells) {
+                    int steps = routes[floor].distance(entry, cell);
+                    if (steps != FloorRoutes.UNREACHED) relax(cost, parent, via, done, node, goal, steps, null);
                 }
+            }
+            int cell = entryCells[floor][entry];
+            for (Connector connector : building.getConnectors()) {
+                int[] end = connector.coordinatesOn(floor);
+                MapGrid grid = building.getFloor(floor).getGrid();
+                if (end == null || grid.cellIndex(end[0], end[1]) != cell) continue;
+                int otherFloor = connector.otherFloor(floor);
+                int[] otherEnd = connector.coordinatesOn(otherFloor);
+                int otherCell = building.getFloor(otherFloor).getGrid().cellIndex(otherEnd[0], otherEnd[1]);
+                int other = firstEntry[otherFloor] + routes[otherFloor].entryAt(otherCell);
+                relax(cost, parent, via, done, node, other, connector.getCost(), connector);
+            }
+        }
+
+        // Walk back through the entries passed, then read each leg from its floor's routing data
+        ArrayList<Integer> route = new ArrayList<>();
+        for (int node = parent[goal]; node != -1; node = parent[node]) route.add(0, node);
+        int last = route.get(route.size() - 1);
+        int lastEntry = last - firstEntry[targetFloor];
+        int targetCell = targetCells[0];
+        for (int cell : targetCells) {
+            int steps = routes[targetFloor].distance(lastEntry, cell);
+            int best = routes[targetFloor].distance(lastEntry, targetCell);
+            if (steps != FloorRoutes.UNREACHED && (best == FloorRoutes.UNREACHED || steps < best)) targetCell = cell;
+        }
+
+        List<FloorPath> path = new ArrayList<>();
+        ArrayList<int[]> cells = new ArrayList<>();
+        int first = route.get(0);
+        int startCell = entryCells[entryFloor[first]][first - firstEntry[entryFloor[first]]];
+        int cols = building.getFloor(entryFloor[first]).getGrid().getCols();
+        cells.add(new int[]{startCell / cols, startCell % cols});
+        for (int i = 1; i <= route.size(); i++) {
+            int from = route.get(i - 1);
+            int floor = entryFloor[from];
+            int to = i < route.size() ? route.get(i) : goal;
+            if (to != goal && via[to] != null) {
+                path.add(new FloorPath(floor, cells, via[to]));
+                cells = new ArrayList<>();
+                int toFloor = entryFloor[to];
+                int toCell = entryCells[toFloor][to - firstEntry[toFloor]];
+                int toCols = building.getFloor(toFloor).getGrid().getCols();
+                cells.add(new int[]{toCell / toCols, toCell % toCols});
             } else {
-                if (atTarget(curr, targetSingle)) {
-                    foundTarget = curr;
-                    break;
-                }
+                int toCell = to == goal ? targetCell : entryCells[floor][to - firstEntry[floor]];
+                ArrayList<int[]> leg = new ArrayList<>();
+                routes[floor].appendPath(from - firstEntry[floor], toCell, leg);
+                cells.addAll(leg.subList(1, leg.size()));
             }
+        }
+        path.add(new FloorPath(targetFloor, cells, null));
+        return path;
+    }
 
-            for (int[] dir : new int[][]{{-1,0},{1,0},{0,-1},{0,1}}) {
-                int nr = curr[0] + dir[0];
-                int nc = curr[1] + dir[1];
-                if (nr >= 0 && nc >= 0 && nr < rows && nc < cols && !visited[nr][nc]) {
-                    char cell = grid[nr][nc];
-                    if (cell == '.' || (isResource && atResource(new int[]{nr,nc}, targetMulti)) || (!isResource && atTarget(new int[]{nr,nc}, targetSingle))) {
-                        int[] next = new int[]{nr,nc};
-                        stack.push(next);
-                        visited[nr][nc] = true;
-                        parent.put(nr + "," + nc, curr);
-                    }
-                }
+    /*
+     * Lowers the cost of reaching an entry if a cheaper way to it has been found
+     *
+     * @param cost The cheapest known cost of reaching each entry
+     * @param parent The entry each entry is reached from
+     * @param via The connector each entry is reached through, or null when walked to
+     * @param done Whether each entry's cost is final
+     * @param from The entry being left
+     * @param to The entry reached
+     * @param steps The cost of getting from one to the other
+     * @param connector The connector taken, or null
+     */
+    private static void relax(int[] cost, int[] parent, Connector[] via, boolean[] done,
+                              int from, int to, int steps, Connector connector) {
+        if (done[to] || cost[from] + steps >= cost[to]) return;
+        cost[to] = cost[from] + steps;
+        parent[to] = from;
+        via[to] = connector;
+    }
+
+    /*
+     * Finds the path from the kiosk to the target, choosing the search by the size of the map
+     * Maps of at least HIERARCHICAL_MIN_CELLS cells are searched hierarchically, smaller ones exactly
+     *
+     * @param map The library map containing the grid and kiosk coordinates
+     * @param isTarget Tests whether a cell, by row-major index, is part of the target
+     * @param targetCoordinates The coordinates of every target cell
+     * @return A list of coordinate arrays representing the path from kiosk to target, or empty list if no path exists
+     */
+    private static ArrayList<int[]> findPath(Map map, IntPredicate isTarget, List<int[]> targetCoordinates) {
+        if (map.getGrid().getSize() >= HIERARCHICAL_MIN_CELLS) {
+            return findHierarchicalPath(map, isTarget, targetCoordinates);
+        }
+        return findGraphPath(map, isTarget, targetCoordinates);
+    }
+
+    /*
+     * Performs an A* search from the kiosk to the target over the map's navigation graph
+     * The graph only has nodes at junctions, open floor and the cells in front of placed items, so long
+     * corridors are crossed in one step; the path found is then expanded back into grid cells
+     * The heuristic is the Manhattan distance to the nearest target cell, less the final step onto it
+     *
+     * @param map The library map containing the grid and kiosk coordinates
+     * @param isTarget Tests whether a cell, by row-major index, is part of the target
+     * @param targetCoordinates The coordinates of every target cell, used by the heuristic
+     * @return A list of coordinate arrays representing the shortest path from kiosk to target, or empty list if no path exists
+     */
+    private static ArrayList<int[]> findGraphPath(Map map, IntPredicate isTarget, List<int[]> targetCoordinates) {
+        MapGrid grid = map.getGrid();
+        NavigationGraph graph = map.getNavigationGraph();
+        int[] kiosk = map.getKioskCoordinates();
+        int source = graph.nodeAt(grid.cellIndex(kiosk[0], kiosk[1]));
+        SearchBuffers search = BUFFERS.get().start(graph.getNodeCount());
+        NodeQueue open = search.open;
+
+        search.reach(source, 0, NavigationGraph.NO_NODE, 0);
+        int h = estimate(grid, graph.nodeCell(source), targetCoordinates);
+        open.push(source, h, h);
+
+        while (!open.isEmpty()) {
+            int node = open.pop();
+            if (search.isClosed(node)) continue;
+            search.close(node);
+
+            int targetCell = adjacentTarget(grid, graph.nodeCell(node), isTarget);
+            if (targetCell >= 0) return expand(grid, graph, node, search, kiosk, targetCell);
+
+            for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                int next = graph.edgeTarget(edge);
+                int nextCost = search.cost[node] + graph.edgeWeight(edge);
+                if (search.isClosed(next) || nextCost >= search.costOf(next)) continue;
+                search.reach(next, nextCost, node, edge);
+                h = estimate(grid, graph.nodeCell(next), targetCoordinates);
+                open.push(next, nextCost + h, h);
             }
         }
 
-        if (foundTarget == null) return new ArrayList<>(); // no path found
+        return new ArrayList<>(); // no path found
+    }
+
+    /*
+     * Performs a hierarchical (HPA*) search from the kiosk to the target over the map's cluster graph
+     * The kiosk and the target cells are linked to the entrances of their own clusters with a search
+     * confined to each cluster; A* then crosses the map entrance to entrance using the precomputed
+     * distances, and only the legs of the chosen route are walked cell by cell. The work per query
+     * depends on the cluster size and the number of clusters crossed, not on the size of the map.
+     * Paths may be a few steps longer than the shortest, since they pass through entrance cells and the
+     * estimate is inflated by 1/HIERARCHICAL_ESTIMATE_SHARE; on open floors, where many routes are equally
+     * short, this stops the search from trying them all.
+     *
+     * @param map The library map containing the grid and kiosk coordinates
+     * @param isTarget Tests whether a cell, by row-major index, is part of the target
+     * @param targetCoordinates The coordinates of every target cell
+     * @return A list of coordinate arrays representing the path from kiosk to target, or empty list if no path exists
+     */
+    private static ArrayList<int[]> findHierarchicalPath(Map map, IntPredicate isTarget, List<int[]> targetCoordinates) {
+        MapGrid grid = map.getGrid();
+        ClusterGraph graph = map.getClusterGraph();
+        int[] kiosk = map.getKioskCoordinates();
+        int start = grid.cellIndex(kiosk[0], kiosk[1]);
+        int nodes = graph.getNodeCount();
+        int goalNode = nodes;
+        int startNode = nodes + 1;
+        SearchBuffers search = BUFFERS.get().start(nodes + 2);
+        NodeQueue open = search.open;
+        int clusterArea = graph.getClusterSize() * graph.getClusterSize();
+        search.clusterDistance = search.ensure(search.clusterDistance, clusterArea);
+
+        // Link the cells in front of the target to the entrances of the clusters they are in;
+        // the target may sit on a border and be walked up to from a neighbouring cluster
+        // The cells are kept in the search's buffers sorted by cluster, so each cluster is searched once
+        search.startFrontage(targetCoordinates.size() * DIRECTIONS.length);
+        for (int[] target : targetCoordinates) {
+            for (int[] dir : DIRECTIONS) {
+                int nr = target[0] + dir[0];
+                int nc = target[1] + dir[1];
+                if (!grid.inBounds(nr, nc)) continue;
+                int cell = grid.cellIndex(nr, nc);
+                if (cell == start || grid.isWalkable(cell)) search.addFrontage(cell, graph.clusterOf(cell));
+            }
+        }
+        int startCluster = graph.clusterOf(start);
+        int startFrontageFrom = 0;
+        int startFrontageTo = 0;
+        int from = 0;
+        while (from < search.frontageCount) {
+            int cluster = search.frontageCluster[from];
+            int to = from + 1;
+            while (to < search.frontageCount && search.frontageCluster[to] == cluster) to++;
+            int[] distance = graph.distancesInCluster(search.frontage, from, to, search.clusterDistance);
+            for (int i = 0; i < graph.clusterNodeCount(cluster); i++) {
+                int node = graph.clusterNode(cluster, i);
+                int steps = distance[graph.localIndex(graph.nodeCell(node))];
+                if (steps != ClusterGraph.UNREACHED) search.setGoalCost(node, steps + 1);
+            }
+            if (cluster == startCluster) {
+                startFrontageFrom = from;
+                startFrontageTo = to;
+            }
+            from = to;
+        }
+
+        // Link the kiosk to the entrances of its cluster, and to the target if it is in front of it in the same cluster
+        search.source[0] = start;
+        int[] fromStart = graph.distancesInCluster(search.source, 0, 1, search.clusterDistance);
+        search.reach(startNode, 0, NavigationGraph.NO_NODE, 0);
+        for (int i = startFrontageFrom; i < startFrontageTo; i++) {
+            int steps = fromStart[graph.localIndex(search.frontage[i])];
+            if (steps != ClusterGraph.UNREACHED && steps + 1 < search.costOf(goalNode)) {
+                search.reach(goalNode, steps + 1, startNode, 0);
+            }
+        }
+        if (search.costOf(goalNode) != Integer.MAX_VALUE) open.push(goalNode, search.cost[goalNode], 0);
+        for (int i = 0; i < graph.clusterNodeCount(startCluster); i++) {
+            int node = graph.clusterNode(startCluster, i);
+            int steps = fromStart[graph.localIndex(graph.nodeCell(node))];
+            if (steps == ClusterGraph.UNREACHED) continue;
+            search.reach(node, steps, startNode, 0);
+            int h = estimate(grid, graph.nodeCell(node), targetCoordinates);
+            open.push(node, steps + h + h / HIERARCHICAL_ESTIMATE_SHARE, h);
+        }
+
+        while (!open.isEmpty()) {
+            int node = open.pop();
+            if (search.isClosed(node)) continue;
+            search.close(node);
+            if (node == goalNode) return refine(grid, graph, search, startNode, goalNode, kiosk, isTarget);
+
+            int toGoal = search.goalCostOf(node);
+            if (toGoal != SearchBuffers.NO_GOAL && search.cost[node] + toGoal < search.costOf(goalNode)) {
+                search.reach(goalNode, search.cost[node] + toGoal, node, 0);
+                open.push(goalNode, search.cost[goalNode], 0);
+            }
+            for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                int next = graph.edgeTarget(edge);
+                int nextCost = search.cost[node] + graph.edgeWeight(edge);
+                if (search.isClosed(next) || nextCost >= search.costOf(next)) continue;
+                search.reach(next, nextCost, node, edge);
+                int h = estimate(grid, graph.nodeCell(next), targetCoordinates);
+                open.push(next, nextCost + h + h / HIERARCHICAL_ESTIMATE_SHARE, h);
+            }
+        }
+
+        return new ArrayList<>(); // no path found
+    }
+
+    /*
+     * Turns the entrances chosen by the hierarchical search into grid cells
+     * Steps across a cluster border are single cells; each leg inside a cluster is walked with
+     * a search confined to that cluster, the last one ending in front of the target
+     *
+     * @param grid The map grid
+     * @param graph The cluster graph searched
+     * @param search The search's buffers, holding the node each node was reached from
+     * @param startNode The id standing for the kiosk
+     * @param goalNode The id standing for the target
+     * @param kiosk The kiosk coordinates
+     * @param isTarget Tests whether a cell is part of the target
+     * @return The cells from the kiosk to the target, inclusive
+     */
+    private static ArrayList<int[]> refine(MapGrid grid, ClusterGraph graph, SearchBuffers search, int startNode,
+                                           int goalNode, int[] kiosk, IntPredicate isTarget) {
+        int[] parent = search.parentNode;
+        int count = 0;
+        for (int node = parent[goalNode]; node != startNode; node = parent[node]) {
+            search.route = search.ensure(search.route, count + 1);
+            search.route[count++] = node;
+        }
 
-        // Reconstruct path
         ArrayList<int[]> path = new ArrayList<>();
-        int[] step = foundTarget;
-        while (step != null) {
-            path.add(0, step);
-            step = parent.get(step[0] + "," + step[1]);
+        path.add(kiosk.clone());
+        int previous = grid.cellIndex(kiosk[0], kiosk[1]);
+        for (int i = count - 1; i >= 0; i--) {
+            int cell = graph.nodeCell(search.route[i]);
+            if (graph.clusterOf(cell) != graph.clusterOf(previous)) {
+                path.add(new int[]{cell / grid.getCols(), cell % grid.getCols()});
+            } else if (cell != previous) {
+                graph.appendClusterPath(previous, next -> next == cell, path);
+            }
+            previous = cell;
         }
+        if (!search.isFrontage(previous)) graph.appendClusterPath(previous, search::isFrontage, path);
 
+        int[] last = path.get(path.size() - 1);
+        int targetCell = adjacentTarget(grid, grid.cellIndex(last[0], last[1]), isTarget);
+        path.add(new int[]{targetCell / grid.getCols(), targetCell % grid.getCols()});
         return path;
     }
 
     /*
-     * Checks if current coordinates match the target coordinates
+     * Estimates the number of steps from a cell to the cell in front of the nearest target cell
      *
-     * @param curr The current coordinate array
-     * @param target The target coordinate array
-     * @return true if coordinates match, false otherwise
+     * @param grid The map grid
+     * @param cell The row-major index of the cell
+     * @param targetCoordinates The coordinates of every target cell
+     * @return A lower bound on the remaining steps
      */
-    private static boolean atTarget(int[] curr, int[] target) {
-        return curr[0] == target[0] && curr[1] == target[1];
+    private static int estimate(MapGrid grid, int cell, List<int[]> targetCoordinates) {
+        int row = cell / grid.getCols();
+        int col = cell % grid.getCols();
+        int best = Integer.MAX_VALUE;
+        for (int[] target : targetCoordinates) {
+            best = Math.min(best, Math.abs(target[0] - row) + Math.abs(target[1] - col));
+        }
+        return Math.max(0, best - 1);
     }
 
     /*
-     * Checks if current coordinates match any of the resource's target coordinates
+     * Finds a target cell next to a cell
      *
-     * @param curr The current coordinate array
-     * @param targets The list of target coordinate arrays for the resource
-     * @return true if current coordinates match any target, false otherwise
+     * @param grid The map grid
+     * @param cell The row-major index of the cell
+     * @param isTarget Tests whether a cell is part of the target
+     * @return The index of a neighbouring target cell, or -1 if there is none
      */
-    private static boolean atResource(int[] curr, ArrayList<int[]> targets) {
-        for (int[] t : targets) {
-            if (curr[0] == t[0] && curr[1] == t[1]) return true;
+    private static int adjacentTarget(MapGrid grid, int cell, IntPredicate isTarget) {
+        int row = cell / grid.getCols();
+        int col = cell % grid.getCols();
+        for (int[] dir : DIRECTIONS) {
+            int nr = row + dir[0];
+            int nc = col + dir[1];
+            if (grid.inBounds(nr, nc) && isTarget.test(grid.cellIndex(nr, nc))) return grid.cellIndex(nr, nc);
         }
-        return false;
+        return -1;
     }
 
     /*
-     * Checks if a coordinate exists in a list of coordinates
+     * Rebuilds the path found by the search, expanding each edge back into the cells along its corridor
      *
-     * @param list The list of coordinate arrays to search
-     * @param coord The coordinate array to find
-     * @return true if the coordinate exists in the list, false otherwise
+     * @param grid The map grid
+     * @param graph The navigation graph searched
+     * @param goal The node next to the target
+     * @param search The search's buffers, holding the node and edge each node was reached from
+     * @param kiosk The kiosk coordinates
+     * @param targetCell The row-major index of the target cell reached
+     * @return The cells from the kiosk to the target, inclusive
      */
-    private static boolean containsCoordinates(List<int[]> list, int[] coord) {
-        for (int[] c : list) if (c[0] == coord[0] && c[1] == coord[1]) return true;
-        return false;
+    private static ArrayList<int[]> expand(MapGrid grid, NavigationGraph graph, int goal, SearchBuffers search,
+                                           int[] kiosk, int targetCell) {
+        int[] parentNode = search.parentNode;
+        int count = 0;
+        for (int node = goal; parentNode[node] != NavigationGraph.NO_NODE; node = parentNode[node]) {
+            search.route = search.ensure(search.route, count + 1);
+            search.route[count++] = node;
+        }
+
+        ArrayList<int[]> path = new ArrayList<>();
+        path.add(kiosk.clone());
+        for (int i = count - 1; i >= 0; i--) {
+            int node = search.route[i];
+            graph.appendCorridor(parentNode[node], search.parentEdge[node], path);
+        }
+        path.add(new int[]{targetCell / grid.getCols(), targetCell % grid.getCols()});
+        return path;
     }
 
     /*
-     * Checks if a resource's coordinates match any resource in the map's resource list
-     * Compares all coordinate pairs to ensure complete match
-     *
-     * @param list The list of resource coordinate arrays from the map
-     * @param target The target resource's coordinate list to find
-     * @return true if the resource exists in the map with matching coordinates, false otherwise
+     * Binary min-heap of graph nodes for the search's open set
+     * Entries are ordered by estimated total cost, then by remaining estimate so the search keeps
+     * heading towards the target on open floor; keys and nodes are kept in parallel arrays
+     * so no object is created per entry
      */
-    private static boolean containsResource(List<ArrayList<int[]>> list, List<int[]> target) {
-        // Check if any resource in the map matches all coordinates in target
-        for (ArrayList<int[]> resCoords : list) {
-            if (resCoords.size() != target.size()) continue;
-            boolean match = true;
-            for (int i = 0; i < resCoords.size(); i++) {
-                int[] a = resCoords.get(i);
-                int[] b = target.get(i);
-                if (a[0] != b[0] || a[1] != b[1]) {
-                    match = false;
-                    break;
-                }
+    private static class NodeQueue {
+        private long[] keys = new long[64];
+        private int[] nodes = new int[64];
+        private int size;
+
+        /*
+         * Adds a node to the queue
+         *
+         * @param node The node's id
+         * @param total The node's estimated total cost
+         * @param remaining The node's estimated remaining cost
+         */
+        void push(int node, int total, int remaining) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            long key = ((long) total << 32) | remaining;
+            int i = size++;
+            while (i > 0 && keys[(i - 1) / 2] > key) {
+                keys[i] = keys[(i - 1) / 2];
+                nodes[i] = nodes[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        /*
+         * Removes the node with the lowest key
+         *
+         * @return The node's id
+         */
+        int pop() {
+            int top = nodes[0];
+            long key = keys[--size];
+            int node = nodes[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (keys[child] >= key) break;
+                keys[i] = keys[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+            return top;
+        }
+
+        boolean isEmpty() { return size == 0; }
+
+        /*
+         * Removes every node, keeping the arrays for the next search
+         */
+        void clear() { size = 0; }
+    }
+
+    /*
+     * The arrays one search works in, kept per thread and reused from query to query
+     * Entries are only valid when stamped with the current search's generation, so starting a search
+     * does not clear anything; the arrays grow to the largest graph searched on the thread
+     * The hierarchical search also keeps the cells in front of the target and the cost from each
+     * entrance to the target here, so a query only allocates the path it returns
+     */
+    private static class SearchBuffers {
+        static final int NO_GOAL = -1;
+
+        private int[] cost = new int[0];
+        private int[] parentNode = new int[0];
+        private int[] parentEdge = new int[0];
+        private int[] reached = new int[0];
+        private int[] closed = new int[0];
+        private int[] goalCost = new int[0];
+        private int[] goalMarked = new int[0];
+        private int[] route = new int[16];
+        private int[] clusterDistance = new int[0];
+        private int[] frontage = new int[16];
+        private int[] frontageCluster = new int[16];
+        private int frontageCount;
+        private final int[] source = new int[1];
+        private final NodeQueue open = new NodeQueue();
+        private int generation;
+
+        /*
+         * Prepares the buffers for a new search
+         *
+         * @param nodes The number of nodes in the graph to be searched
+         * @return These buffers, with no node reached or closed
+         */
+        SearchBuffers start(int nodes) {
+            if (reached.length < nodes) {
+                int capacity = Math.max(nodes, reached.length * 3 / 2);
+                cost = new int[capacity];
+                parentNode = new int[capacity];
+                parentEdge = new int[capacity];
+                reached = new int[capacity];
+                closed = new int[capacity];
+                goalCost = new int[capacity];
+                goalMarked = new int[capacity];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(closed, 0);
+                Arrays.fill(goalMarked, 0);
+                generation = 1;
+            }
+            open.clear();
+            return this;
+        }
+
+        /*
+         * Records a cheaper way to a node
+         *
+         * @param node The node reached
+         * @param nodeCost The cost of reaching it
+         * @param from The node it was reached from
+         * @param edge The edge it was reached along
+         */
+        void reach(int node, int nodeCost, int from, int edge) {
+            reached[node] = generation;
+            cost[node] = nodeCost;
+            parentNode[node] = from;
+            parentEdge[node] = edge;
+        }
+
+        /*
+         * Returns the cheapest known cost of reaching a node in this search
+         *
+         * @param node The node
+         * @return The cost, or Integer.MAX_VALUE if the node has not been reached
+         */
+        int costOf(int node) {
+            return reached[node] == generation ? cost[node] : Integer.MAX_VALUE;
+        }
+
+        boolean isClosed(int node) { return closed[node] == generation; }
+        void close(int node) { closed[node] = generation; }
+
+        /*
+         * Records the cost of stepping from an entrance onto the target
+         *
+         * @param node The entrance's node
+         * @param steps The walking distance from the entrance to the target
+         */
+        void setGoalCost(int node, int steps) {
+            goalMarked[node] = generation;
+            goalCost[node] = steps;
+        }
+
+        /*
+         * Returns the cost of stepping from an entrance onto the target in this search
+         *
+         * @param node The entrance's node
+         * @return The walking distance, or NO_GOAL if the target cannot be reached within the entrance's cluster
+         */
+        int goalCostOf(int node) {
+            return goalMarked[node] == generation ? goalCost[node] : NO_GOAL;
+        }
+
+        /*
+         * Empties the cells in front of the target, making room for a number of them
+         *
+         * @param capacity The most cells that will be added
+         */
+        void startFrontage(int capacity) {
+            frontage = ensure(frontage, capacity);
+            frontageCluster = ensure(frontageCluster, capacity);
+            frontageCount = 0;
+        }
+
+        /*
+         * Adds a cell in front of the target, keeping the cells sorted by cluster and each cell once
+         * A target has a few cells in front of it, so they are inserted in place
+         *
+         * @param cell The row-major index of the cell
+         * @param cluster The cluster the cell is in
+         */
+        void addFrontage(int cell, int cluster) {
+            if (isFrontage(cell)) return;
+            int i = frontageCount++;
+            while (i > 0 && frontageCluster[i - 1] > cluster) {
+                frontage[i] = frontage[i - 1];
+                frontageCluster[i] = frontageCluster[i - 1];
+                i--;
             }
-            if (match) return true;
+            frontage[i] = cell;
+            frontageCluster[i] = cluster;
         }
-        return false;
+
+        /*
+         * Checks whether a cell is one of the cells in front of the target
+         *
+         * @param cell The row-major index of the cell
+         * @return true if a path can step onto the target from the cell, false otherwise
+         */
+        boolean isFrontage(int cell) {
+            for (int i = 0; i < frontageCount; i++) {
+                if (frontage[i] == cell) return true;
+            }
+            return false;
+        }
+
+        /*
+         * Makes sure an array can hold a number of entries, growing it if needed
+         *
+         * @param array The array
+         * @param length The number of entries needed
+         * @return The array, or a larger copy of it
+         */
+        int[] ensure(int[] array, int length) {
+            return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+        }
+    }
+
+    // ===== DTO =====
+    public static class FloorPath {
+        private final int floor;
+        private final List<int[]> cells;
+        private final Connector exit;
+
+        /*
+         * Private constructor for FloorPath
+         *
+         * @param floor The floor this part of the path is on
+         * @param cells The cells walked on the floor, in order
+         * @param exit The connector taken to leave the floor, or null on the last part
+         */
+        private FloorPath(int floor, List<int[]> cells, Connector exit) {
+            this.floor = floor;
+            this.cells = cells;
+            this.exit = exit;
+        }
+
+        // Getters:
+        public int getFloor() { return floor; }
+        public List<int[]> getCells() { return cells; }
+        public Connector getExit() { return exit; }
     }
-}
\ No newline at end of file
+}
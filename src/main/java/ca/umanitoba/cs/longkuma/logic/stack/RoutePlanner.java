@@ -0,0 +1,365 @@
+package ca.umanitoba.cs.longkuma.logic.stack;
+
+import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.library.MapGrid;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+public class RoutePlanner {
+
+    private static final int UNREACHED = -1;
+
+    /*
+     * Plans a round trip from the kiosk through a set of media locations, such as a staff pick list
+     * Walking distances between every pair of stops are found with one breadth-first search per stop,
+     * run in parallel batches that each reuse one set of buffers
+     * The visiting order starts from a nearest-neighbour tour and is improved with 2-opt until no swap helps
+     * Duplicate stops are visited once; stops that cannot be reached from the kiosk are left out and reported
+     *
+     * @param map The library map containing the grid, kiosk and media coordinates
+     * @param stops The media coordinates to visit
+     * @return The planned route
+     * @throws IllegalArgumentException if a stop is not one of the map's media coordinates
+     */
+    public static Route plan(Map map, List<int[]> stops) {
+        Preconditions.checkNotNull(map, "Map cannot be null");
+        Preconditions.checkNotNull(stops, "Stops cannot be null");
+
+        FloorGrid floor = new FloorGrid(map.getGrid());
+
+        // Stop 0 of the route is always the kiosk
+        // Stops outside the kiosk's region are set aside from the map's region labels without a search
+        int[] kiosk = map.getKioskCoordinates();
+        MapGrid grid = map.getGrid();
+        List<Integer> cells = new ArrayList<>();
+        List<int[]> unreachable = new ArrayList<>();
+        cells.add(floor.cellOf(kiosk));
+        Set<Integer> seen = new HashSet<>(cells);
+        for (int[] stop : stops) {
+            Preconditions.checkArgument(map.mediaIdOf(stop) != Map.NO_ENTITY,
+                    "(" + stop[0] + ", " + stop[1] + ") is not a media location on this map");
+            int cell = floor.cellOf(stop);
+            if (!seen.add(cell)) continue;
+            if (map.isReachable(grid.cellIndex(stop[0], stop[1]))) cells.add(cell);
+            else unreachable.add(stop.clone());
+        }
+
+        int[] stopCells = cells.stream().mapToInt(Integer::intValue).toArray();
+        int[][] distance = pairwiseDistances(floor, stopCells);
+
+        List<Integer> reachable = new ArrayList<>();
+        reachable.add(0);
+        for (int i = 1; i < stopCells.length; i++) {
+            if (distance[0][i] == UNREACHED) unreachable.add(floor.coordinatesOf(stopCells[i]));
+            else reachable.add(i);
+        }
+
+        int[] tour = nearestNeighbourTour(distance, reachable);
+        twoOpt(tour, distance);
+
+        List<int[]> order = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; i < tour.length; i++) {
+            if (i > 0) order.add(floor.coordinatesOf(stopCells[tour[i]]));
+            total += distance[tour[i]][tour[(i + 1) % tour.length]];
+        }
+        return new Route(kiosk.clone(), order, total, unreachable);
+    }
+
+    /*
+     * Expands a planned route into every cell walked, from the kiosk through each stop and back
+     * Each leg is found with a breadth-first search that stops as soon as it reaches the next stop
+     *
+     * @param map The library map the route was planned on
+     * @param route The planned route
+     * @return The cells walked in order, starting and ending at the kiosk
+     */
+    public static List<int[]> tracePath(Map map, Route route) {
+        FloorGrid floor = new FloorGrid(map.getGrid());
+        int[] parent = new int[floor.size];
+        int[] queue = new int[floor.size];
+
+        List<int[]> waypoints = new ArrayList<>();
+        waypoints.add(route.getStart());
+        waypoints.addAll(route.getStops());
+        waypoints.add(route.getStart());
+
+        List<int[]> path = new ArrayList<>();
+        path.add(route.getStart().clone());
+        for (int i = 1; i < waypoints.size(); i++) {
+            int from = floor.cellOf(waypoints.get(i - 1));
+            int to = floor.cellOf(waypoints.get(i));
+            shortestPath(floor, from, to, parent, queue);
+            List<int[]> leg = new ArrayList<>();
+            for (int cell = to; cell != from; cell = parent[cell]) leg.add(0, floor.coordinatesOf(cell));
+            path.addAll(leg);
+        }
+        return path;
+    }
+
+    /*
+     * Finds the walking distance between every pair of stops
+     * Stops are split into one batch per available processor; each batch searches from its stops in turn,
+     * reusing its visited bitset and queue
+     * Walking distance is symmetric, so the search from stop i only has to reach the stops after it
+     * and fills in both halves of the matrix for them
+     *
+     * @param floor The padded walkable grid
+     * @param stopCells The cell index of each stop
+     * @return The distance matrix, with UNREACHED where two stops are not connected
+     */
+    private static int[][] pairwiseDistances(FloorGrid floor, int[] stopCells) {
+        int n = stopCells.length;
+        int size = floor.size;
+        int[][] distance = new int[n][];
+        int[] stopAt = new int[size];
+        long[] isStop = new long[(size + 63) / 64];
+        for (int i = 0; i < n; i++) {
+            stopAt[stopCells[i]] = i;
+            isStop[stopCells[i] >>> 6] |= 1L << stopCells[i];
+        }
+
+        int batches = Math.min(n, Runtime.getRuntime().availableProcessors());
+        IntStream.range(0, batches).parallel().forEach(batch -> {
+            long[] visited = new long[isStop.length];
+            int[] queue = new int[size];
+            for (int i = batch; i < n; i += batches) {
+                distance[i] = new int[n];
+                distancesFrom(floor, stopCells[i], i, stopAt, isStop, distance[i], visited, queue);
+            }
+        });
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < i; j++) distance[i][j] = distance[j][i];
+        }
+        return distance;
+    }
+
+    /*
+     * Runs a breadth-first search from one stop, recording the walking distance to every later stop
+     * Only walkable cells are expanded; other cells are reached when next to a reached walkable cell,
+     * matching how paths end at media cells
+     * The search goes one level at a time so distances only need to be kept for stops, and cells
+     * are marked in a bitset small enough to stay in cache
+     * The search stops early once every stop after the source stop has been reached
+     *
+     * @param floor The padded walkable grid
+     * @param source The cell to search from
+     * @param sourceStop The stop index of the source; only stops with a higher index are recorded
+     * @param stopAt The stop index of each stop cell
+     * @param isStop A bitset of the stop cells
+     * @param distances The row of the distance matrix to fill, UNREACHED for stops not reached
+     * @param visited A bitset buffer at least as large as the grid
+     * @param queue A buffer at least as large as the grid
+     */
+    private static void distancesFrom(FloorGrid floor, int source, int sourceStop, int[] stopAt, long[] isStop,
+                                      int[] distances, long[] visited, int[] queue) {
+        long[] walkable = floor.walkable;
+        int[] steps = floor.steps;
+        Arrays.fill(distances, sourceStop + 1, distances.length, UNREACHED);
+        Arrays.fill(visited, 0L);
+        visited[source >>> 6] |= 1L << source;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        int remaining = distances.length - 1 - sourceStop;
+        int level = 0;
+
+        while (head < tail && remaining > 0) {
+            int levelEnd = tail;
+            level++;
+            while (head < levelEnd) {
+                int cell = queue[head++];
+                for (int k = 0; k < 4; k++) {
+                    int neighbour = cell + steps[k];
+                    int word = neighbour >>> 6;
+                    long bit = 1L << neighbour;
+                    if ((visited[word] & bit) != 0) continue;
+                    visited[word] |= bit;
+                    if ((walkable[word] & bit) != 0) queue[tail++] = neighbour;
+                    if ((isStop[word] & bit) != 0 && stopAt[neighbour] > sourceStop) {
+                        distances[stopAt[neighbour]] = level;
+                        remaining--;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Runs a breadth-first search from one cell to another, recording each cell's parent
+     *
+     * @param floor The padded walkable grid
+     * @param from The cell to search from
+     * @param to The cell to search for
+     * @param parent The buffer to fill with parent cells
+     * @param queue A buffer at least as large as the grid
+     */
+    private static void shortestPath(FloorGrid floor, int from, int to, int[] parent, int[] queue) {
+        Arrays.fill(parent, UNREACHED);
+        int head = 0;
+        int tail = 0;
+        parent[from] = from;
+        queue[tail++] = from;
+
+        while (head < tail && parent[to] == UNREACHED) {
+            int cell = queue[head++];
+            for (int step : floor.steps) {
+                int neighbour = cell + step;
+                if (parent[neighbour] != UNREACHED) continue;
+                parent[neighbour] = cell;
+                if (floor.isWalkable(neighbour)) queue[tail++] = neighbour;
+            }
+        }
+    }
+
+    /*
+     * Builds a tour by always walking to the closest stop not yet visited
+     *
+     * @param distance The distance matrix
+     * @param stops The stops to visit, starting with the kiosk at index 0
+     * @return The stops in visiting order, starting with the kiosk
+     */
+    private static int[] nearestNeighbourTour(int[][] distance, List<Integer> stops) {
+        int[] tour = new int[stops.size()];
+        boolean[] visited = new boolean[distance.length];
+        tour[0] = 0;
+        visited[0] = true;
+        for (int i = 1; i < tour.length; i++) {
+            int from = tour[i - 1];
+            int best = -1;
+            for (int stop : stops) {
+                if (!visited[stop] && (best < 0 || distance[from][stop] < distance[from][best])) best = stop;
+            }
+            tour[i] = best;
+            visited[best] = true;
+        }
+        return tour;
+    }
+
+    /*
+     * Improves a round trip by reversing sections of it while that makes the trip shorter
+     * The kiosk stays first; the trip back to it is part of the length
+     *
+     * @param tour The stops in visiting order, changed in place
+     * @param distance The distance matrix
+     */
+    private static void twoOpt(int[] tour, int[][] distance) {
+        int n = tour.length;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 1; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int a = tour[i - 1];
+                    int b = tour[i];
+                    int c = tour[j];
+                    int d = tour[(j + 1) % n];
+                    int delta = distance[a][c] + distance[b][d] - distance[a][b] - distance[c][d];
+                    if (delta < 0) {
+                        for (int lo = i, hi = j; lo < hi; lo++, hi--) {
+                            int swap = tour[lo];
+                            tour[lo] = tour[hi];
+                            tour[hi] = swap;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Private inner class holding the map grid as a flat bitset of walkable cells
+     * The grid is padded with a ring of blocked cells so neighbours can be found by adding a fixed step
+     * without checking the edges
+     */
+    private static class FloorGrid {
+        final int width;
+        final int size;
+        final long[] walkable;
+        final int[] steps;
+
+        /*
+         * Constructs a FloorGrid from a map grid
+         *
+         * @param grid The map grid; walking space cells are walkable
+         */
+        FloorGrid(MapGrid grid) {
+            this.width = grid.getCols() + 2;
+            this.size = (grid.getRows() + 2) * width;
+            this.walkable = new long[(size + 63) / 64];
+            this.steps = new int[]{-width, width, -1, 1};
+            for (int row = 0; row < grid.getRows(); row++) {
+                for (int col = 0; col < grid.getCols(); col++) {
+                    int cell = (row + 1) * width + col + 1;
+                    if (grid.isWalkable(row, col)) walkable[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+
+        /*
+         * Checks whether a cell is walking space
+         *
+         * @param cell The cell index
+         * @return true if the cell can be walked through, false otherwise
+         */
+        boolean isWalkable(int cell) {
+            return (walkable[cell >>> 6] & (1L << cell)) != 0;
+        }
+
+        /*
+         * Converts grid coordinates into a padded cell index
+         *
+         * @param coord The coordinates as {row, col}
+         * @return The cell index
+         */
+        int cellOf(int[] coord) {
+            return (coord[0] + 1) * width + coord[1] + 1;
+        }
+
+        /*
+         * Converts a padded cell index back into grid coordinates
+         *
+         * @param cell The cell index
+         * @return The coordinates as {row, col}
+         */
+        int[] coordinatesOf(int cell) {
+            return new int[]{cell / width - 1, cell % width - 1};
+        }
+    }
+
+    // ===== DTO =====
+    public static class Route {
+        private final int[] start;
+        private final List<int[]> stops;
+        private final int totalDistance;
+        private final List<int[]> unreachable;
+
+        /*
+         * Private constructor for Route
+         *
+         * @param start The kiosk coordinates the route starts and ends at
+         * @param stops The stops in visiting order
+         * @param totalDistance The number of steps for the whole round trip
+         * @param unreachable The stops that could not be reached from the kiosk
+         */
+        private Route(int[] start, List<int[]> stops, int totalDistance, List<int[]> unreachable) {
+            this.start = start;
+            this.stops = stops;
+            this.totalDistance = totalDistance;
+            this.unreachable = unreachable;
+        }
+
+        // Getters:
+        public int[] getStart() { return start; }
+        public List<int[]> getStops() { return stops; }
+        public int getTotalDistance() { return totalDistance; }
+        public List<int[]> getUnreachable() { return unreachable; }
+    }
+}
@@ -0,0 +1,119 @@
+package ca.umanitoba.cs.longkuma.ui.library;
+
+import ca.umanitoba.cs.longkuma.domain.library.MapGrid;
+import com.google.common.base.Preconditions;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+final class MapCanvas {
+
+    private static final WeakHashMap<MapGrid, MapCanvas> CANVASES = new WeakHashMap<>();
+
+    private final int cols;
+    private final int rowLength;
+    private final char[] text;
+    private char[] covered;
+
+    /*
+     * Private constructor for MapCanvas
+     * Renders every cell of the grid once, as its symbol followed by a space, with each row on a line
+     * of its own and a blank line after the map; markers are later drawn over this text in place
+     *
+     * @param grid The map grid to render
+     */
+    private MapCanvas(MapGrid grid) {
+        this.cols = grid.getCols();
+        this.rowLength = cols * 2 + 1;
+        this.text = new char[grid.getRows() * rowLength + 1];
+        this.covered = new char[16];
+        for (int row = 0; row < grid.getRows(); row++) {
+            char[] symbols = grid.rowSymbols(row);
+            int start = row * rowLength;
+            for (int col = 0; col < cols; col++) {
+                text[start + col * 2] = symbols[col];
+                text[start + col * 2 + 1] = ' ';
+            }
+            text[start + cols * 2] = '\n';
+        }
+        text[text.length - 1] = '\n';
+        checkMapCanvas();
+    }
+
+    /*
+     * Returns the canvas for a grid, rendering it the first time it is asked for
+     * A map's grid is replaced whenever one of its cells changes, so each version of a map is
+     * rendered once; canvases of grids that are no longer used are dropped with them
+     *
+     * @param grid The map grid
+     * @return The grid's canvas
+     */
+    static synchronized MapCanvas of(MapGrid grid) {
+        return CANVASES.computeIfAbsent(grid, MapCanvas::new);
+    }
+
+    /*
+     * Prints the map with markers drawn over some of its cells
+     * Only the marked cells are written before printing and put back afterwards, so the work beyond the
+     * single write grows with the number of markers rather than the size of the map
+     *
+     * @param out The stream to print to
+     * @param overlay The markers, drawn in the order they were added so later ones cover earlier ones
+     */
+    synchronized void print(PrintStream out, Overlay overlay) {
+        if (covered.length < overlay.size) covered = new char[overlay.size];
+        for (int i = 0; i < overlay.size; i++) {
+            int position = positionOf(overlay.cells[i]);
+            covered[i] = text[position];
+            text[position] = overlay.symbols[i];
+        }
+        out.print(text);
+        for (int i = overlay.size - 1; i >= 0; i--) text[positionOf(overlay.cells[i])] = covered[i];
+    }
+
+    /*
+     * Finds where a cell's symbol is in the rendered text
+     *
+     * @param cell The row-major index of the cell
+     * @return The position of the symbol
+     */
+    private int positionOf(int cell) {
+        return cell / cols * rowLength + cell % cols * 2;
+    }
+
+    /*
+     * Validates the internal state of the MapCanvas object
+     * Ensures the text holds every row of the map and the blank line after it
+     */
+    private void checkMapCanvas() {
+        Preconditions.checkState(text.length % rowLength == 1, "Text must hold whole rows");
+        Preconditions.checkState(text[text.length - 1] == '\n', "Text must end with a blank line");
+    }
+
+    /*
+     * Markers to draw over a map, such as a path, the kiosk and the destination
+     * Cells and symbols are kept in parallel arrays so no object is created per marker
+     */
+    static final class Overlay {
+        private int[] cells = new int[16];
+        private char[] symbols = new char[16];
+        private int size;
+
+        /*
+         * Adds a marker
+         *
+         * @param cell The row-major index of the cell to draw over
+         * @param symbol The symbol to draw
+         */
+        void mark(int cell, char symbol) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                symbols = Arrays.copyOf(symbols, size * 2);
+            }
+            cells[size] = cell;
+            symbols[size] = symbol;
+            size++;
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package ca.umanitoba.cs.longkuma.ui.library;
 
+import ca.umanitoba.cs.longkuma.domain.library.Building;
 import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.library.MapGrid;
 import ca.umanitoba.cs.longkuma.domain.media.Media;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
 import ca.umanitoba.cs.longkuma.logic.stack.Pathfinding;
+import ca.umanitoba.cs.longkuma.logic.stack.RoutePlanner;
+import java.util.HashMap;
 import java.util.List;
+import java.util.WeakHashMap;
 
 public class MapDisplay {
+    private static final int[] NO_MARKER = {-1, -1};
+
+    private static final int NO_ORIGIN = -1;
+
     private final Map map;
+    private final Building building;
+    private final int origin;
 
     /*
      * Constructs a MapDisplay with the specified map
@@ -16,6 +27,52 @@ public class MapDisplay {
      */
     public MapDisplay(Map map) {
         this.map = map;
+        this.building = null;
+        this.origin = NO_ORIGIN;
+    }
+
+    /*
+     * Constructs a MapDisplay for a member at one of the map's kiosks or entrances
+     * Paths start from that origin and are read from its precomputed shortest-path tree
+     *
+     * @param map The library map to display
+     * @param origin The origin's position in the map's origins, 0 being the main kiosk
+     */
+    public MapDisplay(Map map, int origin) {
+        this.map = map;
+        this.building = null;
+        this.origin = origin;
+    }
+
+    /*
+     * Constructs a MapDisplay for a library on several floors
+     * Paths are found across the floors; the map shown and explored is the kiosk's floor
+     *
+     * @param building The library's floors
+     */
+    public MapDisplay(Building building) {
+        this(building, 0);
+    }
+
+    /*
+     * Constructs a MapDisplay for a member at one of the kiosk floor's kiosks or entrances
+     *
+     * @param building The library's floors
+     * @param origin The origin's position in the kiosk floor's origins, 0 being the main kiosk
+     */
+    public MapDisplay(Building building, int origin) {
+        this.map = building.getKioskMap();
+        this.building = building;
+        this.origin = origin;
+    }
+
+    /*
+     * Returns where the member viewing the map is standing
+     *
+     * @return The coordinates of the display's origin, or of the kiosk if none was chosen
+     */
+    private int[] here() {
+        return origin == NO_ORIGIN ? map.getKioskCoordinates() : map.getOrigins().get(origin);
     }
 
     /*
@@ -25,7 +82,12 @@ public class MapDisplay {
      * @param media The media item to display the path to
      */
     public void displayPathToMedia(Media media) {
-        List<int[]> path = Pathfinding.findMediaPath(map, media);
+        if (building != null) {
+            displayFloorPaths(Pathfinding.findBuildingPath(building, media, origin), "media");
+            return;
+        }
+        List<int[]> path = origin == NO_ORIGIN ? Pathfinding.findMediaPath(map, media)
+                : Pathfinding.findMediaPath(map, media, origin);
 
         if (path == null) {
             System.out.println("This media is not in the map!");
@@ -44,7 +106,12 @@ public class MapDisplay {
      * @param resource The resource to display the path to
      */
     public void displayPathToResource(Resource resource) {
-        List<int[]> path = Pathfinding.findResourcePath(map, resource);
+        if (building != null) {
+            displayFloorPaths(Pathfinding.findBuildingPath(building, resource, origin), "resource");
+            return;
+        }
+        List<int[]> path = origin == NO_ORIGIN ? Pathfinding.findResourcePath(map, resource)
+                : Pathfinding.findResourcePath(map, resource, origin);
 
         if (path == null) {
             System.out.println("This resource is not in the map!");
@@ -56,6 +123,129 @@ public class MapDisplay {
         }
     }
 
+    /*
+     * Displays a path through a building floor by floor
+     * Each floor is drawn with its part of the path, followed by the stairs or elevator to take next
+     *
+     * @param parts The path's parts, one per floor visited, or null if the target is not in the building
+     * @param kind What the target is, for the messages
+     */
+    private void displayFloorPaths(List<Pathfinding.FloorPath> parts, String kind) {
+        if (parts == null) {
+            System.out.println("This " + kind + " is not in the building!");
+            return;
+        }
+        if (parts.isEmpty()) {
+            System.out.println("There's no way to get to this " + kind + "!");
+            return;
+        }
+
+        System.out.println("Path to " + kind + ":");
+        for (int i = 0; i < parts.size(); i++) {
+            Pathfinding.FloorPath part = parts.get(i);
+            List<int[]> cells = part.getCells();
+            MapGrid grid = building.getFloor(part.getFloor()).getGrid();
+
+            MapCanvas.Overlay overlay = new MapCanvas.Overlay();
+            for (int j = 1; j < cells.size() - 1; j++) {
+                overlay.mark(grid.cellIndex(cells.get(j)[0], cells.get(j)[1]), '*');
+            }
+            int[] kioskCoords = i == 0 ? here() : NO_MARKER;
+            int[] destination = i == parts.size() - 1 ? cells.get(cells.size() - 1) : NO_MARKER;
+
+            System.out.println("Floor " + part.getFloor() + ":");
+            drawGrid(grid, overlay, i == 0, kioskCoords, destination);
+            if (part.getExit() != null) {
+                System.out.printf("Take the %s to floor %d.\n", part.getExit().getType().name().toLowerCase(),
+                        part.getExit().otherFloor(part.getFloor()));
+            }
+        }
+    }
+
+    /*
+     * Plans and displays a round trip from the kiosk through a list of media locations
+     * Prints the visiting order with the steps for each leg, then the whole walk on the map,
+     * with every stop marked as a destination
+     * Stops that cannot be reached are listed separately
+     *
+     * @param stops The media coordinates to visit, from the map's media coordinates
+     */
+    public void displayPickRoute(List<int[]> stops) {
+        RoutePlanner.Route route = RoutePlanner.plan(map, stops);
+        if (route.getStops().isEmpty()) {
+            System.out.println("There's no way to get to any of these media!");
+        } else {
+            System.out.println("Pick route (" + route.getStops().size() + " stops, "
+                    + route.getTotalDistance() + " steps):");
+            for (int i = 0; i < route.getStops().size(); i++) {
+                int[] stop = route.getStops().get(i);
+                System.out.printf("%d. (%d, %d)\n", i + 1, stop[0], stop[1]);
+            }
+
+            MapGrid grid = map.getGrid();
+            MapCanvas.Overlay overlay = new MapCanvas.Overlay();
+            for (int[] coord : RoutePlanner.tracePath(map, route)) overlay.mark(grid.cellIndex(coord[0], coord[1]), '*');
+            for (int[] stop : route.getStops()) overlay.mark(grid.cellIndex(stop[0], stop[1]), 'X');
+            drawGrid(grid, overlay, false, map.getKioskCoordinates(), route.getStops().get(0));
+        }
+
+        for (int[] stop : route.getUnreachable()) {
+            System.out.printf("Can't reach (%d, %d)\n", stop[0], stop[1]);
+        }
+    }
+
+    /*
+     * Displays the map grid with the member's kiosk marked
+     */
+    public void displayMap() {
+        int[] kioskCoords = here();
+        drawGrid(map.getGrid(), new MapCanvas.Overlay(), true, kioskCoords, kioskCoords);
+    }
+
+    /*
+     * Describes what is at a cell of the map, such as when a member points at it
+     * Looks the cell up in the map's cell index rather than searching the media and resource lists
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     */
+    public void describeCell(int row, int col) {
+        MapGrid grid = map.getGrid();
+        if (!grid.inBounds(row, col)) {
+            System.out.printf("(%d, %d) is not on the map.\n", row, col);
+            return;
+        }
+
+        int[] kioskCoords = here();
+        if (row == kioskCoords[0] && col == kioskCoords[1]) {
+            System.out.println("You are here (Kiosk).");
+            return;
+        }
+
+        List<Media> media = map.getMediaAt(row, col);
+        Resource resource = map.getResourceAt(row, col);
+        if (map.isClosed(row, col)) {
+            System.out.println("This aisle is closed for now.");
+        } else if (!media.isEmpty()) {
+            for (Media item : media) System.out.printf("\"%s\" by %s\n", item.getTitle(), item.getAuthor());
+        } else if (resource != null) {
+            System.out.println(resource.getResourceName());
+        } else {
+            System.out.println(describeSymbol(grid.symbolAt(row, col)));
+        }
+    }
+
+    /*
+     * Looks up the legend entry for a map symbol
+     *
+     * @param symbol The map symbol
+     * @return The legend's description, or the symbol itself if the legend has no entry for it
+     */
+    private String describeSymbol(char symbol) {
+        String label = Legend.of(map.getLegend()).labels.get(symbol);
+        return label == null ? String.valueOf(symbol) : label;
+    }
+
     /*
      * Displays a path on the map grid
      * Marks intermediate path points with asterisks, preserves kiosk and destination markers
@@ -64,41 +254,39 @@ public class MapDisplay {
      */
     private void displayPath(List<int[]> path) {
         if (path != null && !path.isEmpty()) {
-            char[][] grid = map.getGrid();
-            int[] kioskCoords = map.getKioskCoordinates();
+            MapGrid grid = map.getGrid();
+            int[] kioskCoords = here();
             int[] destination = path.get(path.size() - 1);
 
-            char[][] gridCopy = deepCopy(grid);
-
+            MapCanvas.Overlay overlay = new MapCanvas.Overlay();
             for (int i = 1; i < path.size() - 1; i++) {
                 int[] coord = path.get(i);
-                gridCopy[coord[0]][coord[1]] = '*';
+                overlay.mark(grid.cellIndex(coord[0], coord[1]), '*');
             }
 
-            System.out.println(formatGrid(gridCopy, kioskCoords, destination));
+            drawGrid(grid, overlay, true, kioskCoords, destination);
         }
     }
 
     /*
-     * Formats the map grid as a string with special markers for kiosk and destination
-     * Converts the 2D grid to a readable string representation with spacing
+     * Prints a map grid with markers for the kiosk and destination drawn over the path markers
+     * The grid's rendering is cached per version of the map, so only the markers are drawn for each request
+     * When the member is at another kiosk or entrance, the main kiosk is marked with 'K' so the map does
+     * not show two places as "you are here"
      *
-     * @param grid The map grid to format
+     * @param grid The map grid to print
+     * @param overlay The path markers
+     * @param kioskFloor Whether the grid is the kiosk's floor
      * @param kioskCoords The coordinates of the kiosk (marked as 'U')
      * @param destination The coordinates of the destination (marked as 'X')
-     * @return A formatted string representation of the grid
-     */
-    private String formatGrid(char[][] grid, int[] kioskCoords, int[] destination) {
-        StringBuilder output = new StringBuilder();
-        for (int row = 0; row < grid.length; row++) {
-            for (int col = 0; col < grid[0].length; col++) {
-                if (row == kioskCoords[0] && col == kioskCoords[1]) output.append("U ");
-                else if (row == destination[0] && col == destination[1]) output.append("X ");
-                else output.append(grid[row][col]).append(" ");
-            }
-            output.append("\n");
-        }
-        return output.toString();
+     */
+    private void drawGrid(MapGrid grid, MapCanvas.Overlay overlay, boolean kioskFloor, int[] kioskCoords,
+                          int[] destination) {
+        int[] kiosk = map.getKioskCoordinates();
+        if (kioskFloor && here() != kiosk) overlay.mark(grid.cellIndex(kiosk[0], kiosk[1]), 'K');
+        if (grid.inBounds(destination[0], destination[1])) overlay.mark(grid.cellIndex(destination[0], destination[1]), 'X');
+        if (grid.inBounds(kioskCoords[0], kioskCoords[1])) overlay.mark(grid.cellIndex(kioskCoords[0], kioskCoords[1]), 'U');
+        MapCanvas.of(grid).print(System.out, overlay);
     }
 
     /*
@@ -106,25 +294,48 @@ public class MapDisplay {
      * Includes standard legend entries plus path markers
      */
     public void displayLegend() {
-        String[] legend = map.getLegend();
-        System.out.println("=== Map Legend ===");
-        for (String entry : legend) System.out.println(entry);
-        System.out.println("U = You are here (Kiosk)");
-        System.out.println("X = Destination");
-        System.out.println("* = Path");
-        System.out.println("==================");
+        StringBuilder output = new StringBuilder("=== Map Legend ===\n").append(Legend.of(map.getLegend()).entries);
+        output.append("U = You are here (Kiosk)\n");
+        if (here() != map.getKioskCoordinates()) output.append("K = Main kiosk\n");
+        output.append("X = Destination\n* = Path\n").append(Map.CLOSED).append(" = Closed aisle\n");
+        output.append("==================\n");
+        System.out.print(output);
     }
 
     /*
-     * Creates a deep copy of a 2D character array
-     * Each row is cloned independently to prevent shared references
-     *
-     * @param original The original 2D character array to copy
-     * @return A new 2D character array with copied values
+     * A map legend parsed into a table from each symbol to its description
+     * Legends never change once a map is built, so each is parsed the first time it is shown
      */
-    private char[][] deepCopy(char[][] original) {
-        char[][] copy = new char[original.length][];
-        for (int i = 0; i < original.length; i++) copy[i] = original[i].clone();
-        return copy;
+    private static final class Legend {
+        private static final WeakHashMap<String[], Legend> LEGENDS = new WeakHashMap<>();
+
+        private final HashMap<Character, String> labels;
+        private final String entries;
+
+        /*
+         * Private constructor for Legend
+         * Entries are written as the symbol, a comma and the description, such as "W,Wall"
+         *
+         * @param legend The map's legend entries
+         */
+        private Legend(String[] legend) {
+            this.labels = new HashMap<>();
+            StringBuilder text = new StringBuilder();
+            for (String entry : legend) {
+                if (entry.length() > 2 && entry.charAt(1) == ',') labels.putIfAbsent(entry.charAt(0), entry.substring(2));
+                text.append(entry).append('\n');
+            }
+            this.entries = text.toString();
+        }
+
+        /*
+         * Returns the parsed form of a legend, parsing it the first time it is asked for
+         *
+         * @param legend The map's legend entries
+         * @return The parsed legend
+         */
+        static synchronized Legend of(String[] legend) {
+            return LEGENDS.computeIfAbsent(legend, Legend::new);
+        }
     }
-}
\ No newline at end of file
+}
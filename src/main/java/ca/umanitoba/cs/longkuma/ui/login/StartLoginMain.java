@@ -1,167 +1,206 @@
 package ca.umanitoba.cs.longkuma.ui.login;
 
-import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidMapException;
-import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidNameException;
-import ca.umanitoba.cs.longkuma.domain.exceptions.MapDimensionMismatchException;
 import ca.umanitoba.cs.longkuma.domain.library.Library;
 import ca.umanitoba.cs.longkuma.domain.media.Media;
-import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import ca.umanitoba.cs.longkuma.logic.library.BatchRunner;
+import ca.umanitoba.cs.longkuma.logic.library.CatalogEvictor;
+import ca.umanitoba.cs.longkuma.logic.library.CatalogImporter;
+import ca.umanitoba.cs.longkuma.logic.library.LibraryConfigLoader;
 import ca.umanitoba.cs.longkuma.logic.library.LibrarySystem;
+import ca.umanitoba.cs.longkuma.logic.library.MemberImporter;
+import ca.umanitoba.cs.longkuma.logic.library.RowError;
 import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.logic.resource.BookingArchiver;
 
-import java.util.ArrayList;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 public class StartLoginMain {
 
+    private static final String ARCHIVE_DIRECTORY = "booking-archive";
+    private static final String LIBRARY_DIRECTORY = "libraries";
+    private static final String CONFIG_FLAG = "--config";
+    private static final String BATCH_FLAG = "--batch";
+    private static final String BATCH_LOG = "batch-results.tsv";
+    private static final String MEMBERS_FLAG = "--members";
+    private static final String CATALOG_FLAG = "--catalog";
+    private static final String STANDARD_INPUT = "-";
+
     private static LibrarySystem libSystem;
 
     /*
      * Main entry point for the library system application
-     * Sets up the library system and starts the login display
+     * Sets up the library system from the libraries directory, starts archiving old bookings daily and
+     * unloading idle catalogs when memory runs low in the background, and starts the login display
+     * Run with "--batch <commands> [log]" to run a file of commands instead, or "--batch -" to read them
+     * from standard input; the results are written to the log, batch-results.tsv by default
+     * Run with "--members <csv>" to register every member in a CSV file, and "--catalog <csv>" to load
+     * a catalog of media, before signing in, or before the batch when one is given
+     * Run with "--config <directory>" to load the libraries configured in another directory
      */
     public static void main(String[] args) {
-        SetUpLibrarySystem();
+        String config = LIBRARY_DIRECTORY;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(CONFIG_FLAG)) config = args[i + 1];
+        }
+        SetUpLibrarySystem(config);
+
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(MEMBERS_FLAG)) importMembers(args[i + 1]);
+            if (args[i].equals(CATALOG_FLAG)) importCatalog(args[i + 1]);
+        }
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(BATCH_FLAG)) {
+                runBatch(args[i + 1], i + 2 < args.length && !args[i + 2].startsWith("--") ? args[i + 2] : BATCH_LOG);
+                return;
+            }
+        }
+
+        BookingArchiver archiver = new BookingArchiver.ArchiverBuilder().libSystem(libSystem)
+                .directory(Path.of(ARCHIVE_DIRECTORY)).build();
+        archiver.start(1, TimeUnit.DAYS);
+        new CatalogEvictor.EvictorBuilder().build().start();
 
         LoginDisplay display = new LoginDisplay();
         display.startLogin(libSystem);
     }
 
     /*
-     * Initializes the library system with sample data including:
-     * - Two libraries with maps
-     * - Media items with copies
-     * - Study room resources
-     * - Coordinates for all items on the maps
+     * Initializes the library system with the libraries configured in a directory, one .library file
+     * per library naming its floor maps, legend, resources and catalog, and prints how long each took
+     *
+     * @param directory The configuration directory
      */
-    private static void SetUpLibrarySystem() {
+    private static void SetUpLibrarySystem(String directory) {
+        libSystem = new LibrarySystem.LibrarySystemBuilder().build();
+        LibraryConfigLoader loader = new LibraryConfigLoader.LoaderBuilder().directory(Path.of(directory)).build();
         try {
-            libSystem = new LibrarySystem.LibrarySystemBuilder().build();
-
-            String mapString1 = """
-                    9 12
-                    W W W W W W W W W W W W
-                    W . . . . . . . G G G W
-                    W . M F . . . . G G G W
-                    W . . . . . . . . . . W
-                    W . . W W W W W W . I W
-                    W . . W . U . . W . . W
-                    W . . W . . . . W . . W
-                    W . . . . . . . . . . W
-                    W W W W W W W W W W W W""";
-            String[] legend1 = {
-                    "W,Wall",
-                    ".,Path/Walking Space",
-                    "M,Music",
-                    "F,Fiction",
-                    "I,Individual Study Room",
-                    "G,Group Study Room",
-                    "U,You are here"
-            };
-            int[] kiosk1 = new int[]{5,5};
-            char[][] mapGrid1 = Map.gridFromString(mapString1);
-            Map map1 = new Map.MapBuilder().grid(mapGrid1).legend(legend1).kioskCoordinates(kiosk1).build();
-            Library lib1 = new Library.LibraryBuilder().name("Elizabeth Dafoe Library").map(map1).build();
-
-            Media media1 = new Media.MediaBuilder().title("The Hobbit").author("J.R.R. Tolkien")
-                    .type("Book").coordinates(new int[]{2,3}).build();
-            MediaCopy copy1 = new MediaCopy.MediaCopyBuilder().copyNumber(1).media(media1).build();
-            media1.addCopy(copy1);
-
-            Media media2 = new Media.MediaBuilder().title("Thriller").author("Michael Jackson")
-                    .type("CD").coordinates(new int[]{2,2}).build();
-            MediaCopy copy2 = new MediaCopy.MediaCopyBuilder().copyNumber(1).media(media2).build();
-            media2.addCopy(copy2);
-
-            lib1.addMedia(media1);
-            lib1.addMedia(media2);
-
-            final String OPENING_TIME = "12:00";
-            final String CLOSING_TIME = "20:00";
-            final int BOOKING_TIMESLOTS = 60;
-
-            ArrayList<int[]> individualStudyRoomCoords = new ArrayList<>();
-            individualStudyRoomCoords.add(new int[]{4,10});
-            Resource resource1 = new Resource.ResourceBuilder().resourceName("Individual Study Room").openingTime(OPENING_TIME)
-                    .closingTime(CLOSING_TIME).timeslotLength(BOOKING_TIMESLOTS).coordinates(individualStudyRoomCoords).build();
-
-            ArrayList<int[]> groupStudyRoomCoords = new ArrayList<>();
-            groupStudyRoomCoords.add(new int[]{1,8});
-            groupStudyRoomCoords.add(new int[]{2,8});
-            groupStudyRoomCoords.add(new int[]{1,9});
-            groupStudyRoomCoords.add(new int[]{2,9});
-            groupStudyRoomCoords.add(new int[]{1,10});
-            groupStudyRoomCoords.add(new int[]{2,10});
-            Resource resource2 = new Resource.ResourceBuilder().resourceName("Group Study Room").openingTime(OPENING_TIME)
-                    .closingTime(CLOSING_TIME).timeslotLength(BOOKING_TIMESLOTS).coordinates(groupStudyRoomCoords).build();
-            lib1.addResource(resource1);
-            lib1.addResource(resource2);
-
-            map1.addMediaCoordinates(media1.getCoordinates());
-            map1.addMediaCoordinates(media2.getCoordinates());
-            map1.addResourceCoordinates(individualStudyRoomCoords);
-            map1.addResourceCoordinates(groupStudyRoomCoords);
-            // ======== LIBRARY 2 =========
-
-            String mapString2 = """
-                    7 12
-                    W W W W W W W W W W W W
-                    W . . . . . . . . . . W
-                    W . S . . . . F . . . W
-                    W . . . . W W W W W . W
-                    W . 1 2 . W . U . . . W
-                    W . . . . W . . . . . W
-                    W W W W W W W W W W W W""";
-            String[] legend2 = {
-                    "W,Wall",
-                    ".,Path/Walking Space",
-                    "S,Science",
-                    "F,Fiction",
-                    "1,Quiet Pod 1",
-                    "2,Quiet Pod 2",
-                    "U,You are here"
-            };
-            int[] kiosk2 = new int[]{4,7};
-            char[][] mapGrid2 = Map.gridFromString(mapString2);
-            Map map2 = new Map.MapBuilder().grid(mapGrid2).legend(legend2).kioskCoordinates(kiosk2).build();
-            Library lib2 = new Library.LibraryBuilder().name("E. K. Williams Law Library").map(map2).build();
-
-            Media media3 = new Media.MediaBuilder().title("Generative Adversarial Networks").author("Ian J. Goodfellow")
-                    .type("Scientific Paper").coordinates(new int[]{2,2}).build();
-            MediaCopy copy3 = new MediaCopy.MediaCopyBuilder().copyNumber(1).media(media3).build();
-            media3.addCopy(copy3);
-            Media media4 = new Media.MediaBuilder().title("Twilight").author("Stephenie Meyer")
-                    .type("Book").coordinates(new int[]{2,7}).build();
-            MediaCopy copy4 = new MediaCopy.MediaCopyBuilder().copyNumber(1).media(media4).build();
-            media4.addCopy(copy4);
-
-            lib2.addMedia(media3);
-            lib2.addMedia(media4);
-
-            ArrayList<int[]> quietPod1Coords = new ArrayList<>();
-            quietPod1Coords.add(new int[]{4,2});
-            Resource resource3 = new Resource.ResourceBuilder().resourceName("Quiet Pod 1").openingTime(OPENING_TIME)
-                    .closingTime(CLOSING_TIME).timeslotLength(BOOKING_TIMESLOTS).coordinates(quietPod1Coords).build();
-            ArrayList<int[]> quietPod2Coords = new ArrayList<>();
-            quietPod2Coords.add(new int[]{4,3});
-            Resource resource4 = new Resource.ResourceBuilder().resourceName("Quiet Pod 2").openingTime(OPENING_TIME)
-                    .closingTime(CLOSING_TIME).timeslotLength(BOOKING_TIMESLOTS).coordinates(quietPod2Coords).build();
-            lib2.addResource(resource3);
-            lib2.addResource(resource4);
-
-            map2.addMediaCoordinates(media3.getCoordinates());
-            map2.addMediaCoordinates(media4.getCoordinates());
-            map2.addResourceCoordinates(quietPod1Coords);
-            map2.addResourceCoordinates(quietPod2Coords);
-
-            libSystem.addLibrary(lib1);
-            libSystem.addLibrary(lib2);
-        } catch (InvalidNameException e) {
-            System.out.println("Invalid name. " + e.getMessage());
-        } catch (InvalidMapException e) {
-            System.out.println("Invalid map. " + e.getMessage());
-        } catch (MapDimensionMismatchException e) {
-            System.out.println("Invalid map String. " + e.getMessage());
+            LibraryConfigLoader.StartupReport report = loader.load(libSystem);
+
+            for (LibraryConfigLoader.LibraryTiming timing : report.getTimings()) {
+                if (!timing.isLoaded()) {
+                    System.out.println("Could not load " + timing.getFile() + ". " + timing.getError());
+                    continue;
+                }
+                if (timing.isCatalogDeferred()) {
+                    System.out.printf("Loaded %s in %.1f ms (maps %.1f, catalog on first use)\n",
+                            timing.getName(), timing.getTotalNanos() / 1_000_000.0, timing.getBuildNanos() / 1_000_000.0);
+                    continue;
+                }
+                System.out.printf("Loaded %s in %.1f ms (maps %.1f, catalog %.1f)\n", timing.getName(),
+                        timing.getTotalNanos() / 1_000_000.0, timing.getBuildNanos() / 1_000_000.0,
+                        timing.getCatalogNanos() / 1_000_000.0);
+                if (timing.getCatalogError() != null) {
+                    System.out.println("  " + timing.getCatalogInvalid() + " invalid catalog records, first at "
+                            + timing.getCatalogError());
+                }
+            }
+            System.out.printf("Loaded %d of %d libraries in %.1f ms\n", report.getLoaded(), report.getTimings().size(),
+                    report.getElapsedNanos() / 1_000_000.0);
+        } catch (IOException e) {
+            System.out.println("Could not read library configuration. " + e.getMessage());
+        }
+        for (Library library : libSystem.getLibraries()) reportOrphans(library);
+    }
+
+    /*
+     * Registers every member listed in a CSV file of name,password rows and prints how it went
+     *
+     * @param csv The CSV file
+     */
+    private static void importMembers(String csv) {
+        MemberImporter importer = new MemberImporter.ImporterBuilder().libSystem(libSystem)
+                .progress(rows -> System.out.print("\rRead " + rows + " rows")).build();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(csv))) {
+            MemberImporter.ImportReport report = importer.importCsv(reader);
+
+            System.out.printf("\rImported %d members from %d rows in %.1f ms (%.0f rows per second)\n",
+                    report.getImported(), report.getRowsRead(), report.getElapsedNanos() / 1_000_000.0,
+                    report.getRowsPerSecond());
+            System.out.printf("  %d duplicates skipped, %d invalid rows\n", report.getDuplicates(), report.getInvalid());
+            for (RowError error : report.getErrors()) {
+                System.out.println("  line " + error.getLineNumber() + ": " + error.getMessage());
+            }
+        } catch (IOException e) {
+            System.out.println("Member import failed. " + e.getMessage());
+        }
+    }
+
+    /*
+     * Loads every media item listed in a catalog CSV file into its library and prints how it went
+     *
+     * @param csv The CSV file
+     */
+    private static void importCatalog(String csv) {
+        CatalogImporter importer = new CatalogImporter.ImporterBuilder().libSystem(libSystem)
+                .progress(rows -> System.out.print("\rRead " + rows + " records")).build();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(csv))) {
+            CatalogImporter.CatalogReport report = importer.importCsv(reader);
+
+            System.out.printf("\rLoaded %d media with %d copies from %d records in %.1f ms (%.0f records per second)\n",
+                    report.getImported(), report.getCopies(), report.getRowsRead(),
+                    report.getElapsedNanos() / 1_000_000.0, report.getRowsPerSecond());
+            System.out.printf("  %d invalid records\n", report.getInvalid());
+            for (RowError error : report.getErrors()) {
+                System.out.println("  line " + error.getLineNumber() + ": " + error.getMessage());
+            }
+        } catch (IOException e) {
+            System.out.println("Catalog import failed. " + e.getMessage());
+        }
+    }
+
+    /*
+     * Runs a batch of commands against the library system without the menus and prints how it went
+     *
+     * @param commands The file of commands, or "-" for standard input
+     * @param log The file to write each command's result to
+     */
+    private static void runBatch(String commands, String log) {
+        BatchRunner runner = new BatchRunner.RunnerBuilder().libSystem(libSystem).build();
+        try (BufferedReader reader = commands.equals(STANDARD_INPUT)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(commands));
+             Writer writer = Files.newBufferedWriter(Path.of(log))) {
+            BatchRunner.BatchReport report = runner.run(reader, writer);
+
+            System.out.printf("Ran %d commands in %.1f ms (%.0f commands per second)\n", report.getCommands(),
+                    report.getElapsedNanos() / 1_000_000.0, report.getCommandsPerSecond());
+            for (BatchRunner.Status status : BatchRunner.Status.values()) {
+                System.out.printf("  %-10s %d\n", status, report.getCount(status));
+            }
+            for (BatchRunner.Command command : BatchRunner.Command.values()) {
+                if (report.getCount(command) == 0) continue;
+                System.out.printf("  %-10s %d, %.1f us each\n", command, report.getCount(command),
+                        report.getMeanMicros(command));
+            }
+            System.out.println("Results written to " + log);
+        } catch (IOException e) {
+            System.out.println("Batch failed. " + e.getMessage());
+        }
+    }
+
+    /*
+     * Warns about media and resources placed where no path from the kiosk can reach them
+     * Media are only checked once the library's catalog is loaded
+     *
+     * @param library The library whose map to check
+     */
+    private static void reportOrphans(Library library) {
+        Map map = library.getMap();
+        for (Media media : map.getOrphanedMedia()) {
+            System.out.println("Warning: \"" + media.getTitle() + "\" in " + library.getName()
+                    + " cannot be reached from the kiosk.");
+        }
+        for (Resource resource : map.getOrphanedResources()) {
+            System.out.println("Warning: " + resource.getResourceName() + " in " + library.getName()
+                    + " cannot be reached from the kiosk.");
         }
     }
 }
\ No newline at end of file
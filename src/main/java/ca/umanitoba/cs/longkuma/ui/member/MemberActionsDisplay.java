@@ -3,17 +3,23 @@ package ca.umanitoba.cs.longkuma.ui.member;
 import ca.umanitoba.cs.longkuma.domain.exceptions.*;
 import ca.umanitoba.cs.longkuma.domain.media.Media;
 import ca.umanitoba.cs.longkuma.domain.media.MediaCopy;
+import ca.umanitoba.cs.longkuma.domain.member.Eligibility;
 import ca.umanitoba.cs.longkuma.domain.member.Member;
 import ca.umanitoba.cs.longkuma.domain.library.Library;
+import ca.umanitoba.cs.longkuma.domain.library.Map;
+import ca.umanitoba.cs.longkuma.domain.resource.RecurringBooking;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
 import ca.umanitoba.cs.longkuma.logic.library.LibrarySystem;
 import ca.umanitoba.cs.longkuma.domain.media.Review;
 import ca.umanitoba.cs.longkuma.logic.media.MediaBorrowingLogic;
+import ca.umanitoba.cs.longkuma.logic.resource.AvailabilitySearch;
 import ca.umanitoba.cs.longkuma.ui.library.MapDisplay;
 import ca.umanitoba.cs.longkuma.ui.media.MediaCopyDisplay;
+import ca.umanitoba.cs.longkuma.ui.resource.AvailabilityDisplay;
 import ca.umanitoba.cs.longkuma.ui.resource.ResourceDisplay;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Scanner;
 
@@ -21,7 +27,10 @@ public class MemberActionsDisplay {
     private final LibrarySystem libSystem;
     private final Member member;
     private final Scanner keyboard;
-    private static final String[] memberOptions = {"1. BOOK RESOURCE", "2. BORROW MEDIA", "3. RETURN MEDIA", "4. SIGN OUT"};
+    private final HashMap<Library, Integer> kioskByLibrary;
+    private final List<Library> sessions;
+    private static final String[] memberOptions = {"1. BOOK RESOURCE", "2. BORROW MEDIA", "3. RETURN MEDIA", "4. FIND FREE SLOTS",
+            "5. SEARCH AVAILABILITY", "6. EXPLORE MAP", "7. PLAN PICK ROUTE", "8. SIGN OUT"};
 
     /*
      * Constructs a MemberActionsDisplay with the specified library system, member, and scanner
@@ -34,11 +43,15 @@ public class MemberActionsDisplay {
         this.libSystem = libSystem;
         this.member = member;
         this.keyboard = keyboard;
+        this.kioskByLibrary = new HashMap<>();
+        this.sessions = new ArrayList<>();
     }
 
     /*
      * Displays the main menu options and handles member actions
      * Continues until the member chooses to sign out
+     * Each library chosen during an action has a session open on it until the action ends, so its catalog
+     * stays loaded while the member is shown its media and picks from them
      */
     public void showOptions() {
         String task;
@@ -48,46 +61,91 @@ public class MemberActionsDisplay {
             System.out.println("SELECT AN OPTION: ");
             printOptions();
             task = getInput();
-            switch(task) {
-                case "1":
-                case "BOOK RESOURCE":
-                    System.out.println("You chose: BOOK RESOURCE");
-                    bookResource();
-                    break;
-                case "2":
-                case "BORROW MEDIA":
-                    System.out.println("You chose: BORROW MEDIA");
-                    if(this.member.hasConstraints()) {
-                        System.out.println("Sorry, you have constraints that prevent you from borrowing more media.");
-                    } else {
-                        borrowMedia();
-                    }
-                    break;
-                case "3":
-                case "RETURN MEDIA":
-                    System.out.println("You chose: RETURN MEDIA");
-                    returnMedia();
-                    break;
-                case "4":
-                case "SIGN OUT":
-                    System.out.println("You chose: SIGN OUT");
-                    System.out.println("You have successfully signed out.");
-                    signedOut = true;
-                    break;
-                default:
-                    System.out.println("Invalid option. Please enter a number between 1 and 4.");
-                    break;
+            try {
+                signedOut = runOption(task);
+            } finally {
+                closeSessions();
             }
         }
     }
 
+    /*
+     * Runs the menu option the member chose
+     *
+     * @param task The member's choice, by number or name
+     * @return true if the member signed out, false otherwise
+     */
+    private boolean runOption(String task) {
+        boolean signedOut = false;
+        switch(task) {
+            case "1":
+            case "BOOK RESOURCE":
+                System.out.println("You chose: BOOK RESOURCE");
+                bookResource();
+                break;
+            case "2":
+            case "BORROW MEDIA":
+                System.out.println("You chose: BORROW MEDIA");
+                if(!this.member.canBorrow()) {
+                    System.out.println("Sorry, you cannot borrow more media: "
+                            + this.member.getEligibility().describe(Eligibility.BORROW_BLOCKERS) + ".");
+                } else {
+                    borrowMedia();
+                }
+                break;
+            case "3":
+            case "RETURN MEDIA":
+                System.out.println("You chose: RETURN MEDIA");
+                returnMedia();
+                break;
+            case "4":
+            case "FIND FREE SLOTS":
+                System.out.println("You chose: FIND FREE SLOTS");
+                findFreeSlots();
+                break;
+            case "5":
+            case "SEARCH AVAILABILITY":
+                System.out.println("You chose: SEARCH AVAILABILITY");
+                searchAvailability();
+                break;
+            case "6":
+            case "EXPLORE MAP":
+                System.out.println("You chose: EXPLORE MAP");
+                exploreMap();
+                break;
+            case "7":
+            case "PLAN PICK ROUTE":
+                System.out.println("You chose: PLAN PICK ROUTE");
+                planPickRoute();
+                break;
+            case "8":
+            case "SIGN OUT":
+                System.out.println("You chose: SIGN OUT");
+                System.out.println("You have successfully signed out.");
+                signedOut = true;
+                break;
+            default:
+                System.out.println("Invalid option. Please enter a number between 1 and 8.");
+                break;
+        }
+        return signedOut;
+    }
+
+    /*
+     * Closes the sessions opened on libraries during the last action
+     */
+    private void closeSessions() {
+        for (Library library : sessions) library.closeSession();
+        sessions.clear();
+    }
+
     /*
      * Displays all resources available in a library
      *
      * @param library The library whose resources to display
      */
     private void showResources(Library library) {
-        ArrayList<Resource> resources = library.getResources();
+        List<Resource> resources = library.getResources();
         for(int i = 0; i < resources.size(); i++) {
             System.out.printf("%d. \"%s\"\n", i + 1, resources.get(i).getResourceName());
         }
@@ -97,7 +155,7 @@ public class MemberActionsDisplay {
      * Displays all libraries in the system
      */
     private void showLibraries() {
-        ArrayList<Library> libraries = this.libSystem.getLibraries();
+        List<Library> libraries = this.libSystem.getLibraries();
         for(int i = 0; i < libraries.size(); i++) {
             System.out.printf("%d. %s\n", i + 1, libraries.get(i).getName());
         }
@@ -105,6 +163,7 @@ public class MemberActionsDisplay {
 
     /*
      * Prompts the user to select a library from available options
+     * A session is opened on the library for the rest of the action
      *
      * @return The selected library
      */
@@ -114,7 +173,7 @@ public class MemberActionsDisplay {
 
         while (!valid) {
             showLibraries();
-            ArrayList<Library> libraries = this.libSystem.getLibraries();
+            List<Library> libraries = this.libSystem.getLibraries();
             System.out.printf("SELECT LIBRARY (1 - %d): ", libraries.size());
             String input = getInput();
 
@@ -130,9 +189,60 @@ public class MemberActionsDisplay {
                 System.out.println("Invalid input. Please enter a number.");
             }
         }
+        if (!sessions.contains(selectedLibrary)) {
+            selectedLibrary.openSession();
+            sessions.add(selectedLibrary);
+        }
         return selectedLibrary;
     }
 
+    /*
+     * Creates the map display for a library, across all of its floors if it has several
+     * Paths start from the kiosk the member is at, asked for the first time a library with
+     * several kiosks or entrances is shown
+     * The library's catalog is loaded first, so its shelves show the media on them; if it cannot be read,
+     * the member is told and the shelves are shown empty
+     *
+     * @param library The library whose map to display
+     * @return The map display
+     */
+    private MapDisplay mapDisplayFor(Library library) {
+        int origin = kioskByLibrary.computeIfAbsent(library, this::selectKiosk);
+        if (!library.loadCatalog()) {
+            System.out.println(library.getCatalogError() + ". Its shelves are shown empty.");
+        }
+        if (library.getBuilding() != null) return new MapDisplay(library.getBuilding(), origin);
+        if (library.getMap().getOriginCount() == 1) return new MapDisplay(library.getMap());
+        return new MapDisplay(library.getMap(), origin);
+    }
+
+    /*
+     * Prompts the user to select which of a library's kiosks or entrances they are at
+     * Libraries with a single kiosk are not asked about
+     *
+     * @param library The library the member is in
+     * @return The origin's position in the map's origins, 0 being the main kiosk
+     */
+    private int selectKiosk(Library library) {
+        List<int[]> origins = library.getMap().getOrigins();
+        if (origins.size() == 1) return 0;
+
+        while (true) {
+            for (int i = 0; i < origins.size(); i++) {
+                System.out.printf("%d. %s (%d, %d)\n", i + 1, i == 0 ? "Main kiosk" : "Kiosk",
+                        origins.get(i)[0], origins.get(i)[1]);
+            }
+            System.out.printf("WHICH KIOSK ARE YOU AT (1 - %d): ", origins.size());
+            try {
+                int index = Integer.parseInt(getInput()) - 1;
+                if (index >= 0 && index < origins.size()) return index;
+                System.out.println("Invalid kiosk. Please enter a number between 1 and " + origins.size());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a number.");
+            }
+        }
+    }
+
     /*
      * Prompts the user to select a resource from a library
      *
@@ -145,7 +255,7 @@ public class MemberActionsDisplay {
 
         while (!valid) {
             showResources(library);
-            ArrayList<Resource> resources = library.getResources();
+            List<Resource> resources = library.getResources();
             System.out.printf("SELECT RESOURCE TO BOOK (1 - %d): ", resources.size());
             String input = getInput();
 
@@ -166,6 +276,7 @@ public class MemberActionsDisplay {
 
     /*
      * Prompts the user to select media from a library
+     * The media are looked up again once the member answers, so the item returned is the library's own
      *
      * @param library The library containing the media
      * @return The selected media item
@@ -179,6 +290,7 @@ public class MemberActionsDisplay {
             List<Media> mediaList = library.getMedia();
             System.out.printf("SELECT MEDIA TO BORROW (1 - %d): ", mediaList.size());
             String input = getInput();
+            mediaList = library.getMedia();
 
             try {
                 int index = Integer.parseInt(input) - 1;
@@ -198,7 +310,7 @@ public class MemberActionsDisplay {
     /*
      * Handles the resource booking process including:
      * - Library and resource selection
-     * - Date and time input
+     * - Date and time input, with an optional daily or weekly repeat
      * - Path display to the resource
      * - Exception handling for booking errors
      * Returns to main menu after 3 invalid date attempts
@@ -226,13 +338,24 @@ public class MemberActionsDisplay {
                     " (format: HH:MM-HH:MM, timeslots every " +
                     selectedResource.getTimeslotLength() + " minutes): ");
             resourceDisplay.printBookings(bookingDate);
+            resourceDisplay.printFreeSlots(bookingDate, 1);
             String bookingTime = keyboard.nextLine();
 
+            System.out.print("REPEAT BOOKING (NONE, DAILY, WEEKLY): ");
+            RecurringBooking.Frequency frequency = parseFrequency(keyboard.nextLine());
+            String lastDate = "";
+            if (frequency != null) {
+                System.out.print("REPEAT UNTIL (DD/MM/YY): ");
+                lastDate = keyboard.nextLine();
+            }
+
             try {
-                boolean booked = member.bookResource(selectedResource, bookingDate, bookingTime);
+                boolean booked = frequency == null
+                        ? member.bookResource(selectedResource, bookingDate, bookingTime)
+                        : member.bookRecurringResource(selectedResource, bookingDate, lastDate, bookingTime, frequency);
                 if (booked) {
                     System.out.println("Path to selected resource: ");
-                    MapDisplay mapDisplay = new MapDisplay(selectedLibrary.getMap());
+                    MapDisplay mapDisplay = mapDisplayFor(selectedLibrary);
                     mapDisplay.displayPathToResource(selectedResource);
                     mapDisplay.displayLegend();
                     System.out.println("Successfully booked: " + selectedResource.getResourceName());
@@ -263,6 +386,179 @@ public class MemberActionsDisplay {
         }
     }
 
+    /*
+     * Reads a repeat choice for a booking
+     * Anything other than DAILY or WEEKLY is treated as a one-off booking
+     *
+     * @param input The member's answer
+     * @return The chosen frequency, or null for a one-off booking
+     */
+    private RecurringBooking.Frequency parseFrequency(String input) {
+        String choice = input.trim().toUpperCase();
+        if (choice.equals("DAILY")) return RecurringBooking.Frequency.DAILY;
+        if (choice.equals("WEEKLY")) return RecurringBooking.Frequency.WEEKLY;
+        return null;
+    }
+
+    /*
+     * Handles the free slot lookup including:
+     * - Library and resource selection
+     * - Date and number of timeslots input
+     * - Display of every free range long enough on that date
+     */
+    private void findFreeSlots() {
+        Library selectedLibrary = selectLibrary();
+        Resource selectedResource = selectResource(selectedLibrary);
+
+        System.out.print("SELECT DATE TO CHECK (DD/MM/YY): ");
+        String date = keyboard.nextLine();
+
+        int slotsNeeded = 0;
+        while (slotsNeeded < 1) {
+            System.out.printf("HOW MANY %d MINUTE TIMESLOTS DO YOU NEED? ", selectedResource.getTimeslotLength());
+            try {
+                slotsNeeded = Integer.parseInt(getInput());
+                if (slotsNeeded < 1) System.out.println("Please enter a number of at least 1.");
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a number.");
+            }
+        }
+
+        new ResourceDisplay(selectedResource).printFreeSlots(date, slotsNeeded);
+    }
+
+    /*
+     * Handles the availability search across every library including:
+     * - Date and time window input
+     * - Optional name, library and nearest-to-kiosk filters
+     * - Display of the ranked available resources
+     */
+    private void searchAvailability() {
+        AvailabilitySearch.Query query = null;
+        while (query == null) {
+            System.out.print("SELECT DATE (DD/MM/YY): ");
+            String date = keyboard.nextLine();
+            System.out.print("SELECT TIME (HH:MM-HH:MM): ");
+            String time = keyboard.nextLine();
+            System.out.print("RESOURCE NAME CONTAINS (leave blank for any): ");
+            String name = keyboard.nextLine();
+            System.out.print("LIBRARY NAME (leave blank for any): ");
+            String libraryName = keyboard.nextLine();
+            System.out.print("SHOW NEAREST TO KIOSK FIRST? (Y/N): ");
+            boolean nearest = getInput().startsWith("Y");
+
+            try {
+                query = new AvailabilitySearch.Query.QueryBuilder().date(date).timeWindow(time)
+                        .namePattern(name).library(libraryName).nearestToKiosk(nearest).build();
+            } catch (InvalidDateException e) {
+                System.out.println("Invalid date: " + e.getMessage());
+            } catch (InvalidTimeFormatException e) {
+                System.out.println("Invalid time format: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        new AvailabilityDisplay(AvailabilitySearch.search(libSystem, query)).print();
+    }
+
+    /*
+     * Shows a library's map and describes the cells the member asks about
+     * Continues until the member enters a blank line
+     */
+    private void exploreMap() {
+        Library selectedLibrary = selectLibrary();
+        MapDisplay mapDisplay = mapDisplayFor(selectedLibrary);
+        mapDisplay.displayMap();
+        mapDisplay.displayLegend();
+
+        boolean exploring = true;
+        while (exploring) {
+            System.out.print("ENTER A CELL AS ROW,COL (leave blank to return): ");
+            String input = keyboard.nextLine().trim();
+            if (input.isEmpty()) {
+                exploring = false;
+            } else {
+                String[] parts = input.split(",");
+                try {
+                    if (parts.length != 2) throw new NumberFormatException();
+                    mapDisplay.describeCell(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid cell. Please enter it as ROW,COL, for example 2,3.");
+                }
+            }
+        }
+    }
+
+    /*
+     * Plans one walk from the kiosk that picks up several media, such as a list of holds to pull
+     * Media on other floors of the library are not on the kiosk's map, so they are listed and left out
+     */
+    private void planPickRoute() {
+        Library selectedLibrary = selectLibrary();
+        if (!hasMedia(selectedLibrary)) return;
+        MapDisplay mapDisplay = mapDisplayFor(selectedLibrary);
+        Map map = selectedLibrary.getBuilding() != null
+                ? selectedLibrary.getBuilding().getKioskMap() : selectedLibrary.getMap();
+
+        List<int[]> stops = new ArrayList<>();
+        for (Media media : selectPickList(selectedLibrary)) {
+            if (map.mediaIdOf(media.getCoordinates()) == Map.NO_ENTITY) {
+                System.out.println("\"" + media.getTitle() + "\" is not on the kiosk's floor.");
+            } else {
+                stops.add(media.getCoordinates());
+            }
+        }
+        if (stops.isEmpty()) {
+            System.out.println("None of the selected media are on the kiosk's floor.");
+            return;
+        }
+        mapDisplay.displayPickRoute(stops);
+        mapDisplay.displayLegend();
+    }
+
+    /*
+     * Prompts the user to select several media from a library
+     * The media are looked up again once the member answers, so the items returned are the library's own
+     *
+     * @param library The library containing the media
+     * @return The selected media, in the order they were entered
+     */
+    private List<Media> selectPickList(Library library) {
+        while (true) {
+            showMedia(library);
+            List<Media> mediaList = library.getMedia();
+            System.out.printf("SELECT MEDIA TO PICK UP, SEPARATED BY COMMAS (1 - %d): ", mediaList.size());
+            String input = getInput();
+            mediaList = library.getMedia();
+            List<Media> selected = new ArrayList<>();
+            try {
+                for (String part : input.split(",")) {
+                    int index = Integer.parseInt(part.trim()) - 1;
+                    if (index < 0 || index >= mediaList.size()) throw new NumberFormatException();
+                    selected.add(mediaList.get(index));
+                }
+                return selected;
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid selection. Please enter numbers between 1 and " + mediaList.size()
+                        + ", for example 1,3.");
+            }
+        }
+    }
+
+    /*
+     * Checks that a library has media to choose from, telling the member why not if it has none
+     *
+     * @param library The library
+     * @return true if the library has media, false otherwise
+     */
+    private boolean hasMedia(Library library) {
+        if (!library.getMedia().isEmpty()) return true;
+        String error = library.getCatalogError();
+        System.out.println(error == null ? library.getName() + " has no media." : error + ". Please try again later.");
+        return false;
+    }
+
     /*
      * Displays all media available in a library
      *
@@ -283,6 +579,7 @@ public class MemberActionsDisplay {
      */
     private void borrowMedia() {
         Library selectedLibrary = selectLibrary();
+        if (!hasMedia(selectedLibrary)) return;
         Media selectedMedia = selectMedia(selectedLibrary);
 
         MediaBorrowingLogic.BorrowResult result =
@@ -291,7 +588,7 @@ public class MemberActionsDisplay {
 
         if (result.getStatus() == MediaBorrowingLogic.BorrowResult.Status.SUCCESS) {
             System.out.println("Path to selected media: ");
-            MapDisplay mapDisplay = new MapDisplay(selectedLibrary.getMap());
+            MapDisplay mapDisplay = mapDisplayFor(selectedLibrary);
             mapDisplay.displayPathToMedia(selectedMedia);
             mapDisplay.displayLegend();
             System.out.println("Successfully borrowed: " + selectedMedia.getTitle());
@@ -416,7 +713,7 @@ public class MemberActionsDisplay {
 
         try {
             Review review = new Review.ReviewBuilder().review(reviewText).build();
-            boolean added = media.addReview(review);
+            boolean added = MediaBorrowingLogic.getInstance().addReview(media, review);
             if (added) {
                 System.out.println("Review added successfully!");
             } else {
@@ -0,0 +1,42 @@
+package ca.umanitoba.cs.longkuma.ui.resource;
+
+import ca.umanitoba.cs.longkuma.logic.resource.AvailabilitySearch;
+
+import java.util.List;
+
+public class AvailabilityDisplay {
+    final private List<AvailabilitySearch.Result> results;
+
+    /*
+     * Constructs an AvailabilityDisplay for the results of an availability search
+     *
+     * @param results The ranked search results to display
+     */
+    public AvailabilityDisplay(List<AvailabilitySearch.Result> results) {
+        this.results = results;
+    }
+
+    /*
+     * Prints the ranked available resources with their library, and their distance from the kiosk when it was measured
+     */
+    public void print() {
+        System.out.println("Available resources: ");
+        System.out.println("--------------------");
+        if (results.isEmpty()) {
+            System.out.println("No resources are free for that time.");
+        }
+        for (int i = 0; i < results.size(); i++) {
+            AvailabilitySearch.Result result = results.get(i);
+            if (result.getDistance() == AvailabilitySearch.Result.NOT_MEASURED) {
+                System.out.printf("%d. \"%s\" at %s\n", i + 1,
+                        result.getResource().getResourceName(), result.getLibrary().getName());
+                continue;
+            }
+            String distance = result.getDistance() == Integer.MAX_VALUE
+                    ? "not reachable from the kiosk" : result.getDistance() + " steps from the kiosk";
+            System.out.printf("%d. \"%s\" at %s (%s)\n", i + 1,
+                    result.getResource().getResourceName(), result.getLibrary().getName(), distance);
+        }
+        System.out.println("--------------------");
+    }
+}
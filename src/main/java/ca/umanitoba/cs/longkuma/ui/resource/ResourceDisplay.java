@@ -1,7 +1,11 @@
 package ca.umanitoba.cs.longkuma.ui.resource;
 
+import ca.umanitoba.cs.longkuma.domain.exceptions.InvalidDateException;
 import ca.umanitoba.cs.longkuma.domain.resource.Booking;
+import ca.umanitoba.cs.longkuma.domain.resource.DateTimeCodec;
+import ca.umanitoba.cs.longkuma.domain.resource.RecurringBooking;
 import ca.umanitoba.cs.longkuma.domain.resource.Resource;
+import ca.umanitoba.cs.longkuma.logic.resource.BookingLogic;
 import java.util.List;
 
 public class ResourceDisplay {
@@ -19,35 +23,71 @@ public class ResourceDisplay {
     /*
      * Prints all current bookings for the resource on a specific date
      * Takes in a String in format "DD/MM/YY" and prints all current bookings for that date
+     * The date is parsed once by DateTimeCodec and bookings are matched by epoch day
+     * Occurrences of recurring series on that date are listed too
      *
      * @param bookingDate The date to display bookings for in "DD/MM/YY" format
      */
     public void printBookings(String bookingDate) {
-        if (bookingDate == null || bookingDate.length() != 8) {
-            System.out.println("Invalid date format. Use DD/MM/YY");
+        int epochDay = DateTimeCodec.parseDate(bookingDate);
+        if (DateTimeCodec.isError(epochDay)) {
+            System.out.println("Invalid date. " + (DateTimeCodec.isFormatError(epochDay)
+                    ? "Use DD/MM/YY" : DateTimeCodec.errorMessage(epochDay)));
             return;
         }
 
         List<Booking> bookings = resource.getBookings();
-        int day = Integer.parseInt(bookingDate.substring(0,2));
-        int month = Integer.parseInt(bookingDate.substring(3,5));
-        int year = Integer.parseInt(bookingDate.substring(6,8)) + 2000;
 
         System.out.println(resource.getResourceName() + ": ");
         System.out.println("--------------------");
 
         boolean hasBookings = false;
         for(Booking booking : bookings) {
-            if(booking.getDay() == day && booking.getMonth() == month && booking.getYear() == year) {
+            if(booking.getEpochDay() == epochDay) {
                 System.out.println("Booked from: " + booking.getStartTime() + " - " + booking.getEndTime());
                 hasBookings = true;
             }
         }
 
+        for(RecurringBooking recurring : resource.getRecurringBookings()) {
+            if(recurring.occursOn(epochDay)) {
+                System.out.println("Booked from: " + recurring.getStartTime() + " - " + recurring.getEndTime()
+                        + " (" + recurring.getFrequency().name().toLowerCase() + ")");
+                hasBookings = true;
+            }
+        }
+
         if (!hasBookings) {
             System.out.println("No bookings for this date.");
         }
 
         System.out.println("--------------------");
     }
-}
\ No newline at end of file
+
+    /*
+     * Prints the free time ranges for the resource on a specific date
+     * Only ranges that can hold at least the requested number of timeslots are shown
+     *
+     * @param bookingDate The date to check in "DD/MM/YY" format
+     * @param slotsNeeded The minimum number of contiguous timeslots
+     */
+    public void printFreeSlots(String bookingDate, int slotsNeeded) {
+        List<String> freeSlots;
+        try {
+            freeSlots = BookingLogic.findFreeSlots(resource, bookingDate, slotsNeeded);
+        } catch (InvalidDateException e) {
+            System.out.println("Invalid date: " + e.getMessage());
+            return;
+        }
+
+        System.out.println(resource.getResourceName() + " free times (" + resource.getTimeslotLength() + " minute timeslots): ");
+        System.out.println("--------------------");
+        if (freeSlots.isEmpty()) {
+            System.out.println("No free times for this date.");
+        }
+        for (String range : freeSlots) {
+            System.out.println("Free from: " + range);
+        }
+        System.out.println("--------------------");
+    }
+}